@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress;
+
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.grading.ReportUtils;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges 1M synthetic results by configuration: 50 tests, each with
+ * 4 compile modes x 25 scheduling classes x 4 JVM arg sets, 50 forks each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class MergeByConfigBench {
+
+    private static final int TESTS = 50;
+    private static final int COMPILE_MODES = 4;
+    private static final int SCHEDULING_CLASSES = 25;
+    private static final int FORKS = 50;
+
+    private static final List<List<String>> JVM_ARGS = Arrays.asList(
+            Arrays.asList("-XX:+UseSerialGC"),
+            Arrays.asList("-XX:+UseParallelGC"),
+            Arrays.asList("-XX:+UseG1GC", "-XX:+StressLCM"),
+            Arrays.asList("-XX:+UseG1GC", "-XX:+StressGCM", "-XX:+StressIGVN")
+    );
+
+    private List<TestResult> results;
+
+    @Setup
+    public void setup() {
+        results = new ArrayList<>();
+        for (int t = 0; t < TESTS; t++) {
+            String name = "org.openjdk.jcstress.tests.Synthetic" + t;
+            for (int cm = 0; cm < COMPILE_MODES; cm++) {
+                for (int s = 0; s < SCHEDULING_CLASSES; s++) {
+                    SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+                    scl.setPackage(0, s / 5);
+                    scl.setPackage(1, s % 5);
+                    for (List<String> args : JVM_ARGS) {
+                        for (int f = 0; f < FORKS; f++) {
+                            TestConfig cfg = new TestConfig(SpinLoopStyle.THREAD_SPIN_WAIT, 1000, 5, 2,
+                                    name, name, name + "_jcstress", args, f, 128,
+                                    Arrays.asList("actor1", "actor2"), cm, scl, 256, 40, null);
+                            TestResult r = new TestResult(Status.NORMAL);
+                            r.setConfig(cfg);
+                            r.addState("0, 0", 1000 + f);
+                            r.addState("1, 1", 2000 + f);
+                            results.add(r);
+                        }
+                    }
+                }
+            }
+        }
+        Collections.shuffle(results);
+    }
+
+    @Benchmark
+    public List<TestResult> mergedByConfig() {
+        return ReportUtils.mergedByConfig(results);
+    }
+
+}
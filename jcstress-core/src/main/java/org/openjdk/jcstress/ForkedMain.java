@@ -25,6 +25,7 @@
 package org.openjdk.jcstress;
 
 import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.ResourceUsage;
 import org.openjdk.jcstress.infra.collectors.TestResult;
 import org.openjdk.jcstress.infra.runners.ForkedTestConfig;
 import org.openjdk.jcstress.infra.runners.Runner;
@@ -54,10 +55,11 @@ public class ForkedMain {
 
         boolean initLocalAffinity = Boolean.parseBoolean(args[0]);
 
-        if (initLocalAffinity) {
+        if (initLocalAffinity && AffinitySupport.needsWarmup()) {
             // Pre-initialize the affinity support and threads, so that workers
             // do not have to do this on critical paths during the execution.
             // This also runs when the rest of the infrastructure starts up.
+            // FFM-based support (JDK 22+) initializes cheaply when workers bind.
             new WarmupAffinityTask().start();
         }
 
@@ -90,6 +92,8 @@ public class ForkedMain {
             result.addMessage("Have stale threads, forcing VM to exit for proper cleanup.");
         }
 
+        result.addUsage(ResourceUsage.ofCurrentVM());
+
         link.doneResult(token, result);
 
         if (forceExit) {
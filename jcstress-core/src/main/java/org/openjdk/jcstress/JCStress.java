@@ -27,15 +27,24 @@ package org.openjdk.jcstress;
 import org.openjdk.jcstress.infra.TestInfo;
 import org.openjdk.jcstress.infra.collectors.*;
 import org.openjdk.jcstress.infra.grading.ConsoleReportPrinter;
-import org.openjdk.jcstress.infra.grading.ExceptionReportPrinter;
-import org.openjdk.jcstress.infra.grading.TextReportPrinter;
-import org.openjdk.jcstress.infra.grading.HTMLReportPrinter;
+import org.openjdk.jcstress.infra.grading.HistoryReport;
+import org.openjdk.jcstress.infra.grading.LiveReportPrinter;
+import org.openjdk.jcstress.infra.grading.MetricsServer;
+import org.openjdk.jcstress.infra.grading.ReportPipeline;
+import org.openjdk.jcstress.infra.grading.ResultDiff;
+import org.openjdk.jcstress.infra.grading.ResultExporter;
+import org.openjdk.jcstress.infra.grading.ResultStore;
+import org.openjdk.jcstress.infra.runners.ConfigKey;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
 import org.openjdk.jcstress.infra.runners.TestConfig;
 import org.openjdk.jcstress.infra.runners.TestList;
 import org.openjdk.jcstress.os.*;
 import org.openjdk.jcstress.os.topology.Topology;
+import org.openjdk.jcstress.util.StringUtils;
 import org.openjdk.jcstress.vm.CompileMode;
+import org.openjdk.jcstress.vm.SpinStyleCalibration;
 import org.openjdk.jcstress.vm.VMSupport;
+import org.openjdk.jcstress.vm.VMSupportException;
 
 import java.io.*;
 import java.util.*;
@@ -66,18 +75,71 @@ public class JCStress {
             return;
         }
 
-        SortedSet<String> tests = getTests();
+        RunJournal resumed = null;
+        SortedSet<String> tests;
+        if (opts.shouldResume()) {
+            File journalFile = RunJournal.fileFor(opts.getResultFile());
+            if (!journalFile.exists()) {
+                out.println("FATAL: No run journal to resume from: " + journalFile);
+                return;
+            }
+            resumed = RunJournal.resume(journalFile);
+            tests = new TreeSet<>();
+            for (TestConfig cfg : resumed.plan()) {
+                tests.add(cfg.name);
+            }
+        } else {
+            tests = getTests();
+        }
 
         Topology topology = Topology.get();
         System.out.println("Detecting CPU topology and computing scheduling classes:");
         topology.printStatus(System.out);
         out.println();
 
+        Scheduler scheduler;
+        try {
+            scheduler = new Scheduler(topology, opts.getCPUCount(), opts.getHousekeepingCPUs());
+            scheduler.setMemoryBudget(opts.getMemoryBudgetMb(), opts.getForkFootprintMb());
+        } catch (IllegalArgumentException e) {
+            out.println("FATAL: " + e.getMessage());
+            return;
+        }
+
+        if (!opts.getHousekeepingCPUs().isEmpty()) {
+            // Keep the harness itself off the actor CPUs too. Forks are always started
+            // with their own affinity, see Scheduler.forkAffinityMap, so they do not
+            // inherit this one.
+            String label = "Pinning the harness to housekeeping CPUs " + StringUtils.join(opts.getHousekeepingCPUs(), ",");
+            try {
+                OSSupport.pinCurrentProcess(opts.getHousekeepingCPUs());
+                out.printf("----- %s %s%n", "[OK]", label);
+            } catch (VMSupportException e) {
+                out.printf("----- %s %s%n", "[N/A]", label);
+                out.println(e.getMessage());
+            }
+            out.println();
+        }
+
         out.println("  Scheduling classes for matching tests:");
-        Scheduler scheduler = new Scheduler(topology, opts.getCPUCount());
         Map<Integer, List<SchedulingClass>> classes = computeSchedulingClasses(tests, scheduler);
 
-        List<TestConfig> configs = prepareRunProgram(classes, tests);
+        List<TestConfig> configs;
+        if (resumed != null) {
+            configs = resumed.plan();
+            for (TestConfig cfg : configs) {
+                List<SchedulingClass> scls = classes.get(cfg.threads);
+                if (scls == null || !scls.contains(cfg.shClass)) {
+                    out.println("FATAL: Cannot resume on this machine, scheduling class is not available: " + cfg.shClass);
+                    return;
+                }
+            }
+        } else {
+            if (opts.isSpinStyleAuto()) {
+                calibrateSpinStyle(scheduler);
+            }
+            configs = prepareRunProgram(classes, tests);
+        }
 
         opts.printSettingsOn(out);
 
@@ -86,25 +148,268 @@ public class JCStress {
             return;
         }
 
-        ConsoleReportPrinter printer = new ConsoleReportPrinter(opts, new PrintWriter(out, true), configs.size());
-        DiskWriteCollector diskCollector = new DiskWriteCollector(opts.getResultFile());
-        TestResultCollector mux = MuxCollector.of(printer, diskCollector);
+        RunBudget budget = null;
+        if (opts.hasBudget()) {
+            File statsDir = (opts.getHistoryDir() != null) ? new File(opts.getHistoryDir()) : null;
+            budget = new RunBudget(opts.getBudgetMs(), scheduler.getMaxCpus(), statsDir);
+            if (statsDir != null) {
+                int known = budget.useHistory(new ResultStore(statsDir));
+                out.printf("  Time budget uses the durations of %d configurations from the past runs.%n", known);
+            }
+            if (resumed == null) {
+                List<TestConfig> planned = budget.plan(configs);
+                out.printf("  Time budget %s on %d CPUs: estimated %s for %d forks, planned %s for %d forks.%n",
+                        RunBudget.formatDuration(opts.getBudgetMs()), scheduler.getMaxCpus(),
+                        RunBudget.formatDuration(budget.estimateWall(configs)), configs.size(),
+                        RunBudget.formatDuration(budget.estimateWall(planned)), planned.size());
+                if (budget.estimateWall(planned) > opts.getBudgetMs()) {
+                    out.println("  WARNING: Run does not fit into the time budget even with the shortest iterations.");
+                }
+                out.println();
+                configs = planned;
+            }
+        }
+
+        LiveReportPrinter live = (opts.getLiveIntervalSec() > 0) ? new LiveReportPrinter(opts) : null;
+        List<ResultExporter> exporters = openExporters();
+
+        DiskWriteCollector diskCollector;
+        RunJournal journal;
+        if (resumed != null) {
+            // Results already in the file still go to the reports
+            List<TestResultCollector> replay = new ArrayList<>(exporters);
+            if (live != null) {
+                replay.add(live);
+            }
+            TestResultCollector replayMux = MuxCollector.of(replay.toArray(new TestResultCollector[0]));
+            Map<ConfigKey, Integer> inFile = new HashMap<>();
+            diskCollector = DiskWriteCollector.append(opts.getResultFile(), r -> {
+                inFile.merge(r.getConfig().key(), 1, Integer::sum);
+                replayMux.add(r);
+            });
+
+            // Completed configurations might not have made it to the result file
+            List<TestConfig> toRun = new ArrayList<>();
+            for (int i = 0; i < configs.size(); i++) {
+                TestConfig cfg = configs.get(i);
+                int n = inFile.getOrDefault(cfg.key(), 0);
+                if (resumed.isCompleted(i) && n > 0) {
+                    inFile.put(cfg.key(), n - 1);
+                } else {
+                    toRun.add(cfg);
+                }
+            }
+            out.printf("  Resuming the run from %s: %d of %d configurations completed, test order seed %d.%n",
+                    resumed.file(), configs.size() - toRun.size(), configs.size(), resumed.seed());
+            out.println();
+            configs = toRun;
+            journal = resumed;
+        } else {
+            diskCollector = new DiskWriteCollector(opts.getResultFile());
+            journal = RunJournal.create(RunJournal.fileFor(opts.getResultFile()), opts.getResultFile(), opts.getSeed(), configs);
+        }
+
+        // Keep the results collected so far, if harness is terminated
+        Thread flushOnExit = new Thread(() -> {
+            diskCollector.close();
+            journal.close();
+        });
+        Runtime.getRuntime().addShutdownHook(flushOnExit);
+
+        ResultCache cache = null;
+        List<TestResult> cached = new ArrayList<>();
+        if (opts.getCacheDir() != null) {
+            cache = new ResultCache(new File(opts.getCacheDir()));
+            List<TestConfig> toRun = new ArrayList<>();
+            for (TestConfig cfg : configs) {
+                TestResult r = cache.lookup(cfg);
+                if (r != null) {
+                    cached.add(r);
+                } else {
+                    toRun.add(cfg);
+                }
+            }
+            out.printf("  Reusing %d cached results, running %d configurations.%n", cached.size(), toRun.size());
+            out.println();
+            configs = toRun;
+        }
+
+        ConsoleReportPrinter printer = new ConsoleReportPrinter(opts, new PrintWriter(out, true), configs.size() + cached.size());
+
+        MetricsServer metrics = null;
+        if (opts.hasMetrics()) {
+            List<String> planned = new ArrayList<>();
+            for (TestConfig cfg : configs) {
+                planned.add(cfg.name);
+            }
+            for (TestResult r : cached) {
+                planned.add(r.getName());
+            }
+            metrics = new MetricsServer(opts.getMetricsPort(), opts.getCPUCount(), planned, cached);
+            out.printf("  Serving the metrics at http://%s:%d/metrics%n",
+                    metrics.address().getHostString(), metrics.address().getPort());
+            out.println();
+        }
+
+        List<TestResultCollector> collectors = new ArrayList<>();
+        collectors.add(printer);
+        collectors.add(diskCollector);
+        collectors.add(journal);
+        if (live != null) {
+            collectors.add(live);
+        }
+        collectors.addAll(exporters);
+        if (cache != null) {
+            collectors.add(cache);
+        }
+        if (metrics != null) {
+            collectors.add(metrics);
+        }
+        TestResultCollector mux = MuxCollector.of(collectors.toArray(new TestResultCollector[0]));
         SerializedBufferCollector sink = new SerializedBufferCollector(mux);
 
-        TestExecutor executor = new TestExecutor(opts.verbosity(), sink, scheduler);
+        TestExecutor executor = new TestExecutor(opts.verbosity(), sink, scheduler,
+                new File(opts.getResultDest(), "vm-output"));
         printer.setExecutor(executor);
+        if (metrics != null) {
+            metrics.setExecutor(executor);
+        }
 
-        executor.runAll(configs);
+        if (budget != null) {
+            budget.start(configs);
+            executor.setPacer(budget);
+        }
+
+        RunPriority priority = new RunPriority();
+        for (String file : opts.getPriorityFiles()) {
+            priority.read(file);
+        }
+        if (!opts.getPriorityFiles().isEmpty()) {
+            out.printf("  Running %d previously failed or interesting configurations first, then %d new ones, then %d others.%n",
+                    priority.count(configs, RunPriority.FAILED),
+                    priority.count(configs, RunPriority.NEW),
+                    priority.count(configs, RunPriority.REST));
+            out.println();
+        }
+
+        for (TestResult r : cached) {
+            sink.add(r);
+        }
+        executor.runAll(configs, priority::tier);
 
         sink.close();
         diskCollector.close();
+        if (metrics != null) {
+            metrics.close();
+        }
+        Runtime.getRuntime().removeShutdownHook(flushOnExit);
+        for (ResultExporter e : exporters) {
+            e.close();
+        }
+        if (live != null) {
+            live.close();
+        }
+
+        // Run is complete, nothing to resume
+        journal.close();
+        if (!journal.file().delete()) {
+            out.println("  Cannot delete the run journal: " + journal.file());
+        }
 
         printer.printFinishLine();
 
         out.println();
         out.println();
 
-        parseResults();
+        if (budget != null) {
+            if (budget.skipped() > 0) {
+                out.println("  Skipped " + budget.skipped() + " extra forks to keep within the time budget.");
+            }
+            out.printf("  Fork overhead estimate: %.0f ms.%n", budget.overheadMs());
+            out.println();
+            budget.save();
+        }
+
+        if (cache != null) {
+            out.println("  Added " + cache.stored() + " passing results to the result cache at " + opts.getCacheDir());
+            out.println();
+        }
+
+        // Before the reports, which throw on test failures
+        ingestHistory(Collections.singletonList(opts.getResultFile()));
+
+        if (live != null) {
+            new ReportPipeline(opts, out).work(live.collector(), live.pagesDone());
+        } else {
+            new ReportPipeline(opts, out).work();
+        }
+    }
+
+    private void calibrateSpinStyle(Scheduler scheduler) {
+        File storeDir = (opts.getHistoryDir() != null) ? new File(opts.getHistoryDir()) : null;
+        SpinStyleCalibration calibration = new SpinStyleCalibration(storeDir, opts.affinityMode(), opts.getCPUCount());
+
+        try {
+            SpinLoopStyle cached = calibration.cached();
+            if (cached != null) {
+                out.println("  Spin style calibrated before for this host: " + cached);
+                out.println();
+                opts.setCalibratedSpinStyle(cached);
+                return;
+            }
+        } catch (IOException e) {
+            out.println("  Cannot read the calibrated spin styles: " + e.getMessage());
+        }
+
+        out.println("Calibrating the spin style:");
+        out.println(" (failures are non-fatal, the default style is used then)");
+        out.println();
+
+        // Try the nearest and the farthest placement of two actors
+        List<SchedulingClass> scls = scheduler.scheduleClasses(2, opts.getCPUCount(), opts.affinityMode());
+        Set<SchedulingClass> placements = new LinkedHashSet<>();
+        if (!scls.isEmpty()) {
+            placements.add(scls.get(0));
+            placements.add(scls.get(scls.size() - 1));
+        }
+
+        List<SpinStyleCalibration.Sample> samples = new ArrayList<>();
+        for (SchedulingClass scl : placements) {
+            CPUMap cpuMap = scheduler.tryAcquire(scl);
+            try {
+                samples.addAll(calibration.measure(cpuMap, scheduler.forkAffinityMap(cpuMap), scl.mode() == AffinityMode.LOCAL));
+            } catch (VMSupportException e) {
+                out.println("----- [N/A] " + scl);
+                out.println(e.getMessage());
+            } finally {
+                if (cpuMap != null) {
+                    scheduler.release(cpuMap);
+                }
+            }
+        }
+
+        for (SpinStyleCalibration.Sample s : samples) {
+            out.printf("----- %-30s %10.0f strides/sec, %3.0f%% in sync%s%n",
+                    s.style(), s.stridesPerSecond(), s.syncShare() * 100, s.overlapped() ? "" : ", actors do not overlap");
+        }
+        out.println();
+
+        SpinLoopStyle style = SpinStyleCalibration.choose(samples);
+        if (style == null) {
+            return;
+        }
+        opts.setCalibratedSpinStyle(style);
+
+        if (storeDir == null) {
+            out.println("  The calibrated style is not remembered without -history, the next run may pick another one.");
+            out.println();
+        }
+
+        try {
+            calibration.store(style);
+        } catch (IOException e) {
+            out.println("  Cannot remember the calibrated spin style: " + e.getMessage());
+        }
     }
 
     private Map<Integer, List<SchedulingClass>> computeSchedulingClasses(SortedSet<String> tests, Scheduler scheduler) {
@@ -130,14 +435,55 @@ public class JCStress {
     }
 
     public void parseResults() throws Exception {
-        InProcessCollector collector = new InProcessCollector();
-        DiskReadCollector drc = new DiskReadCollector(opts.getResultFile(), collector);
-        drc.dump();
-        drc.close();
-
-        new TextReportPrinter(opts, collector).work();
-        new HTMLReportPrinter(opts, collector, out).work();
-        new ExceptionReportPrinter(collector).work();
+        ingestHistory(opts.getResultFiles());
+
+        List<ResultExporter> exporters = openExporters();
+        try {
+            new ReportPipeline(opts, out).work(exporters);
+        } finally {
+            for (ResultExporter e : exporters) {
+                e.close();
+            }
+        }
+    }
+
+    public void queryHistory() throws Exception {
+        ResultStore store = new ResultStore(new File(opts.getHistoryDir()));
+        new HistoryReport(store, out).work(opts.getHistoryQuery(),
+                Pattern.compile(opts.getTestFilter()),
+                Pattern.compile(opts.getHistoryJvm()),
+                opts.getHistorySince());
+    }
+
+    private void ingestHistory(List<String> files) throws IOException {
+        if (opts.getHistoryDir() == null) {
+            return;
+        }
+        ResultStore store = new ResultStore(new File(opts.getHistoryDir()));
+        for (String file : files) {
+            if (store.ingest(file)) {
+                out.println("  Added " + file + " to the results store at " + opts.getHistoryDir());
+            } else {
+                out.println("  " + file + " is already in the results store at " + opts.getHistoryDir());
+            }
+        }
+        out.println();
+    }
+
+    /**
+     * @return true, if the result files differ
+     */
+    public boolean diffResults() throws Exception {
+        List<String> files = opts.getDiffFiles();
+        return new ResultDiff(files.get(0), files.get(1), out).work();
+    }
+
+    private List<ResultExporter> openExporters() throws IOException {
+        List<ResultExporter> exporters = new ArrayList<>();
+        for (String file : opts.getExportFiles()) {
+            exporters.add(ResultExporter.forFile(file));
+        }
+        return exporters;
     }
 
     private SortedSet<Integer> computeActorCounts(Set<String> tests) {
@@ -164,12 +510,26 @@ public class JCStress {
             }
         }
 
+        if (opts.getShardCount() > 1) {
+            configs = shard(configs, opts.getShardIndex(), opts.getShardCount());
+        }
+
         // Randomize the testing order
-        Collections.shuffle(configs);
+        Collections.shuffle(configs, new Random(opts.getSeed()));
 
         return configs;
     }
 
+    static List<TestConfig> shard(List<TestConfig> configs, int index, int count) {
+        List<TestConfig> r = new ArrayList<>();
+        for (TestConfig cfg : configs) {
+            if (Math.floorMod(cfg.stableHash(), (long) count) == index) {
+                r.add(cfg);
+            }
+        }
+        return r;
+    }
+
     private void forkedSplit(List<TestConfig> testConfigs, VMSupport.Config config, TestInfo info, SchedulingClass scl) {
         for (int cc : CompileMode.casesFor(info.threads(), VMSupport.c1Available(), VMSupport.c2Available())) {
             if (config.onlyIfC2() && !CompileMode.hasC2(cc, info.threads())) {
@@ -54,6 +54,12 @@ public class Main {
             for (String test : jcstress.getTests()) {
                 System.out.println(test);
             }
+        } else if (opts.shouldQueryHistory()) {
+            jcstress.queryHistory();
+        } else if (opts.shouldDiff()) {
+            if (jcstress.diffResults()) {
+                System.exit(1);
+            }
         } else if (opts.shouldParse()) {
             jcstress.parseResults();
         } else {
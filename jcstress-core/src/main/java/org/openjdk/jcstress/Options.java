@@ -28,14 +28,18 @@ import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import org.openjdk.jcstress.infra.grading.HistoryReport;
+import org.openjdk.jcstress.infra.grading.ResultExporter;
 import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
 import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.MemoryInfo;
 import org.openjdk.jcstress.util.OptionFormatter;
 import org.openjdk.jcstress.util.StringUtils;
 import org.openjdk.jcstress.vm.VMSupport;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -46,6 +50,17 @@ import java.util.*;
  */
 public class Options {
     private String resultDir;
+    private int liveInterval;
+    private int metricsPort;
+    private List<String> exportFiles;
+    private List<String> diffFiles;
+    private List<String> priorityFiles;
+    private String historyDir;
+    private String cacheDir;
+    private long budgetMs;
+    private HistoryReport.Query historyQuery;
+    private String historyJvm;
+    private long historySince;
     private String testFilter;
     private int strideSize;
     private int strideCount;
@@ -53,19 +68,27 @@ public class Options {
     private int iters;
     private final String[] args;
     private boolean parse;
+    private boolean resume;
     private boolean list;
     private Verbosity verbosity;
     private int cpuCount;
     private int heapPerFork;
+    private long memoryBudget;
     private int forks;
     private int forksStressMultiplier;
     private String mode;
     private SpinLoopStyle spinStyle;
+    private SpinLoopStyle calibratedSpinStyle;
     private String resultFile;
+    private List<String> resultFiles;
+    private int shardIndex;
+    private int shardCount;
+    private long seed;
     private List<String> jvmArgs;
     private List<String> jvmArgsPrepend;
     private boolean splitCompilation;
     private AffinityMode affinityMode;
+    private List<Integer> housekeepingCPUs;
 
     public Options(String[] args) {
         this.args = args;
@@ -78,9 +101,68 @@ public class Options {
         OptionSpec<String> result = parser.accepts("r", "Target destination to put the report into.")
                 .withRequiredArg().ofType(String.class).describedAs("dir");
 
-        OptionSpec<String> parse = parser.accepts("p", "Re-run parser on the result file. This will not run any tests.")
+        OptionSpec<String> export = parser.accepts("export", "Export the results in machine-readable form, one record " +
+                "per configuration and observed state. Format is selected by file extension: \".jsonl\" for JSON Lines, " +
+                "\".csv\" for CSV. Records are written during the run, or while reading the result files with -p.")
+                .withRequiredArg().ofType(String.class).withValuesSeparatedBy(',').describedAs("file");
+
+        OptionSpec<Integer> live = parser.accepts("live", "Update the HTML report while tests are running, " +
+                "at most once per given number of seconds. The final report is then produced from the already merged results. " +
+                "\"0\" disables live reporting.")
+                .withRequiredArg().ofType(Integer.class).describedAs("sec");
+
+        OptionSpec<Integer> metrics = parser.accepts("metrics", "Serve the run progress in OpenMetrics format at " +
+                "http://localhost:<port>/metrics while tests are running. \"0\" picks any free port.")
+                .withRequiredArg().ofType(Integer.class).describedAs("port");
+
+        OptionSpec<String> parse = parser.accepts("p", "Re-run parser on the result file. This will not run any tests. " +
+                "Multiple comma-separated result files would be merged into a single report, e.g. the results of sharded runs.")
+                .withRequiredArg().ofType(String.class).withValuesSeparatedBy(',').describedAs("result file");
+
+        OptionSpec<String> resume = parser.accepts("resume", "Resume the interrupted run with the given result file. " +
+                "The configurations planned for the run are read from its journal, the completed ones are skipped, " +
+                "and new results are appended to the result file.")
                 .withRequiredArg().ofType(String.class).describedAs("result file");
 
+        OptionSpec<String> diff = parser.accepts("diff", "Compare two result files, e.g. the runs with the different JDKs. " +
+                "Reports new and disappeared configurations and states, status changes, and significant shifts in state frequencies. " +
+                "This will not run any tests. Files are given either comma-separated, or as two arguments. " +
+                "Exits with non-zero status if any differences are found.")
+                .withRequiredArg().ofType(String.class).withValuesSeparatedBy(',').describedAs("result files");
+
+        OptionSpec<String> cache = parser.accepts("cache", "Result cache to reuse the passing results from. " +
+                "Only the configurations that changed since, or that have not passed before, are run; " +
+                "the passing results are added to the cache. Configurations are identified by test classes, " +
+                "JVM, JVM arguments, compilation mode, scheduling class and run settings.")
+                .withRequiredArg().ofType(String.class).describedAs("dir");
+
+        OptionSpec<String> prioritize = parser.accepts("prioritize", "Previous result files to order the run by. " +
+                "Configurations that failed, errored or had interesting results there are run first, then the configurations " +
+                "that have not run before, then the rest.")
+                .withRequiredArg().ofType(String.class).withValuesSeparatedBy(',').describedAs("result files");
+
+        OptionSpec<String> budget = parser.accepts("budget", "Time budget for the run, e.g. \"45m\" or \"1h30m\". " +
+                "Before the run, extra forks are dropped and then iterations are shortened until the estimated run time fits; " +
+                "during the run, extra forks are skipped when the run falls behind. Every configuration runs at least once. " +
+                "Durations of the configurations that ran before, and fork overhead estimates, are taken from " +
+                "the results store given with -history.")
+                .withRequiredArg().ofType(String.class).describedAs("duration");
+
+        OptionSpec<String> history = parser.accepts("history", "Results store to keep the history of runs in. " +
+                "Results of the run, or the result files given with -p, are added to the store.")
+                .withRequiredArg().ofType(String.class).describedAs("dir");
+
+        OptionSpec<String> historyQuery = parser.accepts("historyQuery", "Query the results store given with -history. " +
+                "This will not run any tests. Available queries: " + HistoryReport.Query.labels() + ". " +
+                "Tests are selected with -t.")
+                .withRequiredArg().ofType(String.class).describedAs("query");
+
+        OptionSpec<String> historyJvm = parser.accepts("historyJvm", "Regexp selector for JVM versions in history queries.")
+                .withRequiredArg().ofType(String.class).describedAs("regexp");
+
+        OptionSpec<String> historySince = parser.accepts("historySince", "Only query the runs made since the given date.")
+                .withRequiredArg().ofType(String.class).describedAs("yyyy-MM-dd");
+
         OptionSpec<Boolean> list = parser.accepts("l", "List the available tests matching the requested settings.")
                 .withOptionalArg().ofType(Boolean.class).describedAs("bool");
 
@@ -110,9 +192,17 @@ public class Options {
                 "affects the stride size: maximum footprint will never be exceeded, regardless of min/max stride sizes.")
                 .withRequiredArg().ofType(Integer.class).describedAs("MB");
 
-        OptionSpec<SpinLoopStyle> spinStyle = parser.accepts("spinStyle", "Busy loop wait style. " +
-                "HARD = hard busy loop; THREAD_YIELD = use Thread.yield(); THREAD_SPIN_WAIT = use Thread.onSpinWait(); LOCKSUPPORT_PARK_NANOS = use LockSupport.parkNanos().")
-                .withRequiredArg().ofType(SpinLoopStyle.class).describedAs("style");
+        OptionSpec<Long> memoryBudget = parser.accepts("mem", "Memory budget for all forks, in megabytes. New forks " +
+                "are started only when their expected footprint fits the budget. Defaults to the memory available in the system, " +
+                "as reported by cgroups or /proc/meminfo. \"0\" disables the limit.")
+                .withRequiredArg().ofType(Long.class).describedAs("MB");
+
+        OptionSpec<String> spinStyle = parser.accepts("spinStyle", "Busy loop wait style. " +
+                "HARD = hard busy loop; THREAD_YIELD = use Thread.yield(); THREAD_SPIN_WAIT = use Thread.onSpinWait(); LOCKSUPPORT_PARK_NANOS = use LockSupport.parkNanos(); " +
+                "AUTO = calibrate before the run, and pick the fastest style that keeps the actors running together. " +
+                "The calibrated style is remembered per host in the results store given with -history; without it, " +
+                "every run calibrates again, and may pick a different style. Defaults to THREAD_SPIN_WAIT.")
+                .withRequiredArg().ofType(String.class).describedAs("style");
 
         OptionSpec<Integer> forks = parser.accepts("f", "Should fork each test N times. \"0\" to run in the embedded mode " +
                 "with occasional forking.")
@@ -141,6 +231,20 @@ public class Options {
         OptionSpec<AffinityMode> optAffinityMode = parser.accepts("af", "Use the specific affinity mode, if available.")
                 .withOptionalArg().ofType(AffinityMode.class).describedAs("mode");
 
+        OptionSpec<String> optHousekeeping = parser.accepts("hk", "Reserve given CPUs for housekeeping: the host harness and " +
+                "the system threads of forked VMs. Actors would never be scheduled on these CPUs, or their sibling threads. " +
+                "The harness is pinned to these CPUs when taskset is available. " +
+                "Accepts the Linux CPU list format, e.g. \"0,1\" or \"0-3\".")
+                .withRequiredArg().ofType(String.class).describedAs("cpu list");
+
+        OptionSpec<String> optShard = parser.accepts("shard", "Run only the given shard of all test configurations, " +
+                "in \"i/N\" format, where 0 <= i < N. Shards are selected deterministically, so that N machines running " +
+                "with the same settings and shards 0..N-1 cover all configurations exactly once.")
+                .withRequiredArg().ofType(String.class).describedAs("i/N");
+
+        OptionSpec<Long> optSeed = parser.accepts("seed", "Seed for randomizing the test order. Defaults to a random seed.")
+                .withRequiredArg().ofType(Long.class).describedAs("seed");
+
         parser.accepts("v", "Be verbose.");
         parser.accepts("vv", "Be extra verbose.");
         parser.accepts("vvv", "Be extra extra verbose.");
@@ -166,15 +270,102 @@ public class Options {
             resultDir += "/";
         }
 
+        this.exportFiles = set.valuesOf(export);
+        for (String f : exportFiles) {
+            if (!ResultExporter.isSupported(f)) {
+                System.err.println("Unsupported export format: " + f + ", use .jsonl or .csv");
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+        }
+
+        this.liveInterval = orDefault(set.valueOf(live), 0);
+        if (liveInterval < 0) {
+            System.err.println("Live report interval should be non-negative: " + liveInterval);
+            System.err.println();
+            parser.printHelpOn(System.err);
+            return false;
+        }
+
+        this.metricsPort = orDefault(set.valueOf(metrics), -1);
+        if (set.has(metrics) && (metricsPort < 0 || metricsPort > 65535)) {
+            System.err.println("Metrics port should be within 0..65535: " + metricsPort);
+            System.err.println();
+            parser.printHelpOn(System.err);
+            return false;
+        }
+
         this.testFilter = orDefault(set.valueOf(testFilter), ".*");
 
         this.parse = orDefault(set.has(parse), false);
         if (this.parse) {
-            this.resultFile = set.valueOf(parse);
+            this.resultFiles = set.valuesOf(parse);
+            this.resultFile = resultFiles.get(0);
+        } else if (set.has(resume)) {
+            this.resume = true;
+            this.resultFile = set.valueOf(resume);
+            this.resultFiles = Collections.singletonList(resultFile);
         } else {
             String timestamp = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss", Locale.ROOT).format(new Date());
-            this.resultFile = "jcstress-results-" + timestamp + ".bin.gz";
+            this.resultFile = "jcstress-results-" + timestamp + ".bin";
+            this.resultFiles = Collections.singletonList(resultFile);
         }
+        if (set.has(diff)) {
+            List<String> files = new ArrayList<>(set.valuesOf(diff));
+            for (Object o : set.nonOptionArguments()) {
+                files.add(o.toString());
+            }
+            if (files.size() != 2) {
+                System.err.println("Diff needs exactly two result files, got: " + files);
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+            this.diffFiles = files;
+        } else {
+            this.diffFiles = Collections.emptyList();
+        }
+
+        this.priorityFiles = set.valuesOf(prioritize);
+        this.cacheDir = set.valueOf(cache);
+        if (set.has(budget)) {
+            this.budgetMs = RunBudget.parseDuration(set.valueOf(budget));
+            if (budgetMs <= 0) {
+                System.err.println("Cannot parse the time budget, or it is not positive: " + set.valueOf(budget));
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+        }
+        this.historyDir = set.valueOf(history);
+        if (set.has(historyQuery)) {
+            this.historyQuery = HistoryReport.Query.of(set.valueOf(historyQuery));
+            if (this.historyQuery == null) {
+                System.err.println("Unknown history query: " + set.valueOf(historyQuery) + ", use one of: " + HistoryReport.Query.labels());
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+            if (historyDir == null) {
+                System.err.println("History query needs the results store, set with -history");
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+        }
+        this.historyJvm = orDefault(set.valueOf(historyJvm), ".*");
+        if (set.has(historySince)) {
+            try {
+                this.historySince = new SimpleDateFormat("yyyy-MM-dd", Locale.ROOT).parse(set.valueOf(historySince)).getTime();
+            } catch (ParseException e) {
+                System.err.println("Cannot parse the date: " + set.valueOf(historySince));
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+        }
+
         this.list = orDefault(set.has(list), false);
         if (set.has("vvv")) {
             this.verbosity = new Verbosity(3);
@@ -196,7 +387,17 @@ public class Options {
             return false;
         }
 
-        this.spinStyle = orDefault(set.valueOf(spinStyle), SpinLoopStyle.THREAD_SPIN_WAIT);
+        String style = orDefault(set.valueOf(spinStyle), SpinLoopStyle.THREAD_SPIN_WAIT.name());
+        if (!style.equals("AUTO")) {
+            try {
+                this.spinStyle = SpinLoopStyle.valueOf(style);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown spin style: " + style);
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+        }
 
         this.time = 1000;
         this.iters = 5;
@@ -242,12 +443,65 @@ public class Options {
 
         this.heapPerFork = orDefault(set.valueOf(heapPerFork), 256);
 
+        if (set.has(memoryBudget)) {
+            this.memoryBudget = set.valueOf(memoryBudget);
+            if (this.memoryBudget < 0) {
+                System.err.println("Memory budget should be non-negative: " + this.memoryBudget);
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+        } else {
+            this.memoryBudget = Math.max(0, new MemoryInfo().availableMb());
+        }
+
         this.jvmArgs = processArgs(optJvmArgs, set);
         this.jvmArgsPrepend = processArgs(optJvmArgsPrepend, set);
 
         this.splitCompilation = orDefault(set.valueOf(optSplitCompilation), true);
         this.affinityMode = orDefault(set.valueOf(optAffinityMode), AffinityMode.LOCAL);
 
+        if (set.has(optHousekeeping)) {
+            try {
+                this.housekeepingCPUs = StringUtils.decodeCpuList(set.valueOf(optHousekeeping));
+            } catch (NumberFormatException e) {
+                System.err.println("Cannot parse housekeeping CPU list: " + set.valueOf(optHousekeeping));
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+        } else {
+            this.housekeepingCPUs = Collections.emptyList();
+        }
+
+        if (set.has(optShard)) {
+            String shard = set.valueOf(optShard);
+            try {
+                String[] split = shard.split("/");
+                if (split.length != 2) {
+                    throw new NumberFormatException();
+                }
+                this.shardIndex = Integer.parseInt(split[0].trim());
+                this.shardCount = Integer.parseInt(split[1].trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Cannot parse shard, expected \"i/N\": " + shard);
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+            if (shardCount <= 0 || shardIndex < 0 || shardIndex >= shardCount) {
+                System.err.println("Shard index should be within [0, " + shardCount + "): " + shard);
+                System.err.println();
+                parser.printHelpOn(System.err);
+                return false;
+            }
+        } else {
+            this.shardIndex = 0;
+            this.shardCount = 1;
+        }
+
+        this.seed = orDefault(set.valueOf(optSeed), new Random().nextLong());
+
         return true;
     }
 
@@ -284,7 +538,17 @@ public class Options {
         out.println("  Test configuration:");
         out.printf("    Test preset mode: \"%s\"%n", mode);
         out.printf("    Hardware CPUs in use: %d%n", getCPUCount());
-        out.printf("    Spinning style: %s%n", getSpinStyle());
+        out.printf("    Spinning style: %s%s%n", getSpinStyle(), isSpinStyleAuto() ? (calibratedSpinStyle != null ? " (calibrated)" : " (not calibrated)") : "");
+        if (!housekeepingCPUs.isEmpty()) {
+            out.printf("    Housekeeping CPUs: %s%n", StringUtils.join(housekeepingCPUs, ", "));
+        }
+        if (memoryBudget > 0) {
+            out.printf("    Memory budget: %d Mb, %d Mb per fork%n", memoryBudget, getForkFootprintMb());
+        }
+        if (shardCount > 1) {
+            out.printf("    Test shard: %d of %d%n", shardIndex, shardCount);
+        }
+        out.printf("    Test order seed: %d%n", seed);
         out.printf("    Test selection: \"%s\"%n", getTestFilter());
         out.printf("    Forks per test: %d normal, %d stress%n", getForks(), getForks()*getForksStressMultiplier());
         out.printf("    Iterations per fork: %d%n", getIterations());
@@ -292,6 +556,24 @@ public class Options {
         out.printf("    Test stride: %d strides x %d tests, but taking no more than %d Mb%n", getStrideCount(), getStrideSize(), getMaxFootprintMb());
         out.printf("    Test result blob: \"%s\"%n", resultFile);
         out.printf("    Test results: \"%s\"%n", resultDir);
+        if (liveInterval > 0) {
+            out.printf("    Live report: every %d s%n", liveInterval);
+        }
+        if (!exportFiles.isEmpty()) {
+            out.printf("    Export to: %s%n", StringUtils.join(exportFiles, ", "));
+        }
+        if (cacheDir != null) {
+            out.printf("    Result cache: \"%s\"%n", cacheDir);
+        }
+        if (!priorityFiles.isEmpty()) {
+            out.printf("    Prioritize by: %s%n", StringUtils.join(priorityFiles, ", "));
+        }
+        if (budgetMs > 0) {
+            out.printf("    Time budget: %s%n", RunBudget.formatDuration(budgetMs));
+        }
+        if (historyDir != null) {
+            out.printf("    Results store: \"%s\"%n", historyDir);
+        }
         out.println();
     }
 
@@ -307,11 +589,42 @@ public class Options {
         return resultDir;
     }
 
+    public List<String> getExportFiles() {
+        return exportFiles;
+    }
+
+    public boolean hasMetrics() {
+        return metricsPort >= 0;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public int getLiveIntervalSec() {
+        return liveInterval;
+    }
+
     public int getTime() {
         return time;
     }
 
+    public boolean isSpinStyleAuto() {
+        return spinStyle == null;
+    }
+
+    /**
+     * @param style style picked by calibration, used when the style is AUTO
+     */
+    public void setCalibratedSpinStyle(SpinLoopStyle style) {
+        this.calibratedSpinStyle = style;
+    }
+
     public SpinLoopStyle getSpinStyle() {
+        SpinLoopStyle spinStyle = this.spinStyle;
+        if (spinStyle == null) {
+            spinStyle = orDefault(calibratedSpinStyle, SpinLoopStyle.THREAD_SPIN_WAIT);
+        }
         switch (spinStyle) {
             case HARD:
             case THREAD_YIELD:
@@ -328,6 +641,54 @@ public class Options {
         }
     }
 
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+    public List<String> getPriorityFiles() {
+        return priorityFiles;
+    }
+
+    public boolean hasBudget() {
+        return budgetMs > 0;
+    }
+
+    public long getBudgetMs() {
+        return budgetMs;
+    }
+
+    public String getHistoryDir() {
+        return historyDir;
+    }
+
+    public boolean shouldQueryHistory() {
+        return historyQuery != null;
+    }
+
+    public HistoryReport.Query getHistoryQuery() {
+        return historyQuery;
+    }
+
+    public String getHistoryJvm() {
+        return historyJvm;
+    }
+
+    public long getHistorySince() {
+        return historySince;
+    }
+
+    public boolean shouldDiff() {
+        return !diffFiles.isEmpty();
+    }
+
+    public List<String> getDiffFiles() {
+        return diffFiles;
+    }
+
+    public boolean shouldResume() {
+        return resume;
+    }
+
     public boolean shouldParse() {
         return parse;
     }
@@ -356,6 +717,22 @@ public class Options {
         return resultFile;
     }
 
+    public List<String> getResultFiles() {
+        return resultFiles;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
     public List<String> getJvmArgs() {
         return jvmArgs;
     }
@@ -368,6 +745,16 @@ public class Options {
         return heapPerFork;
     }
 
+    public long getMemoryBudgetMb() {
+        return memoryBudget;
+    }
+
+    public int getForkFootprintMb() {
+        // Heap, plus the native memory the VM needs: metaspace, code cache,
+        // thread stacks, GC and compiler data structures.
+        return getHeapPerForkMb() + 128;
+    }
+
     public int getMaxFootprintMb() {
         // Half of heap size.
         return getHeapPerForkMb() / 2;
@@ -380,4 +767,8 @@ public class Options {
     public AffinityMode affinityMode() {
         return affinityMode;
     }
+
+    public List<Integer> getHousekeepingCPUs() {
+        return housekeepingCPUs;
+    }
 }
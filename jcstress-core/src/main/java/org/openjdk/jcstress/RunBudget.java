@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress;
+
+import org.openjdk.jcstress.infra.grading.ResultStore;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fits the run into the time budget.
+ *
+ * <p>Before the run, configurations are planned so that their estimated CPU time
+ * fits into the budget times the CPUs in use. Breadth goes before depth: extra forks
+ * are dropped first, then the time per iteration and the iterations are scaled down
+ * uniformly, so that every configuration still runs at least once.
+ *
+ * <p>Configurations that ran before take as long as their iterations took in the past runs,
+ * relative to the configured time, as recorded in the results store; others take the
+ * configured time. Fork overhead, i.e. the time the VM spends outside the test iterations,
+ * is the same for all configurations: it is measured as forks complete, and is remembered
+ * for the future runs.
+ *
+ * <p>During the run, the extra forks are skipped whenever the remaining configurations
+ * would not fit into the remaining budget.
+ *
+ * <p>Scaled configurations differ from the original ones, so their results are cached
+ * under their own keys: these are only reused by the runs planned with the same scaling.
+ */
+public class RunBudget implements TestExecutor.Pacer {
+
+    static final int MIN_TIME_MS = 10;
+    static final double DEFAULT_FORK_OVERHEAD_MS = 1500;
+
+    // Past runs count as that many samples, so that the estimate still adapts
+    private static final int MAX_PAST_SAMPLES = 100;
+
+    private static final String STATS_FILE = "fork-overhead.properties";
+    private static final String OVERHEAD_KEY = "overhead.ms";
+    private static final String SAMPLES_KEY = "samples";
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ms|s|m|h|d)");
+
+    private final long budgetMs;
+    private final int cpus;
+    private final File statsFile;
+
+    private double overheadMs;
+    private long overheadSamples;
+    private final Map<String, Double> timeScales;
+
+    private long startNanos;
+    private long pendingThreads;
+    private double pendingWork;
+    private int skipped;
+
+    /**
+     * @param budgetMs time budget, in milliseconds
+     * @param cpus CPUs available to the run
+     * @param statsDir directory to keep the fork overhead estimates in; null, if not kept
+     * @throws IOException if the estimates cannot be read
+     */
+    public RunBudget(long budgetMs, int cpus, File statsDir) throws IOException {
+        this.budgetMs = budgetMs;
+        this.cpus = cpus;
+        this.statsFile = (statsDir != null) ? new File(statsDir, STATS_FILE) : null;
+        this.overheadMs = DEFAULT_FORK_OVERHEAD_MS;
+        this.timeScales = new HashMap<>();
+
+        if (statsFile != null && statsFile.exists()) {
+            Properties props = new Properties();
+            try (InputStream is = new FileInputStream(statsFile)) {
+                props.load(is);
+            }
+            try {
+                overheadMs = Double.parseDouble(props.getProperty(OVERHEAD_KEY, "-1"));
+                overheadSamples = Math.min(MAX_PAST_SAMPLES, Long.parseLong(props.getProperty(SAMPLES_KEY, "0")));
+            } catch (NumberFormatException e) {
+                overheadMs = -1;
+            }
+            if (overheadMs < 0) {
+                // Broken estimates, start over
+                overheadMs = DEFAULT_FORK_OVERHEAD_MS;
+                overheadSamples = 0;
+            }
+        }
+    }
+
+    /**
+     * Takes the durations of the configurations that ran before from the results store.
+     *
+     * @param store results store
+     * @return number of configurations with the known durations
+     * @throws IOException if the store cannot be read
+     */
+    public synchronized int useHistory(ResultStore store) throws IOException {
+        Map<String, long[]> sums = new HashMap<>();
+        for (ResultStore.Entry e : store.entries(Pattern.compile(""), Pattern.compile(""), 0)) {
+            // {measured, nominal}
+            long[] s = sums.computeIfAbsent(key(e.test(), e.config()), k -> new long[2]);
+            s[0] += e.millis();
+            s[1] += e.nominalMillis();
+        }
+        timeScales.clear();
+        for (Map.Entry<String, long[]> e : sums.entrySet()) {
+            long[] s = e.getValue();
+            if (s[1] > 0) {
+                timeScales.put(e.getKey(), (double) s[0] / s[1]);
+            }
+        }
+        return timeScales.size();
+    }
+
+    private static String key(String test, String configLabel) {
+        return test + " " + configLabel;
+    }
+
+    /**
+     * @param cfg configuration
+     * @return expected time of all iterations, in milliseconds
+     */
+    private double workMs(TestConfig cfg) {
+        double scale = timeScales.getOrDefault(key(cfg.name, ResultStore.configLabel(cfg)), 1.0);
+        return scale * cfg.iters * cfg.time;
+    }
+
+    /**
+     * Parses the duration, e.g. "90s", "30m", "1h30m".
+     *
+     * @param s duration
+     * @return duration in milliseconds, or -1 if it cannot be parsed
+     */
+    public static long parseDuration(String s) {
+        Matcher m = DURATION.matcher(s.trim());
+        long ms = 0;
+        int pos = 0;
+        while (m.find() && m.start() == pos) {
+            long v = Long.parseLong(m.group(1));
+            switch (m.group(2)) {
+                case "ms": ms += v; break;
+                case "s":  ms += TimeUnit.SECONDS.toMillis(v); break;
+                case "m":  ms += TimeUnit.MINUTES.toMillis(v); break;
+                case "h":  ms += TimeUnit.HOURS.toMillis(v); break;
+                case "d":  ms += TimeUnit.DAYS.toMillis(v); break;
+                default:
+                    throw new IllegalStateException("Unhandled unit: " + m.group(2));
+            }
+            pos = m.end();
+        }
+        if (pos == 0 || pos != s.trim().length()) {
+            return -1;
+        }
+        return ms;
+    }
+
+    /**
+     * Formats the duration back, as "1h30m", "45s" and so on.
+     *
+     * @param ms duration in milliseconds
+     * @return formatted duration
+     */
+    public static String formatDuration(long ms) {
+        long s = TimeUnit.MILLISECONDS.toSeconds(ms);
+        if (s == 0) {
+            return ms + "ms";
+        }
+        StringBuilder sb = new StringBuilder();
+        if (s >= 3600) {
+            sb.append(s / 3600).append("h");
+        }
+        if (s % 3600 >= 60) {
+            sb.append(s % 3600 / 60).append("m");
+        }
+        if (s % 60 != 0 || sb.length() == 0) {
+            sb.append(s % 60).append("s");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Estimates the CPU time the configurations take.
+     *
+     * @param configs configurations
+     * @return CPU time, in milliseconds
+     */
+    public synchronized long estimate(List<TestConfig> configs) {
+        double ms = 0;
+        for (TestConfig cfg : configs) {
+            ms += cfg.threads * (overheadMs + workMs(cfg));
+        }
+        return (long) ms;
+    }
+
+    /**
+     * Estimates the wall time the configurations take on the CPUs in use.
+     *
+     * @param configs configurations
+     * @return wall time, in milliseconds
+     */
+    public long estimateWall(List<TestConfig> configs) {
+        return estimate(configs) / cpus;
+    }
+
+    /**
+     * Plans the run: selects and adjusts the configurations so that they fit
+     * into the budget. Configurations that fit already are returned as is.
+     *
+     * @param configs configurations
+     * @return configurations to run
+     */
+    public synchronized List<TestConfig> plan(List<TestConfig> configs) {
+        long capacity = budgetMs * cpus;
+
+        int maxForks = 0;
+        for (TestConfig cfg : configs) {
+            maxForks = Math.max(maxForks, cfg.forkId + 1);
+        }
+
+        // Drop the extra forks first, all configurations at once
+        for (int forks = maxForks; forks >= 1; forks--) {
+            List<TestConfig> sel = new ArrayList<>();
+            for (TestConfig cfg : configs) {
+                if (cfg.forkId < forks) {
+                    sel.add(cfg);
+                }
+            }
+            if (estimate(sel) <= capacity) {
+                return sel;
+            }
+        }
+
+        // Still does not fit with a single fork: scale the iterations down
+        List<TestConfig> sel = new ArrayList<>();
+        double overhead = 0;
+        double work = 0;
+        for (TestConfig cfg : configs) {
+            if (cfg.forkId == 0) {
+                sel.add(cfg);
+                overhead += cfg.threads * overheadMs;
+                work += cfg.threads * workMs(cfg);
+            }
+        }
+        double scale = Math.max(0, (capacity - overhead) / work);
+
+        List<TestConfig> result = new ArrayList<>();
+        for (TestConfig cfg : sel) {
+            result.add(scale(cfg, scale));
+        }
+        return result;
+    }
+
+    static TestConfig scale(TestConfig cfg, double scale) {
+        double ms = cfg.time * scale;
+        int time;
+        int iters;
+        if (ms >= MIN_TIME_MS) {
+            time = (int) ms;
+            iters = cfg.iters;
+        } else {
+            // Iterations that short are not meaningful, have fewer of them instead
+            time = Math.min(cfg.time, MIN_TIME_MS);
+            iters = Math.max(1, (int) (cfg.iters * ms / time));
+        }
+        return new TestConfig(cfg.spinLoopStyle, time, iters, cfg.threads,
+                cfg.name, cfg.binaryName, cfg.generatedRunnerName,
+                cfg.jvmArgs, cfg.forkId, cfg.maxFootprintMB, cfg.actorNames,
+                cfg.compileMode, cfg.shClass, cfg.strideSize, cfg.strideCount, cfg.cpuMap);
+    }
+
+    /**
+     * Starts the pacing.
+     *
+     * @param configs configurations that are about to run
+     */
+    public synchronized void start(List<TestConfig> configs) {
+        startNanos = System.nanoTime();
+        pendingThreads = 0;
+        pendingWork = 0;
+        for (TestConfig cfg : configs) {
+            pendingThreads += cfg.threads;
+            pendingWork += cfg.threads * workMs(cfg);
+        }
+    }
+
+    @Override
+    public synchronized boolean admit(TestConfig cfg) {
+        double pending = pendingThreads * overheadMs + pendingWork;
+        pendingThreads -= cfg.threads;
+        pendingWork -= cfg.threads * workMs(cfg);
+
+        // Fell behind: only the first forks still run
+        long remaining = budgetMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (cfg.forkId > 0 && pending > (double) remaining * cpus) {
+            skipped++;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void finished(TestConfig cfg, long wallMs) {
+        double overhead = Math.max(0, wallMs - workMs(cfg));
+        overheadMs = (overheadMs * overheadSamples + overhead) / (overheadSamples + 1);
+        overheadSamples++;
+    }
+
+    /**
+     * @return number of forks skipped to keep up with the budget
+     */
+    public synchronized int skipped() {
+        return skipped;
+    }
+
+    /**
+     * @return current fork overhead estimate, in milliseconds
+     */
+    public synchronized double overheadMs() {
+        return overheadMs;
+    }
+
+    /**
+     * Remembers the fork overhead estimate for the future runs.
+     *
+     * @throws IOException if the estimates cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (statsFile == null) {
+            return;
+        }
+        statsFile.getParentFile().mkdirs();
+        Properties props = new Properties();
+        props.setProperty(OVERHEAD_KEY, String.valueOf(overheadMs));
+        props.setProperty(SAMPLES_KEY, String.valueOf(overheadSamples));
+        try (OutputStream os = new FileOutputStream(statsFile)) {
+            props.store(os, "Fork overhead estimates for -budget");
+        }
+    }
+
+}
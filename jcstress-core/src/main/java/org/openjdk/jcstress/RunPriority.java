@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress;
+
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.DiskReadCollector;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.collectors.TestResultCollector;
+import org.openjdk.jcstress.infra.grading.ResultStore;
+import org.openjdk.jcstress.infra.grading.TestGrading;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.infra.runners.TestList;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders the run so that the signal comes early. Configurations that failed, errored,
+ * or had interesting results in the previous runs go first, then the configurations
+ * that have not run before, then the rest.
+ *
+ * <p>Configurations are matched across runs by test name, compilation mode, scheduling
+ * class and JVM arguments, so that the runs with different presets still match.
+ */
+public class RunPriority implements TestResultCollector {
+
+    public static final int FAILED = 0;
+    public static final int NEW = 1;
+    public static final int REST = 2;
+
+    private final Map<String, Integer> previous = new HashMap<>();
+
+    /**
+     * Reads the previous results.
+     *
+     * @param resultFile result file
+     * @throws IOException if the file cannot be read
+     */
+    public void read(String resultFile) throws IOException {
+        DiskReadCollector drc = new DiskReadCollector(resultFile, this);
+        drc.dump();
+        drc.close();
+    }
+
+    @Override
+    public synchronized void add(TestResult r) {
+        previous.merge(key(r.getConfig()), isNotable(r) ? FAILED : REST, Math::min);
+    }
+
+    static boolean isNotable(TestResult r) {
+        if (r.status() != Status.NORMAL) {
+            return true;
+        }
+        if (!TestList.hasInfo(r.getName())) {
+            // Test is gone, cannot grade
+            return false;
+        }
+        TestGrading g = r.grading();
+        return !g.isPassed || g.hasInteresting;
+    }
+
+    /**
+     * @param cfg configuration
+     * @return tier for the configuration: {@link #FAILED}, {@link #NEW} or {@link #REST}
+     */
+    public synchronized int tier(TestConfig cfg) {
+        return previous.getOrDefault(key(cfg), NEW);
+    }
+
+    /**
+     * @param configs configurations
+     * @param tier tier
+     * @return number of configurations in the tier
+     */
+    public int count(List<TestConfig> configs, int tier) {
+        int c = 0;
+        for (TestConfig cfg : configs) {
+            if (tier(cfg) == tier) {
+                c++;
+            }
+        }
+        return c;
+    }
+
+    private static String key(TestConfig cfg) {
+        return cfg.name + ", " + ResultStore.configLabel(cfg);
+    }
+
+}
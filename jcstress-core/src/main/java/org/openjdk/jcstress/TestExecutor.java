@@ -25,8 +25,10 @@
 package org.openjdk.jcstress;
 
 import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.ResourceUsage;
 import org.openjdk.jcstress.infra.collectors.TestResult;
 import org.openjdk.jcstress.infra.collectors.TestResultCollector;
+import org.openjdk.jcstress.infra.jfr.Events;
 import org.openjdk.jcstress.infra.processors.JCStressTestProcessor;
 import org.openjdk.jcstress.infra.runners.*;
 import org.openjdk.jcstress.link.BinaryLinkServer;
@@ -37,9 +39,11 @@ import org.openjdk.jcstress.vm.CompileMode;
 import org.openjdk.jcstress.vm.VMSupport;
 
 import java.io.*;
+import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
 
 /**
  * Manages test execution for the entire run.
@@ -53,6 +57,15 @@ public class TestExecutor {
 
     static final AtomicInteger ID = new AtomicInteger();
 
+    private static final int VM_OUTPUT_HEAD_LINES = Integer.getInteger("jcstress.vmOutput.headLines", 1000);
+    private static final int VM_OUTPUT_TAIL_LINES = Integer.getInteger("jcstress.vmOutput.tailLines", 1000);
+    private static final MemoryInfo MEMORY_INFO = new MemoryInfo();
+
+    /**
+     * Process.pid() is only available since JDK 9, pick it up reflectively.
+     */
+    private static final Method PID_METHOD = pidMethod();
+
     private final BinaryLinkServer server;
     private final Verbosity verbosity;
     private final TestResultCollector sink;
@@ -66,9 +79,56 @@ public class TestExecutor {
     private final AtomicInteger jvmsFinishing;
 
     private final ExecutorService supportTasks;
+    private final File vmOutputDir;
+    private Pacer pacer;
+
+    private static Method pidMethod() {
+        try {
+            return Process.class.getMethod("pid");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    static long pid(Process p) {
+        if (PID_METHOD == null || p == null) {
+            return -1;
+        }
+        try {
+            return (Long) PID_METHOD.invoke(p);
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Decides whether the configurations still run, e.g. to keep the run
+     * within the time budget.
+     */
+    public interface Pacer {
+        /**
+         * @param cfg configuration about to run
+         * @return true, if it should run; false, if it should be skipped
+         */
+        boolean admit(TestConfig cfg);
+
+        /**
+         * @param cfg configuration that had run
+         * @param wallMs wall time of its VM, in milliseconds
+         */
+        void finished(TestConfig cfg, long wallMs);
+    }
 
     public TestExecutor(Verbosity verbosity, TestResultCollector sink, Scheduler scheduler) throws IOException {
+        this(verbosity, sink, scheduler, null);
+    }
+
+    /**
+     * @param vmOutputDir directory to spill the long VM output streams to; null to drop the excess lines
+     */
+    public TestExecutor(Verbosity verbosity, TestResultCollector sink, Scheduler scheduler, File vmOutputDir) throws IOException {
         this.verbosity = verbosity;
+        this.vmOutputDir = vmOutputDir;
         this.sink = sink;
         this.vmByToken = new ConcurrentHashMap<>();
         this.scheduler = scheduler;
@@ -104,6 +164,10 @@ public class TestExecutor {
         });
     }
 
+    public void setPacer(Pacer pacer) {
+        this.pacer = pacer;
+    }
+
     private void awaitNotification() {
         synchronized (notifyLock) {
             try {
@@ -122,15 +186,27 @@ public class TestExecutor {
     }
 
     public void runAll(List<TestConfig> configs) {
-        // Build the scheduling classes maps
-        Multimap<SchedulingClass, TestConfig> byScl = new HashMultimap<>();
+        runAll(configs, cfg -> 0);
+    }
+
+    /**
+     * Runs the configurations, scheduling them in tiers: configurations from the
+     * lower tiers go first, and the higher tiers only take the CPUs that are left.
+     *
+     * @param configs configurations to run
+     * @param tiers tier for the configuration
+     */
+    public void runAll(List<TestConfig> configs, ToIntFunction<TestConfig> tiers) {
+        // Build the scheduling classes maps, per tier
+        SortedMap<Integer, Multimap<SchedulingClass, TestConfig>> byTier = new TreeMap<>();
         List<SchedulingClass> scls = new ArrayList<>();
 
         {
             Set<SchedulingClass> uniqueScls = new HashSet<>();
 
             for (TestConfig cfg : configs) {
-                byScl.put(cfg.getSchedulingClass(), cfg);
+                byTier.computeIfAbsent(tiers.applyAsInt(cfg), k -> new HashMultimap<>())
+                        .put(cfg.getSchedulingClass(), cfg);
                 uniqueScls.add(cfg.getSchedulingClass());
             }
 
@@ -139,30 +215,37 @@ public class TestExecutor {
             Collections.sort(scls, Comparator.comparing(SchedulingClass::numActors).reversed());
         }
 
-        while (!byScl.isEmpty()) {
+        while (!byTier.isEmpty()) {
 
             // Roll over the scheduling classes and try to greedily cram most
             // of the tasks for it. This exits when no scheduling classes can fit
             // the current state of the machine.
-            for (SchedulingClass scl : scls) {
-                while (byScl.containsKey(scl)) {
-                    CPUMap cpuMap = scheduler.tryAcquire(scl);
-                    if (cpuMap == null) {
-                        // No more scheduling for this class
-                        break;
+            for (Multimap<SchedulingClass, TestConfig> byScl : byTier.values()) {
+                for (SchedulingClass scl : scls) {
+                    while (byScl.containsKey(scl)) {
+                        CPUMap cpuMap = scheduler.tryAcquire(scl);
+                        if (cpuMap == null) {
+                            // No more scheduling for this class
+                            break;
+                        }
+
+                        TestConfig cfg = byScl.removeLast(scl);
+                        if (pacer != null && !pacer.admit(cfg)) {
+                            scheduler.release(cpuMap);
+                            continue;
+                        }
+                        cfg.setCPUMap(cpuMap);
+                        int token = ID.incrementAndGet();
+                        VM vm = new VM(server.getHost(), server.getPort(), token, cfg, cpuMap);
+                        vmByToken.put(token, vm);
+                        supportTasks.submit(vm::start);
                     }
-
-                    TestConfig cfg = byScl.removeLast(scl);
-                    cfg.setCPUMap(cpuMap);
-                    int token = ID.incrementAndGet();
-                    VM vm = new VM(server.getHost(), server.getPort(), token, cfg, cpuMap);
-                    vmByToken.put(token, vm);
-                    supportTasks.submit(vm::start);
                 }
             }
+            byTier.values().removeIf(Multimap::isEmpty);
 
             // Wait until any VM finishes before rescheduling
-            while (!processReadyVMs()) {
+            while (!vmByToken.isEmpty() && !processReadyVMs()) {
                 awaitNotification();
             }
         }
@@ -188,6 +271,9 @@ public class TestExecutor {
         boolean reclaimed = false;
         for (VM vm : vmByToken.values()) {
             if (vm.checkCompleted()) {
+                if (pacer != null) {
+                    pacer.finished(vm.task, vm.wallMs());
+                }
                 supportTasks.submit(() -> vm.finish(sink));
                 vmByToken.remove(vm.token, vm);
                 scheduler.release(vm.cpuMap);
@@ -224,9 +310,14 @@ public class TestExecutor {
         private boolean processed;
         private IOException pendingException;
         private TestResult result;
+        private InputStreamCollector errCollector;
+        private InputStreamCollector outCollector;
         private Future<List<String>> errs;
         private Future<List<String>> outs;
         private boolean isStarted;
+        private long startNanos;
+        private long peakRssKb = -1;
+        private Events.Span forkEvent;
 
         public VM(String host, int port, int token, TestConfig task, CPUMap cpuMap) {
             this.host = host;
@@ -376,6 +467,9 @@ public class TestExecutor {
 
         synchronized void start() {
             jvmsStarting.incrementAndGet();
+            startNanos = System.nanoTime();
+            forkEvent = Events.fork(token, task.name, task.forkId, task.shClass, cpuMap.allocatedMap());
+            Events.Span spawnEvent = Events.forkSpawn(token, task.name);
 
             if (VMSupport.compilerDirectivesAvailable()) {
                 try {
@@ -389,7 +483,7 @@ public class TestExecutor {
                 List<String> command = new ArrayList<>();
 
                 if (OSSupport.taskSetAvailable()) {
-                    String map = cpuMap.globalAffinityMap();
+                    String map = scheduler.forkAffinityMap(cpuMap);
                     if (!map.isEmpty()) {
                         command.add("taskset");
                         command.add("-c");
@@ -425,24 +519,42 @@ public class TestExecutor {
                 process = pb.start();
 
                 // start the stream drainers and read the streams into memory;
-                // makes little sense to write them to files, since we would be
-                // reading them back soon anyway
-                errs = supportTasks.submit(new InputStreamCollector(process.getErrorStream()));
-                outs = supportTasks.submit(new InputStreamCollector(process.getInputStream()));
+                // only the head and tail of long streams are kept, the rest
+                // goes to the per-VM files
+                errCollector = new InputStreamCollector(process.getErrorStream(),
+                        VM_OUTPUT_HEAD_LINES, VM_OUTPUT_TAIL_LINES, spillFile(".err"));
+                outCollector = new InputStreamCollector(process.getInputStream(),
+                        VM_OUTPUT_HEAD_LINES, VM_OUTPUT_TAIL_LINES, spillFile(".out"));
+                errs = supportTasks.submit(errCollector);
+                outs = supportTasks.submit(outCollector);
 
             } catch (IOException ex) {
                 pendingException = ex;
+            } finally {
+                spawnEvent.end();
             }
             isStarted = true;
             jvmsStarting.decrementAndGet();
             jvmsRunning.incrementAndGet();
         }
 
+        private File spillFile(String suffix) {
+            if (vmOutputDir == null) {
+                return null;
+            }
+            return new File(vmOutputDir, task.name + "-" + token + suffix);
+        }
+
+        synchronized long wallMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
         public synchronized ForkedTestConfig jobRequest() {
             if (processed) {
                 return null;
             }
             processed = true;
+            Events.forkJobRequest(token, task.name);
             return new ForkedTestConfig(task);
         }
 
@@ -475,8 +587,10 @@ public class TestExecutor {
 
             // There is a pending exception that terminated the target VM.
             if (pendingException != null) {
+                forkEvent.end();
                 result = new TestResult(Status.VM_ERROR);
                 result.addMessages(pendingException);
+                result.addUsage(hostUsage());
                 result.setConfig(task);
                 sink.add(result);
                 return;
@@ -485,6 +599,7 @@ public class TestExecutor {
             // Try to poll the exit code, and fail if it's not zero.
             try {
                 int ecode = process.waitFor();
+                Events.forkExit(token, task.name, ecode, wallMs());
 
                 if (ecode != 0) {
                     result = new TestResult(Status.VM_ERROR);
@@ -496,14 +611,20 @@ public class TestExecutor {
                 }
                 result.addVMOuts(outs.get());
                 result.addVMErrs(errs.get());
+                result.addVMOutSkipped(outCollector.skippedLines());
+                result.addVMErrSkipped(errCollector.skippedLines());
+                result.addUsage(hostUsage());
                 result.setConfig(task);
                 sink.add(result);
             } catch (InterruptedException | ExecutionException ex) {
                 result = new TestResult(Status.VM_ERROR);
                 result.addMessages(ex);
+                result.addUsage(hostUsage());
                 result.setConfig(task);
                 sink.add(result);
             } finally {
+                forkEvent.end();
+
                 // The process is definitely dead, remove the temporary files.
                 if (compilerDirectives != null) {
                     compilerDirectives.delete();
@@ -518,6 +639,14 @@ public class TestExecutor {
                 throw new IllegalStateException("VM had already published a result.");
             }
             result = r;
+            Events.forkResult(token, task.name, r.status());
+
+            // The fork is still alive here, catch its high-water mark before it exits.
+            peakRssKb = MEMORY_INFO.peakRssKb(pid(process));
+        }
+
+        private ResourceUsage hostUsage() {
+            return new ResourceUsage(1, wallMs(), 0, Math.max(0, peakRssKb), 0, 0, 0);
         }
     }
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches the observed states against the test cases.
+ *
+ * <p>Exact matches are resolved with a hash table. All regexp cases are compiled
+ * into a single alternation, and the matched group tells which case it was.
+ * The first case that matches, in declaration order, wins, same as when trying
+ * cases one by one. Results are memoized, since the same states are observed
+ * in all results of the test.
+ */
+public class CaseMatcher {
+
+    // Back-references would break once group numbers are shifted in alternation
+    private static final Pattern BACKREF = Pattern.compile("\\\\(\\d|k<)");
+
+    // Named groups would clash when several cases declare the same name
+    private static final Pattern NAMED_GROUP = Pattern.compile("\\(\\?<[a-zA-Z]");
+
+    private final List<StateCase> cases;
+    private final StateCase unmatched;
+    private final Map<String, StateCase> exact;
+    private final Pattern combined;
+    private final int[] groupToCase;
+    private final Map<String, StateCase> memo;
+
+    CaseMatcher(Collection<StateCase> cases, StateCase unmatched) {
+        this.cases = new ArrayList<>(cases);
+        this.unmatched = unmatched;
+        this.memo = new ConcurrentHashMap<>();
+
+        exact = new HashMap<>();
+        for (StateCase c : this.cases) {
+            exact.putIfAbsent(c.matchPattern(), c);
+        }
+
+        boolean canCombine = true;
+        for (StateCase c : this.cases) {
+            if (BACKREF.matcher(c.matchPattern()).find() ||
+                    NAMED_GROUP.matcher(c.matchPattern()).find()) {
+                canCombine = false;
+                break;
+            }
+        }
+
+        if (canCombine && !this.cases.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            List<Integer> groups = new ArrayList<>();
+            groups.add(-1); // group 0 is the entire match
+            for (int i = 0; i < this.cases.size(); i++) {
+                StateCase c = this.cases.get(i);
+                if (i != 0) {
+                    sb.append("|");
+                }
+                sb.append("(").append(c.matchPattern()).append(")");
+                groups.add(i);
+                int inner = c.pattern().matcher("").groupCount();
+                for (int g = 0; g < inner; g++) {
+                    groups.add(-1);
+                }
+            }
+            combined = Pattern.compile(sb.toString());
+            groupToCase = new int[groups.size()];
+            for (int g = 0; g < groupToCase.length; g++) {
+                groupToCase[g] = groups.get(g);
+            }
+        } else {
+            combined = null;
+            groupToCase = null;
+        }
+    }
+
+    /**
+     * @param state observed state
+     * @return matching case, or the unmatched case if nothing matches
+     */
+    public StateCase match(String state) {
+        StateCase c = memo.get(state);
+        if (c == null) {
+            c = doMatch(state);
+            memo.put(state, c);
+        }
+        return c;
+    }
+
+    /**
+     * @return the case used when nothing else matches
+     */
+    public StateCase unmatched() {
+        return unmatched;
+    }
+
+    private StateCase doMatch(String state) {
+        StateCase c = exact.get(state);
+        if (c != null) {
+            return c;
+        }
+
+        if (combined != null) {
+            Matcher m = combined.matcher(state);
+            if (m.matches()) {
+                for (int g = 1; g < groupToCase.length; g++) {
+                    if (groupToCase[g] >= 0 && m.start(g) >= 0) {
+                        return cases.get(groupToCase[g]);
+                    }
+                }
+            }
+        } else {
+            for (StateCase sc : cases) {
+                if (sc.matches(state)) {
+                    return sc;
+                }
+            }
+        }
+        return unmatched;
+    }
+
+}
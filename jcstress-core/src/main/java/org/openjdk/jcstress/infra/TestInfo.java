@@ -29,7 +29,6 @@ import org.openjdk.jcstress.annotations.Expect;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public class TestInfo {
     private final String name;
@@ -42,6 +41,7 @@ public class TestInfo {
     private StateCase unmatched;
     private final Collection<String> refs;
     private final List<String> actorNames;
+    private volatile CaseMatcher matcher;
 
     public TestInfo(String name, String binaryName, String runner, String description, int threads, List<String> actorNames, boolean requiresFork) {
         this.name = name;
@@ -59,10 +59,27 @@ public class TestInfo {
         if (unmatched != null) {
             return unmatched;
         } else {
-            return new StateCase(Pattern.compile(".*"), Expect.FORBIDDEN, "No default case provided, assume " + Expect.FORBIDDEN);
+            return new StateCase(".*", Expect.FORBIDDEN, "No default case provided, assume " + Expect.FORBIDDEN);
         }
     }
 
+    /**
+     * @return matcher for this test cases, compiled on first use
+     */
+    public CaseMatcher matcher() {
+        CaseMatcher m = matcher;
+        if (m == null) {
+            synchronized (this) {
+                m = matcher;
+                if (m == null) {
+                    m = new CaseMatcher(stateCases, unmatched());
+                    matcher = m;
+                }
+            }
+        }
+        return m;
+    }
+
     public Collection<StateCase> cases() {
         return stateCases;
     }
@@ -75,6 +92,7 @@ public class TestInfo {
         } else {
             stateCases.add(aStateCase);
         }
+        matcher = null;
     }
 
     public String name() {
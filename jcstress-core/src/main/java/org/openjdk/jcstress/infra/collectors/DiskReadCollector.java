@@ -25,67 +25,290 @@
 package org.openjdk.jcstress.infra.collectors;
 
 import java.io.*;
-import java.util.zip.GZIPInputStream;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Reads test state from the file.
  *
+ * <p>Reads the indexed binary format, see {@link ResultFormat}. Files from the older
+ * versions, with serialized objects in a single GZIP stream, are rejected.
+ *
  * @author Aleksey Shipilev (aleksey.shipilev@oracle.com)
  */
 public class DiskReadCollector {
 
+    private static final int GZIP_MAGIC = 0x1F8B;
+
     private final TestResultCollector collector;
-    private final FileInputStream fis;
-    private final BufferedInputStream bis;
-    private final GZIPInputStream gis;
-    private final ObjectInputStream ois;
+    private final File file;
+    private List<Long> blockOffsets;
+    private Map<String, List<ResultFormat.Run>> nameToRuns;
+    private long end;
 
     public DiskReadCollector(String fileName, TestResultCollector collector) throws IOException {
         this.collector = collector;
-        File file = new File(fileName);
-        fis = new FileInputStream(file);
-        bis = new BufferedInputStream(fis);
-        gis = new GZIPInputStream(bis);
-        ois = new ObjectInputStream(gis);
+        this.file = new File(fileName);
+
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            int magic = dis.readInt();
+            if ((magic >>> 16) == GZIP_MAGIC) {
+                throw new IOException("Result file " + fileName + " is in the serialized format of older versions, " +
+                        "which cannot be read anymore; use the version that had written it");
+            } else if (magic == ResultFormat.MAGIC) {
+                int version = dis.readInt();
+                if (version != ResultFormat.VERSION) {
+                    throw new IOException("Unsupported result file version: " + version);
+                }
+            } else {
+                throw new IOException("Not a result file: " + fileName);
+            }
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            readIndex(raf);
+        }
     }
 
-    public void dump() throws IOException, ClassNotFoundException {
-        Object o;
-        try {
-            while ((o = ois.readObject()) != null) {
-                if (o instanceof TestResult) {
-                    collector.add((TestResult) o);
+    /**
+     * Reads all results, in the order they were written.
+     */
+    public void dump() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (int b = 0; b < blockOffsets.size(); b++) {
+                readBlock(raf, b, collector);
+            }
+        }
+    }
+
+    /**
+     * Reads only the results for the given tests. Only the runs with these
+     * tests are read.
+     *
+     * @param names test names
+     */
+    public void dump(Collection<String> names) throws IOException {
+        dump(names, collector);
+    }
+
+    /**
+     * Reads only the results for the given tests into the given collector.
+     * Safe to call concurrently: every call reads the file on its own.
+     *
+     * @param names test names
+     * @param dst collector to put results to
+     */
+    public void dump(Collection<String> names, TestResultCollector dst) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            Map<Integer, byte[]> presets = new HashMap<>();
+            for (String name : new LinkedHashSet<>(names)) {
+                for (ResultFormat.Run run : nameToRuns.getOrDefault(name, Collections.emptyList())) {
+                    byte[] preset = presets.get(run.block);
+                    if (preset == null) {
+                        preset = readHeader(raf, run.block, blockOffsets.get(run.block)).preset;
+                        presets.put(run.block, preset);
+                    }
+                    for (TestResult r : readRun(raf, run, preset)) {
+                        dst.add(r);
+                    }
                 }
             }
-        } catch (EOFException e) {
-            // expected
         }
     }
 
-    public void close() {
-        try {
-            ois.close();
-        } catch (IOException e) {
-            // expected
+    /**
+     * @return names of all tests in the file
+     */
+    public Set<String> testNames() {
+        return new TreeSet<>(nameToRuns.keySet());
+    }
+
+    /**
+     * Reads all complete blocks, for continuing to write the file.
+     *
+     * @param dst receives the results
+     * @return offset right after the last complete block
+     */
+    long scan(TestResultCollector dst) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (int b = 0; b < blockOffsets.size(); b++) {
+                readBlock(raf, b, dst);
+            }
         }
+        return end;
+    }
 
-        try {
-            gis.close();
-        } catch (IOException e) {
-            // expected
+    List<Long> blockOffsets() {
+        return blockOffsets;
+    }
+
+    Map<String, List<ResultFormat.Run>> runs() {
+        return nameToRuns;
+    }
+
+    private void readIndex(RandomAccessFile raf) throws IOException {
+        long len = raf.length();
+        if (len >= 8 + ResultFormat.TRAILER_SIZE) {
+            raf.seek(len - ResultFormat.TRAILER_SIZE);
+            long indexOffset = raf.readLong();
+            int magic = raf.readInt();
+            if (magic == ResultFormat.TRAILER_MAGIC && indexOffset >= 8 && indexOffset < len) {
+                raf.seek(indexOffset);
+                if (raf.readInt() == ResultFormat.INDEX_MAGIC) {
+                    int rawSize = raf.readInt();
+                    byte[] compressed = new byte[raf.readInt()];
+                    raf.readFully(compressed);
+                    DataInputStream dis = new DataInputStream(new ByteArrayInputStream(
+                            inflate(compressed, rawSize, null, "index")));
+
+                    int blocks = dis.readInt();
+                    blockOffsets = new ArrayList<>(blocks);
+                    for (int b = 0; b < blocks; b++) {
+                        blockOffsets.add(dis.readLong());
+                    }
+                    int names = dis.readInt();
+                    nameToRuns = new HashMap<>();
+                    for (int n = 0; n < names; n++) {
+                        String name = dis.readUTF();
+                        int cnt = dis.readInt();
+                        List<ResultFormat.Run> runs = new ArrayList<>(cnt);
+                        for (int c = 0; c < cnt; c++) {
+                            runs.add(ResultFormat.Run.read(dis));
+                        }
+                        nameToRuns.put(name, runs);
+                    }
+                    end = indexOffset;
+                    return;
+                }
+            }
         }
 
-        try {
-            bis.close();
-        } catch (IOException e) {
-            // expected
+        // No index, the run had probably crashed. Scan the block headers sequentially,
+        // stopping at the first incomplete block.
+        blockOffsets = new ArrayList<>();
+        nameToRuns = new HashMap<>();
+        long offset = 8;
+        while (offset + 16 <= len) {
+            raf.seek(offset);
+            int size = raf.readInt();
+            long next = offset + 4 + size;
+            if (size == ResultFormat.INDEX_MAGIC || size < 12 || next > len) {
+                // Partially written index, or incomplete block
+                break;
+            }
+            BlockHeader header = readHeader(raf, blockOffsets.size(), offset);
+            for (Map.Entry<String, ResultFormat.Run> e : header.runs.entrySet()) {
+                nameToRuns.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(e.getValue());
+            }
+            blockOffsets.add(offset);
+            offset = next;
+        }
+        end = offset;
+    }
+
+    private static BlockHeader readHeader(RandomAccessFile raf, int block, long offset) throws IOException {
+        raf.seek(offset + 4);
+        int rawSize = raf.readInt();
+        byte[] compressed = new byte[raf.readInt()];
+        raf.readFully(compressed);
+        byte[] raw = inflate(compressed, rawSize, null, "block at offset " + offset);
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(raw));
+        int count = dis.readInt();
+        String[] names = new String[count];
+        int[] rawSizes = new int[count];
+        int[] compressedSizes = new int[count];
+        int[] counts = new int[count];
+        for (int c = 0; c < count; c++) {
+            names[c] = dis.readUTF();
+            rawSizes[c] = dis.readInt();
+            compressedSizes[c] = dis.readInt();
+            counts[c] = dis.readInt();
+        }
+        int[] order = ResultFormat.readInts(dis);
+        byte[] preset = new byte[dis.readInt()];
+        dis.readFully(preset);
+
+        // Runs follow the header back to back
+        Map<String, ResultFormat.Run> runs = new LinkedHashMap<>();
+        long runOffset = offset + 12 + compressed.length;
+        for (int c = 0; c < count; c++) {
+            runs.put(names[c], new ResultFormat.Run(block, runOffset, rawSizes[c], compressedSizes[c], counts[c]));
+            runOffset += compressedSizes[c];
         }
+        return new BlockHeader(runs, order, preset);
+    }
+
+    private void readBlock(RandomAccessFile raf, int block, TestResultCollector dst) throws IOException {
+        BlockHeader header = readHeader(raf, block, blockOffsets.get(block));
+
+        List<Iterator<TestResult>> results = new ArrayList<>();
+        for (ResultFormat.Run run : header.runs.values()) {
+            results.add(readRun(raf, run, header.preset).iterator());
+        }
+        for (int r : header.order) {
+            dst.add(results.get(r).next());
+        }
+    }
+
+    private static List<TestResult> readRun(RandomAccessFile raf, ResultFormat.Run run, byte[] preset) throws IOException {
+        raf.seek(run.offset);
+        byte[] compressed = new byte[run.compressedSize];
+        raf.readFully(compressed);
+        byte[] raw = inflate(compressed, run.rawSize, preset, "run at offset " + run.offset);
 
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(raw));
+        ResultFormat.Table dict = ResultFormat.Dictionary.read(dis);
+        List<TestResult> results = new ArrayList<>(run.count);
+        for (int c = 0; c < run.count; c++) {
+            results.add(ResultFormat.readResult(dis, dict));
+        }
+        return results;
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawSize, byte[] preset, String what) throws IOException {
+        byte[] raw = new byte[rawSize];
+        Inflater inflater = new Inflater();
         try {
-            fis.close();
-        } catch (IOException e) {
-            // expected
+            inflater.setInput(compressed);
+            int off = 0;
+            while (off < rawSize && !inflater.finished()) {
+                int n = inflater.inflate(raw, off, rawSize - off);
+                if (n == 0 && inflater.needsDictionary() && preset != null) {
+                    inflater.setDictionary(preset);
+                    continue;
+                }
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                off += n;
+            }
+            if (off != rawSize) {
+                throw new IOException("Corrupted " + what);
+            }
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw new IOException("Corrupted " + what, e);
+        } finally {
+            inflater.end();
         }
+        return raw;
+    }
+
+    private static class BlockHeader {
+        private final Map<String, ResultFormat.Run> runs;
+        private final int[] order;
+        private final byte[] preset;
+
+        BlockHeader(Map<String, ResultFormat.Run> runs, int[] order, byte[] preset) {
+            this.runs = runs;
+            this.order = order;
+            this.preset = preset;
+        }
+    }
+
+    public void close() {
+        // Nothing to release: every read opens the file on its own.
     }
 
 }
@@ -27,57 +27,278 @@ package org.openjdk.jcstress.infra.collectors;
 import org.openjdk.jcstress.util.Environment;
 
 import java.io.*;
-import java.util.zip.GZIPOutputStream;
+import java.util.*;
+import java.util.zip.Deflater;
 
 /**
  * Dumps the test results to the disk.
  *
  * @author Aleksey Shipilev (aleksey.shipilev@oracle.com)
+ * @see ResultFormat
  */
 public class DiskWriteCollector implements TestResultCollector {
 
+    // Flush the block when any of these is reached. Keeps the amount of
+    // results lost on crash bounded, while giving compression enough data.
+    private static final int BLOCK_RESULTS = 128;
+    private static final int BLOCK_BYTES = 256 * 1024;
+
     private final FileOutputStream fos;
-    private final BufferedOutputStream bos;
-    private final GZIPOutputStream gos;
-    private final ObjectOutputStream oos;
-    private int frames;
+    private final DataOutputStream dos;
+    private final Deflater deflater;
+
+    private final List<Long> blockOffsets;
+    private final Map<String, List<ResultFormat.Run>> nameToRuns;
+
+    // Results of the current block, grouped by test name
+    private final Map<String, RunBuffer> blockRuns;
+    private final List<Integer> blockOrder;
+    private int blockBytes;
+
+    private long offset;
+    private boolean closed;
 
     public DiskWriteCollector(String fileName) throws IOException {
+        this(new File(fileName), 0, new ArrayList<>(), new HashMap<>());
+    }
+
+    private DiskWriteCollector(File file, long offset, List<Long> blockOffsets,
+                               Map<String, List<ResultFormat.Run>> nameToRuns) throws IOException {
+        fos = new FileOutputStream(file, offset > 0);
+        dos = new DataOutputStream(new BufferedOutputStream(fos));
+        deflater = new Deflater();
+        this.blockOffsets = blockOffsets;
+        this.nameToRuns = nameToRuns;
+        blockRuns = new LinkedHashMap<>();
+        blockOrder = new ArrayList<>();
+
+        if (offset == 0) {
+            dos.writeInt(ResultFormat.MAGIC);
+            dos.writeInt(ResultFormat.VERSION);
+            offset = 8;
+            dos.flush();
+        }
+        this.offset = offset;
+    }
+
+    /**
+     * Opens the existing result file to add more results to it, e.g. when the
+     * interrupted run is resumed. The incomplete block and the index at the end
+     * of the file are dropped; the index is written again on close.
+     *
+     * @param fileName result file
+     * @param existing receives the results already in the file
+     * @return collector that appends to the file
+     * @throws IOException if the file cannot be read or written
+     */
+    public static DiskWriteCollector append(String fileName, TestResultCollector existing) throws IOException {
         File file = new File(fileName);
-        fos = new FileOutputStream(file);
-        bos = new BufferedOutputStream(fos);
-        gos = new GZIPOutputStream(bos);
-        oos = new ObjectOutputStream(gos);
+        if (file.length() < 8) {
+            // Not even the header made it to disk
+            return new DiskWriteCollector(fileName);
+        }
+
+        DiskReadCollector drc = new DiskReadCollector(fileName, r -> {});
+        long end = drc.scan(existing);
+
+        List<Long> blockOffsets = new ArrayList<>(drc.blockOffsets());
+        Map<String, List<ResultFormat.Run>> nameToRuns = new HashMap<>();
+        for (Map.Entry<String, List<ResultFormat.Run>> e : drc.runs().entrySet()) {
+            nameToRuns.put(e.getKey(), new ArrayList<>(e.getValue()));
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(end);
+        }
+
+        return new DiskWriteCollector(file, end, blockOffsets, nameToRuns);
     }
 
     @Override
     public void add(TestResult result) {
         synchronized (this) {
+            if (closed) return;
             try {
-                // reset every once in a while to keep OIS away
-                // from leaking the object cache.
-                if ((frames++ & 0xFFF) == 0) {
-                    oos.reset();
-                }
-
                 result.setEnv(Environment.getInstance());
 
-                oos.writeObject(result);
-                oos.flush();
-                gos.flush();
-                bos.flush();
-                fos.flush();
+                RunBuffer run = blockRuns.get(result.getName());
+                if (run == null) {
+                    run = new RunBuffer(blockRuns.size());
+                    blockRuns.put(result.getName(), run);
+                }
+                int before = run.records.size();
+                ResultFormat.writeResult(run.records, run.dict, result);
+                run.count++;
+                blockBytes += run.records.size() - before;
+                blockOrder.add(run.index);
+
+                if (blockOrder.size() >= BLOCK_RESULTS || blockBytes >= BLOCK_BYTES) {
+                    flushBlock();
+                }
             } catch (IOException e) {
                 // expect
             }
         }
     }
 
+    private void flushBlock() throws IOException {
+        if (blockOrder.isEmpty()) return;
+
+        List<ResultFormat.Dictionary> dicts = new ArrayList<>();
+        List<byte[]> raws = new ArrayList<>();
+        for (RunBuffer run : blockRuns.values()) {
+            dicts.add(run.dict);
+            raws.add(run.toByteArray());
+        }
+        byte[] preset = ResultFormat.preset(dicts, raws.get(0));
+
+        List<byte[]> compressed = new ArrayList<>();
+        List<Integer> rawSizes = new ArrayList<>();
+        for (byte[] raw : raws) {
+            rawSizes.add(raw.length);
+            compressed.add(compress(raw, preset));
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerDos = new DataOutputStream(header);
+        headerDos.writeInt(blockRuns.size());
+        int r = 0;
+        for (Map.Entry<String, RunBuffer> e : blockRuns.entrySet()) {
+            headerDos.writeUTF(e.getKey());
+            headerDos.writeInt(rawSizes.get(r));
+            headerDos.writeInt(compressed.get(r).length);
+            headerDos.writeInt(e.getValue().count);
+            r++;
+        }
+        int[] order = new int[blockOrder.size()];
+        for (int c = 0; c < order.length; c++) {
+            order[c] = blockOrder.get(c);
+        }
+        ResultFormat.writeInts(headerDos, order);
+        headerDos.writeInt(preset.length);
+        headerDos.write(preset);
+        headerDos.flush();
+
+        byte[] headerCompressed = compress(header.toByteArray(), null);
+        int size = 4 + 4 + headerCompressed.length;
+        for (byte[] bytes : compressed) {
+            size += bytes.length;
+        }
+
+        int block = blockOffsets.size();
+        blockOffsets.add(offset);
+        long runOffset = offset + 12 + headerCompressed.length;
+        r = 0;
+        for (Map.Entry<String, RunBuffer> e : blockRuns.entrySet()) {
+            int len = compressed.get(r).length;
+            ResultFormat.Run run = new ResultFormat.Run(block, runOffset, rawSizes.get(r), len, e.getValue().count);
+            nameToRuns.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(run);
+            runOffset += len;
+            r++;
+        }
+
+        dos.writeInt(size);
+        dos.writeInt(header.size());
+        dos.writeInt(headerCompressed.length);
+        dos.write(headerCompressed);
+        for (byte[] bytes : compressed) {
+            dos.write(bytes);
+        }
+        dos.flush();
+        fos.flush();
+
+        offset += 4 + size;
+
+        blockRuns.clear();
+        blockOrder.clear();
+        blockBytes = 0;
+    }
+
+    private byte[] compress(byte[] raw, byte[] preset) {
+        deflater.reset();
+        if (preset != null && preset.length > 0) {
+            deflater.setDictionary(preset);
+        }
+        deflater.setInput(raw);
+        deflater.finish();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buf = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf);
+            compressed.write(buf, 0, len);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void writeIndex() throws IOException {
+        long indexOffset = offset;
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream indexDos = new DataOutputStream(index);
+        indexDos.writeInt(blockOffsets.size());
+        for (long blockOffset : blockOffsets) {
+            indexDos.writeLong(blockOffset);
+        }
+        indexDos.writeInt(nameToRuns.size());
+        for (Map.Entry<String, List<ResultFormat.Run>> e : nameToRuns.entrySet()) {
+            indexDos.writeUTF(e.getKey());
+            indexDos.writeInt(e.getValue().size());
+            for (ResultFormat.Run run : e.getValue()) {
+                run.write(indexDos);
+            }
+        }
+        indexDos.flush();
+
+        byte[] compressed = compress(index.toByteArray(), null);
+        dos.writeInt(ResultFormat.INDEX_MAGIC);
+        dos.writeInt(index.size());
+        dos.writeInt(compressed.length);
+        dos.write(compressed);
+
+        dos.writeLong(indexOffset);
+        dos.writeInt(ResultFormat.TRAILER_MAGIC);
+    }
+
+    /**
+     * Results for one test in the current block, with their own dictionary.
+     */
+    private static class RunBuffer {
+        private final int index;
+        private final ResultFormat.Dictionary dict;
+        private final ByteArrayOutputStream recordsBuf;
+        private final DataOutputStream records;
+        private int count;
+
+        RunBuffer(int index) {
+            this.index = index;
+            dict = new ResultFormat.Dictionary();
+            recordsBuf = new ByteArrayOutputStream();
+            records = new DataOutputStream(recordsBuf);
+        }
+
+        byte[] toByteArray() throws IOException {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(recordsBuf.size() + 1024);
+            DataOutputStream rawDos = new DataOutputStream(raw);
+            dict.write(rawDos);
+            recordsBuf.writeTo(rawDos);
+            rawDos.flush();
+            return raw.toByteArray();
+        }
+    }
+
     public void close() {
         synchronized (this) {
-            flushAndClose(oos);
-            flushAndClose(gos);
-            flushAndClose(bos);
+            if (closed) return;
+            closed = true;
+            try {
+                flushBlock();
+                writeIndex();
+            } catch (IOException e) {
+                // expect
+            }
+            deflater.end();
+            flushAndClose(dos);
             flushAndClose(fos);
         }
     }
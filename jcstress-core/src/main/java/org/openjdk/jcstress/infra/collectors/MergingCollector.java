@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.openjdk.jcstress.infra.grading.ReportUtils;
+import org.openjdk.jcstress.infra.runners.ConfigKey;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Merges the results incrementally, as they arrive, and provides the merged
+ * view for all report printers.
+ *
+ * <p>Only the results merged by test name are kept in memory. The results
+ * merged by configuration are either kept in memory as well, or re-read
+ * from the result files for one test at a time, when printers need them.
+ */
+public class MergingCollector implements TestResultCollector {
+
+    private final Map<String, ResultMerger> byName;
+    private final Map<String, Map<ConfigKey, ResultMerger>> byConfig;
+    private final List<DiskReadCollector> sources;
+    private List<TestResult> mergedByName;
+
+    /**
+     * @param keepDetail keep results merged by configuration in memory;
+     *                   otherwise they are re-read from the added sources
+     */
+    public MergingCollector(boolean keepDetail) {
+        this.byName = new HashMap<>();
+        this.byConfig = keepDetail ? new HashMap<>() : null;
+        this.sources = new ArrayList<>();
+    }
+
+    @Override
+    public synchronized void add(TestResult result) {
+        byName.computeIfAbsent(result.getName(), k -> new ResultMerger(result.getConfig())).add(result);
+        if (byConfig != null) {
+            byConfig.computeIfAbsent(result.getName(), k -> new HashMap<>())
+                    .computeIfAbsent(result.getConfig().key(), k -> new ResultMerger(result.getConfig()))
+                    .add(result);
+        }
+        mergedByName = null;
+    }
+
+    /**
+     * Adds the source to read the per-configuration results from.
+     * Collector takes ownership of the source, and closes it on {@link #close()}.
+     *
+     * @param source source
+     */
+    public synchronized void addSource(DiskReadCollector source) {
+        sources.add(source);
+    }
+
+    /**
+     * @return test names, sorted
+     */
+    public synchronized SortedSet<String> names() {
+        return new TreeSet<>(byName.keySet());
+    }
+
+    /**
+     * @return results merged by test name; the list can be modified by caller
+     */
+    public synchronized List<TestResult> mergedByName() {
+        if (mergedByName == null) {
+            List<TestResult> list = new ArrayList<>();
+            for (ResultMerger m : byName.values()) {
+                list.add(m.result());
+            }
+            mergedByName = list;
+        }
+        return new ArrayList<>(mergedByName);
+    }
+
+    /**
+     * @param name test name
+     * @return results for the given test, merged by configuration
+     */
+    public List<TestResult> mergedByConfig(String name) {
+        if (byConfig != null) {
+            synchronized (this) {
+                List<TestResult> list = new ArrayList<>();
+                for (ResultMerger m : byConfig.getOrDefault(name, Collections.emptyMap()).values()) {
+                    list.add(m.result());
+                }
+                return list;
+            }
+        }
+
+        InProcessCollector detail = new InProcessCollector();
+        for (DiskReadCollector source : sources) {
+            try {
+                source.dump(Collections.singleton(name), detail);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return ReportUtils.mergedByConfig(detail.getTestResults());
+    }
+
+    public synchronized void close() {
+        for (DiskReadCollector source : sources) {
+            source.close();
+        }
+        sources.clear();
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Output lines of one or more forks.
+ *
+ * Lines added one by one form the output of one fork, which is sealed on first read.
+ * The output is split into natural blocks: single lines, or multi-line units like stack
+ * traces, where the continuation lines are indented or start with "Caused by:". Blocks
+ * are interned, and every fork keeps the list of references to them, in the order they
+ * were printed. The same warning or stack trace printed by many forks, even among other
+ * output that differs between forks, is then stored once. This keeps the merged output
+ * proportional to the distinct output, not to the number of forks.
+ */
+public class OutputLog implements Serializable {
+
+    private final Map<Block, Integer> ids;
+    private final List<Block> distinct;
+    private final List<int[]> forks;
+    private List<String> open;
+
+    public OutputLog() {
+        this.ids = new HashMap<>();
+        this.distinct = new ArrayList<>();
+        this.forks = new ArrayList<>();
+    }
+
+    public synchronized void add(String line) {
+        if (open == null) {
+            open = new ArrayList<>();
+        }
+        open.add(line);
+    }
+
+    /**
+     * Adds the output of one fork.
+     *
+     * @param blocks blocks, in the order they were printed
+     */
+    public synchronized void addFork(List<Block> blocks) {
+        seal();
+        int[] refs = new int[blocks.size()];
+        for (int c = 0; c < refs.length; c++) {
+            refs[c] = intern(blocks.get(c));
+        }
+        forks.add(refs);
+    }
+
+    public void addAll(OutputLog other) {
+        for (List<Block> fork : other.forks()) {
+            addFork(fork);
+        }
+    }
+
+    private int intern(Block block) {
+        Integer id = ids.get(block);
+        if (id == null) {
+            id = distinct.size();
+            ids.put(block, id);
+            distinct.add(block);
+        }
+        return id;
+    }
+
+    private void seal() {
+        if (open != null) {
+            List<String> lines = open;
+            open = null;
+            addFork(split(lines));
+        }
+    }
+
+    /**
+     * Splits the output into natural blocks.
+     *
+     * @param lines output lines
+     * @return blocks
+     */
+    static List<Block> split(List<String> lines) {
+        List<Block> blocks = new ArrayList<>();
+        List<String> cur = new ArrayList<>();
+        for (String line : lines) {
+            if (!cur.isEmpty() && !isContinuation(line)) {
+                blocks.add(new Block(cur));
+                cur.clear();
+            }
+            cur.add(line);
+        }
+        if (!cur.isEmpty()) {
+            blocks.add(new Block(cur));
+        }
+        return blocks;
+    }
+
+    private static boolean isContinuation(String line) {
+        return !line.isEmpty() && (Character.isWhitespace(line.charAt(0))
+                || line.startsWith("Caused by:")
+                || line.startsWith("Suppressed:"));
+    }
+
+    /**
+     * @return output of every fork, as the blocks in the order they were printed
+     */
+    public synchronized List<List<Block>> forks() {
+        seal();
+        List<List<Block>> result = new ArrayList<>(forks.size());
+        for (int[] refs : forks) {
+            List<Block> fork = new ArrayList<>(refs.length);
+            for (int id : refs) {
+                fork.add(distinct.get(id));
+            }
+            result.add(fork);
+        }
+        return result;
+    }
+
+    /**
+     * @return distinct blocks with their occurrence counts, in the order of first occurrence
+     */
+    public synchronized Map<Block, Integer> blocks() {
+        seal();
+        int[] counts = new int[distinct.size()];
+        for (int[] refs : forks) {
+            for (int id : refs) {
+                counts[id]++;
+            }
+        }
+        Map<Block, Integer> result = new LinkedHashMap<>();
+        for (int id = 0; id < counts.length; id++) {
+            result.put(distinct.get(id), counts[id]);
+        }
+        return result;
+    }
+
+    /**
+     * @return lines of all distinct blocks
+     */
+    public synchronized List<String> lines() {
+        seal();
+        List<String> lines = new ArrayList<>();
+        for (Block b : distinct) {
+            lines.addAll(b.lines());
+        }
+        return lines;
+    }
+
+    /**
+     * @return all lines, as printed by all forks
+     */
+    public synchronized List<String> output() {
+        seal();
+        List<String> lines = new ArrayList<>();
+        for (int[] refs : forks) {
+            for (int id : refs) {
+                lines.addAll(distinct.get(id).lines());
+            }
+        }
+        return lines;
+    }
+
+    public synchronized boolean isEmpty() {
+        return distinct.isEmpty() && open == null;
+    }
+
+    /**
+     * Immutable block of lines, compared by content.
+     */
+    public static final class Block implements Serializable {
+        private final String[] lines;
+        private final int hash;
+
+        public Block(List<String> lines) {
+            this.lines = lines.toArray(new String[0]);
+            this.hash = Arrays.hashCode(this.lines);
+        }
+
+        public List<String> lines() {
+            return Collections.unmodifiableList(Arrays.asList(lines));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Block block = (Block) o;
+            return hash == block.hash && Arrays.equals(lines, block.lines);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resources the forks took: wall and CPU time, peak memory, GC and JIT activity.
+ * Wall time and peak memory are measured by the host, the rest is reported by
+ * the forked VM itself. Merged results carry the totals over their forks, and the
+ * largest peak memory. Values that are not known are zero.
+ */
+public class ResourceUsage implements Serializable {
+
+    private int forks;
+    private long wallMs;
+    private long cpuMs;
+    private long peakRssKb;
+    private long gcCount;
+    private long gcMs;
+    private long jitMs;
+
+    public ResourceUsage() {
+        // nothing is known
+    }
+
+    public ResourceUsage(int forks, long wallMs, long cpuMs, long peakRssKb, long gcCount, long gcMs, long jitMs) {
+        this.forks = forks;
+        this.wallMs = wallMs;
+        this.cpuMs = cpuMs;
+        this.peakRssKb = peakRssKb;
+        this.gcCount = gcCount;
+        this.gcMs = gcMs;
+        this.jitMs = jitMs;
+    }
+
+    public ResourceUsage(DataInputStream dis) throws IOException {
+        forks = dis.readInt();
+        wallMs = dis.readLong();
+        cpuMs = dis.readLong();
+        peakRssKb = dis.readLong();
+        gcCount = dis.readLong();
+        gcMs = dis.readLong();
+        jitMs = dis.readLong();
+    }
+
+    public void write(DataOutputStream dos) throws IOException {
+        dos.writeInt(forks);
+        dos.writeLong(wallMs);
+        dos.writeLong(cpuMs);
+        dos.writeLong(peakRssKb);
+        dos.writeLong(gcCount);
+        dos.writeLong(gcMs);
+        dos.writeLong(jitMs);
+    }
+
+    /**
+     * Measures the resources the current VM took so far. Used by the forked VM.
+     *
+     * @return usage, not counted as a fork
+     */
+    public static ResourceUsage ofCurrentVM() {
+        long gcCount = 0;
+        long gcMs = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, bean.getCollectionCount());
+            gcMs += Math.max(0, bean.getCollectionTime());
+        }
+
+        long jitMs = 0;
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        if (jit != null && jit.isCompilationTimeMonitoringSupported()) {
+            jitMs = jit.getTotalCompilationTime();
+        }
+
+        return new ResourceUsage(0, 0, processCpuMs(), 0, gcCount, gcMs, jitMs);
+    }
+
+    private static long processCpuMs() {
+        // com.sun.management extension is not available on all VMs, resolve it via Reflection
+        try {
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            Class<?> ext = Class.forName("com.sun.management.OperatingSystemMXBean");
+            if (ext.isInstance(os)) {
+                Method m = ext.getMethod("getProcessCpuTime");
+                long ns = (long) m.invoke(os);
+                return (ns > 0) ? TimeUnit.NANOSECONDS.toMillis(ns) : 0;
+            }
+        } catch (Exception e) {
+            // Not available
+        }
+        return 0;
+    }
+
+    public void add(ResourceUsage other) {
+        forks += other.forks;
+        wallMs += other.wallMs;
+        cpuMs += other.cpuMs;
+        peakRssKb = Math.max(peakRssKb, other.peakRssKb);
+        gcCount += other.gcCount;
+        gcMs += other.gcMs;
+        jitMs += other.jitMs;
+    }
+
+    public int forks() {
+        return forks;
+    }
+
+    public long wallMs() {
+        return wallMs;
+    }
+
+    public long cpuMs() {
+        return cpuMs;
+    }
+
+    public long peakRssKb() {
+        return peakRssKb;
+    }
+
+    public long gcCount() {
+        return gcCount;
+    }
+
+    public long gcMs() {
+        return gcMs;
+    }
+
+    public long jitMs() {
+        return jitMs;
+    }
+
+}
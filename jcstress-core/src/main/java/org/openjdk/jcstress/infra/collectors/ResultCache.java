@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.util.ClassReferences;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Caches the passing results, so that unchanged configurations do not need
+ * to run again.
+ *
+ * <p>The cache key is the hash over everything the result depends on: the bytes
+ * of the test class, the generated runner and all the non-JDK classes they
+ * reference (states, results, and the harness itself), the JVM binary and version,
+ * and the configuration: JVM arguments, compilation mode, scheduling class, and
+ * run settings. Random stress seeds are not the part of the key. Only the passing
+ * results are cached: the failed configurations are always re-run.
+ *
+ * <p>Each result is stored in its own result file, named by the key.
+ */
+public class ResultCache implements TestResultCollector {
+
+    private static final String VERSION = "1";
+
+    private final File dir;
+    private final byte[] jvmDigest;
+    private final Map<String, byte[]> classDigests;
+    private final Map<String, Optional<String>> testDigests;
+    private int stored;
+
+    public ResultCache(File dir) throws IOException {
+        this.dir = dir;
+        this.jvmDigest = jvmDigest();
+        this.classDigests = new HashMap<>();
+        this.testDigests = new HashMap<>();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+    }
+
+    /**
+     * Looks up the cached result for the configuration.
+     *
+     * @param cfg configuration
+     * @return cached result; null, if there is none
+     */
+    public TestResult lookup(TestConfig cfg) {
+        String key = key(cfg);
+        if (key == null) {
+            return null;
+        }
+        File file = file(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        List<TestResult> results = new ArrayList<>();
+        try {
+            DiskReadCollector drc = new DiskReadCollector(file.getAbsolutePath(), results::add);
+            drc.dump();
+            drc.close();
+        } catch (IOException e) {
+            // Broken or stale entry, run the configuration again
+            return null;
+        }
+        return (results.size() == 1) ? results.get(0) : null;
+    }
+
+    @Override
+    public void add(TestResult r) {
+        if (isCacheable(r)) {
+            store(r);
+        }
+    }
+
+    synchronized void store(TestResult r) {
+        String key = key(r.getConfig());
+        if (key == null) {
+            return;
+        }
+        File file = file(key);
+        if (file.exists()) {
+            return;
+        }
+
+        try {
+            // Write aside and move, so that readers never see the partial file
+            File tmp = File.createTempFile("result", ".tmp", dir);
+            DiskWriteCollector dwc = new DiskWriteCollector(tmp.getAbsolutePath());
+            dwc.add(r);
+            dwc.close();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            stored++;
+        } catch (IOException e) {
+            // Cache is best-effort, the result would just be re-run next time
+        }
+    }
+
+    /**
+     * @return number of results added to the cache
+     */
+    public synchronized int stored() {
+        return stored;
+    }
+
+    static boolean isCacheable(TestResult r) {
+        return r.status() == Status.NORMAL && r.grading().isPassed;
+    }
+
+    private File file(String key) {
+        return new File(dir, key + ".bin");
+    }
+
+    /**
+     * @param cfg configuration
+     * @return cache key; null, if the test classes are not available
+     */
+    synchronized String key(TestConfig cfg) {
+        String classes = testDigests.computeIfAbsent(cfg.name, n -> Optional.ofNullable(testDigest(cfg)))
+                .orElse(null);
+        if (classes == null) {
+            return null;
+        }
+
+        TestConfig c = cfg.withoutStressSeeds();
+        MessageDigest md = sha256();
+        update(md, VERSION);
+        update(md, classes);
+        md.update(jvmDigest);
+        update(md, c.name);
+        update(md, c.spinLoopStyle.name());
+        update(md, String.valueOf(c.time));
+        update(md, String.valueOf(c.iters));
+        update(md, String.valueOf(c.threads));
+        update(md, String.valueOf(c.forkId));
+        update(md, String.valueOf(c.maxFootprintMB));
+        update(md, String.valueOf(c.compileMode));
+        update(md, c.shClass.mode().name());
+        update(md, c.shClass.toString());
+        update(md, String.valueOf(c.strideSize));
+        update(md, String.valueOf(c.strideCount));
+        update(md, String.valueOf(c.jvmArgs.size()));
+        for (String arg : c.jvmArgs) {
+            update(md, arg);
+        }
+        return hex(md.digest());
+    }
+
+    private String testDigest(TestConfig cfg) {
+        // The test and its runner, and everything they reference directly:
+        // states, results, and the harness classes
+        SortedSet<String> classes = new TreeSet<>();
+        for (String root : Arrays.asList(cfg.binaryName, cfg.generatedRunnerName)) {
+            byte[] bytes = classBytes(root);
+            if (bytes == null) {
+                return null;
+            }
+            classes.add(root);
+            try {
+                for (String ref : ClassReferences.of(bytes)) {
+                    if (!isPlatform(ref)) {
+                        classes.add(ref);
+                    }
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        MessageDigest md = sha256();
+        for (String name : classes) {
+            byte[] d = classDigests.computeIfAbsent(name, n -> {
+                byte[] bytes = classBytes(n);
+                return (bytes != null) ? sha256().digest(bytes) : new byte[0];
+            });
+            update(md, name);
+            md.update(d);
+        }
+        return hex(md.digest());
+    }
+
+    private static boolean isPlatform(String name) {
+        return name.startsWith("java.") ||
+                name.startsWith("javax.") ||
+                name.startsWith("jdk.") ||
+                name.startsWith("sun.") ||
+                name.startsWith("com.sun.");
+    }
+
+    private static byte[] classBytes(String name) {
+        String resource = name.replace('.', '/') + ".class";
+        try (InputStream is = ResultCache.class.getClassLoader().getResourceAsStream(resource)) {
+            if (is == null) {
+                return null;
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = is.read(buf)) >= 0) {
+                bos.write(buf, 0, read);
+            }
+            return bos.toByteArray();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] jvmDigest() {
+        MessageDigest md = sha256();
+        for (String prop : new String[] {"java.home", "java.vm.name", "java.vm.vendor", "java.vm.version", "java.runtime.version"}) {
+            update(md, prop + "=" + System.getProperty(prop));
+        }
+
+        // Locally built JDKs keep the version, but change the binaries
+        String home = System.getProperty("java.home");
+        String[] binaries = {
+                "bin/java", "bin/java.exe",
+                "lib/server/libjvm.so", "lib/server/libjvm.dylib", "bin/server/jvm.dll",
+                "lib/amd64/server/libjvm.so", "jre/lib/amd64/server/libjvm.so",
+        };
+        for (String b : binaries) {
+            File f = new File(home, b);
+            if (f.exists()) {
+                update(md, b + ":" + f.length() + ":" + f.lastModified());
+            }
+        }
+        return md.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest md, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        md.update((byte) (bytes.length >>> 24));
+        md.update((byte) (bytes.length >>> 16));
+        md.update((byte) (bytes.length >>> 8));
+        md.update((byte) bytes.length);
+        md.update(bytes);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.CPUMap;
+import org.openjdk.jcstress.os.SchedulingClass;
+import org.openjdk.jcstress.util.Environment;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary result file format.
+ *
+ * <pre>
+ * file   := header block* index? trailer?
+ * header := MAGIC VERSION
+ * block  := size:int headRawSize:int headCompressedSize:int deflate(head) run*
+ * head   := runCount:int (name:utf rawSize:int compressedSize:int count:int)* order:ints
+ *           presetSize:int preset
+ * preset := (len:int utf8)* sample, truncated to PRESET_SIZE
+ * run    := deflate(dict result*), with preset as the deflate dictionary
+ * dict   := size:int (len:int utf8)* blockCount:int (lines:int stringIdx:int*)*
+ * index  := INDEX_MAGIC rawSize:int compressedSize:int deflate(blockCount:int offset:long*
+ *           nameCount:int (name:utf runs:int (block:int offset:long rawSize:int compressedSize:int count:int)*)*)
+ * trailer := indexOffset:long TRAILER_MAGIC
+ * </pre>
+ *
+ * Results in the block are grouped in the runs by test name. Every run is compressed
+ * separately, and all strings in it are replaced with the indexes in the run-local
+ * dictionary, so that the results for one test are read without touching the results
+ * for others. The strings shared by the runs in the block, e.g. the environment and
+ * the JVM arguments, are stored once in the block preset, along with a sample run that
+ * shows the record layout. The preset seeds the compression of every run. The block head lists the runs, and the run index of every result in
+ * the order they were written, so that the whole block can be read back in that order.
+ * Output logs are stored as per-fork lists of references to the distinct output blocks
+ * in the dictionary: the same output printed by many forks is stored once.
+ * The index and trailer are written on close, and point to the runs for every test.
+ * Files without the index, e.g. from the crashed runs, get their runs from the block
+ * heads.
+ */
+public class ResultFormat {
+
+    static final int MAGIC = 0x4A435352; // "JCSR"
+    static final int VERSION = 8;
+    static final int INDEX_MAGIC = 0x4A435349; // "JCSI"
+    static final int TRAILER_MAGIC = 0x4A435354; // "JCST"
+    static final int TRAILER_SIZE = 8 + 4;
+
+    // Deflate only looks this far back, larger presets are useless
+    static final int PRESET_SIZE = 32 * 1024;
+
+    private static final int NULL_STRING = -1;
+
+    /**
+     * Location of the run with the results for one test.
+     */
+    static class Run {
+        final int block;
+        final long offset;
+        final int rawSize;
+        final int compressedSize;
+        final int count;
+
+        Run(int block, long offset, int rawSize, int compressedSize, int count) {
+            this.block = block;
+            this.offset = offset;
+            this.rawSize = rawSize;
+            this.compressedSize = compressedSize;
+            this.count = count;
+        }
+
+        void write(DataOutput dos) throws IOException {
+            dos.writeInt(block);
+            dos.writeLong(offset);
+            dos.writeInt(rawSize);
+            dos.writeInt(compressedSize);
+            dos.writeInt(count);
+        }
+
+        static Run read(DataInput dis) throws IOException {
+            return new Run(dis.readInt(), dis.readLong(), dis.readInt(), dis.readInt(), dis.readInt());
+        }
+    }
+
+    /**
+     * Builds the block preset: the strings used by more than one run, followed by
+     * the sample run, which gives the compressor the typical record layout.
+     *
+     * @param dicts run dictionaries
+     * @param sample raw bytes of some run in the block
+     * @return preset bytes
+     */
+    static byte[] preset(Collection<Dictionary> dicts, byte[] sample) throws IOException {
+        Map<String, Integer> uses = new LinkedHashMap<>();
+        for (Dictionary dict : dicts) {
+            for (String s : dict.strings) {
+                uses.merge(s, 1, Integer::sum);
+            }
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        for (Map.Entry<String, Integer> e : uses.entrySet()) {
+            if (e.getValue() < 2) continue;
+            byte[] bytes = e.getKey().getBytes(StandardCharsets.UTF_8);
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+        dos.write(sample);
+        dos.flush();
+
+        // Compressor looks at the tail of the preset, where the sample is
+        byte[] preset = bos.toByteArray();
+        return (preset.length > PRESET_SIZE) ?
+                Arrays.copyOfRange(preset, preset.length - PRESET_SIZE, preset.length) :
+                preset;
+    }
+
+    /**
+     * Run-local string dictionary, used while writing.
+     */
+    static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<OutputLog.Block, Integer> blockIds = new HashMap<>();
+        private final List<int[]> blocks = new ArrayList<>();
+
+        int id(String s) {
+            if (s == null) {
+                return NULL_STRING;
+            }
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+
+        int id(OutputLog.Block block) {
+            Integer id = blockIds.get(block);
+            if (id == null) {
+                List<String> lines = block.lines();
+                int[] lineIds = new int[lines.size()];
+                for (int c = 0; c < lineIds.length; c++) {
+                    lineIds[c] = id(lines.get(c));
+                }
+                id = blocks.size();
+                blockIds.put(block, id);
+                blocks.add(lineIds);
+            }
+            return id;
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            dos.writeInt(strings.size());
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                dos.writeInt(bytes.length);
+                dos.write(bytes);
+            }
+            dos.writeInt(blocks.size());
+            for (int[] lineIds : blocks) {
+                writeInts(dos, lineIds);
+            }
+        }
+
+        static Table read(DataInputStream dis) throws IOException {
+            String[] strings = new String[dis.readInt()];
+            for (int c = 0; c < strings.length; c++) {
+                byte[] bytes = new byte[dis.readInt()];
+                dis.readFully(bytes);
+                strings[c] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            OutputLog.Block[] blocks = new OutputLog.Block[dis.readInt()];
+            for (int c = 0; c < blocks.length; c++) {
+                int[] lineIds = readInts(dis);
+                List<String> lines = new ArrayList<>(lineIds.length);
+                for (int id : lineIds) {
+                    lines.add(string(strings, id));
+                }
+                blocks[c] = new OutputLog.Block(lines);
+            }
+            return new Table(strings, blocks);
+        }
+    }
+
+    /**
+     * Run-local dictionary, as read back.
+     */
+    static class Table {
+        final String[] strings;
+        final OutputLog.Block[] blocks;
+
+        Table(String[] strings, OutputLog.Block[] blocks) {
+            this.strings = strings;
+            this.blocks = blocks;
+        }
+    }
+
+    static void writeResult(DataOutputStream dos, Dictionary dict, TestResult result) throws IOException {
+        dos.writeInt(result.status().ordinal());
+
+        writeConfig(dos, dict, result.getConfig());
+
+        Collection<String> keys = result.getStateKeys();
+        dos.writeInt(keys.size());
+        for (String key : keys) {
+            dos.writeInt(dict.id(key));
+            dos.writeLong(result.getCount(key));
+        }
+
+        writeLog(dos, dict, result.getMessageLog());
+        writeLog(dos, dict, result.getVmOutLog());
+        writeLog(dos, dict, result.getVmErrLog());
+        dos.writeLong(result.getVmOutSkipped());
+        dos.writeLong(result.getVmErrSkipped());
+        result.getUsage().write(dos);
+        result.getTelemetry().write(dos);
+
+        Environment env = result.getEnv();
+        dos.writeBoolean(env != null);
+        if (env != null) {
+            Map<String, String> entries = env.entries();
+            dos.writeInt(entries.size());
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                dos.writeInt(dict.id(e.getKey()));
+                dos.writeInt(dict.id(e.getValue()));
+            }
+        }
+    }
+
+    static TestResult readResult(DataInputStream dis, Table table) throws IOException {
+        String[] dict = table.strings;
+        TestResult result = new TestResult(Status.values()[dis.readInt()]);
+
+        result.setConfig(readConfig(dis, dict));
+
+        int states = dis.readInt();
+        for (int c = 0; c < states; c++) {
+            String key = string(dict, dis.readInt());
+            result.addState(key, dis.readLong());
+        }
+
+        readLog(dis, table, result.getMessageLog());
+        readLog(dis, table, result.getVmOutLog());
+        readLog(dis, table, result.getVmErrLog());
+        result.addVMOutSkipped(dis.readLong());
+        result.addVMErrSkipped(dis.readLong());
+        result.addUsage(new ResourceUsage(dis));
+        result.addTelemetry(new Telemetry(dis));
+
+        if (dis.readBoolean()) {
+            int len = dis.readInt();
+            Map<String, String> entries = new HashMap<>();
+            for (int c = 0; c < len; c++) {
+                entries.put(string(dict, dis.readInt()), string(dict, dis.readInt()));
+            }
+            result.setEnv(new Environment(entries));
+        }
+        return result;
+    }
+
+    static void writeConfig(DataOutputStream dos, Dictionary dict, TestConfig cfg) throws IOException {
+        dos.writeInt(cfg.spinLoopStyle.ordinal());
+        dos.writeInt(cfg.time);
+        dos.writeInt(cfg.iters);
+        dos.writeInt(cfg.threads);
+        dos.writeInt(dict.id(cfg.name));
+        dos.writeInt(dict.id(cfg.binaryName));
+        dos.writeInt(dict.id(cfg.generatedRunnerName));
+        writeStrings(dos, dict, cfg.jvmArgs);
+        dos.writeInt(cfg.forkId);
+        dos.writeInt(cfg.maxFootprintMB);
+        writeStrings(dos, dict, cfg.actorNames);
+        dos.writeInt(cfg.compileMode);
+
+        SchedulingClass scl = cfg.shClass;
+        dos.writeInt(scl.mode().ordinal());
+        dos.writeInt(scl.numActors());
+        for (int a = 0; a < scl.numActors(); a++) {
+            dos.writeInt(scl.getPackage(a));
+            dos.writeInt(scl.getCore(a));
+        }
+
+        dos.writeInt(cfg.strideSize);
+        dos.writeInt(cfg.strideCount);
+
+        CPUMap map = cfg.cpuMap;
+        dos.writeBoolean(map != null);
+        if (map != null) {
+            writeInts(dos, map.allocatedMap());
+            writeInts(dos, map.actorMap());
+            writeInts(dos, map.systemMap());
+            writeInts(dos, map.packageMap());
+            writeInts(dos, map.coreMap());
+        }
+    }
+
+    static TestConfig readConfig(DataInputStream dis, String[] dict) throws IOException {
+        SpinLoopStyle spinLoopStyle = SpinLoopStyle.values()[dis.readInt()];
+        int time = dis.readInt();
+        int iters = dis.readInt();
+        int threads = dis.readInt();
+        String name = string(dict, dis.readInt());
+        String binaryName = string(dict, dis.readInt());
+        String generatedRunnerName = string(dict, dis.readInt());
+        List<String> jvmArgs = readStrings(dis, dict);
+        int forkId = dis.readInt();
+        int maxFootprintMB = dis.readInt();
+        List<String> actorNames = readStrings(dis, dict);
+        int compileMode = dis.readInt();
+
+        AffinityMode mode = AffinityMode.values()[dis.readInt()];
+        int actors = dis.readInt();
+        SchedulingClass scl = new SchedulingClass(mode, actors);
+        for (int a = 0; a < actors; a++) {
+            scl.setPackage(a, dis.readInt());
+            scl.setCore(a, dis.readInt());
+        }
+
+        int strideSize = dis.readInt();
+        int strideCount = dis.readInt();
+
+        CPUMap map = null;
+        if (dis.readBoolean()) {
+            int[] allocatedMap = readInts(dis);
+            int[] actorMap = readInts(dis);
+            int[] systemMap = readInts(dis);
+            int[] packageMap = readInts(dis);
+            int[] coreMap = readInts(dis);
+            map = new CPUMap(allocatedMap, actorMap, systemMap, packageMap, coreMap);
+        }
+
+        return new TestConfig(spinLoopStyle, time, iters, threads, name, binaryName, generatedRunnerName,
+                jvmArgs, forkId, maxFootprintMB, actorNames, compileMode, scl, strideSize, strideCount, map);
+    }
+
+    private static void writeStrings(DataOutputStream dos, Dictionary dict, List<String> list) throws IOException {
+        dos.writeInt(list.size());
+        for (String s : list) {
+            dos.writeInt(dict.id(s));
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream dis, String[] dict) throws IOException {
+        int len = dis.readInt();
+        List<String> list = new ArrayList<>(len);
+        for (int c = 0; c < len; c++) {
+            list.add(string(dict, dis.readInt()));
+        }
+        return list;
+    }
+
+    private static void writeLog(DataOutputStream dos, Dictionary dict, OutputLog log) throws IOException {
+        List<List<OutputLog.Block>> forks = log.forks();
+        dos.writeInt(forks.size());
+        for (List<OutputLog.Block> fork : forks) {
+            dos.writeInt(fork.size());
+            for (OutputLog.Block block : fork) {
+                dos.writeInt(dict.id(block));
+            }
+        }
+    }
+
+    private static void readLog(DataInputStream dis, Table table, OutputLog dst) throws IOException {
+        int len = dis.readInt();
+        for (int c = 0; c < len; c++) {
+            int refs = dis.readInt();
+            List<OutputLog.Block> fork = new ArrayList<>(refs);
+            for (int r = 0; r < refs; r++) {
+                fork.add(table.blocks[dis.readInt()]);
+            }
+            dst.addFork(fork);
+        }
+    }
+
+    static void writeInts(DataOutput dos, int[] arr) throws IOException {
+        dos.writeInt(arr.length);
+        for (int v : arr) {
+            dos.writeInt(v);
+        }
+    }
+
+    static int[] readInts(DataInput dis) throws IOException {
+        int[] arr = new int[dis.readInt()];
+        for (int c = 0; c < arr.length; c++) {
+            arr[c] = dis.readInt();
+        }
+        return arr;
+    }
+
+    private static String string(String[] dict, int id) {
+        return (id == NULL_STRING) ? null : dict[id];
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.util.Counter;
+import org.openjdk.jcstress.util.Environment;
+
+import java.util.Collection;
+
+/**
+ * Accumulates the results into one merged result. This is the only place
+ * that knows how the results are merged: both the incremental merges in
+ * {@link MergingCollector}, and the one-shot merges in reports go here.
+ */
+public class ResultMerger {
+    private final TestConfig config;
+    private final Counter<String> counter;
+    private final OutputLog messages;
+    private final OutputLog vmOuts;
+    private final OutputLog vmErrs;
+    private long vmOutSkipped;
+    private long vmErrSkipped;
+    private final ResourceUsage usage;
+    private final Telemetry telemetry;
+    private Status status;
+    private Environment env;
+    private TestResult result;
+
+    /**
+     * @param config configuration to assign to the merged result
+     */
+    public ResultMerger(TestConfig config) {
+        this.config = config;
+        this.counter = new Counter<>();
+        this.messages = new OutputLog();
+        this.vmOuts = new OutputLog();
+        this.vmErrs = new OutputLog();
+        this.usage = new ResourceUsage();
+        this.telemetry = new Telemetry();
+        this.status = Status.NORMAL;
+    }
+
+    /**
+     * Merges the given results at once.
+     *
+     * @param config configuration to assign to the merged result
+     * @param mergeable results to merge
+     * @return merged result
+     */
+    public static TestResult merge(TestConfig config, Collection<TestResult> mergeable) {
+        ResultMerger m = new ResultMerger(config);
+        for (TestResult r : mergeable) {
+            m.add(r);
+        }
+        return m.result();
+    }
+
+    public void add(TestResult r) {
+        env = r.getEnv();
+        status = status.combine(r.status());
+        counter.merge(r.getCounter());
+        messages.addAll(r.getMessageLog());
+        vmOuts.addAll(r.getVmOutLog());
+        vmErrs.addAll(r.getVmErrLog());
+        vmOutSkipped += r.getVmOutSkipped();
+        vmErrSkipped += r.getVmErrSkipped();
+        usage.add(r.getUsage());
+        telemetry.add(r.getTelemetry());
+        result = null;
+    }
+
+    /**
+     * @return merged result; cached until more results are added
+     */
+    public TestResult result() {
+        if (result == null) {
+            TestResult root = new TestResult(status);
+            root.setConfig(config);
+            root.setEnv(env);
+            root.addState(counter);
+            root.addMessages(messages);
+            root.addVMOuts(vmOuts);
+            root.addVMErrs(vmErrs);
+            root.addVMOutSkipped(vmOutSkipped);
+            root.addVMErrSkipped(vmErrSkipped);
+            root.addUsage(usage);
+            root.addTelemetry(telemetry);
+            result = root;
+        }
+        return result;
+    }
+
+}
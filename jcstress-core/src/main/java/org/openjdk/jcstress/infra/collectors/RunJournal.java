@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.openjdk.jcstress.infra.runners.TestConfig;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Journal of the run, that allows resuming it after the harness dies.
+ *
+ * <pre>
+ * journal    := MAGIC VERSION resultFile:utf seed:long planSize:int plan completion*
+ * plan       := dict config*
+ * completion := planIndex:int
+ * </pre>
+ *
+ * The planned configurations are written upfront, in the order of execution, and the
+ * index of each configuration is appended as its result is collected. The completion
+ * record torn at the end is dropped on resume. Completed results might still be missing
+ * from the result file, if the harness died before they were flushed there: the resumed
+ * run re-runs these as well.
+ */
+public class RunJournal implements TestResultCollector {
+
+    static final int MAGIC = 0x4A43534A; // "JCSJ"
+    static final int VERSION = 1;
+
+    private final File file;
+    private final String resultFile;
+    private final long seed;
+    private final List<TestConfig> plan;
+    private final Map<TestConfig, Integer> planIndex;
+    private final BitSet completed;
+    private final DataOutputStream dos;
+    private boolean closed;
+
+    private RunJournal(File file, String resultFile, long seed, List<TestConfig> plan, BitSet completed, boolean append) throws IOException {
+        this.file = file;
+        this.resultFile = resultFile;
+        this.seed = seed;
+        this.plan = Collections.unmodifiableList(new ArrayList<>(plan));
+        this.completed = completed;
+
+        // Forks of the same configuration are equal, tell them apart by identity
+        this.planIndex = new IdentityHashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            planIndex.put(plan.get(i), i);
+        }
+
+        this.dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+    }
+
+    /**
+     * Journal file for the result file.
+     *
+     * @param resultFile result file
+     * @return journal file
+     */
+    public static File fileFor(String resultFile) {
+        String name = resultFile.endsWith(".bin") ?
+                resultFile.substring(0, resultFile.length() - ".bin".length()) :
+                resultFile;
+        return new File(name + ".journal");
+    }
+
+    /**
+     * Starts the new journal.
+     *
+     * @param file journal file
+     * @param resultFile result file for the run
+     * @param seed test order seed
+     * @param plan configurations to run, in order
+     * @return journal
+     * @throws IOException if journal cannot be written
+     */
+    public static RunJournal create(File file, String resultFile, long seed, List<TestConfig> plan) throws IOException {
+        RunJournal j = new RunJournal(file, resultFile, seed, plan, new BitSet(), false);
+
+        ByteArrayOutputStream configs = new ByteArrayOutputStream();
+        DataOutputStream cdos = new DataOutputStream(configs);
+        ResultFormat.Dictionary dict = new ResultFormat.Dictionary();
+        for (TestConfig cfg : plan) {
+            ResultFormat.writeConfig(cdos, dict, cfg);
+        }
+        cdos.flush();
+
+        j.dos.writeInt(MAGIC);
+        j.dos.writeInt(VERSION);
+        j.dos.writeUTF(resultFile);
+        j.dos.writeLong(seed);
+        j.dos.writeInt(plan.size());
+        dict.write(j.dos);
+        configs.writeTo(j.dos);
+        j.dos.flush();
+        return j;
+    }
+
+    /**
+     * Reads the existing journal, and continues writing it.
+     *
+     * @param file journal file
+     * @return journal
+     * @throws IOException if journal cannot be read or written
+     */
+    public static RunJournal resume(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+        DataInputStream dis = new DataInputStream(bis);
+
+        String resultFile;
+        long seed;
+        List<TestConfig> plan;
+        try {
+            if (dis.readInt() != MAGIC) {
+                throw new IOException("Not a run journal: " + file);
+            }
+            int version = dis.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported run journal version: " + version);
+            }
+            resultFile = dis.readUTF();
+            seed = dis.readLong();
+            int size = dis.readInt();
+            ResultFormat.Table dict = ResultFormat.Dictionary.read(dis);
+            plan = new ArrayList<>(size);
+            for (int c = 0; c < size; c++) {
+                plan.add(ResultFormat.readConfig(dis, dict.strings));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Run journal is incomplete, the run had not started: " + file);
+        }
+
+        BitSet completed = new BitSet(plan.size());
+        while (bis.available() >= 4) {
+            int idx = dis.readInt();
+            if (idx < 0 || idx >= plan.size()) {
+                throw new IOException("Corrupted run journal, unexpected configuration: " + idx);
+            }
+            completed.set(idx);
+        }
+
+        // Drop the torn completion record, if any
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(bytes.length - bis.available());
+        }
+
+        return new RunJournal(file, resultFile, seed, plan, completed, true);
+    }
+
+    public File file() {
+        return file;
+    }
+
+    public String resultFile() {
+        return resultFile;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * @return planned configurations, in order
+     */
+    public List<TestConfig> plan() {
+        return plan;
+    }
+
+    /**
+     * @param idx index of the configuration in the plan
+     * @return true, if configuration was recorded as completed
+     */
+    public synchronized boolean isCompleted(int idx) {
+        return completed.get(idx);
+    }
+
+    @Override
+    public synchronized void add(TestResult r) {
+        if (closed) return;
+        Integer idx = planIndex.get(r.getConfig());
+        if (idx == null) {
+            return;
+        }
+        try {
+            dos.writeInt(idx);
+            dos.flush();
+            completed.set(idx);
+        } catch (IOException e) {
+            // expect
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            dos.close();
+        } catch (IOException e) {
+            // expect
+        }
+    }
+
+}
@@ -24,6 +24,8 @@
  */
 package org.openjdk.jcstress.infra.collectors;
 
+import org.openjdk.jcstress.infra.jfr.Events;
+
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -66,7 +68,12 @@ public class SerializedBufferCollector implements TestResultCollector {
             while (true) {
                 TestResult r = results.poll(1, TimeUnit.SECONDS);
                 if (r != null) {
-                    sink.add(r);
+                    Events.Span event = Events.resultProcessing(r.getName());
+                    try {
+                        sink.add(r);
+                    } finally {
+                        event.end();
+                    }
                 } else {
                     // terminated, time to go
                     if (terminated) return;
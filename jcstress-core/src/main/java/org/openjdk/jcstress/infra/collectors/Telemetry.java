@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Sampling telemetry from the forks: per iteration and per actor, how many samples
+ * were produced and consumed, and how the time was split between the run loops,
+ * synchronization with other actors, and result consumption; along with the wall time
+ * of every iteration. Merged results sum the entries with the same iteration and actor,
+ * and the wall times of the same iteration, over all forks.
+ *
+ * <p>Every actor runs over all samples, and consumes its own slice of them: the samples
+ * the test had produced are the samples consumed by all actors together.
+ */
+public class Telemetry implements Serializable {
+
+    private final List<Entry> entries;
+    private final SortedMap<Integer, Long> wallNs;
+
+    public Telemetry() {
+        entries = new ArrayList<>();
+        wallNs = new TreeMap<>();
+    }
+
+    public Telemetry(DataInputStream dis) throws IOException {
+        this();
+        int len = dis.readInt();
+        for (int c = 0; c < len; c++) {
+            int iteration = dis.readInt();
+            int actor = dis.readInt();
+            add(iteration, actor, dis.readLong(), dis.readLong(), dis.readLong(), dis.readLong(), dis.readLong());
+        }
+        int walls = dis.readInt();
+        for (int c = 0; c < walls; c++) {
+            addWall(dis.readInt(), dis.readLong());
+        }
+    }
+
+    public void write(DataOutputStream dos) throws IOException {
+        dos.writeInt(entries.size());
+        for (Entry e : entries) {
+            dos.writeInt(e.iteration);
+            dos.writeInt(e.actor);
+            dos.writeLong(e.samples);
+            dos.writeLong(e.consumed);
+            dos.writeLong(e.runNs);
+            dos.writeLong(e.syncNs);
+            dos.writeLong(e.consumeNs);
+        }
+        dos.writeInt(wallNs.size());
+        for (Map.Entry<Integer, Long> e : wallNs.entrySet()) {
+            dos.writeInt(e.getKey());
+            dos.writeLong(e.getValue());
+        }
+    }
+
+    public void add(int iteration, int actor, long samples, long consumed, long runNs, long syncNs, long consumeNs) {
+        Entry e = find(iteration, actor);
+        if (e == null) {
+            e = new Entry(iteration, actor);
+            entries.add(e);
+            entries.sort(Entry.ORDER);
+        }
+        e.samples += samples;
+        e.consumed += consumed;
+        e.runNs += runNs;
+        e.syncNs += syncNs;
+        e.consumeNs += consumeNs;
+    }
+
+    /**
+     * @param iteration iteration index
+     * @param ns wall time of the iteration, from starting the actors to joining them
+     */
+    public void addWall(int iteration, long ns) {
+        wallNs.merge(iteration, ns, Long::sum);
+    }
+
+    public void add(Telemetry other) {
+        for (Entry e : other.entries) {
+            add(e.iteration, e.actor, e.samples, e.consumed, e.runNs, e.syncNs, e.consumeNs);
+        }
+        for (Map.Entry<Integer, Long> e : other.wallNs.entrySet()) {
+            addWall(e.getKey(), e.getValue());
+        }
+    }
+
+    private Entry find(int iteration, int actor) {
+        for (Entry e : entries) {
+            if (e.iteration == iteration && e.actor == actor) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return all entries, ordered by actor, then by iteration
+     */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return number of actors seen
+     */
+    public int actors() {
+        int max = -1;
+        for (Entry e : entries) {
+            max = Math.max(max, e.actor);
+        }
+        return max + 1;
+    }
+
+    /**
+     * @param actor actor index
+     * @return entries for the actor, ordered by iteration
+     */
+    public List<Entry> byActor(int actor) {
+        List<Entry> list = new ArrayList<>();
+        for (Entry e : entries) {
+            if (e.actor == actor) {
+                list.add(e);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @param actor actor index
+     * @return sum of all iterations for the actor
+     */
+    public Entry total(int actor) {
+        Entry t = new Entry(-1, actor);
+        for (Entry e : byActor(actor)) {
+            t.samples += e.samples;
+            t.consumed += e.consumed;
+            t.runNs += e.runNs;
+            t.syncNs += e.syncNs;
+            t.consumeNs += e.consumeNs;
+        }
+        return t;
+    }
+
+    /**
+     * @param iteration iteration index
+     * @return samples the test had produced in the iteration
+     */
+    public long samples(int iteration) {
+        long sum = 0;
+        for (Entry e : entries) {
+            if (e.iteration == iteration) {
+                sum += e.consumed;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return samples the test had produced in all iterations
+     */
+    public long samples() {
+        long sum = 0;
+        for (Entry e : entries) {
+            sum += e.consumed;
+        }
+        return sum;
+    }
+
+    /**
+     * @return iterations with the known wall time, ordered
+     */
+    public Set<Integer> iterations() {
+        return Collections.unmodifiableSet(wallNs.keySet());
+    }
+
+    /**
+     * @param iteration iteration index
+     * @return wall time of the iteration, or 0 if unknown
+     */
+    public long wallNs(int iteration) {
+        return wallNs.getOrDefault(iteration, 0L);
+    }
+
+    /**
+     * @return wall time of all iterations
+     */
+    public long wallNs() {
+        long sum = 0;
+        for (long ns : wallNs.values()) {
+            sum += ns;
+        }
+        return sum;
+    }
+
+    /**
+     * @return samples the test had produced per second of wall time, or 0 if unknown
+     */
+    public double samplesPerSecond() {
+        long ns = wallNs();
+        return (ns > 0) ? samples() * 1e9 / ns : 0;
+    }
+
+    /**
+     * @param iteration iteration index
+     * @return samples the test had produced per second of the iteration wall time, or 0 if unknown
+     */
+    public double samplesPerSecond(int iteration) {
+        long ns = wallNs(iteration);
+        return (ns > 0) ? samples(iteration) * 1e9 / ns : 0;
+    }
+
+    public static class Entry implements Serializable {
+        static final Comparator<Entry> ORDER = Comparator.comparingInt((Entry e) -> e.actor).thenComparingInt(e -> e.iteration);
+
+        private final int iteration;
+        private final int actor;
+        private long samples;
+        private long consumed;
+        private long runNs;
+        private long syncNs;
+        private long consumeNs;
+
+        Entry(int iteration, int actor) {
+            this.iteration = iteration;
+            this.actor = actor;
+        }
+
+        public int iteration() {
+            return iteration;
+        }
+
+        public int actor() {
+            return actor;
+        }
+
+        /**
+         * @return samples the actor had run over
+         */
+        public long samples() {
+            return samples;
+        }
+
+        /**
+         * @return samples the actor had consumed into its counter, its slice of all samples
+         */
+        public long consumed() {
+            return consumed;
+        }
+
+        public long runNs() {
+            return runNs;
+        }
+
+        public long syncNs() {
+            return syncNs;
+        }
+
+        public long consumeNs() {
+            return consumeNs;
+        }
+
+        public long totalNs() {
+            return runNs + syncNs + consumeNs;
+        }
+
+        /**
+         * @return samples per second of the actor's loop time, or 0 if unknown
+         */
+        public double samplesPerSecond() {
+            long ns = totalNs();
+            return (ns > 0) ? samples * 1e9 / ns : 0;
+        }
+    }
+
+}
@@ -49,58 +49,66 @@ public class TestResult implements Serializable {
     private final Status status;
     private final Counter<String> states;
     private volatile Environment env;
-    private final List<String> messages;
-    private final List<String> vmOut;
-    private final List<String> vmErr;
+    private final OutputLog messages;
+    private final OutputLog vmOut;
+    private final OutputLog vmErr;
+    private long vmOutSkipped;
+    private long vmErrSkipped;
+    private final ResourceUsage usage;
+    private final Telemetry telemetry;
     private transient TestGrading grading;
 
     public TestResult(Status status) {
         this.status = status;
         this.states = new Counter<>();
-        this.messages = new ArrayList<>();
-        this.vmOut = new ArrayList<>();
-        this.vmErr = new ArrayList<>();
+        this.messages = new OutputLog();
+        this.vmOut = new OutputLog();
+        this.vmErr = new OutputLog();
+        this.usage = new ResourceUsage();
+        this.telemetry = new Telemetry();
     }
 
     public TestResult(DataInputStream dis) throws IOException {
         status = Status.values()[dis.readInt()];
         states = new Counter<>(dis);
-        messages = new ArrayList<>();
+        messages = new OutputLog();
         {
             int len = dis.readInt();
             for (int c = 0; c < len; c++) {
                 messages.add(dis.readUTF());
             }
         }
-        vmOut = new ArrayList<>();
+        vmOut = new OutputLog();
         {
             int len = dis.readInt();
             for (int c = 0; c < len; c++) {
                 vmOut.add(dis.readUTF());
             }
         }
-        vmErr = new ArrayList<>();
+        vmErr = new OutputLog();
         {
             int len = dis.readInt();
             for (int c = 0; c < len; c++) {
                 vmErr.add(dis.readUTF());
             }
         }
+        usage = new ResourceUsage(dis);
+        telemetry = new Telemetry(dis);
     }
 
     public void write(DataOutputStream dos) throws IOException {
         dos.writeInt(status.ordinal());
         states.write(dos);
-        dos.writeInt(messages.size());
-        for (String s : messages) {
-            dos.writeUTF(s);
-        }
-        dos.writeInt(vmOut.size());
-        for (String s : vmOut) {
-            dos.writeUTF(s);
-        }
-        dos.writeInt(vmErr.size());
-        for (String s : vmErr) {
+        writeLines(dos, messages.output());
+        writeLines(dos, vmOut.output());
+        writeLines(dos, vmErr.output());
+        usage.write(dos);
+        telemetry.write(dos);
+    }
+
+    private static void writeLines(DataOutputStream dos, List<String> lines) throws IOException {
+        dos.writeInt(lines.size());
+        for (String s : lines) {
             dos.writeUTF(s);
         }
     }
@@ -128,6 +136,10 @@ public class TestResult implements Serializable {
         }
     }
 
+    public void addMessages(OutputLog log) {
+        messages.addAll(log);
+    }
+
     public void addVMOuts(Collection<String> msgs) {
         for (String m : msgs) {
             if (ReportUtils.skipMessage(m)) continue;
@@ -135,6 +147,10 @@ public class TestResult implements Serializable {
         }
     }
 
+    public void addVMOuts(OutputLog log) {
+        vmOut.addAll(log);
+    }
+
     public void addVMErrs(Collection<String> msgs) {
         for (String m : msgs) {
             if (ReportUtils.skipMessage(m)) continue;
@@ -142,6 +158,38 @@ public class TestResult implements Serializable {
         }
     }
 
+    public void addVMErrs(OutputLog log) {
+        vmErr.addAll(log);
+    }
+
+    /**
+     * @param lines number of VM output lines that were not captured
+     */
+    public void addVMOutSkipped(long lines) {
+        vmOutSkipped += lines;
+    }
+
+    /**
+     * @param lines number of VM error lines that were not captured
+     */
+    public void addVMErrSkipped(long lines) {
+        vmErrSkipped += lines;
+    }
+
+    /**
+     * @param u resources taken by the fork, merged with the ones already recorded
+     */
+    public void addUsage(ResourceUsage u) {
+        usage.add(u);
+    }
+
+    /**
+     * @param t sampling telemetry, merged with the one already recorded
+     */
+    public void addTelemetry(Telemetry t) {
+        telemetry.add(t);
+    }
+
     public void setEnv(Environment e) {
         env = e;
     }
@@ -159,14 +207,42 @@ public class TestResult implements Serializable {
     }
 
     public List<String> getMessages() {
-        return messages;
+        return messages.output();
     }
 
     public List<String> getVmOut() {
-        return vmOut;
+        return vmOut.output();
     }
 
     public List<String> getVmErr() {
+        return vmErr.output();
+    }
+
+    public long getVmOutSkipped() {
+        return vmOutSkipped;
+    }
+
+    public long getVmErrSkipped() {
+        return vmErrSkipped;
+    }
+
+    public ResourceUsage getUsage() {
+        return usage;
+    }
+
+    public Telemetry getTelemetry() {
+        return telemetry;
+    }
+
+    public OutputLog getMessageLog() {
+        return messages;
+    }
+
+    public OutputLog getVmOutLog() {
+        return vmOut;
+    }
+
+    public OutputLog getVmErrLog() {
         return vmErr;
     }
 
@@ -226,8 +226,10 @@ public class ConsoleReportPrinter implements TestResultCollector {
         }
 
         long timeSpent = System.nanoTime() - startTime;
-        double v = 1.0 * TimeUnit.SECONDS.toNanos(1) * sampleCount / timeSpent;
+        return formatRate(1.0 * TimeUnit.SECONDS.toNanos(1) * sampleCount / timeSpent);
+    }
 
+    static String formatRate(double v) {
         final long K = 1000;
         final long M = 1000*K;
         final long G = 1000*M;
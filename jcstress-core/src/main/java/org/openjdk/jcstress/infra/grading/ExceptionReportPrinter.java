@@ -25,7 +25,7 @@
 package org.openjdk.jcstress.infra.grading;
 
 
-import org.openjdk.jcstress.infra.collectors.InProcessCollector;
+import org.openjdk.jcstress.infra.collectors.MergingCollector;
 import org.openjdk.jcstress.infra.collectors.TestResult;
 
 import java.util.*;
@@ -40,20 +40,26 @@ import java.util.*;
 public class ExceptionReportPrinter {
 
     private final List<String> failures;
-    private final InProcessCollector collector;
+    private final MergingCollector collector;
 
-    public ExceptionReportPrinter(InProcessCollector collector) {
+    public ExceptionReportPrinter(MergingCollector collector) {
         this.collector = collector;
         this.failures = new ArrayList<>();
     }
 
     public void work() {
-        List<TestResult> results = ReportUtils.mergedByConfig(collector.getTestResults());
-
-        for (TestResult k : results) {
-            emitTest(k);
+        for (String name : collector.names()) {
+            failures.addAll(failures(collector.mergedByConfig(name)));
         }
+        check(failures);
+    }
 
+    /**
+     * Throws the deferred failures, if any.
+     *
+     * @param failures failure messages
+     */
+    public static void check(List<String> failures) {
         if (!failures.isEmpty()) {
             StringBuilder sb = new StringBuilder();
             sb.append(System.lineSeparator());
@@ -64,7 +70,25 @@ public class ExceptionReportPrinter {
         }
     }
 
+    /**
+     * @param results results for a single test, merged by configuration
+     * @return failure messages for these results, in configuration order
+     */
+    public static List<String> failures(List<TestResult> results) {
+        List<TestResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing((TestResult t) -> t.getConfig().key()));
+        List<String> dst = new ArrayList<>();
+        for (TestResult k : sorted) {
+            emitTest(dst, k);
+        }
+        return dst;
+    }
+
     public void emitTest(TestResult result) {
+        emitTest(failures, result);
+    }
+
+    private static void emitTest(List<String> failures, TestResult result) {
         String label = result.getName() + " " + result.getConfig().jvmArgs;
         switch (result.status()) {
             case CHECK_TEST_ERROR:
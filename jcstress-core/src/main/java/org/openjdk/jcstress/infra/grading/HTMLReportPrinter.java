@@ -29,7 +29,10 @@ import org.openjdk.jcstress.Options;
 import org.openjdk.jcstress.annotations.Expect;
 import org.openjdk.jcstress.infra.Status;
 import org.openjdk.jcstress.infra.TestInfo;
-import org.openjdk.jcstress.infra.collectors.InProcessCollector;
+import org.openjdk.jcstress.infra.collectors.MergingCollector;
+import org.openjdk.jcstress.infra.collectors.OutputLog;
+import org.openjdk.jcstress.infra.collectors.ResourceUsage;
+import org.openjdk.jcstress.infra.collectors.Telemetry;
 import org.openjdk.jcstress.infra.collectors.TestResult;
 import org.openjdk.jcstress.infra.runners.TestConfig;
 import org.openjdk.jcstress.infra.runners.TestList;
@@ -38,10 +41,7 @@ import org.openjdk.jcstress.util.*;
 import org.openjdk.jcstress.vm.CompileMode;
 
 import java.awt.*;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintStream;
-import java.io.PrintWriter;
+import java.io.*;
 import java.util.*;
 import java.util.List;
 import java.util.function.Predicate;
@@ -53,23 +53,44 @@ import java.util.function.Predicate;
  */
 public class HTMLReportPrinter {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int EXPENSIVE_TESTS = 20;
+
     private final String resultDir;
-    private final InProcessCollector collector;
+    private final MergingCollector collector;
     private int cellStyle = 1;
 
-    public HTMLReportPrinter(Options opts, InProcessCollector collector, PrintStream out) {
+    public HTMLReportPrinter(Options opts, MergingCollector collector, PrintStream out) {
+        this(opts, collector);
+        out.println("  HTML report generated at " + indexFile().getAbsolutePath());
+    }
+
+    public HTMLReportPrinter(Options opts, MergingCollector collector) {
         this.collector = collector;
         this.resultDir = opts.getResultDest();
-        File dir = new File(resultDir);
-        dir.mkdirs();
-        out.println("  HTML report generated at " + dir.getAbsolutePath() + File.separator + "index.html");
+        new File(resultDir).mkdirs();
+    }
+
+    public File indexFile() {
+        return new File(resultDir, "index.html");
     }
 
     public void work() throws FileNotFoundException {
-        List<TestResult> byName = ReportUtils.mergedByName(collector.getTestResults());
+        emitIndex();
+        emitTestReports();
+    }
+
+    private PrintWriter open(String fileName) throws FileNotFoundException {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(resultDir + "/" + fileName)),
+                BUFFER_SIZE));
+    }
+
+    public void emitIndex() throws FileNotFoundException {
+        List<TestResult> byName = collector.mergedByName();
         Collections.sort(byName, Comparator.comparing(TestResult::getName));
 
-        PrintWriter output = new PrintWriter(resultDir + "/index.html");
+        PrintWriter output = open("index.html");
 
         printHeader(output);
 
@@ -159,6 +180,8 @@ public class HTMLReportPrinter {
                 "Some interesting behaviors observed. This is for the plain curiosity.",
                 r -> r.status() == Status.NORMAL && r.grading().hasInteresting);
 
+        printExpensiveTests(byName, output);
+
         printXTests(byName, output,
                 "All tests",
                 "",
@@ -167,8 +190,6 @@ public class HTMLReportPrinter {
         printFooter(output);
 
         output.close();
-
-        emitTestReports(ReportUtils.byName(collector.getTestResults()));
     }
 
     private SortedMap<String, String> getEnv(List<TestResult> ts) {
@@ -261,6 +282,39 @@ public class HTMLReportPrinter {
         output.println("<br>");
     }
 
+    private void printExpensiveTests(List<TestResult> byName, PrintWriter output) {
+        output.println("<hr>");
+        output.println("<h3>Most expensive tests</h3>");
+        output.println("<p>Resources taken by the forks, summed over all forks of the test. Peak RSS is the largest one seen in any fork.</p>");
+
+        List<TestResult> expensive = ReportUtils.mostExpensive(byName, EXPENSIVE_TESTS);
+        if (expensive.isEmpty()) {
+            output.println("None!");
+            output.println("<br>");
+            output.println("<br>");
+            return;
+        }
+
+        output.println("<table cellspacing=0 cellpadding=3 width=\"100%\">");
+        output.println("<tr><th class=\"header\">Test</th><th>Forks</th><th>Wall</th><th>CPU</th><th>Peak RSS</th><th>GCs</th><th>GC time</th><th>JIT time</th></tr>");
+        for (TestResult r : expensive) {
+            ResourceUsage u = r.getUsage();
+            cellStyle = 3 - cellStyle;
+            output.println("<tr class=\"cell" + cellStyle + "\">");
+            output.println("<td>&nbsp;&nbsp;&nbsp;<a href=\"" + r.getName() + ".html\">" + StringUtils.chunkName(r.getName()) + "</a></td>");
+            output.println("<td align=center>" + u.forks() + "</td>");
+            output.println("<td align=center>" + ReportUtils.formatMs(u.wallMs()) + "</td>");
+            output.println("<td align=center>" + ReportUtils.formatMs(u.cpuMs()) + "</td>");
+            output.println("<td align=center>" + ReportUtils.formatKb(u.peakRssKb()) + "</td>");
+            output.println("<td align=center>" + u.gcCount() + "</td>");
+            output.println("<td align=center>" + ReportUtils.formatMs(u.gcMs()) + "</td>");
+            output.println("<td align=center>" + ReportUtils.formatMs(u.jitMs()) + "</td>");
+            output.println("</tr>");
+        }
+        output.println("</table>");
+        output.println("<br>");
+    }
+
     public void emitTest(PrintWriter output, TestResult result) {
         cellStyle = 3 - cellStyle;
         output.println("<tr class=\"cell" + cellStyle + "\">");
@@ -327,17 +381,25 @@ public class HTMLReportPrinter {
         }
     }
 
-    private void emitTestReports(Multimap<String, TestResult> multiByName) {
-        multiByName.keys().parallelStream().forEach(name -> {
-            try {
-                TestInfo test = TestList.getInfo(name);
-                PrintWriter local = new PrintWriter(resultDir + "/" + name + ".html");
-                emitTestReport(local, multiByName.get(name), test);
-                local.close();
-            } catch (FileNotFoundException e) {
-                // do nothing
-            }
-        });
+    private void emitTestReports() {
+        collector.names().parallelStream().forEach(name -> emitTestReport(name, collector.mergedByConfig(name)));
+    }
+
+    /**
+     * Emits the per-test page.
+     *
+     * @param name test name
+     * @param results test results, merged by configuration
+     */
+    public void emitTestReport(String name, List<TestResult> results) {
+        try {
+            TestInfo test = TestList.getInfo(name);
+            PrintWriter local = open(name + ".html");
+            emitTestReport(local, results, test);
+            local.close();
+        } catch (FileNotFoundException e) {
+            // do nothing
+        }
     }
 
     public void emitTestReport(PrintWriter o, Collection<TestResult> results, TestInfo test) {
@@ -353,10 +415,7 @@ public class HTMLReportPrinter {
         }
 
         List<TestResult> sorted = new ArrayList<>(results);
-        sorted.sort(Comparator
-                .comparing((TestResult t) -> t.getConfig().getCompileMode())
-                .thenComparing((TestResult t) -> t.getConfig().getSchedulingClass().toString())
-                .thenComparing((TestResult t) -> StringUtils.join(t.getConfig().jvmArgs, ",")));
+        sorted.sort(Comparator.comparing((TestResult t) -> t.getConfig().key()));
 
         o.println("<h3>Environment</h3>");
         o.println("<table>");
@@ -381,19 +440,20 @@ public class HTMLReportPrinter {
         o.println("<th>Compilation Mode</th>");
         o.println("<th>Scheduling Class</th>");
         o.println("<th>Java Options</th>");
+        o.println("<th>Spin Style</th>");
         o.println("<th>Status</th>");
         o.println("<th colspan=" + keys.size() + ">Observed States</th>");
         o.println("</tr>");
 
         o.println("<tr>");
-        o.println("<th colspan=4></th>");
+        o.println("<th colspan=5></th>");
         for (String key : keys) {
             o.println("<th nowrap align='center'>" + key + "</th>");
         }
         o.println("</tr>");
 
         o.println("<tr>");
-        o.println("<td colspan=4></td>");
+        o.println("<td colspan=5></td>");
         for (String key : keys) {
             for (TestResult r : sorted) {
                 GradingResult c = r.grading().gradingResults.get(key);
@@ -406,7 +466,7 @@ public class HTMLReportPrinter {
         o.println("</tr>");
 
         o.println("<tr>");
-        o.println("<td colspan=4></td>");
+        o.println("<td colspan=5></td>");
         for (String key : keys) {
             for (TestResult r : sorted) {
                 GradingResult c = r.grading().gradingResults.get(key);
@@ -429,6 +489,7 @@ public class HTMLReportPrinter {
                 o.println("<pre>" + cfg.jvmArgs + "</pre>");
             }
             o.println("</td>");
+            o.println("<td nowrap valign=top width=10>" + cfg.spinLoopStyle + "</td>");
 
             String color = ReportUtils.statusToPassed(r) ? "green" : "red";
             String label = ReportUtils.statusToLabel(r);
@@ -447,51 +508,101 @@ public class HTMLReportPrinter {
 
         o.println("</table>");
 
+        o.println("<h3>Sampling Telemetry</h3>");
+
+        for (TestResult r : sorted) {
+            emitTelemetry(o, r);
+        }
+
         o.println("<h3>Messages</h3>");
 
         for (TestResult r : sorted) {
-            if (!r.getMessages().isEmpty()) {
-                resultHeader(o, r);
-                o.println("<pre>");
-                for (String data : r.getMessages()) {
-                    o.println(data);
-                }
-                o.println("</pre>");
-                o.println();
-            }
+            emitLog(o, r, r.getMessageLog());
         }
 
         o.println("<h3>VM Output Streams</h3>");
 
         for (TestResult r : sorted) {
-            if (!r.getVmOut().isEmpty()) {
-                resultHeader(o, r);
-                o.println("<pre>");
-                for (String data : r.getVmOut()) {
-                    o.println(data);
-                }
-                o.println("</pre>");
-                o.println();
-            }
+            emitLog(o, r, r.getVmOutLog());
         }
 
         o.println("<h3>VM Error Streams</h3>");
 
         for (TestResult r : sorted) {
-            if (!r.getVmErr().isEmpty()) {
-                resultHeader(o, r);
-                o.println("<pre>");
-                for (String data : r.getVmErr()) {
-                    o.println(data);
-                }
-                o.println("</pre>");
-                o.println();
-            }
+            emitLog(o, r, r.getVmErrLog());
         }
 
         printFooter(o);
     }
 
+    private void emitTelemetry(PrintWriter o, TestResult r) {
+        Telemetry t = r.getTelemetry();
+        if (t.isEmpty()) {
+            return;
+        }
+        resultHeader(o, r);
+
+        List<String> names = r.getConfig().actorNames;
+        o.println("<table cellpadding=5 border=1>");
+        o.println("<tr><th>Actor</th><th>Samples</th><th>Consumed</th><th>Rate</th><th>Run loops</th><th>Sync</th><th>Consume</th><th>Rate per iteration</th></tr>");
+        for (int a = 0; a < t.actors(); a++) {
+            Telemetry.Entry total = t.total(a);
+            StringJoiner rates = new StringJoiner(", ");
+            for (Telemetry.Entry e : t.byActor(a)) {
+                rates.add(ReportUtils.formatRate(e.samplesPerSecond()));
+            }
+            String name = (names != null && a < names.size() && names.get(a) != null) ? names.get(a) : String.valueOf(a);
+            o.println("<tr>");
+            o.println("<td nowrap>" + name + "</td>");
+            o.println("<td align='right'>" + total.samples() + "</td>");
+            o.println("<td align='right'>" + total.consumed() + "</td>");
+            o.println("<td align='right' nowrap>" + ReportUtils.formatRate(total.samplesPerSecond()) + "</td>");
+            o.println("<td align='right' nowrap>" + ReportUtils.formatShare(total.runNs(), total.totalNs()) + "</td>");
+            o.println("<td align='right' nowrap>" + ReportUtils.formatShare(total.syncNs(), total.totalNs()) + "</td>");
+            o.println("<td align='right' nowrap>" + ReportUtils.formatShare(total.consumeNs(), total.totalNs()) + "</td>");
+            o.println("<td>" + rates + "</td>");
+            o.println("</tr>");
+        }
+        if (!t.iterations().isEmpty()) {
+            // Actors run over the same samples: the test rate is over the wall time
+            StringJoiner rates = new StringJoiner(", ");
+            for (int it : t.iterations()) {
+                rates.add(ReportUtils.formatRate(t.samplesPerSecond(it)));
+            }
+            o.println("<tr>");
+            o.println("<td nowrap><b>Test</b></td>");
+            o.println("<td align='right'>" + t.samples() + "</td>");
+            o.println("<td align='right'>" + t.samples() + "</td>");
+            o.println("<td align='right' nowrap>" + ReportUtils.formatRate(t.samplesPerSecond()) + "</td>");
+            o.println("<td colspan=3></td>");
+            o.println("<td>" + rates + "</td>");
+            o.println("</tr>");
+        }
+        o.println("</table>");
+        o.println();
+    }
+
+    private void emitLog(PrintWriter o, TestResult r, OutputLog log) {
+        if (log.isEmpty()) {
+            return;
+        }
+        resultHeader(o, r);
+        o.println("<pre>");
+        int lastCount = 1;
+        for (Map.Entry<OutputLog.Block, Integer> e : log.blocks().entrySet()) {
+            // Adjacent blocks with the same count share the label
+            if (e.getValue() > 1 && e.getValue() != lastCount) {
+                o.println("<i>" + ReportUtils.repeatedLabel(e.getValue()) + "</i>");
+            }
+            lastCount = e.getValue();
+            for (String data : e.getKey().lines()) {
+                o.println(data);
+            }
+        }
+        o.println("</pre>");
+        o.println();
+    }
+
     private void resultHeader(PrintWriter o, TestResult r) {
         TestConfig cfg = r.getConfig();
         o.println("<p><b>");
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Answers the queries over the {@link ResultStore}: how the outcomes of the
+ * test configurations trended over the runs, when each state was first seen,
+ * and which configurations got slower in the latest run.
+ */
+public class HistoryReport {
+
+    /**
+     * Relative drop in sampling rate, compared to the median of the earlier
+     * runs, that is reported as the regression.
+     */
+    static final double REGRESSION_THRESHOLD = 0.2;
+
+    public enum Query {
+        TREND("trend"),
+        FIRST_SEEN("first-seen"),
+        REGRESSIONS("regressions");
+
+        private final String label;
+
+        Query(String label) {
+            this.label = label;
+        }
+
+        public static Query of(String label) {
+            for (Query q : values()) {
+                if (q.label.equals(label)) {
+                    return q;
+                }
+            }
+            return null;
+        }
+
+        public static String labels() {
+            StringJoiner sj = new StringJoiner(", ");
+            for (Query q : values()) {
+                sj.add(q.label);
+            }
+            return sj.toString();
+        }
+    }
+
+    private final ResultStore store;
+    private final PrintStream out;
+    private final SimpleDateFormat fmt;
+
+    public HistoryReport(ResultStore store, PrintStream out) {
+        this.store = store;
+        this.out = out;
+        this.fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ROOT);
+    }
+
+    public void work(Query query, Pattern tests, Pattern jvms, long since) throws IOException {
+        List<ResultStore.Entry> entries = store.entries(tests, jvms, since);
+        out.println("Results store has " + store.runs().size() + " runs, " + entries.size() + " matching entries.");
+        out.println();
+
+        switch (query) {
+            case TREND:
+                trend(entries);
+                break;
+            case FIRST_SEEN:
+                firstSeen(entries);
+                break;
+            case REGRESSIONS:
+                regressions(entries);
+                break;
+            default:
+                throw new IllegalStateException("Unhandled query: " + query);
+        }
+    }
+
+    private void trend(List<ResultStore.Entry> entries) {
+        String lastTest = null;
+        String lastConfig = null;
+        for (ResultStore.Entry e : entries) {
+            if (!e.test().equals(lastTest)) {
+                out.println(e.test());
+                lastTest = e.test();
+                lastConfig = null;
+            }
+            if (!e.config().equals(lastConfig)) {
+                out.println("  " + e.config());
+                lastConfig = e.config();
+            }
+
+            StringJoiner states = new StringJoiner(", ");
+            for (Map.Entry<String, Long> s : e.states().entrySet()) {
+                double freq = (e.samples() == 0) ? 0 : 100.0 * s.getValue() / e.samples();
+                states.add(String.format("\"%s\" %.2f%%", s.getKey(), freq));
+            }
+
+            out.printf("    %s  %-16s %-16s %3d forks, %15s  %s%n",
+                    fmt.format(new Date(e.run().timestamp())),
+                    e.run().jvm(),
+                    e.status(),
+                    e.forks(),
+                    ConsoleReportPrinter.formatRate(e.samplesPerSec()),
+                    states);
+        }
+    }
+
+    private void firstSeen(List<ResultStore.Entry> entries) {
+        Map<String, List<ResultStore.Entry>> byTest = new TreeMap<>();
+        for (ResultStore.Entry e : entries) {
+            byTest.computeIfAbsent(e.test(), k -> new ArrayList<>()).add(e);
+        }
+
+        for (Map.Entry<String, List<ResultStore.Entry>> kv : byTest.entrySet()) {
+            List<ResultStore.Entry> es = new ArrayList<>(kv.getValue());
+            es.sort(Comparator.comparingLong((ResultStore.Entry e) -> e.run().timestamp())
+                    .thenComparingInt(e -> e.run().id()));
+
+            Set<Integer> runs = new HashSet<>();
+            Map<String, ResultStore.Entry> first = new LinkedHashMap<>();
+            Map<String, ResultStore.Entry> last = new HashMap<>();
+            Map<String, Set<Integer>> seenIn = new HashMap<>();
+            for (ResultStore.Entry e : es) {
+                runs.add(e.run().id());
+                for (String s : e.states().keySet()) {
+                    first.putIfAbsent(s, e);
+                    last.put(s, e);
+                    seenIn.computeIfAbsent(s, k -> new HashSet<>()).add(e.run().id());
+                }
+            }
+
+            out.println(kv.getKey());
+            for (Map.Entry<String, ResultStore.Entry> f : first.entrySet()) {
+                String s = f.getKey();
+                out.printf("  %-20s first seen %s (%s), last seen %s (%s), in %d of %d runs%n",
+                        "\"" + s + "\"",
+                        fmt.format(new Date(f.getValue().run().timestamp())), f.getValue().run().jvm(),
+                        fmt.format(new Date(last.get(s).run().timestamp())), last.get(s).run().jvm(),
+                        seenIn.get(s).size(), runs.size());
+            }
+        }
+    }
+
+    private void regressions(List<ResultStore.Entry> entries) {
+        int configs = 0;
+        int regressions = 0;
+        String lastTest = null;
+
+        // Entries come grouped by configuration, and ordered by time within it
+        int from = 0;
+        while (from < entries.size()) {
+            int to = from;
+            ResultStore.Entry head = entries.get(from);
+            while (to < entries.size() &&
+                    entries.get(to).test().equals(head.test()) &&
+                    entries.get(to).config().equals(head.config())) {
+                to++;
+            }
+            configs++;
+
+            ResultStore.Entry latest = entries.get(to - 1);
+            double[] earlier = new double[to - 1 - from];
+            for (int i = from; i < to - 1; i++) {
+                earlier[i - from] = entries.get(i).samplesPerSec();
+            }
+
+            if (isRegression(latest.samplesPerSec(), earlier)) {
+                if (!head.test().equals(lastTest)) {
+                    out.println(head.test());
+                    lastTest = head.test();
+                }
+                double median = median(earlier);
+                out.println("  " + head.config());
+                out.printf("    %s (%s): %s, was %s median over %d runs, %+.1f%%%n",
+                        fmt.format(new Date(latest.run().timestamp())), latest.run().jvm(),
+                        ConsoleReportPrinter.formatRate(latest.samplesPerSec()),
+                        ConsoleReportPrinter.formatRate(median),
+                        earlier.length,
+                        100.0 * (latest.samplesPerSec() - median) / median);
+                regressions++;
+            }
+
+            from = to;
+        }
+
+        out.println();
+        out.println(regressions + " regressions in " + configs + " configurations");
+    }
+
+    static boolean isRegression(double latest, double[] earlier) {
+        if (earlier.length == 0) {
+            return false;
+        }
+        double median = median(earlier);
+        return median > 0 && latest < (1 - REGRESSION_THRESHOLD) * median;
+    }
+
+    static double median(double[] vs) {
+        double[] s = Arrays.copyOf(vs, vs.length);
+        Arrays.sort(s);
+        int m = s.length / 2;
+        return (s.length % 2 == 1) ? s[m] : (s[m - 1] + s[m]) / 2;
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.openjdk.jcstress.Options;
+import org.openjdk.jcstress.infra.collectors.MergingCollector;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.collectors.TestResultCollector;
+
+import java.io.FileNotFoundException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates the HTML report while the tests are running.
+ *
+ * Results are merged as they arrive. Pages for the tests that got new results
+ * are re-rendered periodically by a background thread, along with the index.
+ * When the run finishes, the merged results can be used to produce the final
+ * report without re-reading the result file.
+ */
+public class LiveReportPrinter implements TestResultCollector {
+
+    private final MergingCollector collector;
+    private final HTMLReportPrinter html;
+    private final ScheduledExecutorService executor;
+    private Set<String> dirty;
+    private volatile boolean failed;
+
+    public LiveReportPrinter(Options opts) {
+        this(opts, new MergingCollector(true));
+    }
+
+    private LiveReportPrinter(Options opts, MergingCollector collector) {
+        this(opts.getLiveIntervalSec(), collector, new HTMLReportPrinter(opts, collector));
+    }
+
+    /**
+     * @param interval seconds between the updates
+     * @param collector collector to merge the results into
+     * @param html printer to render the pages with
+     */
+    LiveReportPrinter(long interval, MergingCollector collector, HTMLReportPrinter html) {
+        this.collector = collector;
+        this.html = html;
+        this.dirty = new HashSet<>();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName(LiveReportPrinter.class.getName() + " thread");
+            t.setDaemon(true);
+            return t;
+        });
+
+        executor.scheduleWithFixedDelay(this::update, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void add(TestResult r) {
+        collector.add(r);
+        synchronized (this) {
+            dirty.add(r.getName());
+        }
+    }
+
+    void update() {
+        Set<String> names;
+        synchronized (this) {
+            if (dirty.isEmpty()) {
+                return;
+            }
+            names = dirty;
+            dirty = new HashSet<>();
+        }
+
+        try {
+            for (String name : names) {
+                html.emitTestReport(name, collector.mergedByConfig(name));
+            }
+            html.emitIndex();
+        } catch (FileNotFoundException | RuntimeException e) {
+            // Do not stop the updates, but make sure the final report
+            // renders all pages again.
+            failed = true;
+        }
+    }
+
+    /**
+     * Stops the background updates, and brings the pages up to date.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            // do nothing
+        }
+        update();
+    }
+
+    /**
+     * @return merged results received so far
+     */
+    public MergingCollector collector() {
+        return collector;
+    }
+
+    /**
+     * @return true, if per-test pages are up to date for all received results
+     */
+    public boolean pagesDone() {
+        return !failed;
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jcstress.TestExecutor;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.collectors.TestResultCollector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Serves the run progress for monitoring, in OpenMetrics text format, at "/metrics".
+ * The server is bound to the loopback address only.
+ *
+ * <p>Metrics follow the console status line: JVMs, CPUs, sampling rate, results, ETA;
+ * along with per-test progress and the time of the last result, to tell stalled runs.
+ */
+public class MetricsServer implements TestResultCollector {
+
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final HttpServer server;
+    private final int totalCpuCount;
+    private final long expectedResults;
+    private final long cachedResults;
+    private final Set<TestResult> cached;
+    private final SortedMap<String, long[]> perTest;
+    private final long[] byStatus;
+    private TestExecutor executor;
+
+    private final long startTime;
+    private long lastResultMillis;
+    private long sampleCount;
+    private long ranSampleCount;
+    private long results;
+    private long ranResults;
+    private long failed;
+
+    /**
+     * @param port port to listen on; 0 picks any free port
+     * @param totalCpuCount CPUs configured for the run
+     * @param plannedTests test names of the planned results, one per result, including the cached ones
+     * @param cached results reused from the result cache; these arrive at once, and are not
+     *               counted towards the sampling rate and ETA
+     * @throws IOException if server cannot start
+     */
+    public MetricsServer(int port, int totalCpuCount, Collection<String> plannedTests, Collection<TestResult> cached) throws IOException {
+        this.totalCpuCount = totalCpuCount;
+        this.expectedResults = plannedTests.size();
+        this.cachedResults = cached.size();
+        this.cached = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.cached.addAll(cached);
+        this.perTest = new TreeMap<>();
+        for (String test : plannedTests) {
+            // {planned, received}
+            perTest.computeIfAbsent(test, k -> new long[2])[0]++;
+        }
+        this.byStatus = new long[Status.values().length];
+        this.startTime = System.nanoTime();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    public void setExecutor(TestExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return address the server is listening on
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    @Override
+    public synchronized void add(TestResult r) {
+        sampleCount += r.getTotalCount();
+        results++;
+        if (!cached.remove(r)) {
+            ranSampleCount += r.getTotalCount();
+            ranResults++;
+        }
+        byStatus[r.status().ordinal()]++;
+        if (r.status() == Status.NORMAL && !r.grading().isPassed) {
+            failed++;
+        }
+        long[] counts = perTest.get(r.getName());
+        if (counts != null) {
+            counts[1]++;
+        }
+        lastResultMillis = System.currentTimeMillis();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    synchronized String render() {
+        StringBuilder sb = new StringBuilder();
+        double elapsedSec = (System.nanoTime() - startTime) / 1e9;
+
+        if (executor != null) {
+            family(sb, "jcstress_jvms", "gauge", "Forked JVMs, by state.");
+            sample(sb, "jcstress_jvms", "state", "starting", executor.getJVMsStarting());
+            sample(sb, "jcstress_jvms", "state", "running", executor.getJVMsRunning());
+            sample(sb, "jcstress_jvms", "state", "finishing", executor.getJVMsFinishing());
+        }
+
+        family(sb, "jcstress_cpus_configured", "gauge", "CPUs configured for the run.");
+        sample(sb, "jcstress_cpus_configured", totalCpuCount);
+        if (executor != null) {
+            family(sb, "jcstress_cpus_allocated", "gauge", "CPUs allocated to the forked JVMs.");
+            sample(sb, "jcstress_cpus_allocated", executor.getCpus());
+        }
+
+        family(sb, "jcstress_samples", "counter", "Samples received.");
+        sample(sb, "jcstress_samples_total", sampleCount);
+        family(sb, "jcstress_samples_per_second", "gauge", "Average sampling rate since the start of the run.");
+        sample(sb, "jcstress_samples_per_second", (elapsedSec > 0) ? ranSampleCount / elapsedSec : 0);
+
+        family(sb, "jcstress_results_planned", "gauge", "Results planned for the run.");
+        sample(sb, "jcstress_results_planned", expectedResults);
+        family(sb, "jcstress_results_cached", "gauge", "Planned results reused from the result cache.");
+        sample(sb, "jcstress_results_cached", cachedResults);
+        family(sb, "jcstress_results", "counter", "Results received, by status.");
+        for (Status s : Status.values()) {
+            sample(sb, "jcstress_results_total", "status", s.toString(), byStatus[s.ordinal()]);
+        }
+        family(sb, "jcstress_results_failed", "counter", "Results with normal status that failed the grading.");
+        sample(sb, "jcstress_results_failed_total", failed);
+
+        family(sb, "jcstress_elapsed_seconds", "gauge", "Time since the start of the run.");
+        sample(sb, "jcstress_elapsed_seconds", elapsedSec);
+        if (ranResults > 0) {
+            family(sb, "jcstress_eta_seconds", "gauge", "Estimated time until the run completes.");
+            sample(sb, "jcstress_eta_seconds", Math.max(0, elapsedSec * ((double) (expectedResults - cachedResults) / ranResults - 1)));
+        }
+        if (results > 0) {
+            family(sb, "jcstress_last_result_timestamp_seconds", "gauge", "Time the last result was received.");
+            sample(sb, "jcstress_last_result_timestamp_seconds", lastResultMillis / 1000.0);
+        }
+
+        family(sb, "jcstress_test_results_planned", "gauge", "Results planned, per test.");
+        for (Map.Entry<String, long[]> e : perTest.entrySet()) {
+            sample(sb, "jcstress_test_results_planned", "test", e.getKey(), e.getValue()[0]);
+        }
+        family(sb, "jcstress_test_results", "gauge", "Results received, per test.");
+        for (Map.Entry<String, long[]> e : perTest.entrySet()) {
+            sample(sb, "jcstress_test_results", "test", e.getKey(), e.getValue()[1]);
+        }
+
+        sb.append("# EOF\n");
+        return sb.toString();
+    }
+
+    private static void family(StringBuilder sb, String name, String type, String help) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, double value) {
+        sb.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String label, String labelValue, double value) {
+        sb.append(name).append('{').append(label).append("=\"");
+        for (char c : labelValue.toCharArray()) {
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '"':  sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                default:   sb.append(c);
+            }
+        }
+        sb.append("\"} ").append(format(value)).append('\n');
+    }
+
+    private static String format(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            return String.valueOf((long) v);
+        }
+        return String.format(Locale.ROOT, "%.3f", v);
+    }
+
+    public void close() {
+        server.stop(0);
+    }
+
+}
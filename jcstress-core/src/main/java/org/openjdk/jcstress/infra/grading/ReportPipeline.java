@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.openjdk.jcstress.Options;
+import org.openjdk.jcstress.infra.collectors.DiskReadCollector;
+import org.openjdk.jcstress.infra.collectors.MergingCollector;
+import org.openjdk.jcstress.infra.collectors.MuxCollector;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.collectors.TestResultCollector;
+import org.openjdk.jcstress.infra.jfr.Events;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the results and renders all reports from them.
+ *
+ * Results are merged once, and then text, HTML index, per-test HTML pages and
+ * exception reports are rendered concurrently from that merged model. Per-test
+ * results are read once and shared between HTML pages and exception report.
+ */
+public class ReportPipeline {
+
+    /**
+     * Number of tests to process in a single leaf task.
+     */
+    private static final int LEAF_TESTS = 4;
+
+    private final Options opts;
+    private final PrintStream out;
+    private final ForkJoinPool pool;
+
+    private long readNs;
+    private long mergeNs;
+    private long renderNs;
+    private long textNs;
+    private long indexNs;
+    private long testsNs;
+
+    public ReportPipeline(Options opts, PrintStream out) {
+        this(opts, out, ForkJoinPool.commonPool());
+    }
+
+    public ReportPipeline(Options opts, PrintStream out, ForkJoinPool pool) {
+        this.opts = opts;
+        this.out = out;
+        this.pool = pool;
+    }
+
+    public void work() throws Exception {
+        work(Collections.emptyList());
+    }
+
+    /**
+     * Reads the results and renders the reports.
+     *
+     * @param exporters additional collectors to feed the results to, as they are read
+     */
+    public void work(List<? extends TestResultCollector> exporters) throws Exception {
+        long start = System.nanoTime();
+
+        // Per-configuration results are re-read from the indexed files on demand
+        MergingCollector collector = new MergingCollector(false);
+
+        List<TestResultCollector> dsts = new ArrayList<>();
+        dsts.add(collector);
+        dsts.addAll(exporters);
+        TestResultCollector dst = MuxCollector.of(dsts.toArray(new TestResultCollector[0]));
+
+        try {
+            Events.Span readEvent = Events.reportPhase("read");
+            for (String resultFile : opts.getResultFiles()) {
+                DiskReadCollector drc = new DiskReadCollector(resultFile, dst);
+                drc.dump();
+                collector.addSource(drc);
+            }
+            readEvent.end();
+            readNs = System.nanoTime() - start;
+
+            report(collector, false, start);
+        } finally {
+            collector.close();
+        }
+    }
+
+    /**
+     * Renders the reports from the results that were already merged, e.g. during the run.
+     *
+     * @param collector merged results
+     * @param pagesDone true, if per-test pages are up to date and need not be rendered again
+     */
+    public void work(MergingCollector collector, boolean pagesDone) {
+        report(collector, pagesDone, System.nanoTime());
+    }
+
+    private void report(MergingCollector collector, boolean pagesDone, long start) {
+        List<String> failures = render(collector, pagesDone);
+        printTimes(System.nanoTime() - start);
+        ExceptionReportPrinter.check(failures);
+    }
+
+    private List<String> render(MergingCollector collector, boolean pagesDone) {
+        long mergeStart = System.nanoTime();
+
+        // Grade the merged results up front: all printers are reading them.
+        Events.Span mergeEvent = Events.reportPhase("merge");
+        List<TestResult> byName = collector.mergedByName();
+        pool.submit(() -> byName.parallelStream().forEach(TestResult::grading)).join();
+        mergeEvent.end();
+        mergeNs = System.nanoTime() - mergeStart;
+
+        long renderStart = System.nanoTime();
+
+        StringWriter textBuf = new StringWriter();
+        TextReportPrinter text = new TextReportPrinter(opts, collector, new PrintWriter(textBuf));
+        HTMLReportPrinter html = new HTMLReportPrinter(opts, collector);
+
+        List<String> names = new ArrayList<>(collector.names());
+        List<List<String>> failures = new ArrayList<>(names.size());
+        for (int c = 0; c < names.size(); c++) {
+            failures.add(null);
+        }
+
+        ForkJoinTask<?> textTask = pool.submit(() -> {
+            long s = System.nanoTime();
+            Events.Span event = Events.reportPhase("text");
+            text.work();
+            event.end();
+            textNs = System.nanoTime() - s;
+        });
+
+        ForkJoinTask<?> indexTask = pool.submit(() -> {
+            long s = System.nanoTime();
+            Events.Span event = Events.reportPhase("index");
+            html.emitIndex();
+            event.end();
+            indexNs = System.nanoTime() - s;
+            return null;
+        });
+
+        ForkJoinTask<?> testsTask = pool.submit(() -> {
+            long s = System.nanoTime();
+            Events.Span event = Events.reportPhase("tests");
+            new TestReports(collector, pagesDone ? null : html, names, failures, 0, names.size()).invoke();
+            event.end();
+            testsNs = System.nanoTime() - s;
+        });
+
+        textTask.join();
+        indexTask.join();
+        testsTask.join();
+        renderNs = System.nanoTime() - renderStart;
+
+        // Text report goes in one piece, so that it does not interleave with anything else.
+        out.print(textBuf);
+        out.println("  HTML report generated at " + html.indexFile().getAbsolutePath());
+
+        List<String> result = new ArrayList<>();
+        for (List<String> fs : failures) {
+            result.addAll(fs);
+        }
+        return result;
+    }
+
+    private void printTimes(long totalNs) {
+        out.printf("  Report times: read %s, merge %s, render %s (text %s, index %s, tests %s), total %s%n",
+                ms(readNs), ms(mergeNs), ms(renderNs), ms(textNs), ms(indexNs), ms(testsNs), ms(totalNs));
+        out.println();
+    }
+
+    private static String ms(long ns) {
+        return TimeUnit.NANOSECONDS.toMillis(ns) + " ms";
+    }
+
+    /**
+     * Renders per-test HTML pages and collects the exceptions for the
+     * range of tests. Each test is read once for both. Pages are not
+     * rendered when HTML printer is not set.
+     */
+    private static class TestReports extends RecursiveAction {
+        private final MergingCollector collector;
+        private final HTMLReportPrinter html;
+        private final List<String> names;
+        private final List<List<String>> failures;
+        private final int from;
+        private final int to;
+
+        TestReports(MergingCollector collector, HTMLReportPrinter html, List<String> names, List<List<String>> failures, int from, int to) {
+            this.collector = collector;
+            this.html = html;
+            this.names = names;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_TESTS) {
+                for (int i = from; i < to; i++) {
+                    String name = names.get(i);
+                    List<TestResult> results = collector.mergedByConfig(name);
+                    if (html != null) {
+                        html.emitTestReport(name, results);
+                    }
+                    failures.set(i, ExceptionReportPrinter.failures(results));
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TestReports(collector, html, names, failures, from, mid),
+                          new TestReports(collector, html, names, failures, mid, to));
+            }
+        }
+    }
+
+}
@@ -26,9 +26,11 @@ package org.openjdk.jcstress.infra.grading;
 
 import org.openjdk.jcstress.annotations.Expect;
 import org.openjdk.jcstress.infra.StateCase;
-import org.openjdk.jcstress.infra.Status;
 import org.openjdk.jcstress.infra.TestInfo;
+import org.openjdk.jcstress.infra.collectors.OutputLog;
+import org.openjdk.jcstress.infra.collectors.ResultMerger;
 import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.ConfigKey;
 import org.openjdk.jcstress.infra.runners.TestConfig;
 import org.openjdk.jcstress.infra.runners.TestList;
 import org.openjdk.jcstress.os.SchedulingClass;
@@ -38,19 +40,20 @@ import org.openjdk.jcstress.vm.CompileMode;
 
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class ReportUtils {
 
     public static List<TestResult> mergedByConfig(Collection<TestResult> src) {
-        Multimap<TestConfig, TestResult> multiResults = new HashMultimap<>();
+        Multimap<ConfigKey, TestResult> multiResults = new HashMultimap<>();
         for (TestResult r : src) {
-            multiResults.put(r.getConfig(), r);
+            multiResults.put(r.getConfig().key(), r);
         }
 
         List<TestResult> results = new ArrayList<>();
-        for (TestConfig config : multiResults.keys()) {
-            Collection<TestResult> mergeable = multiResults.get(config);
-            TestResult root = merged(config, mergeable);
+        for (ConfigKey key : multiResults.keys()) {
+            Collection<TestResult> mergeable = multiResults.get(key);
+            TestResult root = ResultMerger.merge(mergeable.iterator().next().getConfig(), mergeable);
             results.add(root);
         }
 
@@ -66,7 +69,7 @@ public class ReportUtils {
         List<TestResult> results = new ArrayList<>();
         for (String name : multiResults.keys()) {
             Collection<TestResult> mergeable = multiResults.get(name);
-            TestResult root = merged(mergeable.iterator().next().getConfig(), mergeable);
+            TestResult root = ResultMerger.merge(mergeable.iterator().next().getConfig(), mergeable);
             results.add(root);
         }
 
@@ -81,33 +84,38 @@ public class ReportUtils {
         return result;
     }
 
-    private static TestResult merged(TestConfig config, Collection<TestResult> mergeable) {
-        Counter<String> counter = new Counter<>();
-
-        List<String> messages = new ArrayList<>();
-        List<String> vmOuts = new ArrayList<>();
-        List<String> vmErrs = new ArrayList<>();
-
-        Status status = Status.NORMAL;
-        Environment env = null;
-        for (TestResult r : mergeable) {
-            env = r.getEnv();
-            status = status.combine(r.status());
-            counter.merge(r.getCounter());
-            messages.addAll(r.getMessages());
-            vmOuts.addAll(r.getVmOut());
-            vmErrs.addAll(r.getVmErr());
+    /**
+     * @param merged results, merged by name
+     * @param count max number of results to return
+     * @return results that took the most fork wall time, the most expensive first
+     */
+    public static List<TestResult> mostExpensive(Collection<TestResult> merged, int count) {
+        List<TestResult> results = new ArrayList<>();
+        for (TestResult r : merged) {
+            if (r.getUsage().forks() > 0) {
+                results.add(r);
+            }
         }
+        results.sort(Comparator.comparingLong((TestResult r) -> r.getUsage().wallMs()).reversed()
+                .thenComparing(TestResult::getName));
+        return results.subList(0, Math.min(count, results.size()));
+    }
 
-        TestResult root = new TestResult(status);
-        root.setConfig(config);
-        root.setEnv(env);
-        root.addState(counter);
-        root.addMessages(messages);
-        root.addVMOuts(vmOuts);
-        root.addVMErrs(vmErrs);
+    public static String formatMs(long ms) {
+        return String.format("%.1fs", ms / 1000.0);
+    }
+
+    public static String formatRate(double perSecond) {
+        return String.format("%.2f M/s", perSecond / 1_000_000);
+    }
 
-        return root;
+    public static String formatShare(long ns, long totalNs) {
+        double share = (totalNs > 0) ? 100.0 * ns / totalNs : 0;
+        return String.format("%d ms (%.0f%%)", TimeUnit.NANOSECONDS.toMillis(ns), share);
+    }
+
+    public static String formatKb(long kb) {
+        return (kb > 0) ? (kb / 1024) + "M" : "n/a";
     }
 
     public static void printResult(PrintWriter pw, TestResult r, boolean finalResults) {
@@ -185,44 +193,41 @@ public class ReportUtils {
             pw.println();
         }
 
-        boolean errMsgsPrinted = false;
-        for (String data : r.getMessages()) {
-            if (skipMessage(data)) continue;
-            if (!errMsgsPrinted) {
-                pw.println("  Messages:");
-                errMsgsPrinted = true;
-            }
-            pw.println("    " + data);
-        }
-        if (errMsgsPrinted) {
-            pw.println();
-        }
+        printLog(pw, "Messages", r.getMessageLog());
+        printLog(pw, "VM output stream", r.getVmOutLog());
+        printLog(pw, "VM error stream", r.getVmErrLog());
+    }
 
-        boolean vmOutPrinted = false;
-        for (String data : r.getVmOut()) {
-            if (skipMessage(data)) continue;
-            if (!vmOutPrinted) {
-                pw.println("  VM output stream:");
-                vmOutPrinted = true;
+    private static void printLog(PrintWriter pw, String header, OutputLog log) {
+        boolean printed = false;
+        int lastCount = 1;
+        for (Map.Entry<OutputLog.Block, Integer> e : log.blocks().entrySet()) {
+            int count = e.getValue();
+            boolean blockPrinted = false;
+            for (String data : e.getKey().lines()) {
+                if (skipMessage(data)) continue;
+                if (!printed) {
+                    pw.println("  " + header + ":");
+                    printed = true;
+                }
+                // Adjacent blocks with the same count share the label
+                if (!blockPrinted && count > 1 && count != lastCount) {
+                    pw.println("    " + repeatedLabel(count));
+                }
+                if (!blockPrinted) {
+                    lastCount = count;
+                }
+                blockPrinted = true;
+                pw.println("    " + data);
             }
-            pw.println("    " + data);
         }
-        if (vmOutPrinted) {
+        if (printed) {
             pw.println();
         }
+    }
 
-        boolean vmErrPrinted = false;
-        for (String data : r.getVmErr()) {
-            if (skipMessage(data)) continue;
-            if (!vmErrPrinted) {
-                pw.println("  VM error stream:");
-                vmErrPrinted = true;
-            }
-            pw.println("    " + data);
-        }
-        if (vmErrPrinted) {
-            pw.println();
-        }
+    public static String repeatedLabel(int count) {
+        return "[" + count + " times]";
     }
 
     public static boolean skipMessage(String data) {
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.openjdk.jcstress.infra.collectors.DiskReadCollector;
+import org.openjdk.jcstress.infra.collectors.InProcessCollector;
+import org.openjdk.jcstress.infra.collectors.ResultMerger;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.infra.runners.TestList;
+import org.openjdk.jcstress.util.StringUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Compares the results of two runs.
+ *
+ * Results are aligned by configuration label (see {@link ResultStore#configLabel}),
+ * so that runs with different time, iteration, stride, or spin loop settings are still
+ * comparable. Tests are compared one by one: with the indexed result files, only one test
+ * from each file is in memory at any time. Reports the configurations that appeared or
+ * disappeared, status and grading changes, newly observed and disappeared states, and
+ * statistically significant shifts in state frequencies.
+ */
+public class ResultDiff {
+
+    /**
+     * Two-sided significance level for frequency shifts, p < 0.001.
+     */
+    static final double Z_CRITICAL = 3.29;
+
+    /**
+     * Minimal absolute frequency change to report, so that huge sample
+     * counts do not flag negligible changes.
+     */
+    static final double MIN_FREQ_DELTA = 0.001;
+
+    private final String fileA;
+    private final String fileB;
+    private final PrintStream out;
+
+    private int compared;
+    private int changed;
+    private int onlyA;
+    private int onlyB;
+
+    public ResultDiff(String fileA, String fileB, PrintStream out) {
+        this.fileA = fileA;
+        this.fileB = fileB;
+        this.out = out;
+    }
+
+    /**
+     * @return true, if any differences were found
+     */
+    public boolean work() throws IOException {
+        out.println("DIFF: " + fileA + " -> " + fileB);
+        out.println();
+
+        try (Side a = new Side(fileA);
+             Side b = new Side(fileB)) {
+            SortedSet<String> names = new TreeSet<>();
+            names.addAll(a.names());
+            names.addAll(b.names());
+
+            for (String name : names) {
+                diffTest(name, a.byConfig(name), b.byConfig(name));
+            }
+        }
+
+        out.printf("  %d configurations compared, %d changed, %d only in %s, %d only in %s%n",
+                compared, changed, onlyA, fileA, onlyB, fileB);
+        out.println();
+        return changed > 0 || onlyA > 0 || onlyB > 0;
+    }
+
+    private void diffTest(String name, SortedMap<String, TestResult> as, SortedMap<String, TestResult> bs) {
+        SortedSet<String> keys = new TreeSet<>();
+        keys.addAll(as.keySet());
+        keys.addAll(bs.keySet());
+
+        List<String> lines = new ArrayList<>();
+        for (String key : keys) {
+            TestResult ra = as.get(key);
+            TestResult rb = bs.get(key);
+
+            List<String> diffs = new ArrayList<>();
+            if (ra == null) {
+                onlyB++;
+                diffs.add("only in " + fileB);
+            } else if (rb == null) {
+                onlyA++;
+                diffs.add("only in " + fileA);
+            } else {
+                compared++;
+                diffs.addAll(diff(ra, rb));
+                if (!diffs.isEmpty()) {
+                    changed++;
+                }
+            }
+
+            if (!diffs.isEmpty()) {
+                lines.add("    " + key);
+                for (String d : diffs) {
+                    lines.add("      " + d);
+                }
+            }
+        }
+
+        if (!lines.isEmpty()) {
+            out.println("  " + name);
+            for (String l : lines) {
+                out.println(l);
+            }
+            out.println();
+        }
+    }
+
+    static List<String> diff(TestResult a, TestResult b) {
+        return diff(a, b, gradedLabel(a), gradedLabel(b));
+    }
+
+    /**
+     * @param r result
+     * @return graded label, as in reports; null if the test description is not available
+     */
+    static String gradedLabel(TestResult r) {
+        return TestList.hasInfo(r.getName()) ? ReportUtils.statusToLabel(r) : null;
+    }
+
+    static List<String> diff(TestResult a, TestResult b, String labelA, String labelB) {
+        List<String> diffs = new ArrayList<>();
+
+        if (a.status() != b.status()) {
+            diffs.add("status: " + a.status() + " -> " + b.status());
+        }
+        if (labelA != null && labelB != null && !labelA.equals(labelB)) {
+            diffs.add("result: " + labelA + " -> " + labelB);
+        }
+
+        long totalA = a.getTotalCount();
+        long totalB = b.getTotalCount();
+
+        SortedSet<String> states = new TreeSet<>();
+        states.addAll(a.getStateKeys());
+        states.addAll(b.getStateKeys());
+
+        for (String s : states) {
+            long ca = a.getCount(s);
+            long cb = b.getCount(s);
+            if (ca == 0 && cb > 0) {
+                diffs.add("new state \"" + s + "\": " + cb + " of " + totalB + " (" + StringUtils.percent(cb, totalB, 4) + ")");
+            } else if (ca > 0 && cb == 0) {
+                diffs.add("disappeared state \"" + s + "\": was " + ca + " of " + totalA + " (" + StringUtils.percent(ca, totalA, 4) + ")");
+            } else if (ca > 0 && isSignificantShift(ca, totalA, cb, totalB)) {
+                diffs.add(String.format("shifted state \"%s\": %s -> %s (z = %.1f)", s,
+                        StringUtils.percent(ca, totalA, 4), StringUtils.percent(cb, totalB, 4),
+                        zScore(ca, totalA, cb, totalB)));
+            }
+        }
+        return diffs;
+    }
+
+    static boolean isSignificantShift(long ca, long na, long cb, long nb) {
+        if (na == 0 || nb == 0) {
+            return false;
+        }
+        double delta = Math.abs((double) ca / na - (double) cb / nb);
+        return delta >= MIN_FREQ_DELTA && Math.abs(zScore(ca, na, cb, nb)) >= Z_CRITICAL;
+    }
+
+    /**
+     * Two-proportion z-test statistic, with the pooled variance.
+     */
+    static double zScore(long ca, long na, long cb, long nb) {
+        double pa = (double) ca / na;
+        double pb = (double) cb / nb;
+        double p = (double) (ca + cb) / (na + nb);
+        double se = Math.sqrt(p * (1 - p) * (1.0 / na + 1.0 / nb));
+        if (se == 0) {
+            return 0;
+        }
+        return (pb - pa) / se;
+    }
+
+    /**
+     * Results from one file, read test by test.
+     */
+    private static class Side implements AutoCloseable {
+        private final DiskReadCollector reader;
+
+        Side(String file) throws IOException {
+            reader = new DiskReadCollector(file, r -> {});
+        }
+
+        Set<String> names() {
+            return reader.testNames();
+        }
+
+        SortedMap<String, TestResult> byConfig(String name) throws IOException {
+            InProcessCollector detail = new InProcessCollector();
+            reader.dump(Collections.singleton(name), detail);
+            Collection<TestResult> results = detail.getTestResults();
+
+            Map<String, List<TestResult>> byLabel = new HashMap<>();
+            for (TestResult r : results) {
+                byLabel.computeIfAbsent(ResultStore.configLabel(r.getConfig()), k -> new ArrayList<>()).add(r);
+            }
+
+            SortedMap<String, TestResult> map = new TreeMap<>();
+            for (Map.Entry<String, List<TestResult>> e : byLabel.entrySet()) {
+                TestConfig cfg = e.getValue().get(0).getConfig().withoutStressSeeds();
+                map.put(e.getKey(), ResultMerger.merge(cfg, e.getValue()));
+            }
+            return map;
+        }
+
+        @Override
+        public void close() {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+}
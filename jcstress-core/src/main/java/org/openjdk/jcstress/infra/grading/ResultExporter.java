@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.collectors.TestResultCollector;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.infra.runners.TestList;
+import org.openjdk.jcstress.vm.CompileMode;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams the test results in machine-readable form.
+ *
+ * Every result produces one record per observed state, or a single record
+ * without the state if the result has no states, e.g. on errors. Records carry
+ * both the VM status, and the graded result of their configuration. Records are
+ * written as results arrive, nothing is accumulated in memory.
+ */
+public abstract class ResultExporter implements TestResultCollector {
+
+    protected final PrintWriter pw;
+
+    protected ResultExporter(Writer w) {
+        this.pw = new PrintWriter(new BufferedWriter(w, 64 * 1024));
+    }
+
+    /**
+     * @param fileName file name, format is selected by extension: ".jsonl", or ".csv"
+     * @return exporter, writing in UTF-8
+     * @throws IOException if file cannot be opened
+     * @throws IllegalArgumentException if format is not supported
+     */
+    public static ResultExporter forFile(String fileName) throws IOException {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".jsonl")) {
+            return new JsonLinesExporter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8));
+        }
+        if (lower.endsWith(".csv")) {
+            return new CsvExporter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8));
+        }
+        throw new IllegalArgumentException("Unsupported export format: " + fileName + ", use .jsonl or .csv");
+    }
+
+    public static boolean isSupported(String fileName) {
+        // Records are streamed as JSON Lines, which is not a valid ".json" file
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jsonl") || lower.endsWith(".csv");
+    }
+
+    @Override
+    public synchronized void add(TestResult r) {
+        TestConfig cfg = r.getConfig();
+        String compileMode = CompileMode.label(cfg.compileMode, cfg.threads);
+        String scl = cfg.shClass.toString();
+
+        // Grading needs the test description, which is not available
+        // when the results come from the other build.
+        TestGrading grading = TestList.hasInfo(r.getName()) ? r.grading() : null;
+
+        String result = gradedResult(r, grading);
+
+        if (r.getStateKeys().isEmpty()) {
+            writeRecord(r, result, compileMode, scl, null, 0, null, null);
+        }
+        for (String state : r.getStateKeys()) {
+            GradingResult gr = (grading != null) ? grading.gradingResults.get(state) : null;
+            writeRecord(r, result, compileMode, scl, state, r.getCount(state),
+                    (gr != null) ? gr.expect : null,
+                    (gr != null) ? gr.description : null);
+        }
+    }
+
+    /**
+     * @param r result
+     * @param grading grading for the result, null if not available
+     * @return graded result: PASSED, INTERESTING, FAILED, or SKIPPED; null if the result cannot be graded
+     */
+    static String gradedResult(TestResult r, TestGrading grading) {
+        switch (r.status()) {
+            case NORMAL:
+                if (grading == null) {
+                    return null;
+                }
+                if (!grading.isPassed) {
+                    return "FAILED";
+                }
+                return grading.hasInteresting ? "INTERESTING" : "PASSED";
+            case API_MISMATCH:
+                return "SKIPPED";
+            default:
+                return "FAILED";
+        }
+    }
+
+    protected abstract void writeRecord(TestResult r, String result, String compileMode, String scl,
+                                        String state, long count, Expect expect, String description);
+
+    public synchronized void close() {
+        pw.close();
+    }
+
+    /**
+     * Exports results as JSON Lines: one JSON object per line.
+     */
+    public static class JsonLinesExporter extends ResultExporter {
+        public JsonLinesExporter(Writer w) {
+            super(w);
+        }
+
+        @Override
+        protected void writeRecord(TestResult r, String result, String compileMode, String scl,
+                                   String state, long count, Expect expect, String description) {
+            TestConfig cfg = r.getConfig();
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"test\":").append(quote(r.getName()));
+            sb.append(",\"fork\":").append(cfg.forkId);
+            sb.append(",\"status\":").append(quote(r.status().name()));
+            sb.append(",\"result\":").append(quote(result));
+            sb.append(",\"compileMode\":").append(quote(compileMode));
+            sb.append(",\"schedulingClass\":").append(quote(scl));
+            sb.append(",\"jvmArgs\":[");
+            List<String> args = cfg.jvmArgs;
+            for (int c = 0; c < args.size(); c++) {
+                if (c != 0) sb.append(",");
+                sb.append(quote(args.get(c)));
+            }
+            sb.append("]");
+            sb.append(",\"state\":").append(quote(state));
+            sb.append(",\"count\":").append(count);
+            sb.append(",\"expect\":").append(quote((expect != null) ? expect.name() : null));
+            sb.append(",\"description\":").append(quote(description));
+            sb.append("}");
+            pw.println(sb);
+        }
+
+        static String quote(String s) {
+            if (s == null) {
+                return "null";
+            }
+            StringBuilder sb = new StringBuilder(s.length() + 2);
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                switch (ch) {
+                    case '"':  sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (ch < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) ch));
+                        } else {
+                            sb.append(ch);
+                        }
+                }
+            }
+            sb.append('"');
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Exports results as CSV, with the header line.
+     */
+    public static class CsvExporter extends ResultExporter {
+        public CsvExporter(Writer w) {
+            super(w);
+            pw.println("test,fork,status,result,compileMode,schedulingClass,jvmArgs,state,count,expect,description");
+        }
+
+        @Override
+        protected void writeRecord(TestResult r, String result, String compileMode, String scl,
+                                   String state, long count, Expect expect, String description) {
+            TestConfig cfg = r.getConfig();
+            pw.print(quote(r.getName()));
+            pw.print(',');
+            pw.print(cfg.forkId);
+            pw.print(',');
+            pw.print(r.status().name());
+            pw.print(',');
+            pw.print(quote(result));
+            pw.print(',');
+            pw.print(quote(compileMode));
+            pw.print(',');
+            pw.print(quote(scl));
+            pw.print(',');
+            pw.print(quote(String.join(" ", cfg.jvmArgs)));
+            pw.print(',');
+            pw.print(quote(state));
+            pw.print(',');
+            pw.print(count);
+            pw.print(',');
+            pw.print((expect != null) ? expect.name() : "");
+            pw.print(',');
+            pw.print(quote(description));
+            pw.println();
+        }
+
+        static String quote(String s) {
+            if (s == null) {
+                return "";
+            }
+            if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+                return s;
+            }
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+    }
+
+}
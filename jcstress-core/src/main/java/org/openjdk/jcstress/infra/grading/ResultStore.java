@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.DiskReadCollector;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.util.Environment;
+import org.openjdk.jcstress.vm.CompileMode;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only local store for the results of many runs.
+ *
+ * <p>Every ingested result file becomes a run, and every test configuration
+ * in it becomes an entry with the status, fork and sample counts, and the
+ * observed states. Entries go to the data file, and the small index file
+ * points to them by run, test and configuration. Runs carry the timestamp and
+ * the JVM version, so queries select the entries from the index first, and
+ * only then read the matching entries from the data file.
+ *
+ * <pre>
+ * data  := entry*
+ * entry := STATUS FORKS SAMPLES MILLIS NOMINAL_MILLIS STATE_COUNT (STATE COUNT)*
+ * index := run*
+ * run   := RUN_ID TIMESTAMP JVM SOURCE ENTRY_COUNT (OFFSET TEST CONFIG)*
+ * </pre>
+ *
+ * Both files are only appended to, with the data written before the index. The
+ * entries not yet in the index are invisible, and the run torn at the end of the
+ * index is ignored, and dropped on the next ingest.
+ */
+public class ResultStore {
+
+    static final String DATA_FILE = "results.dat";
+    static final String INDEX_FILE = "results.idx";
+
+    private static final Pattern RESULT_FILE_TIMESTAMP = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}-\\d{2}-\\d{2}-\\d{2})");
+
+    private final File dir;
+    private final File dataFile;
+    private final File indexFile;
+
+    private final List<Run> runs;
+    private final List<IndexEntry> index;
+    private long validIndexLength;
+
+    public ResultStore(File dir) throws IOException {
+        this.dir = dir;
+        this.dataFile = new File(dir, DATA_FILE);
+        this.indexFile = new File(dir, INDEX_FILE);
+        this.runs = new ArrayList<>();
+        this.index = new ArrayList<>();
+        readIndex();
+    }
+
+    /**
+     * @return all runs in the store, in the ingestion order
+     */
+    public List<Run> runs() {
+        return Collections.unmodifiableList(runs);
+    }
+
+    /**
+     * Ingests the result file as the new run. The file that is already in the store
+     * is not ingested again.
+     *
+     * @param resultFile result file
+     * @return true, if file was ingested; false, if it is already in the store
+     * @throws IOException if files cannot be read or written
+     */
+    public synchronized boolean ingest(String resultFile) throws IOException {
+        File file = new File(resultFile);
+        String source = digest(file);
+
+        // Aggregate forks by configuration first: stores are
+        // much smaller than the result files this way.
+        SortedMap<String, SortedMap<String, Entry>> tests = new TreeMap<>();
+        String[] jvm = new String[1];
+        DiskReadCollector drc = new DiskReadCollector(resultFile, r -> {
+            if (jvm[0] == null) {
+                jvm[0] = jvmVersion(r.getEnv());
+            }
+            String config = configLabel(r.getConfig());
+            tests.computeIfAbsent(r.getName(), k -> new TreeMap<>())
+                 .computeIfAbsent(config, k -> new Entry(null, r.getName(), k))
+                 .add(r);
+        });
+        drc.dump();
+        drc.close();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        try (FileOutputStream lockStream = new FileOutputStream(indexFile, true)) {
+            FileLock lock = lockStream.getChannel().lock();
+            try {
+                // Other processes might have ingested something meanwhile
+                readIndex();
+                for (Run run : runs) {
+                    if (run.source().equals(source)) {
+                        return false;
+                    }
+                }
+
+                Run run = new Run(runs.size(), timestamp(file), (jvm[0] != null) ? jvm[0] : "unknown", source);
+
+                List<IndexEntry> added = new ArrayList<>();
+                try (FileOutputStream fos = new FileOutputStream(dataFile, true)) {
+                    long offset = fos.getChannel().position();
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    DataOutputStream dos = new DataOutputStream(bos);
+                    for (SortedMap<String, Entry> configs : tests.values()) {
+                        for (Entry e : configs.values()) {
+                            added.add(new IndexEntry(run, offset + bos.size(), e.test(), e.config()));
+                            e.write(dos);
+                        }
+                    }
+                    dos.flush();
+                    bos.writeTo(fos);
+                }
+
+                FileChannel ch = lockStream.getChannel();
+                ch.truncate(validIndexLength);
+                ch.position(validIndexLength);
+                DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(lockStream));
+                dos.writeInt(run.id());
+                dos.writeLong(run.timestamp());
+                dos.writeUTF(run.jvm());
+                dos.writeUTF(run.source());
+                dos.writeInt(added.size());
+                for (IndexEntry ie : added) {
+                    dos.writeLong(ie.offset);
+                    dos.writeUTF(ie.test);
+                    dos.writeUTF(ie.config);
+                }
+                dos.flush();
+
+                runs.add(run);
+                index.addAll(added);
+                validIndexLength = ch.position();
+            } finally {
+                lock.release();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the entries for the matching tests, runs and JVMs.
+     *
+     * @param tests test name filter
+     * @param jvms JVM version filter
+     * @param since the earliest run timestamp, in ms since epoch
+     * @return matching entries, ordered by test, configuration and run timestamp
+     * @throws IOException if data file cannot be read
+     */
+    public List<Entry> entries(Pattern tests, Pattern jvms, long since) throws IOException {
+        List<IndexEntry> selected = new ArrayList<>();
+        for (IndexEntry ie : index) {
+            if (ie.run.timestamp() >= since &&
+                    tests.matcher(ie.test).find() &&
+                    jvms.matcher(ie.run.jvm()).find()) {
+                selected.add(ie);
+            }
+        }
+
+        selected.sort(Comparator.comparing((IndexEntry ie) -> ie.test)
+                .thenComparing(ie -> ie.config)
+                .thenComparingLong(ie -> ie.run.timestamp())
+                .thenComparingInt(ie -> ie.run.id()));
+
+        List<Entry> result = new ArrayList<>();
+        if (selected.isEmpty()) {
+            return result;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile, "r")) {
+            for (IndexEntry ie : selected) {
+                raf.seek(ie.offset);
+                Entry e = new Entry(ie.run, ie.test, ie.config);
+                e.read(raf);
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    private void readIndex() throws IOException {
+        runs.clear();
+        index.clear();
+        validIndexLength = 0;
+        if (!indexFile.exists()) {
+            return;
+        }
+
+        byte[] bytes = Files.readAllBytes(indexFile.toPath());
+        ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+        DataInputStream dis = new DataInputStream(bis);
+        while (bis.available() > 0) {
+            try {
+                int id = dis.readInt();
+                long timestamp = dis.readLong();
+                String jvm = dis.readUTF();
+                String source = dis.readUTF();
+                if (id != runs.size()) {
+                    throw new IOException("Corrupted index, unexpected run: " + id);
+                }
+                Run run = new Run(id, timestamp, jvm, source);
+
+                int count = dis.readInt();
+                List<IndexEntry> entries = new ArrayList<>(count);
+                for (int c = 0; c < count; c++) {
+                    long offset = dis.readLong();
+                    String test = dis.readUTF();
+                    String config = dis.readUTF();
+                    entries.add(new IndexEntry(run, offset, test, config));
+                }
+
+                runs.add(run);
+                index.addAll(entries);
+                validIndexLength = bytes.length - bis.available();
+            } catch (EOFException e) {
+                // Torn run at the end, the ingest was interrupted
+                break;
+            }
+        }
+    }
+
+    /**
+     * Labels the configuration for matching it across runs: stress seeds, time and
+     * iterations are not included.
+     *
+     * @param cfg configuration
+     * @return label
+     */
+    public static String configLabel(TestConfig cfg) {
+        TestConfig c = cfg.withoutStressSeeds();
+        return CompileMode.label(c.compileMode, c.threads) + ", " + c.shClass + ", " + c.jvmArgs;
+    }
+
+    static String jvmVersion(Environment env) {
+        if (env == null) {
+            return null;
+        }
+        Map<String, String> entries = env.entries();
+        String v = entries.get("java.vm.version");
+        return (v != null) ? v : entries.get("java.version");
+    }
+
+    /**
+     * Identifies the result file by its contents, so that renamed or copied files are
+     * recognized, and different files with the same name and length are not confused.
+     *
+     * @param file result file
+     * @return content digest
+     * @throws IOException if file cannot be read
+     */
+    static String digest(File file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buf = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buf)) >= 0) {
+                md.update(buf, 0, read);
+            }
+        }
+        StringBuilder sb = new StringBuilder("sha256:");
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    static long timestamp(File file) {
+        Matcher m = RESULT_FILE_TIMESTAMP.matcher(file.getName());
+        if (m.find()) {
+            try {
+                return new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss", Locale.ROOT).parse(m.group(1)).getTime();
+            } catch (ParseException e) {
+                // fall through
+            }
+        }
+        return file.lastModified();
+    }
+
+    public static class Run {
+        private final int id;
+        private final long timestamp;
+        private final String jvm;
+        private final String source;
+
+        Run(int id, long timestamp, String jvm, String source) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.jvm = jvm;
+            this.source = source;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        public long timestamp() {
+            return timestamp;
+        }
+
+        public String jvm() {
+            return jvm;
+        }
+
+        /**
+         * @return content digest of the ingested result file
+         */
+        public String source() {
+            return source;
+        }
+    }
+
+    /**
+     * Summary of one test configuration in one run.
+     */
+    public static class Entry {
+        private final Run run;
+        private final String test;
+        private final String config;
+        private Status status;
+        private int forks;
+        private long samples;
+        private long millis;
+        private long nominalMillis;
+        private final SortedMap<String, Long> states;
+
+        Entry(Run run, String test, String config) {
+            this.run = run;
+            this.test = test;
+            this.config = config;
+            this.status = Status.NORMAL;
+            this.states = new TreeMap<>();
+        }
+
+        void add(TestResult r) {
+            status = status.combine(r.status());
+            forks++;
+            samples += r.getTotalCount();
+            TestConfig cfg = r.getConfig();
+            long nominal = (long) cfg.time * cfg.iters;
+            long wallNs = r.getTelemetry().wallNs();
+            if (wallNs > 0) {
+                // Measured in the fork, rounded up to keep short runs from zero time
+                millis += (wallNs + 999_999) / 1_000_000;
+            } else {
+                millis += nominal;
+            }
+            nominalMillis += nominal;
+            for (String s : r.getStateKeys()) {
+                states.merge(s, r.getCount(s), Long::sum);
+            }
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            dos.writeUTF(status.name());
+            dos.writeInt(forks);
+            dos.writeLong(samples);
+            dos.writeLong(millis);
+            dos.writeLong(nominalMillis);
+            dos.writeInt(states.size());
+            for (Map.Entry<String, Long> e : states.entrySet()) {
+                dos.writeUTF(e.getKey());
+                dos.writeLong(e.getValue());
+            }
+        }
+
+        void read(DataInput di) throws IOException {
+            status = Status.valueOf(di.readUTF());
+            forks = di.readInt();
+            samples = di.readLong();
+            millis = di.readLong();
+            nominalMillis = di.readLong();
+            int count = di.readInt();
+            for (int c = 0; c < count; c++) {
+                states.put(di.readUTF(), di.readLong());
+            }
+        }
+
+        public Run run() {
+            return run;
+        }
+
+        public String test() {
+            return test;
+        }
+
+        public String config() {
+            return config;
+        }
+
+        public Status status() {
+            return status;
+        }
+
+        public int forks() {
+            return forks;
+        }
+
+        public long samples() {
+            return samples;
+        }
+
+        /**
+         * @return time the iterations took in all forks, in milliseconds; measured in the forks,
+         *         or nominal for the results without sampling telemetry
+         */
+        public long millis() {
+            return millis;
+        }
+
+        /**
+         * @return time the iterations were configured to take in all forks, in milliseconds
+         */
+        public long nominalMillis() {
+            return nominalMillis;
+        }
+
+        /**
+         * @return samples per second of the time measured in the forks; for the results
+         *         without sampling telemetry, of the nominal test time
+         */
+        public double samplesPerSec() {
+            return (millis == 0) ? 0 : 1000.0 * samples / millis;
+        }
+
+        public SortedMap<String, Long> states() {
+            return Collections.unmodifiableSortedMap(states);
+        }
+    }
+
+    private static class IndexEntry {
+        private final Run run;
+        private final long offset;
+        private final String test;
+        private final String config;
+
+        IndexEntry(Run run, long offset, String test, String config) {
+            this.run = run;
+            this.offset = offset;
+            this.test = test;
+            this.config = config;
+        }
+    }
+
+}
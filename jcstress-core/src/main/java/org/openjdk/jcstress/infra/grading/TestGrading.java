@@ -25,6 +25,7 @@
 package org.openjdk.jcstress.infra.grading;
 
 import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.infra.CaseMatcher;
 import org.openjdk.jcstress.infra.StateCase;
 import org.openjdk.jcstress.infra.TestInfo;
 import org.openjdk.jcstress.infra.collectors.TestResult;
@@ -54,37 +55,16 @@ public class TestGrading {
         isPassed = true;
         hasInteresting = false;
 
-        List<StateCase> unmatchedStates = new ArrayList<>();
+        CaseMatcher matcher = test.matcher();
+
+        // Cases are compared by identity
+        Set<StateCase> unmatchedStates = new LinkedHashSet<>();
         unmatchedStates.addAll(test.cases());
 
         for (String s : r.getStateKeys()) {
-
-            // Figure out all matching cases, look for the exact match first:
-            StateCase matched = null;
-            for (StateCase c : test.cases()) {
-                if (c.matchesExactly(s)) {
-                    matched = c;
-                    break;
-                }
-            }
-
-            // Look for pattern match next:
-            if (matched == null) {
-                for (StateCase c : test.cases()) {
-                    if (c.matches(s)) {
-                        matched = c;
-                        break;
-                    }
-                }
-            }
-
-            if (matched != null) {
-                // Has the match:
-                unmatchedStates.remove(matched);
-            } else {
-                // Otherwise, map to unmatched:
-                matched = test.unmatched();
-            }
+            // Exact match first, then pattern match, otherwise map to unmatched
+            StateCase matched = matcher.match(s);
+            unmatchedStates.remove(matched);
 
             long count = r.getCount(s);
             Expect ex = matched.expect();
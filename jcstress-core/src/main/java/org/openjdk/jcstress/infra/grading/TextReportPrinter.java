@@ -28,10 +28,13 @@ package org.openjdk.jcstress.infra.grading;
 import org.openjdk.jcstress.Options;
 import org.openjdk.jcstress.Verbosity;
 import org.openjdk.jcstress.infra.Status;
-import org.openjdk.jcstress.infra.collectors.InProcessCollector;
+import org.openjdk.jcstress.infra.collectors.MergingCollector;
+import org.openjdk.jcstress.infra.collectors.ResourceUsage;
 import org.openjdk.jcstress.infra.collectors.TestResult;
 
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.*;
 import java.util.function.Predicate;
@@ -43,14 +46,20 @@ import java.util.function.Predicate;
  */
 public class TextReportPrinter {
 
-    private final InProcessCollector collector;
+    private static final int EXPENSIVE_TESTS = 10;
+
+    private final MergingCollector collector;
     private final Verbosity verbosity;
     private final PrintWriter pw;
     private final Set<TestResult> emittedTests;
 
-    public TextReportPrinter(Options opts, InProcessCollector collector) {
+    public TextReportPrinter(Options opts, MergingCollector collector) {
+        this(opts, collector, new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out))));
+    }
+
+    public TextReportPrinter(Options opts, MergingCollector collector, PrintWriter pw) {
         this.collector = collector;
-        this.pw = new PrintWriter(System.out, true);
+        this.pw = pw;
         this.verbosity = opts.verbosity();
         this.emittedTests = new HashSet<>();
     }
@@ -58,7 +67,7 @@ public class TextReportPrinter {
     public void work() {
         emittedTests.clear();
 
-        List<TestResult> byName = ReportUtils.mergedByName(collector.getTestResults());
+        List<TestResult> byName = collector.mergedByName();
         Collections.sort(byName, Comparator.comparing(TestResult::getName));
 
         pw.println("RUN RESULTS:");
@@ -86,7 +95,34 @@ public class TextReportPrinter {
                 r -> !emittedTests.contains(r),
                 verbosity.printAllTests());
 
+        printExpensiveTests(byName);
+
         pw.println();
+        pw.flush();
+    }
+
+    private void printExpensiveTests(List<TestResult> list) {
+        List<TestResult> expensive = ReportUtils.mostExpensive(list, EXPENSIVE_TESTS);
+        if (expensive.isEmpty()) {
+            return;
+        }
+
+        pw.println();
+        pw.println("  Most expensive tests:");
+        pw.println();
+        pw.printf("  %5s %9s %9s %9s %7s %9s %9s  %s%n", "Forks", "Wall", "CPU", "Peak RSS", "GCs", "GC time", "JIT time", "Test");
+        for (TestResult r : expensive) {
+            ResourceUsage u = r.getUsage();
+            pw.printf("  %5d %9s %9s %9s %7d %9s %9s  %s%n",
+                    u.forks(),
+                    ReportUtils.formatMs(u.wallMs()),
+                    ReportUtils.formatMs(u.cpuMs()),
+                    ReportUtils.formatKb(u.peakRssKb()),
+                    u.gcCount(),
+                    ReportUtils.formatMs(u.gcMs()),
+                    ReportUtils.formatMs(u.jitMs()),
+                    r.getName());
+        }
     }
 
     private void printXTests(List<TestResult> list,
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.jfr;
+
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+/**
+ * Flight Recorder events for the harness and the forked VMs. Events are recorded
+ * when the VM runs with JFR enabled, e.g. with -XX:StartFlightRecording. On the VMs
+ * without the JFR API all methods do nothing.
+ *
+ * <p>Event classes are resolved via Reflection, so that this class links on any VM.
+ */
+public final class Events {
+
+    private static final Recorder RECORDER = init();
+
+    private Events() {
+        // prevent instantiation
+    }
+
+    private static Recorder init() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName(Events.class.getPackage().getName() + ".JfrRecorder")
+                    .getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            return new Recorder();
+        }
+    }
+
+    /**
+     * Event that has the duration, ends with {@link #end()}.
+     */
+    public interface Span {
+        void end();
+    }
+
+    static final Span NO_SPAN = () -> {};
+
+    /**
+     * @return true, if events are recorded on this VM
+     */
+    public static boolean isAvailable() {
+        return RECORDER.getClass() != Recorder.class;
+    }
+
+    /**
+     * Fork lifetime, from spawning the VM until it exits.
+     */
+    public static Span fork(int token, String test, int forkId, SchedulingClass schedulingClass, int[] cpus) {
+        return RECORDER.fork(token, test, forkId, schedulingClass, cpus);
+    }
+
+    /**
+     * Spawning the forked VM process.
+     */
+    public static Span forkSpawn(int token, String test) {
+        return RECORDER.forkSpawn(token, test);
+    }
+
+    /**
+     * Forked VM had connected and requested the job.
+     */
+    public static void forkJobRequest(int token, String test) {
+        RECORDER.forkJobRequest(token, test);
+    }
+
+    /**
+     * Forked VM had sent the result.
+     */
+    public static void forkResult(int token, String test, Status status) {
+        RECORDER.forkResult(token, test, status);
+    }
+
+    /**
+     * Forked VM had exited.
+     */
+    public static void forkExit(int token, String test, int exitCode, long wallMs) {
+        RECORDER.forkExit(token, test, exitCode, wallMs);
+    }
+
+    /**
+     * Scheduler gave the CPUs to the fork.
+     */
+    public static void schedulerAcquire(SchedulingClass schedulingClass, int[] cpus, int cpusInUse) {
+        RECORDER.schedulerAcquire(schedulingClass, cpus, cpusInUse);
+    }
+
+    /**
+     * Scheduler took the CPUs back from the fork.
+     */
+    public static void schedulerRelease(int[] cpus, int cpusInUse) {
+        RECORDER.schedulerRelease(cpus, cpusInUse);
+    }
+
+    /**
+     * Passing the result to the collectors.
+     */
+    public static Span resultProcessing(String test) {
+        return RECORDER.resultProcessing(test);
+    }
+
+    /**
+     * Report phase: reading, merging, rendering.
+     */
+    public static Span reportPhase(String phase) {
+        return RECORDER.reportPhase(phase);
+    }
+
+    /**
+     * Test iteration in the forked VM.
+     */
+    public static Span iteration(String test, int iteration, int strideSize, int strideCount) {
+        return RECORDER.iteration(test, iteration, strideSize, strideCount);
+    }
+
+    /**
+     * Strides adjusted in the forked VM to fit the footprint.
+     */
+    public static void strideAdjustment(String test, int oldSize, int oldCount, int newSize, int newCount) {
+        RECORDER.strideAdjustment(test, oldSize, oldCount, newSize, newCount);
+    }
+
+}
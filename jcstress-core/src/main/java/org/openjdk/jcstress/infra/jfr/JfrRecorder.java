@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.jfr;
+
+import jdk.jfr.*;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.util.Arrays;
+
+/**
+ * Records the events with JFR. Only instantiated via Reflection by {@link Events},
+ * when the JFR API is available.
+ */
+class JfrRecorder extends Recorder {
+
+    private static final String PREFIX = "org.openjdk.jcstress.";
+
+    @Override
+    Events.Span fork(int token, String test, int forkId, SchedulingClass schedulingClass, int[] cpus) {
+        Fork e = new Fork();
+        if (!e.isEnabled()) {
+            return Events.NO_SPAN;
+        }
+        e.token = token;
+        e.test = test;
+        e.forkId = forkId;
+        e.schedulingClass = schedulingClass.toString();
+        e.cpus = Arrays.toString(cpus);
+        e.begin();
+        return e::commit;
+    }
+
+    @Override
+    Events.Span forkSpawn(int token, String test) {
+        ForkSpawn e = new ForkSpawn();
+        if (!e.isEnabled()) {
+            return Events.NO_SPAN;
+        }
+        e.token = token;
+        e.test = test;
+        e.begin();
+        return e::commit;
+    }
+
+    @Override
+    void forkJobRequest(int token, String test) {
+        ForkJobRequest e = new ForkJobRequest();
+        if (e.isEnabled()) {
+            e.token = token;
+            e.test = test;
+            e.commit();
+        }
+    }
+
+    @Override
+    void forkResult(int token, String test, Status status) {
+        ForkResult e = new ForkResult();
+        if (e.isEnabled()) {
+            e.token = token;
+            e.test = test;
+            e.status = status.toString();
+            e.commit();
+        }
+    }
+
+    @Override
+    void forkExit(int token, String test, int exitCode, long wallMs) {
+        ForkExit e = new ForkExit();
+        if (e.isEnabled()) {
+            e.token = token;
+            e.test = test;
+            e.exitCode = exitCode;
+            e.wallTime = wallMs;
+            e.commit();
+        }
+    }
+
+    @Override
+    void schedulerAcquire(SchedulingClass schedulingClass, int[] cpus, int cpusInUse) {
+        SchedulerAcquire e = new SchedulerAcquire();
+        if (e.isEnabled()) {
+            e.schedulingClass = schedulingClass.toString();
+            e.cpus = Arrays.toString(cpus);
+            e.cpusInUse = cpusInUse;
+            e.commit();
+        }
+    }
+
+    @Override
+    void schedulerRelease(int[] cpus, int cpusInUse) {
+        SchedulerRelease e = new SchedulerRelease();
+        if (e.isEnabled()) {
+            e.cpus = Arrays.toString(cpus);
+            e.cpusInUse = cpusInUse;
+            e.commit();
+        }
+    }
+
+    @Override
+    Events.Span resultProcessing(String test) {
+        ResultProcessing e = new ResultProcessing();
+        if (!e.isEnabled()) {
+            return Events.NO_SPAN;
+        }
+        e.test = test;
+        e.begin();
+        return e::commit;
+    }
+
+    @Override
+    Events.Span reportPhase(String phase) {
+        ReportPhase e = new ReportPhase();
+        if (!e.isEnabled()) {
+            return Events.NO_SPAN;
+        }
+        e.phase = phase;
+        e.begin();
+        return e::commit;
+    }
+
+    @Override
+    Events.Span iteration(String test, int iteration, int strideSize, int strideCount) {
+        Iteration e = new Iteration();
+        if (!e.isEnabled()) {
+            return Events.NO_SPAN;
+        }
+        e.test = test;
+        e.iteration = iteration;
+        e.strideSize = strideSize;
+        e.strideCount = strideCount;
+        e.begin();
+        return e::commit;
+    }
+
+    @Override
+    void strideAdjustment(String test, int oldSize, int oldCount, int newSize, int newCount) {
+        StrideAdjustment e = new StrideAdjustment();
+        if (e.isEnabled()) {
+            e.test = test;
+            e.oldStrideSize = oldSize;
+            e.oldStrideCount = oldCount;
+            e.newStrideSize = newSize;
+            e.newStrideCount = newCount;
+            e.commit();
+        }
+    }
+
+    @Name(PREFIX + "Fork")
+    @Label("Fork")
+    @Description("Forked VM lifetime, from spawning until exit")
+    @Category({"JCStress", "Harness"})
+    @StackTrace(false)
+    static class Fork extends Event {
+        @Label("Token") int token;
+        @Label("Test") String test;
+        @Label("Fork ID") int forkId;
+        @Label("Scheduling Class") String schedulingClass;
+        @Label("CPUs") String cpus;
+    }
+
+    @Name(PREFIX + "ForkSpawn")
+    @Label("Fork Spawn")
+    @Description("Starting the forked VM process")
+    @Category({"JCStress", "Harness"})
+    @StackTrace(false)
+    static class ForkSpawn extends Event {
+        @Label("Token") int token;
+        @Label("Test") String test;
+    }
+
+    @Name(PREFIX + "ForkJobRequest")
+    @Label("Fork Job Request")
+    @Description("Forked VM had connected and requested the job")
+    @Category({"JCStress", "Harness"})
+    @StackTrace(false)
+    static class ForkJobRequest extends Event {
+        @Label("Token") int token;
+        @Label("Test") String test;
+    }
+
+    @Name(PREFIX + "ForkResult")
+    @Label("Fork Result")
+    @Description("Forked VM had sent the result")
+    @Category({"JCStress", "Harness"})
+    @StackTrace(false)
+    static class ForkResult extends Event {
+        @Label("Token") int token;
+        @Label("Test") String test;
+        @Label("Status") String status;
+    }
+
+    @Name(PREFIX + "ForkExit")
+    @Label("Fork Exit")
+    @Description("Forked VM had exited")
+    @Category({"JCStress", "Harness"})
+    @StackTrace(false)
+    static class ForkExit extends Event {
+        @Label("Token") int token;
+        @Label("Test") String test;
+        @Label("Exit Code") int exitCode;
+        @Label("Wall Time") @Timespan(Timespan.MILLISECONDS) long wallTime;
+    }
+
+    @Name(PREFIX + "SchedulerAcquire")
+    @Label("Scheduler Acquire")
+    @Description("CPUs given to the fork")
+    @Category({"JCStress", "Scheduler"})
+    @StackTrace(false)
+    static class SchedulerAcquire extends Event {
+        @Label("Scheduling Class") String schedulingClass;
+        @Label("CPUs") String cpus;
+        @Label("CPUs In Use") int cpusInUse;
+    }
+
+    @Name(PREFIX + "SchedulerRelease")
+    @Label("Scheduler Release")
+    @Description("CPUs taken back from the fork")
+    @Category({"JCStress", "Scheduler"})
+    @StackTrace(false)
+    static class SchedulerRelease extends Event {
+        @Label("CPUs") String cpus;
+        @Label("CPUs In Use") int cpusInUse;
+    }
+
+    @Name(PREFIX + "ResultProcessing")
+    @Label("Result Processing")
+    @Description("Passing the result to the collectors")
+    @Category({"JCStress", "Harness"})
+    @StackTrace(false)
+    static class ResultProcessing extends Event {
+        @Label("Test") String test;
+    }
+
+    @Name(PREFIX + "ReportPhase")
+    @Label("Report Phase")
+    @Category({"JCStress", "Reports"})
+    @StackTrace(false)
+    static class ReportPhase extends Event {
+        @Label("Phase") String phase;
+    }
+
+    @Name(PREFIX + "Iteration")
+    @Label("Iteration")
+    @Description("Test iteration in the forked VM")
+    @Category({"JCStress", "Fork"})
+    @StackTrace(false)
+    static class Iteration extends Event {
+        @Label("Test") String test;
+        @Label("Iteration") int iteration;
+        @Label("Stride Size") int strideSize;
+        @Label("Stride Count") int strideCount;
+    }
+
+    @Name(PREFIX + "StrideAdjustment")
+    @Label("Stride Adjustment")
+    @Description("Strides adjusted to fit the footprint")
+    @Category({"JCStress", "Fork"})
+    @StackTrace(false)
+    static class StrideAdjustment extends Event {
+        @Label("Test") String test;
+        @Label("Old Stride Size") int oldStrideSize;
+        @Label("Old Stride Count") int oldStrideCount;
+        @Label("New Stride Size") int newStrideSize;
+        @Label("New Stride Count") int newStrideCount;
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.jfr;
+
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+/**
+ * Records nothing, for the VMs without the JFR API.
+ */
+class Recorder {
+
+    Events.Span fork(int token, String test, int forkId, SchedulingClass schedulingClass, int[] cpus) {
+        return Events.NO_SPAN;
+    }
+
+    Events.Span forkSpawn(int token, String test) {
+        return Events.NO_SPAN;
+    }
+
+    void forkJobRequest(int token, String test) {
+        // do nothing
+    }
+
+    void forkResult(int token, String test, Status status) {
+        // do nothing
+    }
+
+    void forkExit(int token, String test, int exitCode, long wallMs) {
+        // do nothing
+    }
+
+    void schedulerAcquire(SchedulingClass schedulingClass, int[] cpus, int cpusInUse) {
+        // do nothing
+    }
+
+    void schedulerRelease(int[] cpus, int cpusInUse) {
+        // do nothing
+    }
+
+    Events.Span resultProcessing(String test) {
+        return Events.NO_SPAN;
+    }
+
+    Events.Span reportPhase(String phase) {
+        return Events.NO_SPAN;
+    }
+
+    Events.Span iteration(String test, int iteration, int strideSize, int strideCount) {
+        return Events.NO_SPAN;
+    }
+
+    void strideAdjustment(String test, int oldSize, int oldCount, int newSize, int newCount) {
+        // do nothing
+    }
+
+}
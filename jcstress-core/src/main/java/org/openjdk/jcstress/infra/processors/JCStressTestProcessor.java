@@ -495,7 +495,7 @@ public class JCStressTestProcessor extends AbstractProcessor {
         pw.println("        ArrayList<CounterThread<" + r + ">> threads = new ArrayList<>(" + actorsCount + ");");
         for (ExecutableElement a : info.getActors()) {
             pw.println("        threads.add(new CounterThread<" + r + ">() { public Counter<" + r + "> internalRun() {");
-            pw.println("            return " + TASK_LOOP_PREFIX + a.getSimpleName() + "();");
+            pw.println("            return " + TASK_LOOP_PREFIX + a.getSimpleName() + "(stats);");
             pw.println("        }});");
         }
         pw.println();
@@ -516,7 +516,7 @@ public class JCStressTestProcessor extends AbstractProcessor {
         pw.println("    }");
         pw.println();
 
-        pw.println("    private void " + AUX_PREFIX + "consume(Counter<" + r + "> cnt, int a) {");
+        pw.println("    private int " + AUX_PREFIX + "consume(Counter<" + r + "> cnt, int a) {");
         pw.println("        " + s + "[] ls = gs;");
         pw.println("        " + r + "[] lr = gr;");
         pw.println("        int len = config.strideSize * config.strideCount;");
@@ -558,6 +558,7 @@ public class JCStressTestProcessor extends AbstractProcessor {
         }
 
         pw.println("        }");
+        pw.println("        return right - left;");
         pw.println("    }");
         pw.println();
 
@@ -568,7 +569,7 @@ public class JCStressTestProcessor extends AbstractProcessor {
         int n = 0;
         for (ExecutableElement a : info.getActors()) {
             pw.println();
-            pw.println("    private Counter<" + r + "> " + TASK_LOOP_PREFIX + a.getSimpleName() + "() {");
+            pw.println("    private Counter<" + r + "> " + TASK_LOOP_PREFIX + a.getSimpleName() + "(WorkerStats stats) {");
             pw.println("        int len = config.strideSize * config.strideCount;");
             pw.println("        int stride = config.strideSize;");
             pw.println("        Counter<" + r + "> counter = new Counter<>();");
@@ -579,16 +580,29 @@ public class JCStressTestProcessor extends AbstractProcessor {
             pw.println("                return counter;");
             pw.println("            }");
             pw.println("            int check = 0;");
+
+            // Timestamps are taken only at stride boundaries, where actors rendezvous
+            // anyway, so that the run loops themselves stay intact.
+            pw.println("            long time = System.nanoTime();");
             pw.println("            for (int start = 0; start < len; start += stride) {");
             pw.println("                " + RUN_LOOP_PREFIX + a.getSimpleName() + "(gs, gr, start, start + stride);");
+            pw.println("                long ran = System.nanoTime();");
             pw.println("                check += " + actorsCount + ";");
             pw.println("                sync.awaitCheckpoint(check);");
+            pw.println("                long synced = System.nanoTime();");
+            pw.println("                stats.runNs += ran - time;");
+            pw.println("                stats.syncNs += synced - ran;");
+            pw.println("                time = synced;");
             pw.println("            }");
-            pw.println("            " + AUX_PREFIX + "consume(counter, " + n + ");");
+            pw.println("            stats.samples += len;");
+            pw.println("            stats.consumed += " + AUX_PREFIX + "consume(counter, " + n + ");");
+            pw.println("            long consumed = System.nanoTime();");
+            pw.println("            stats.consumeNs += consumed - time;");
             pw.println("            if (sync.tryStartUpdate()) {");
             pw.println("                workerSync = new WorkerSync(control.isStopped, " + actorsCount + ", config.spinLoopStyle);");
             pw.println("            }");
             pw.println("            sync.postUpdate();");
+            pw.println("            stats.syncNs += System.nanoTime() - consumed;");
             pw.println("        }");
             pw.println("    }");
             pw.println();
@@ -961,7 +975,7 @@ public class JCStressTestProcessor extends AbstractProcessor {
                 ArrayList.class, Arrays.class,
                 TimeUnit.class,
                 ForkedTestConfig.class, TestResult.class,
-                Runner.class, WorkerSync.class, Counter.class,
+                Runner.class, WorkerSync.class, WorkerStats.class, Counter.class,
                 AffinitySupport.class, AllocProfileSupport.class,
                 FootprintEstimator.class,
                 VoidThread.class, LongThread.class, CounterThread.class
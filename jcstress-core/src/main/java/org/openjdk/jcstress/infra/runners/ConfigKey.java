@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.runners;
+
+import org.openjdk.jcstress.os.SchedulingClass;
+import org.openjdk.jcstress.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable key that identifies the test configuration for merging the results.
+ * Covers the same fields as {@link TestConfig#equals(Object)}, and has the full
+ * hash code precomputed, so that configurations of the same test do not collide
+ * in hash tables.
+ *
+ * <p>Keys are ordered by test name, compilation mode, scheduling class and JVM
+ * arguments, which is the natural order for the reports.
+ */
+public final class ConfigKey implements Comparable<ConfigKey> {
+
+    private final String name;
+    private final SpinLoopStyle spinLoopStyle;
+    private final int strideSize;
+    private final int strideCount;
+    private final int time;
+    private final int iters;
+    private final int threads;
+    private final int compileMode;
+    private final List<String> jvmArgs;
+    private final SchedulingClass shClass;
+
+    // Precomputed for ordering
+    private final String shClassLabel;
+    private final String jvmArgsLabel;
+
+    private final int hash;
+
+    ConfigKey(TestConfig cfg) {
+        this.name = cfg.name;
+        this.spinLoopStyle = cfg.spinLoopStyle;
+        this.strideSize = cfg.strideSize;
+        this.strideCount = cfg.strideCount;
+        this.time = cfg.time;
+        this.iters = cfg.iters;
+        this.threads = cfg.threads;
+        this.compileMode = cfg.compileMode;
+        this.jvmArgs = Collections.unmodifiableList(new ArrayList<>(cfg.jvmArgs));
+        this.shClass = new SchedulingClass(cfg.shClass);
+        this.shClassLabel = shClass.toString();
+        this.jvmArgsLabel = StringUtils.join(jvmArgs, ",");
+
+        int h = name.hashCode();
+        h = combine(h, spinLoopStyle.ordinal());
+        h = combine(h, strideSize);
+        h = combine(h, strideCount);
+        h = combine(h, time);
+        h = combine(h, iters);
+        h = combine(h, threads);
+        h = combine(h, compileMode);
+        for (String arg : jvmArgs) {
+            h = combine(h, arg.hashCode());
+        }
+        for (int a = 0; a < shClass.numActors(); a++) {
+            h = combine(h, shClass.getPackage(a));
+            h = combine(h, shClass.getCore(a));
+        }
+        this.hash = h;
+    }
+
+    private static int combine(int h, int v) {
+        // Murmur3 mixing step: small values in different fields would
+        // not cancel each other out, unlike with plain "31 * h + v".
+        v *= 0xCC9E2D51;
+        v = Integer.rotateLeft(v, 15);
+        v *= 0x1B873593;
+        h ^= v;
+        h = Integer.rotateLeft(h, 13);
+        return h * 5 + 0xE6546B64;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ConfigKey that = (ConfigKey) o;
+
+        // Hash mismatch is the cheapest way to tell keys apart
+        if (hash != that.hash) return false;
+        if (!name.equals(that.name)) return false;
+        if (spinLoopStyle != that.spinLoopStyle) return false;
+        if (strideSize != that.strideSize) return false;
+        if (strideCount != that.strideCount) return false;
+        if (time != that.time) return false;
+        if (iters != that.iters) return false;
+        if (threads != that.threads) return false;
+        if (compileMode != that.compileMode) return false;
+        if (!jvmArgs.equals(that.jvmArgs)) return false;
+        if (!shClass.equals(that.shClass)) return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(ConfigKey other) {
+        int c = name.compareTo(other.name);
+        if (c != 0) return c;
+        c = Integer.compare(compileMode, other.compileMode);
+        if (c != 0) return c;
+        c = shClassLabel.compareTo(other.shClassLabel);
+        if (c != 0) return c;
+        c = jvmArgsLabel.compareTo(other.jvmArgsLabel);
+        if (c != 0) return c;
+        // Tie-breakers, so that order is consistent with equals
+        c = spinLoopStyle.compareTo(other.spinLoopStyle);
+        if (c != 0) return c;
+        c = Integer.compare(strideSize, other.strideSize);
+        if (c != 0) return c;
+        c = Integer.compare(strideCount, other.strideCount);
+        if (c != 0) return c;
+        c = Integer.compare(time, other.time);
+        if (c != 0) return c;
+        c = Integer.compare(iters, other.iters);
+        if (c != 0) return c;
+        c = Integer.compare(threads, other.threads);
+        if (c != 0) return c;
+        return Integer.compare(hash, other.hash);
+    }
+
+    @Override
+    public String toString() {
+        return name + ", compile mode " + compileMode + ", " + shClassLabel + ", " + jvmArgs;
+    }
+
+}
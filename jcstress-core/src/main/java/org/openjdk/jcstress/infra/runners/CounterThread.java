@@ -28,10 +28,16 @@ import org.openjdk.jcstress.util.Counter;
 
 public abstract class CounterThread<R> extends AbstractThread {
     private Counter<R> result;
+    protected final WorkerStats stats = new WorkerStats();
+
     public Counter<R> result() {
         return result;
     }
 
+    public WorkerStats stats() {
+        return stats;
+    }
+
     @Override
     public void run() {
         try {
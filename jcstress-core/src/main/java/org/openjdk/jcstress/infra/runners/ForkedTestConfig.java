@@ -24,6 +24,7 @@
  */
 package org.openjdk.jcstress.infra.runners;
 
+import org.openjdk.jcstress.infra.jfr.Events;
 import org.openjdk.jcstress.os.AffinityMode;
 
 import java.io.DataInputStream;
@@ -107,8 +108,11 @@ public class ForkedTestConfig {
             count *= 2;
         }
 
+        int oldSize = strideSize;
+        int oldCount = strideCount;
         strideSize = Math.min(succCount, strideSize);
         strideCount = succCount / strideSize;
+        Events.strideAdjustment(generatedRunnerName, oldSize, oldCount, strideSize, strideCount);
     }
 
     private boolean tryWith(FootprintEstimator estimator, int count) {
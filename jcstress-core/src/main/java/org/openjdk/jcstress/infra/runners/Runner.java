@@ -25,7 +25,9 @@
 package org.openjdk.jcstress.infra.runners;
 
 import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.Telemetry;
 import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.jfr.Events;
 import org.openjdk.jcstress.util.Counter;
 import org.openjdk.jcstress.util.StringUtils;
 
@@ -59,6 +61,7 @@ public abstract class Runner<R> {
      */
     public TestResult run() {
         Counter<R> result = new Counter<>();
+        Telemetry telemetry = new Telemetry();
 
         try {
             sanityCheck(result);
@@ -69,40 +72,55 @@ public abstract class Runner<R> {
         }
 
         for (int c = 0; c < config.iters; c++) {
-            ArrayList<CounterThread<R>> workers = internalRun();
-
-            long startTime = System.nanoTime();
-            do {
-                ArrayList<CounterThread<R>> leftovers = new ArrayList<>();
-                for (CounterThread<R> t : workers) {
-                    try {
-                        t.join(1000);
-
-                        if (t.throwable() != null) {
-                            return dumpFailure(Status.TEST_ERROR, "Unrecoverable error while running", t.throwable());
-                        }
-                        Counter<R> res = t.result();
-                        if (res != null) {
-                            result.merge(res);
-                        } else {
-                            leftovers.add(t);
+            Events.Span event = Events.iteration(config.generatedRunnerName, c, config.strideSize, config.strideCount);
+            try {
+                long iterationStart = System.nanoTime();
+                ArrayList<CounterThread<R>> actors = internalRun();
+                ArrayList<CounterThread<R>> workers = actors;
+
+                long startTime = System.nanoTime();
+                do {
+                    ArrayList<CounterThread<R>> leftovers = new ArrayList<>();
+                    for (CounterThread<R> t : workers) {
+                        try {
+                            t.join(1000);
+
+                            if (t.throwable() != null) {
+                                return dumpFailure(Status.TEST_ERROR, "Unrecoverable error while running", t.throwable());
+                            }
+                            Counter<R> res = t.result();
+                            if (res != null) {
+                                result.merge(res);
+                            } else {
+                                leftovers.add(t);
+                            }
+                        } catch (InterruptedException e) {
+                            return dumpFailure(Status.TEST_ERROR, "Unrecoverable error while running", e.getCause());
                         }
-                    } catch (InterruptedException e) {
-                        return dumpFailure(Status.TEST_ERROR, "Unrecoverable error while running", e.getCause());
                     }
-                }
 
-                long timeSpent = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
-                if (timeSpent > Math.max(10*config.time, MIN_TIMEOUT_MS)) {
-                    forceExit = true;
-                    return dumpFailure(Status.TIMEOUT_ERROR, "Timeout waiting for tasks to complete: " + timeSpent + " ms");
-                }
+                    long timeSpent = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                    if (timeSpent > Math.max(10*config.time, MIN_TIMEOUT_MS)) {
+                        forceExit = true;
+                        return dumpFailure(Status.TIMEOUT_ERROR, "Timeout waiting for tasks to complete: " + timeSpent + " ms");
+                    }
+
+                    workers = leftovers;
+                } while (!workers.isEmpty());
 
-                workers = leftovers;
-            } while (!workers.isEmpty());
+                for (int a = 0; a < actors.size(); a++) {
+                    WorkerStats s = actors.get(a).stats();
+                    telemetry.add(c, a, s.samples, s.consumed, s.runNs, s.syncNs, s.consumeNs);
+                }
+                telemetry.addWall(c, System.nanoTime() - iterationStart);
+            } finally {
+                event.end();
+            }
         }
 
-        return dump(result);
+        TestResult r = dump(result);
+        r.addTelemetry(telemetry);
+        return r;
     }
 
     protected TestResult dumpFailure(Status status, String message) {
@@ -30,9 +30,13 @@ import org.openjdk.jcstress.infra.TestInfo;
 import org.openjdk.jcstress.os.CPUMap;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 public class TestConfig implements Serializable {
+    private static final String STRESS_SEED = "-XX:StressSeed=";
+
     public final SpinLoopStyle spinLoopStyle;
     public final int time;
     public final int iters;
@@ -47,8 +51,9 @@ public class TestConfig implements Serializable {
     public final int compileMode;
     public final SchedulingClass shClass;
     public final int strideSize;
-    public int strideCount;
+    public final int strideCount;
     public CPUMap cpuMap;
+    private transient volatile ConfigKey key;
 
     public void setCPUMap(CPUMap cpuMap) {
         this.cpuMap = cpuMap;
@@ -72,6 +77,28 @@ public class TestConfig implements Serializable {
         shClass = scl;
     }
 
+    public TestConfig(SpinLoopStyle spinLoopStyle, int time, int iters, int threads,
+                      String name, String binaryName, String generatedRunnerName,
+                      List<String> jvmArgs, int forkId, int maxFootprintMB, List<String> actorNames,
+                      int compileMode, SchedulingClass scl, int strideSize, int strideCount, CPUMap cpuMap) {
+        this.spinLoopStyle = spinLoopStyle;
+        this.time = time;
+        this.iters = iters;
+        this.threads = threads;
+        this.name = name;
+        this.binaryName = binaryName;
+        this.generatedRunnerName = generatedRunnerName;
+        this.jvmArgs = jvmArgs;
+        this.forkId = forkId;
+        this.maxFootprintMB = maxFootprintMB;
+        this.actorNames = actorNames;
+        this.compileMode = compileMode;
+        this.shClass = scl;
+        this.strideSize = strideSize;
+        this.strideCount = strideCount;
+        this.cpuMap = cpuMap;
+    }
+
     public int getCompileMode() {
         return compileMode;
     }
@@ -80,29 +107,89 @@ public class TestConfig implements Serializable {
         return shClass;
     }
 
+    /**
+     * @return immutable key for this configuration, computed once
+     */
+    public ConfigKey key() {
+        ConfigKey k = key;
+        if (k == null) {
+            k = new ConfigKey(this);
+            key = k;
+        }
+        return k;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
         TestConfig that = (TestConfig) o;
-
-        if (!name.equals(that.name)) return false;
-        if (spinLoopStyle != that.spinLoopStyle) return false;
-        if (strideSize != that.strideSize) return false;
-        if (strideCount != that.strideCount) return false;
-        if (time != that.time) return false;
-        if (iters != that.iters) return false;
-        if (threads != that.threads) return false;
-        if (compileMode != that.compileMode) return false;
-        if (!jvmArgs.equals(that.jvmArgs)) return false;
-        if (!shClass.equals(that.shClass)) return false;
-        return true;
+        return key().equals(that.key());
     }
 
     @Override
     public int hashCode() {
-        return name.hashCode();
+        return key().hashCode();
+    }
+
+    /**
+     * Random stress seeds differ in every VM invocation, and would never
+     * match across runs. Fold them, so that stress configurations are
+     * identified by the rest of their arguments.
+     *
+     * @param arg JVM argument
+     * @return argument with the stress seed folded
+     */
+    static String foldStressSeed(String arg) {
+        return arg.startsWith(STRESS_SEED) ? STRESS_SEED + "*" : arg;
+    }
+
+    /**
+     * @return configuration with folded stress seeds; this, if there are no seeds
+     */
+    public TestConfig withoutStressSeeds() {
+        List<String> args = new ArrayList<>();
+        for (String arg : jvmArgs) {
+            args.add(foldStressSeed(arg));
+        }
+        if (args.equals(jvmArgs)) {
+            return this;
+        }
+        return new TestConfig(spinLoopStyle, time, iters, threads,
+                name, binaryName, generatedRunnerName,
+                args, forkId, maxFootprintMB, actorNames,
+                compileMode, shClass, strideSize, strideCount, cpuMap);
+    }
+
+    /**
+     * Computes the hash that is stable across machines and VM invocations.
+     * Used to partition the configurations between shards.
+     *
+     * @return stable hash
+     */
+    public long stableHash() {
+        // FNV-1a over the identifying parts of configuration
+        long h = 0xcbf29ce484222325L;
+        h = stableHash(h, name);
+        h = stableHash(h, String.valueOf(compileMode));
+        h = stableHash(h, shClass.mode().toString());
+        h = stableHash(h, shClass.toString());
+        for (String arg : jvmArgs) {
+            h = stableHash(h, foldStressSeed(arg));
+        }
+        return h;
+    }
+
+    private static long stableHash(long h, String s) {
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xFF);
+            h *= 0x100000001b3L;
+        }
+        // Separator, so that adjacent strings do not blend
+        h ^= 0xFF;
+        h *= 0x100000001b3L;
+        return h;
     }
 
 }
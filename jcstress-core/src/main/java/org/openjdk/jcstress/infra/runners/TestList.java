@@ -34,7 +34,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
-import java.util.regex.Pattern;
 
 public class TestList {
 
@@ -47,7 +46,14 @@ public class TestList {
             Expect[] expectValues = Expect.values();
             Map<String, TestInfo> m = new HashMap<>();
 
-            try (InputStream stream = TestList.class.getResourceAsStream(LIST);
+            InputStream resource = TestList.class.getResourceAsStream(LIST);
+            if (resource == null) {
+                // No tests on classpath, e.g. when parsing the results from another build
+                tests = m;
+                return m;
+            }
+
+            try (InputStream stream = resource;
                  InputStreamReader isr = new InputStreamReader(stream);
                  BufferedReader reader = new BufferedReader(isr)) {
 
@@ -79,8 +85,7 @@ public class TestList {
                             int stateCount = read.nextInt();
                             for (int s = 0; s < stateCount; s++) {
                                 String regex = read.nextString();
-                                Pattern pattern = Pattern.compile(regex);
-                                testInfo.addCase(new StateCase(pattern, expect, desc));
+                                testInfo.addCase(new StateCase(regex, expect, desc));
                             }
                         }
 
@@ -104,6 +109,10 @@ public class TestList {
         return getTests().keySet();
     }
 
+    public static boolean hasInfo(String name) {
+        return getTests().containsKey(name);
+    }
+
     public static TestInfo getInfo(String name) {
         TestInfo info = getTests().get(name);
         if (info == null) {
@@ -28,13 +28,25 @@ import com.sun.jna.*;
 import org.openjdk.jcstress.vm.VMSupport;
 
 import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.util.*;
 
 public class AffinitySupport {
 
+    /*
+     * Forces the JNA-based implementation, even when Foreign Function and Memory API is available.
+     */
+    static final String FORCE_JNA_PROPERTY = "jcstress.affinity.jna";
+
     public static void bind(int cpu) {
         if (VMSupport.isLinux()) {
-            Linux.bind(cpu);
+            if (LinuxFFM.isAvailable()) {
+                LinuxFFM.bind(cpu);
+            } else {
+                Linux.bind(cpu);
+            }
         } else {
             throw new IllegalStateException("Not implemented");
         }
@@ -42,7 +54,11 @@ public class AffinitySupport {
 
     public static void tryBind() {
         if (VMSupport.isLinux()) {
-            Linux.tryBind();
+            if (LinuxFFM.isAvailable()) {
+                LinuxFFM.tryBind();
+            } else {
+                Linux.tryBind();
+            }
         } else {
             throw new IllegalStateException("Not implemented");
         }
@@ -50,18 +66,228 @@ public class AffinitySupport {
 
     public static List<String> prepare() {
         if (VMSupport.isLinux()) {
-            return Linux.prepare();
+            if (LinuxFFM.isSupported()) {
+                return LinuxFFM.prepare();
+            } else {
+                return Linux.prepare();
+            }
+        } else {
+            throw new IllegalStateException("Not implemented");
+        }
+    }
+
+    /*
+       Replies the options for forked VMs that select the JNA-based implementation,
+       in case the preferred implementation does not work in forked VMs.
+     */
+    public static List<String> prepareFallback() {
+        if (VMSupport.isLinux()) {
+            List<String> opts = new ArrayList<>(Linux.prepare());
+            opts.add("-D" + FORCE_JNA_PROPERTY + "=true");
+            return opts;
         } else {
             throw new IllegalStateException("Not implemented");
         }
     }
 
+    public static boolean hasFallback() {
+        return VMSupport.isLinux() && LinuxFFM.isSupported();
+    }
+
+    /*
+       JNA implementation needs to unpack and link the native library, which forked VMs
+       better do in background before the test starts. FFM bindings are cheap to create,
+       and need no warmup.
+     */
+    public static boolean needsWarmup() {
+        return !LinuxFFM.isSupported();
+    }
+
     public static void tryInit() {
         if (VMSupport.isLinux()) {
+            if (LinuxFFM.isAvailable()) {
+                return;
+            }
             Linux.tryInit();
         }
     }
 
+    /*
+       Implementation that uses Foreign Function and Memory API (JDK 22+).
+       It requires no native library unpacking, and is much cheaper to initialize than JNA.
+       The API is accessed reflectively, since we compile against older JDKs.
+     */
+    static class LinuxFFM {
+        private static final int CPUSET_SIZE = 1024;
+        private static final int SIZE_OF = CPUSET_SIZE / 8;
+
+        private static volatile boolean BIND_TRIED;
+
+        /*
+           Checks if API is present, without linking anything. Used in host VM,
+           which does not run with native access enabled.
+         */
+        public static boolean isSupported() {
+            if (Boolean.getBoolean(FORCE_JNA_PROPERTY)) {
+                return false;
+            }
+            try {
+                if (Integer.parseInt(System.getProperty("java.specification.version")) < 22) {
+                    return false;
+                }
+                Class.forName("java.lang.foreign.Linker");
+                return true;
+            } catch (Throwable e) {
+                return false;
+            }
+        }
+
+        /*
+           Checks if API is present and the bindings are linked successfully.
+         */
+        public static boolean isAvailable() {
+            return Holder.INSTANCE != null;
+        }
+
+        public static List<String> prepare() {
+            return Collections.singletonList("--enable-native-access=ALL-UNNAMED");
+        }
+
+        public static void bind(int cpu) {
+            long[] bits = new long[CPUSET_SIZE / 64];
+            bits[cpu / 64] |= 1L << (cpu % 64);
+            Holder.INSTANCE.call(Holder.INSTANCE.setAffinity, bits, false);
+        }
+
+        public static void tryBind() {
+            if (BIND_TRIED) return;
+
+            synchronized (LinuxFFM.class) {
+                if (BIND_TRIED) return;
+
+                long[] bits = new long[CPUSET_SIZE / 64];
+                Holder.INSTANCE.call(Holder.INSTANCE.getAffinity, bits, true);
+                Holder.INSTANCE.call(Holder.INSTANCE.setAffinity, bits, false);
+
+                BIND_TRIED = true;
+            }
+        }
+
+        private static class Holder {
+            static final Bindings INSTANCE = Bindings.tryCreate();
+        }
+
+        private static class Bindings {
+            private final MethodHandle getAffinity;
+            private final MethodHandle setAffinity;
+
+            private final Method arenaOfConfined;
+            private final Method arenaAllocate;
+            private final Method arenaClose;
+            private final Method segmentOfArray;
+            private final Method segmentCopyFrom;
+            private final Method segmentGetInt;
+
+            private final Object intLayout;
+            private final long captureSize;
+            private final long errnoOffset;
+
+            static Bindings tryCreate() {
+                if (!isSupported()) {
+                    return null;
+                }
+                try {
+                    return new Bindings();
+                } catch (Throwable e) {
+                    // Something is wrong with the API: do not use it, fall back to JNA.
+                    return null;
+                }
+            }
+
+            private Bindings() throws Exception {
+                Class<?> cLinker = Class.forName("java.lang.foreign.Linker");
+                Class<?> cOption = Class.forName("java.lang.foreign.Linker$Option");
+                Class<?> cLookup = Class.forName("java.lang.foreign.SymbolLookup");
+                Class<?> cLayout = Class.forName("java.lang.foreign.MemoryLayout");
+                Class<?> cPathElement = Class.forName("java.lang.foreign.MemoryLayout$PathElement");
+                Class<?> cValueLayout = Class.forName("java.lang.foreign.ValueLayout");
+                Class<?> cIntLayout = Class.forName("java.lang.foreign.ValueLayout$OfInt");
+                Class<?> cDescriptor = Class.forName("java.lang.foreign.FunctionDescriptor");
+                Class<?> cSegment = Class.forName("java.lang.foreign.MemorySegment");
+                Class<?> cArena = Class.forName("java.lang.foreign.Arena");
+
+                Object linker = cLinker.getMethod("nativeLinker").invoke(null);
+                Object lookup = cLinker.getMethod("defaultLookup").invoke(linker);
+                Method find = cLookup.getMethod("find", String.class);
+
+                Object intL = cValueLayout.getField("JAVA_INT").get(null);
+                Object longL = cValueLayout.getField("JAVA_LONG").get(null);
+                Object addrL = cValueLayout.getField("ADDRESS").get(null);
+
+                // int sched_*affinity(pid_t pid, size_t cpusetsize, cpu_set_t *mask)
+                Object args = Array.newInstance(cLayout, 3);
+                Array.set(args, 0, intL);
+                Array.set(args, 1, longL);
+                Array.set(args, 2, addrL);
+                Object desc = cDescriptor.getMethod("of", cLayout, args.getClass()).invoke(null, intL, args);
+
+                // Capture errno for diagnostics
+                Object opts = Array.newInstance(cOption, 1);
+                Array.set(opts, 0, cOption.getMethod("captureCallState", String[].class)
+                        .invoke(null, (Object) new String[] { "errno" }));
+
+                Object stateLayout = cOption.getMethod("captureStateLayout").invoke(null);
+                Object path = Array.newInstance(cPathElement, 1);
+                Array.set(path, 0, cPathElement.getMethod("groupElement", String.class).invoke(null, "errno"));
+                errnoOffset = (long) cLayout.getMethod("byteOffset", path.getClass()).invoke(stateLayout, path);
+                captureSize = (long) cLayout.getMethod("byteSize").invoke(stateLayout);
+
+                Method downcall = cLinker.getMethod("downcallHandle", cSegment, cDescriptor, opts.getClass());
+                getAffinity = (MethodHandle) downcall.invoke(linker,
+                        ((Optional<?>) find.invoke(lookup, "sched_getaffinity")).get(), desc, opts);
+                setAffinity = (MethodHandle) downcall.invoke(linker,
+                        ((Optional<?>) find.invoke(lookup, "sched_setaffinity")).get(), desc, opts);
+
+                arenaOfConfined = cArena.getMethod("ofConfined");
+                arenaAllocate = cArena.getMethod("allocate", long.class, long.class);
+                arenaClose = cArena.getMethod("close");
+                segmentOfArray = cSegment.getMethod("ofArray", long[].class);
+                segmentCopyFrom = cSegment.getMethod("copyFrom", cSegment);
+                segmentGetInt = cSegment.getMethod("get", cIntLayout, long.class);
+                intLayout = intL;
+            }
+
+            void call(MethodHandle mh, long[] bits, boolean readBack) {
+                try {
+                    Object arena = arenaOfConfined.invoke(null);
+                    try {
+                        Object state = arenaAllocate.invoke(arena, captureSize, 8L);
+                        Object mask = arenaAllocate.invoke(arena, (long) SIZE_OF, 8L);
+                        segmentCopyFrom.invoke(mask, segmentOfArray.invoke(null, (Object) bits));
+
+                        int res = (int) mh.invokeWithArguments(state, 0, (long) SIZE_OF, mask);
+                        if (res != 0) {
+                            throw new IllegalStateException("Failed: " + segmentGetInt.invoke(state, intLayout, errnoOffset));
+                        }
+
+                        if (readBack) {
+                            segmentCopyFrom.invoke(segmentOfArray.invoke(null, (Object) bits), mask);
+                        }
+                    } finally {
+                        arenaClose.invoke(arena);
+                    }
+                } catch (IllegalStateException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    /*
+       Implementation that uses JNA.
+     */
     static class Linux {
         private static volatile CLibrary INSTANCE;
         private static boolean BIND_TRIED;
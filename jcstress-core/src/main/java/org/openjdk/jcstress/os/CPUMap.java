@@ -54,6 +54,14 @@ public class CPUMap implements Serializable {
         return systemMap;
     }
 
+    public int[] packageMap() {
+        return packageMap;
+    }
+
+    public int[] coreMap() {
+        return coreMap;
+    }
+
     public static String description(CPUMap map, List<String> actorNames) {
         int[] actorMap = map.actorMap;
         int[] systemMap = map.systemMap;
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.os;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Figures out how much memory is available for forked VMs.
+ * Takes into account both system-wide available memory and cgroup limits.
+ */
+public class MemoryInfo {
+
+    private static final long MB = 1024 * 1024;
+
+    private final Path procRoot;
+    private final Path cgroupRoot;
+
+    public MemoryInfo() {
+        this(Paths.get("/proc/"), Paths.get("/sys/fs/cgroup/"));
+    }
+
+    public MemoryInfo(Path procRoot, Path cgroupRoot) {
+        this.procRoot = procRoot;
+        this.cgroupRoot = cgroupRoot;
+    }
+
+    /**
+     * @return available memory in megabytes, or -1 if unknown
+     */
+    public long availableMb() {
+        long avail = Long.MAX_VALUE;
+
+        long sys = fromMeminfo();
+        if (sys >= 0) {
+            avail = Math.min(avail, sys);
+        }
+
+        long cg = fromCgroup();
+        if (cg >= 0) {
+            avail = Math.min(avail, cg);
+        }
+
+        return (avail == Long.MAX_VALUE) ? -1 : avail / MB;
+    }
+
+    /**
+     * @param pid process id
+     * @return peak resident set size of the process in kilobytes, or -1 if unknown
+     */
+    public long peakRssKb(long pid) {
+        List<String> lines = readLines(procRoot.resolve(String.valueOf(pid)).resolve("status"));
+        if (lines == null) {
+            return -1;
+        }
+
+        for (String line : lines) {
+            String[] split = line.split("\\s+");
+            if (split.length < 2 || !split[0].equals("VmHWM:")) continue;
+            try {
+                return Long.parseLong(split[1]);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private long fromMeminfo() {
+        List<String> lines = readLines(procRoot.resolve("meminfo"));
+        if (lines == null) {
+            return -1;
+        }
+
+        long free = -1;
+        for (String line : lines) {
+            String[] split = line.split("\\s+");
+            if (split.length < 2) continue;
+            try {
+                // Prefer MemAvailable, fall back to MemFree on old kernels
+                if (split[0].equals("MemAvailable:")) {
+                    return Long.parseLong(split[1]) * 1024;
+                }
+                if (split[0].equals("MemFree:")) {
+                    free = Long.parseLong(split[1]) * 1024;
+                }
+            } catch (NumberFormatException e) {
+                // Malformed line, ignore
+            }
+        }
+        return free;
+    }
+
+    private long fromCgroup() {
+        // Figure out our own cgroups: "hierarchy-id:controller-list:cgroup-path"
+        String v2Path = null;
+        String v1Path = null;
+        List<String> lines = readLines(procRoot.resolve("self").resolve("cgroup"));
+        if (lines != null) {
+            for (String line : lines) {
+                String[] split = line.split(":", 3);
+                if (split.length < 3) continue;
+                if (split[0].equals("0") && split[1].isEmpty()) {
+                    v2Path = split[2];
+                } else if (Arrays.asList(split[1].split(",")).contains("memory")) {
+                    v1Path = split[2];
+                }
+            }
+        }
+
+        // cgroup v2
+        long avail = fromHierarchy(cgroupRoot, v2Path, "memory.max", "memory.current");
+        if (avail < 0) {
+            // cgroup v1
+            avail = fromHierarchy(cgroupRoot.resolve("memory"), v1Path, "memory.limit_in_bytes", "memory.usage_in_bytes");
+        }
+        return avail;
+    }
+
+    /**
+     * Walks from the given cgroup up to the hierarchy root, and picks the least
+     * headroom: limits of all parent cgroups apply as well.
+     */
+    private static long fromHierarchy(Path root, String cgroup, String limitFile, String usageFile) {
+        Path dir = root;
+        if (cgroup != null) {
+            Path own = root.resolve(cgroup.replaceFirst("^/+", ""));
+            // Without cgroup namespaces, the container might not see its own
+            // cgroup path, and has its cgroup mounted at the root instead.
+            if (Files.isDirectory(own)) {
+                dir = own;
+            }
+        }
+
+        long avail = -1;
+        while (dir != null && dir.startsWith(root)) {
+            long limit = readValue(dir.resolve(limitFile));
+            if (limit >= 0) {
+                long usage = readValue(dir.resolve(usageFile));
+                long a = Math.max(0, limit - Math.max(0, usage));
+                avail = (avail < 0) ? a : Math.min(avail, a);
+            }
+            dir = dir.getParent();
+        }
+        return avail;
+    }
+
+    private static long readValue(Path path) {
+        List<String> lines = readLines(path);
+        if (lines == null || lines.isEmpty()) {
+            return -1;
+        }
+        String line = lines.get(0).trim();
+        if (line.equals("max")) {
+            // No limit
+            return -1;
+        }
+        try {
+            return Long.parseLong(line);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static List<String> readLines(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return Files.readAllLines(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+}
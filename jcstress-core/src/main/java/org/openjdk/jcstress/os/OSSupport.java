@@ -25,11 +25,13 @@
 package org.openjdk.jcstress.os;
 
 import org.openjdk.jcstress.util.InputStreamDrainer;
+import org.openjdk.jcstress.util.StringUtils;
 import org.openjdk.jcstress.vm.VMSupport;
 import org.openjdk.jcstress.vm.VMSupportException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -59,10 +61,16 @@ public class OSSupport {
             // Prepare and dump affinity support collaterals
             AFFINITY_ADDITIONAL_OPTIONS = AffinitySupport.prepare();
 
-            // Test the unpacked mode works...
-            List<String> test = new ArrayList<>(AFFINITY_ADDITIONAL_OPTIONS);
-            test.add(AffinitySupportTestMain.class.getCanonicalName());
-            VMSupport.tryWith(test.toArray(new String[0]));
+            try {
+                tryAffinity(AFFINITY_ADDITIONAL_OPTIONS);
+            } catch (Throwable e) {
+                if (!AffinitySupport.hasFallback()) {
+                    throw e;
+                }
+                // Preferred implementation failed in forked VM, try the fallback one
+                AFFINITY_ADDITIONAL_OPTIONS = AffinitySupport.prepareFallback();
+                tryAffinity(AFFINITY_ADDITIONAL_OPTIONS);
+            }
 
             System.out.printf("----- %s %s%n", "[OK]", "Trying to set per-thread affinity with syscalls");
             AFFINITY_SUPPORT_AVAILABLE = true;
@@ -75,6 +83,34 @@ public class OSSupport {
         System.out.println();
     }
 
+    private static void tryAffinity(List<String> opts) throws VMSupportException {
+        // Test the prepared mode works...
+        List<String> test = new ArrayList<>(opts);
+        test.add(AffinitySupportTestMain.class.getCanonicalName());
+        VMSupport.tryWith(test.toArray(new String[0]));
+    }
+
+    /**
+     * Pins all threads of the current process, and the threads it would start later,
+     * to the given CPUs.
+     *
+     * @param cpus CPUs to pin to
+     * @throws VMSupportException if pinning fails
+     */
+    public static void pinCurrentProcess(Collection<Integer> cpus) throws VMSupportException {
+        if (!TASKSET_AVAILABLE) {
+            throw new VMSupportException("taskset is not available");
+        }
+        // RuntimeMXBean name is "pid@host" on all known VMs
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        if (at <= 0) {
+            throw new VMSupportException("Cannot figure out the process id from: " + name);
+        }
+        String pid = name.substring(0, at);
+        VMSupport.runWith(Arrays.asList("taskset", "-a", "-p", "-c", StringUtils.join(cpus, ","), pid));
+    }
+
     public static Collection<? extends String> getJavaInvokeArguments() {
         if (AFFINITY_SUPPORT_AVAILABLE) {
             return AFFINITY_ADDITIONAL_OPTIONS;
@@ -24,12 +24,15 @@
  */
 package org.openjdk.jcstress.os;
 
+import org.openjdk.jcstress.infra.jfr.Events;
 import org.openjdk.jcstress.os.topology.Topology;
 
 import java.util.*;
 
 public class Scheduler {
 
+    private static final int ANY_TYPE = -1;
+
     private boolean debug;
 
     private final BitSet availableCPUs;
@@ -38,14 +41,53 @@ public class Scheduler {
     private final BitSet availableCores;
     private int currentUse;
     private final PackageRecord[] freeMapPackage;
+    private final BitSet reservedCPUs;
+    private final int[] housekeepingMap;
+    private final String nonHousekeepingMap;
+    private final BitSet isolatedCores;
+    private final boolean[] isolationPasses;
+    private long memoryBudget;
+    private long forkFootprint;
+    private long memoryUse;
 
     public Scheduler(Topology t, int max) {
+        this(t, max, Collections.emptyList());
+    }
+
+    public Scheduler(Topology t, int max, Collection<Integer> housekeeping) {
         topology = t;
         maxUse = max;
         availableCPUs = new BitSet(topology.totalThreads());
         availableCPUs.set(0, topology.totalThreads());
         availableCores = new BitSet(topology.totalCores());
         availableCores.set(0, topology.totalCores());
+
+        // Housekeeping CPUs are never given to actors. Reserve the entire cores
+        // to keep actors away from the sibling threads as well.
+        reservedCPUs = new BitSet(topology.totalThreads());
+        for (int thread : housekeeping) {
+            if (thread < 0 || thread >= topology.totalThreads()) {
+                throw new IllegalArgumentException("Unknown housekeeping CPU: " + thread);
+            }
+            int core = topology.threadToCore(thread);
+            for (int sibling : topology.coreThreads(core)) {
+                reservedCPUs.set(sibling);
+            }
+            availableCores.set(core, false);
+        }
+        availableCPUs.andNot(reservedCPUs);
+        housekeepingMap = reservedCPUs.stream().toArray();
+        nonHousekeepingMap = (housekeepingMap.length > 0) ? join(availableCPUs.stream().toArray()) : "";
+
+        isolatedCores = new BitSet(topology.totalCores());
+        Collection<Integer> isolated = topology.isolatedThreads();
+        for (int c = 0; c < topology.totalCores(); c++) {
+            if (isolated.containsAll(topology.coreThreads(c))) {
+                isolatedCores.set(c);
+            }
+        }
+        isolationPasses = isolatedCores.isEmpty() ? new boolean[] { false } : new boolean[] { true, false };
+
         freeMapPackage = new PackageRecord[topology.packagesPerSystem()];
         for (int p = 0; p < freeMapPackage.length; p++) {
             freeMapPackage[p] = new PackageRecord(-1, -1);
@@ -53,14 +95,74 @@ public class Scheduler {
         recomputeFreeMaps();
     }
 
+    /**
+     * Limits the total expected footprint of running forks.
+     * At least one fork is always admitted on idle machine, even if it does not fit the budget.
+     *
+     * @param budgetMb total memory available for forks, in megabytes
+     * @param forkFootprintMb expected footprint of a single fork, in megabytes
+     */
+    public synchronized void setMemoryBudget(long budgetMb, long forkFootprintMb) {
+        if (currentUse != 0) {
+            throw new IllegalStateException("Should be called on idle machine");
+        }
+        memoryBudget = budgetMb;
+        forkFootprint = forkFootprintMb;
+    }
+
+    /**
+     * Computes the affinity to start the fork with. Forks without the affinity of their own,
+     * e.g. with {@link AffinityMode#NONE}, are still kept off the housekeeping CPUs: the harness
+     * runs there, and the forks would otherwise inherit its affinity.
+     *
+     * @param cpuMap CPUs acquired for the fork; null, if not placed
+     * @return CPU list for taskset, or empty string if the fork should run unrestricted
+     */
+    public String forkAffinityMap(CPUMap cpuMap) {
+        String map = (cpuMap != null) ? cpuMap.globalAffinityMap() : "";
+        return map.isEmpty() ? nonHousekeepingMap : map;
+    }
+
+    private static String join(int[] cpus) {
+        StringBuilder sb = new StringBuilder();
+        for (int cpu : cpus) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(cpu);
+        }
+        return sb.toString();
+    }
+
     public synchronized CPUMap tryAcquire(SchedulingClass scl) {
         if (currentUse + scl.numActors() > maxUse) {
             // Over the limit, break out.
             return null;
         }
 
+        if (memoryBudget > 0 && memoryUse > 0 && memoryUse + forkFootprint > memoryBudget) {
+            // Over the memory budget, break out.
+            return null;
+        }
+
         checkInvariants("Before acquire");
 
+        CPUMap cpuMap = allocate(scl);
+        if (cpuMap != null) {
+            memoryUse += forkFootprint;
+            Events.schedulerAcquire(scl, cpuMap.allocatedMap(), currentUse);
+        }
+
+        checkInvariants("After acquire");
+
+        return cpuMap;
+    }
+
+    /**
+     * Takes the CPUs for the scheduling class, without any accounting
+     * past the CPU maps themselves.
+     */
+    private CPUMap allocate(SchedulingClass scl) {
         CPUMap cpuMap;
 
         switch (scl.mode()) {
@@ -80,8 +182,6 @@ public class Scheduler {
 
         recomputeFreeMaps();
 
-        checkInvariants("After acquire");
-
         return cpuMap;
     }
 
@@ -109,38 +209,9 @@ public class Scheduler {
         }
 
         // Need to find enough cores and record them as allocated
-        int[] coreGroupToCore = new int[scl.numCores()];
-        Arrays.fill(coreGroupToCore, -1);
-
-        for (int coreGroup = 0; coreGroup < scl.numCores(); coreGroup++) {
-            // Find next core in the required package
-            int wantPackage = coreGroupToPackage[coreGroup];
-
-            int idx = 0;
-            boolean found = false;
-            while (true) {
-                int core = availableCores.nextSetBit(idx);
-                if (core < 0) break;
-
-                if (topology.coreToPackage(core) == wantPackage) {
-                    coreGroupToCore[coreGroup] = core;
-                    availableCores.set(core, false);
-                    found = true;
-                    break;
-                } else {
-                    idx = core + 1;
-                }
-            }
-
-            if (!found) {
-                // Allocation failed, revert everything set in this round
-                for (int c : coreGroupToCore) {
-                    if (c != -1) {
-                        availableCores.set(c, true);
-                    }
-                }
-                return null;
-            }
+        int[] coreGroupToCore = allocateLocalCores(scl, coreGroupToPackage);
+        if (coreGroupToCore == null) {
+            return null;
         }
 
         // Roll over actors and fill their core assignments
@@ -172,6 +243,12 @@ public class Scheduler {
                 }
             }
         }
+        int allocatedSystemCnt = systemCnt;
+
+        // Housekeeping CPUs are shared by all forks, and only for system uses
+        for (int thread : housekeepingMap) {
+            system[systemCnt++] = thread;
+        }
 
         for (int a : actorMap) {
             if (a == -1) {
@@ -193,29 +270,66 @@ public class Scheduler {
             coreMap[thread] = topology.threadToCore(thread);
         }
 
-        int[] allocatedMap = new int[actorMap.length + systemMap.length];
+        int[] allocatedMap = new int[actorMap.length + allocatedSystemCnt];
         System.arraycopy(actorMap, 0, allocatedMap, 0, actorMap.length);
-        System.arraycopy(systemMap, 0, allocatedMap, actorMap.length, systemMap.length);
+        System.arraycopy(systemMap, 0, allocatedMap, actorMap.length, allocatedSystemCnt);
 
         return new CPUMap(allocatedMap, actorMap, systemMap, packageMap, coreMap);
     }
 
-    private CPUMap scheduleGlobalOrNone(SchedulingClass scl, boolean none) {
-        // This ignores per-actor assignments completely.
-        // It only allocates a separate core per actor, from the pool of all available cores.
+    private boolean matches(int core, int type, boolean isolated) {
+        return (type == ANY_TYPE || topology.coreType(core) == type) &&
+                (!isolated || isolatedCores.get(core));
+    }
 
-        // Need to find enough cores and record them as allocated
-        int[] actorToCore = new int[scl.numActors()];
-        Arrays.fill(actorToCore, -1);
+    private int[] allocateLocalCores(SchedulingClass scl, int[] coreGroupToPackage) {
+        // On hybrid systems, all cores should be of the same type, otherwise actors
+        // would run at vastly different speeds. Try the fastest cores first. Prefer
+        // isolated cores, if there are any. If there are not enough cores of any
+        // single type, allow mixing, but only on otherwise idle machine.
+        for (boolean isolated : isolationPasses) {
+            for (int type = 0; type < topology.coreTypes(); type++) {
+                int[] r = allocateLocalCores(scl, coreGroupToPackage, type, isolated);
+                if (r != null) {
+                    return r;
+                }
+            }
+        }
 
-        for (int a = 0; a < scl.numActors(); a++) {
-            int core = availableCores.nextSetBit(0);
-            if (core >= 0) {
-                actorToCore[a] = core;
-                availableCores.set(core, false);
-            } else {
+        if (topology.coreTypes() > 1 && currentUse == 0) {
+            return allocateLocalCores(scl, coreGroupToPackage, ANY_TYPE, false);
+        }
+
+        return null;
+    }
+
+    private int[] allocateLocalCores(SchedulingClass scl, int[] coreGroupToPackage, int type, boolean isolated) {
+        int[] coreGroupToCore = new int[scl.numCores()];
+        Arrays.fill(coreGroupToCore, -1);
+
+        for (int coreGroup = 0; coreGroup < scl.numCores(); coreGroup++) {
+            // Find next core of given type in the required package
+            int wantPackage = coreGroupToPackage[coreGroup];
+
+            int idx = 0;
+            boolean found = false;
+            while (true) {
+                int core = availableCores.nextSetBit(idx);
+                if (core < 0) break;
+
+                if (topology.coreToPackage(core) == wantPackage && matches(core, type, isolated)) {
+                    coreGroupToCore[coreGroup] = core;
+                    availableCores.set(core, false);
+                    found = true;
+                    break;
+                } else {
+                    idx = core + 1;
+                }
+            }
+
+            if (!found) {
                 // Allocation failed, revert everything set in this round
-                for (int c : actorToCore) {
+                for (int c : coreGroupToCore) {
                     if (c != -1) {
                         availableCores.set(c, true);
                     }
@@ -224,6 +338,19 @@ public class Scheduler {
             }
         }
 
+        return coreGroupToCore;
+    }
+
+    private CPUMap scheduleGlobalOrNone(SchedulingClass scl, boolean none) {
+        // This ignores per-actor assignments completely.
+        // It only allocates a separate core per actor, from the pool of all available cores.
+
+        // Need to find enough cores and record them as allocated
+        int[] actorToCore = allocateGlobalCores(scl);
+        if (actorToCore == null) {
+            return null;
+        }
+
         // Take all affected cores as assignment
         int[] allocatedMap = new int[topology.totalThreads()];
         int cnt = 0;
@@ -264,6 +391,53 @@ public class Scheduler {
         return new CPUMap(allocatedMap, actorMap, systemMap, packageMap, coreMap);
     }
 
+    private int[] allocateGlobalCores(SchedulingClass scl) {
+        // Same core selection policy as with local affinity.
+        for (boolean isolated : isolationPasses) {
+            for (int type = 0; type < topology.coreTypes(); type++) {
+                int[] r = allocateGlobalCores(scl, type, isolated);
+                if (r != null) {
+                    return r;
+                }
+            }
+        }
+
+        if (topology.coreTypes() > 1 && currentUse == 0) {
+            return allocateGlobalCores(scl, ANY_TYPE, false);
+        }
+
+        return null;
+    }
+
+    private int[] allocateGlobalCores(SchedulingClass scl, int type, boolean isolated) {
+        int[] actorToCore = new int[scl.numActors()];
+        Arrays.fill(actorToCore, -1);
+
+        int idx = 0;
+        for (int a = 0; a < scl.numActors(); a++) {
+            int core = availableCores.nextSetBit(idx);
+            while (core >= 0 && !matches(core, type, isolated)) {
+                core = availableCores.nextSetBit(core + 1);
+            }
+
+            if (core >= 0) {
+                actorToCore[a] = core;
+                availableCores.set(core, false);
+                idx = core + 1;
+            } else {
+                // Allocation failed, revert everything set in this round
+                for (int c : actorToCore) {
+                    if (c != -1) {
+                        availableCores.set(c, true);
+                    }
+                }
+                return null;
+            }
+        }
+
+        return actorToCore;
+    }
+
     private void checkInvariants(String when) {
         if (!debug) return;
 
@@ -279,6 +453,12 @@ public class Scheduler {
 
         int use = 0;
         for (int t = 0; t < topology.totalThreads(); t++) {
+            if (reservedCPUs.get(t)) {
+                if (availableCPUs.get(t)) {
+                    throw new IllegalStateException(when + ": Reserved thread should never be available");
+                }
+                continue;
+            }
             if (!availableCPUs.get(t)) {
                 use++;
                 if (availableCores.get(topology.threadToCore(t))) {
@@ -310,15 +490,20 @@ public class Scheduler {
     public synchronized void release(CPUMap cpuMap) {
         checkInvariants("Before release");
 
+        free(cpuMap);
+        memoryUse -= forkFootprint;
+        Events.schedulerRelease(cpuMap.allocatedMap(), currentUse);
+
+        checkInvariants("After release");
+    }
+
+    private void free(CPUMap cpuMap) {
         for (int c : cpuMap.allocatedMap()) {
             availableCPUs.set(c, true);
             availableCores.set(topology.threadToCore(c), true);
             currentUse--;
         }
-
         recomputeFreeMaps();
-
-        checkInvariants("After release");
     }
 
     private void recomputeFreeMaps() {
@@ -340,6 +525,17 @@ public class Scheduler {
         return currentUse;
     }
 
+    /**
+     * @return number of CPUs the actors can run on at once
+     */
+    public int getMaxCpus() {
+        return Math.min(maxUse, availableCPUs.cardinality());
+    }
+
+    public synchronized long getMemoryUseMb() {
+        return memoryUse;
+    }
+
     private static class PackageRecord implements Comparable<PackageRecord> {
         int id;
         int avail;
@@ -520,8 +716,12 @@ public class Scheduler {
         return Collections.singletonList(scl);
     }
 
-    @SuppressWarnings("fallthrough")
     public List<SchedulingClass> scheduleClasses(int actorThreads, int threadLimit, AffinityMode mode) {
+        return fitting(selectClasses(actorThreads, threadLimit, mode));
+    }
+
+    @SuppressWarnings("fallthrough")
+    private List<SchedulingClass> selectClasses(int actorThreads, int threadLimit, AffinityMode mode) {
         switch (mode) {
             case LOCAL:
                 if (topology.trustworthy() && OSSupport.affinitySupportAvailable()) {
@@ -537,4 +737,27 @@ public class Scheduler {
                 throw new IllegalStateException("Unhandled affinity mode: " + mode);
         }
     }
+
+    synchronized List<SchedulingClass> fitting(List<SchedulingClass> scls) {
+        // Reserved CPUs may make some classes impossible to schedule even on idle
+        // machine. Filter them out, otherwise the run would never complete.
+        // This only probes the CPU maps: nothing is really acquired, so there
+        // are no scheduler events and no memory accounting.
+        if (currentUse != 0) {
+            throw new IllegalStateException("Should be called on idle machine");
+        }
+
+        List<SchedulingClass> r = new ArrayList<>();
+        for (SchedulingClass scl : scls) {
+            if (scl.numActors() > maxUse) {
+                continue;
+            }
+            CPUMap cpuMap = allocate(scl);
+            if (cpuMap != null) {
+                free(cpuMap);
+                r.add(scl);
+            }
+        }
+        return r;
+    }
 }
@@ -103,6 +103,10 @@ public class SchedulingClass implements Serializable {
         cores[a] = c;
     }
 
+    public int getCore(int a) {
+        return cores[a];
+    }
+
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
@@ -33,6 +33,9 @@ import java.util.*;
 
 public abstract class AbstractTopology implements Topology {
 
+    // Same as SCHED_CAPACITY_SCALE in Linux kernel
+    public static final int DEFAULT_CAPACITY = 1024;
+
     private SortedSet<Integer> packages = new TreeSet<>();
     private SortedSet<Integer> cores    = new TreeSet<>();
     private SortedSet<Integer> threads  = new TreeSet<>();
@@ -44,6 +47,13 @@ public abstract class AbstractTopology implements Topology {
     private Multimap<Integer, Integer>  coreToThread    = new TreesetMultimap<>();
     private Multimap<Integer, Integer>  packageToCore   = new TreesetMultimap<>();
 
+    private SortedMap<Integer, Integer> threadCapacity  = new TreeMap<>();
+    private SortedSet<Integer> isolatedThreads          = new TreeSet<>();
+
+    private int[] coreToCapacity;
+    private int[] coreToType;
+    private int coreTypes = -1;
+
     private int packagesPerSystem = -1;
     private int coresPerPackage = -1;
     private int threadsPerCore = -1;
@@ -103,6 +113,29 @@ public abstract class AbstractTopology implements Topology {
         coreToThread.put(coreId, threadId);
     }
 
+    /**
+     * Records the relative capacity of the hardware thread. The scale is the same
+     * as Linux scheduler capacity: the fastest threads usually have {@link #DEFAULT_CAPACITY}.
+     * Threads with unrecorded capacity are assumed to have the default one.
+     */
+    protected void setCapacity(int threadId, int capacity) throws TopologyParseException {
+        checkNotFinished();
+
+        if (capacity <= 0) {
+            throw new TopologyParseException("Capacity should be positive: T" + threadId + ", " + capacity);
+        }
+
+        threadCapacity.put(threadId, capacity);
+    }
+
+    /**
+     * Records the hardware thread as isolated from the general OS scheduling.
+     */
+    protected void setIsolated(int threadId) {
+        checkNotFinished();
+        isolatedThreads.add(threadId);
+    }
+
     protected void renumberCores() {
         checkNotFinished();
 
@@ -225,6 +258,38 @@ public abstract class AbstractTopology implements Topology {
             }
         }
 
+        for (int t : threadCapacity.keySet()) {
+            if (!threads.contains(t)) {
+                throw new TopologyParseException("Capacity is set for unknown thread: " + t);
+            }
+        }
+
+        for (int t : isolatedThreads) {
+            if (!threads.contains(t)) {
+                throw new TopologyParseException("Isolation is set for unknown thread: " + t);
+            }
+        }
+
+        // Core capacity is the capacity of its fastest thread. Then rank the distinct
+        // capacities to get the core types, the fastest cores get the type 0.
+        coreToCapacity = new int[cores.size()];
+        SortedSet<Integer> capacities = new TreeSet<>(Comparator.reverseOrder());
+        for (int c : cores) {
+            int cap = 0;
+            for (int t : coreToThread.get(c)) {
+                cap = Math.max(cap, threadCapacity.getOrDefault(t, DEFAULT_CAPACITY));
+            }
+            coreToCapacity[c] = cap;
+            capacities.add(cap);
+        }
+
+        List<Integer> ranked = new ArrayList<>(capacities);
+        coreToType = new int[cores.size()];
+        for (int c : cores) {
+            coreToType[c] = ranked.indexOf(coreToCapacity[c]);
+        }
+        coreTypes = ranked.size();
+
         finished = true;
     }
 
@@ -247,12 +312,23 @@ public abstract class AbstractTopology implements Topology {
                 packagesPerSystem, packagesPerSystem > 1 ? "s" : "",
                 coresPerPackage, coresPerPackage > 1 ? "s" : "",
                 threadsPerCore, threadsPerCore > 1 ? "s" : "");
+        if (coreTypes > 1) {
+            pw.printf("  %d core types, hybrid system%n", coreTypes);
+        }
+        if (!isolatedThreads.isEmpty()) {
+            pw.println("  Isolated threads: " + StringUtils.join(isolatedThreads, ", "));
+        }
         pw.println();
         pw.println("  CPU lists:");
         for (int pack : packages) {
             for (int core : packageToCore.get(pack)) {
                 String tl = StringUtils.join(coreToThread.get(core), ", ");
-                pw.println("    Package #" + pack + ", Core #" + core + ", Threads: " + tl);
+                if (coreTypes > 1) {
+                    pw.println("    Package #" + pack + ", Core #" + core + ", Type #" + coreToType[core] +
+                            " (capacity " + coreToCapacity[core] + "), Threads: " + tl);
+                } else {
+                    pw.println("    Package #" + pack + ", Core #" + core + ", Threads: " + tl);
+                }
             }
         }
     }
@@ -301,6 +377,30 @@ public abstract class AbstractTopology implements Topology {
         return coreToPackage.get(coreId);
     }
 
+    @Override
+    public int coreTypes() {
+        checkFinished();
+        return coreTypes;
+    }
+
+    @Override
+    public int coreType(int coreId) {
+        checkFinished();
+        return coreToType[coreId];
+    }
+
+    @Override
+    public int coreCapacity(int coreId) {
+        checkFinished();
+        return coreToCapacity[coreId];
+    }
+
+    @Override
+    public Collection<Integer> isolatedThreads() {
+        checkFinished();
+        return Collections.unmodifiableSet(isolatedThreads);
+    }
+
     @Override
     public int threadToPackage(int thread) {
         checkFinished();
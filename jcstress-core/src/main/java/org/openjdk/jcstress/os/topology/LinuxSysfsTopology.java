@@ -57,10 +57,14 @@ public class LinuxSysfsTopology extends AbstractTopology {
     }
 
     public LinuxSysfsTopology() throws TopologyParseException {
-        this(new File("/sys/devices/system/cpu/").toPath());
+        this(new File("/sys/devices/system/cpu/").toPath(), new File("/sys/devices/").toPath());
     }
 
     public LinuxSysfsTopology(Path root) throws TopologyParseException {
+        this(root, null);
+    }
+
+    public LinuxSysfsTopology(Path root, Path pmuRoot) throws TopologyParseException {
         this.root = root;
 
         // Parse the number of available CPUs
@@ -114,6 +118,7 @@ public class LinuxSysfsTopology extends AbstractTopology {
             }
         }
 
+        SortedSet<Integer> threads = new TreeSet<>();
         try (DirectoryStream<Path> ds = Files.newDirectoryStream(root)) {
             boolean found = false;
             for (Path d : ds) {
@@ -132,6 +137,7 @@ public class LinuxSysfsTopology extends AbstractTopology {
                         packageId = knownPackage.get(list);
                     }
                     add(packageId, packageId*cpuCount + coreId, threadId);
+                    threads.add(threadId);
                     found = true;
                 }
             }
@@ -142,11 +148,80 @@ public class LinuxSysfsTopology extends AbstractTopology {
             throw new TopologyParseException(e);
         }
 
+        // Figure out if this is a hybrid system. Prefer the capacities the kernel
+        // scheduler uses, fall back to performance/efficiency PMUs Intel hybrid
+        // systems expose.
+        try {
+            if (!parseCapacities(threads) && pmuRoot != null) {
+                parsePMUs(pmuRoot, threads);
+            }
+        } catch (IOException e) {
+            throw new TopologyParseException(e);
+        }
+
+        // Figure out the isolated CPUs: either explicitly isolated from the scheduler
+        // domains, or running in tickless mode. Offline CPUs can be listed as well.
+        try {
+            for (String f : new String[] { "isolated", "nohz_full" }) {
+                for (int t : readOptionalList(root.resolve(f))) {
+                    if (threads.contains(t)) {
+                        setIsolated(t);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new TopologyParseException(e);
+        }
+
         renumberPackages();
         renumberCores();
         finish();
     }
 
+    private List<Integer> readOptionalList(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Collections.emptyList();
+        }
+        List<String> lines = Files.readAllLines(path);
+        if (lines.isEmpty() || lines.get(0).trim().isEmpty() || lines.get(0).trim().equals("(null)")) {
+            return Collections.emptyList();
+        }
+        return StringUtils.decodeCpuList(lines.get(0).trim());
+    }
+
+    private boolean parseCapacities(Set<Integer> threads) throws IOException, TopologyParseException {
+        Set<Integer> capacities = new HashSet<>();
+        for (int t : threads) {
+            Path p = root.resolve("cpu" + t + "/cpu_capacity");
+            if (Files.exists(p)) {
+                int cap = readInt(p);
+                setCapacity(t, cap);
+                capacities.add(cap);
+            }
+        }
+        return capacities.size() > 1;
+    }
+
+    private void parsePMUs(Path pmuRoot, Set<Integer> threads) throws IOException, TopologyParseException {
+        Path perf = pmuRoot.resolve("cpu_core/cpus");
+        Path eff = pmuRoot.resolve("cpu_atom/cpus");
+        if (!Files.exists(perf) || !Files.exists(eff)) {
+            return;
+        }
+
+        // PMUs do not tell the actual capacity, use the nominal ones.
+        for (int t : readList(perf)) {
+            if (threads.contains(t)) {
+                setCapacity(t, DEFAULT_CAPACITY);
+            }
+        }
+        for (int t : readList(eff)) {
+            if (threads.contains(t)) {
+                setCapacity(t, DEFAULT_CAPACITY / 2);
+            }
+        }
+    }
+
     public void printStatus(PrintStream pw) {
         pw.println("  Linux, using " + root);
         super.printStatus(pw);
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.os.topology;
+
+/**
+ * Single package hybrid system, modeled after Intel Alder Lake: performance cores
+ * with sibling threads go first, then efficiency cores with a single thread each.
+ */
+public class PresetHybridTopology extends AbstractTopology {
+
+    public PresetHybridTopology(int perfCores, int perfThreadsPerCore, int effCores) throws TopologyParseException {
+        int tId = 0;
+        for (int c = 0; c < perfCores; c++) {
+            for (int t = 0; t < perfThreadsPerCore; t++) {
+                add(0, c, tId);
+                setCapacity(tId, DEFAULT_CAPACITY);
+                tId++;
+            }
+        }
+        for (int c = 0; c < effCores; c++) {
+            add(0, perfCores + c, tId);
+            setCapacity(tId, DEFAULT_CAPACITY / 2);
+            tId++;
+        }
+
+        finish();
+    }
+
+    @Override
+    public boolean trustworthy() {
+        return true;
+    }
+
+}
@@ -30,6 +30,14 @@ public class PresetListTopology extends AbstractTopology {
         super.add(packageId, coreId, threadId);
     }
 
+    public void setCapacity(int threadId, int capacity) throws TopologyParseException {
+        super.setCapacity(threadId, capacity);
+    }
+
+    public void setIsolated(int threadId) {
+        super.setIsolated(threadId);
+    }
+
     public void finish() throws TopologyParseException {
         super.finish();
     }
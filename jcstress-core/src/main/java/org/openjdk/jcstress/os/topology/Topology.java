@@ -73,4 +73,13 @@ public interface Topology {
     int threadToCore(int threadId);
     int threadToPackage(int threadId);
     int coreToPackage(int coreId);
+
+    // Hybrid systems have cores of different performance.
+    // Core types are ordered by capacity, type 0 being the fastest.
+    int coreTypes();
+    int coreType(int coreId);
+    int coreCapacity(int coreId);
+
+    // Threads isolated from the general OS scheduling, e.g. with isolcpus or nohz_full.
+    Collection<Integer> isolatedThreads();
 }
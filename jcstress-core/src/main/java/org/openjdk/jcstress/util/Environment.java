@@ -65,6 +65,10 @@ public class Environment implements Serializable {
         env = result;
     }
 
+    public Environment(Map<String, String> env) {
+        this.env = new HashMap<>(env);
+    }
+
     public Map<String, String> entries() {
         return Collections.unmodifiableMap(env);
     }
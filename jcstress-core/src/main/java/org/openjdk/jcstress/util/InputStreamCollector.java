@@ -25,18 +25,49 @@
 package org.openjdk.jcstress.util;
 
 import java.io.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 
+/**
+ * Drains the stream into memory.
+ *
+ * Only the first and the last lines of the stream are kept in memory. If the
+ * stream is longer than that, the complete stream is written to the spill file,
+ * and the kept lines are separated with the line that tells how many lines
+ * were skipped, and where to find them.
+ */
 public class InputStreamCollector implements Callable<List<String>> {
 
     private final InputStream in;
-    private final List<String> list;
+    private final int headLines;
+    private final int tailLines;
+    private final File spillFile;
+
+    private final List<String> head;
+    private final ArrayDeque<String> tail;
+    private Writer spill;
+    private boolean spilled;
+    private long skipped;
 
     public InputStreamCollector(InputStream in) {
+        this(in, Integer.MAX_VALUE, 0, null);
+    }
+
+    /**
+     * @param in stream to drain
+     * @param headLines number of first lines to keep
+     * @param tailLines number of last lines to keep
+     * @param spillFile file to write the complete stream to, if it does not fit; null to drop the lines
+     */
+    public InputStreamCollector(InputStream in, int headLines, int tailLines, File spillFile) {
         this.in = in;
-        this.list = new ArrayList<>();
+        this.headLines = headLines;
+        this.tailLines = tailLines;
+        this.spillFile = spillFile;
+        this.head = new ArrayList<>();
+        this.tail = new ArrayDeque<>();
     }
 
     public List<String> call() {
@@ -44,12 +75,106 @@ public class InputStreamCollector implements Callable<List<String>> {
              BufferedReader br = new BufferedReader(isr)) {
             String line;
             while ((line = br.readLine()) != null) {
-                list.add(line);
+                add(line);
             }
         } catch (IOException e) {
             // Do nothing.
+        } finally {
+            closeSpill();
         }
+
+        List<String> list = new ArrayList<>(head);
+        if (skipped > 0) {
+            list.add("[" + skipped + " lines skipped" +
+                    (spilled ? ", full output is in " + spillFile.getAbsolutePath() : "") + "]");
+        }
+        list.addAll(tail);
         return list;
     }
 
+    private void add(String line) {
+        if (spill != null) {
+            writeSpill(line);
+        }
+
+        if (head.size() < headLines) {
+            head.add(line);
+            return;
+        }
+
+        tail.addLast(line);
+        if (tail.size() > tailLines) {
+            if (skipped == 0) {
+                // First overflow: dump everything we have so far, including this line
+                openSpill();
+            }
+            tail.removeFirst();
+            skipped++;
+        }
+    }
+
+    private void openSpill() {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            File dir = spillFile.getParentFile();
+            if (dir != null) {
+                dir.mkdirs();
+            }
+            spill = new BufferedWriter(new FileWriter(spillFile));
+            for (String l : head) {
+                writeSpill(l);
+            }
+            for (String l : tail) {
+                writeSpill(l);
+            }
+        } catch (IOException e) {
+            spillFailed();
+        }
+    }
+
+    private void writeSpill(String line) {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.write(line);
+            spill.write(System.lineSeparator());
+        } catch (IOException e) {
+            spillFailed();
+        }
+    }
+
+    private void spillFailed() {
+        try {
+            if (spill != null) {
+                spill.close();
+            }
+        } catch (IOException e) {
+            // Do nothing.
+        }
+        spill = null;
+        spillFile.delete();
+    }
+
+    private void closeSpill() {
+        if (spill != null) {
+            try {
+                spill.close();
+                spilled = true;
+            } catch (IOException e) {
+                spillFailed();
+            }
+            spill = null;
+        }
+    }
+
+    /**
+     * @return number of lines that were not kept in memory
+     */
+    public long skippedLines() {
+        return skipped;
+    }
+
 }
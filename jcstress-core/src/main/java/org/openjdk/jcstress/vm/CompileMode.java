@@ -95,6 +95,27 @@ public class CompileMode {
         return false;
     }
 
+    /**
+     * @param mode compile mode
+     * @param actors number of actors
+     * @return single-line compile mode label, e.g. "unified" or "split C1/C2"
+     */
+    public static String label(int mode, int actors) {
+        if (mode == UNIFIED) {
+            return "unified";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("split ");
+        for (int a = 0; a < actors; a++) {
+            if (a != 0) {
+                sb.append("/");
+            }
+            sb.append(isInt(mode, a) ? "Int" : (isC1(mode, a) ? "C1" : "C2"));
+        }
+        return sb.toString();
+    }
+
     public static String description(int mode, List<String> actorNames) {
         if (mode == UNIFIED) {
             return "unified across all actors" + System.lineSeparator();
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.vm;
+
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.CPUMap;
+import org.openjdk.jcstress.os.OSSupport;
+import org.openjdk.jcstress.os.Scheduler;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.util.*;
+
+/**
+ * Picks the spin loop style for the host. Every available style runs a small
+ * synthetic two-actor workload ({@link SpinStyleCalibrationMain}) in a forked VM,
+ * placed on the scheduling classes the tests would get. The fastest style that keeps
+ * the actors overlapped wins. If no style keeps the actors overlapped, e.g. when
+ * actors have to time-share the CPU, the fastest style wins.
+ *
+ * <p>The decision is remembered per host, VM and affinity mode, so that the future
+ * runs do not have to calibrate again.
+ */
+public class SpinStyleCalibration {
+
+    static final int TIME_MS = 200;
+
+    // Actors that wait for each other more than this are not running together
+    static final double MAX_SYNC_SHARE = 0.75;
+
+    private static final String CACHE_FILE = "spin-style.properties";
+
+    private final File cacheFile;
+    private final String hostKey;
+
+    /**
+     * @param cacheDir directory to remember the decisions in; null, if not remembered
+     * @param mode affinity mode in use
+     * @param cpus CPUs in use
+     */
+    public SpinStyleCalibration(File cacheDir, AffinityMode mode, int cpus) {
+        this.cacheFile = (cacheDir != null) ? new File(cacheDir, CACHE_FILE) : null;
+        this.hostKey = hostName() + "/" + System.getProperty("os.arch") + "/" + cpus + "/" + mode + "/" +
+                System.getProperty("java.vm.name") + "/" + System.getProperty("java.vm.version");
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "localhost";
+        }
+    }
+
+    public static List<SpinLoopStyle> candidates() {
+        List<SpinLoopStyle> styles = new ArrayList<>();
+        for (SpinLoopStyle s : SpinLoopStyle.values()) {
+            if (s == SpinLoopStyle.THREAD_SPIN_WAIT && !VMSupport.spinWaitHintAvailable()) continue;
+            styles.add(s);
+        }
+        return styles;
+    }
+
+    /**
+     * @return style picked for this host before, or null if there is none
+     * @throws IOException if the decisions cannot be read
+     */
+    public SpinLoopStyle cached() throws IOException {
+        if (cacheFile == null || !cacheFile.exists()) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream is = new FileInputStream(cacheFile)) {
+            props.load(is);
+        }
+        String v = props.getProperty(hostKey);
+        if (v == null) {
+            return null;
+        }
+        try {
+            SpinLoopStyle style = SpinLoopStyle.valueOf(v);
+            return candidates().contains(style) ? style : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remembers the style picked for this host.
+     *
+     * @param style style
+     * @throws IOException if the decisions cannot be written
+     */
+    public void store(SpinLoopStyle style) throws IOException {
+        if (cacheFile == null) {
+            return;
+        }
+        cacheFile.getParentFile().mkdirs();
+        Properties props = new Properties();
+        if (cacheFile.exists()) {
+            try (InputStream is = new FileInputStream(cacheFile)) {
+                props.load(is);
+            }
+        }
+        props.setProperty(hostKey, style.name());
+        try (OutputStream os = new FileOutputStream(cacheFile)) {
+            props.store(os, "Spin loop styles picked by calibration, per host");
+        }
+    }
+
+    /**
+     * Runs the workload with all candidate styles.
+     *
+     * @param cpuMap CPUs acquired for the workload; null, if not placed
+     * @param affinityMap CPU list to start the workload with, see {@link Scheduler#forkAffinityMap(CPUMap)}
+     * @param local whether actors should be bound to their CPUs
+     * @return measurements, one per style
+     * @throws VMSupportException if the forked VM fails
+     */
+    public List<Sample> measure(CPUMap cpuMap, String affinityMap, boolean local) throws VMSupportException {
+        List<String> command = new ArrayList<>();
+
+        if (OSSupport.taskSetAvailable() && !affinityMap.isEmpty()) {
+            command.add("taskset");
+            command.add("-c");
+            command.add(affinityMap);
+        }
+
+        command.addAll(VMSupport.getJavaInvokeLine());
+        command.addAll(OSSupport.getJavaInvokeArguments());
+        command.add(SpinStyleCalibrationMain.class.getName());
+        command.add(String.valueOf(TIME_MS));
+
+        StringBuilder styles = new StringBuilder();
+        for (SpinLoopStyle s : candidates()) {
+            if (styles.length() > 0) {
+                styles.append(",");
+            }
+            styles.append(s.name());
+        }
+        command.add(styles.toString());
+
+        if (cpuMap != null && local) {
+            StringBuilder cpus = new StringBuilder();
+            for (int a : cpuMap.actorMap()) {
+                if (cpus.length() > 0) {
+                    cpus.append(",");
+                }
+                cpus.append(a);
+            }
+            command.add(cpus.toString());
+        }
+
+        return parse(VMSupport.runWith(command));
+    }
+
+    static List<Sample> parse(String output) {
+        List<Sample> samples = new ArrayList<>();
+        for (String line : output.split("\\R")) {
+            String[] split = line.trim().split(" ");
+            if (split.length != 6 || !split[0].equals(SpinStyleCalibrationMain.PREFIX)) continue;
+            try {
+                samples.add(new Sample(SpinLoopStyle.valueOf(split[1]),
+                        Long.parseLong(split[2]), Long.parseLong(split[3]),
+                        Long.parseLong(split[4]), Long.parseLong(split[5])));
+            } catch (IllegalArgumentException e) {
+                // Skip malformed line
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * @param samples measurements, possibly from several scheduling classes
+     * @return the fastest style that keeps the actors overlapped in all scheduling
+     *         classes, or the fastest style if none does; null if there are no measurements
+     */
+    public static SpinLoopStyle choose(List<Sample> samples) {
+        Map<SpinLoopStyle, Sample> merged = new EnumMap<>(SpinLoopStyle.class);
+        Set<SpinLoopStyle> overlapped = EnumSet.allOf(SpinLoopStyle.class);
+        for (Sample s : samples) {
+            merged.merge(s.style, s, Sample::plus);
+            if (!s.overlapped()) {
+                overlapped.remove(s.style);
+            }
+        }
+
+        Sample best = null;
+        for (Sample s : merged.values()) {
+            if (best == null) {
+                best = s;
+                continue;
+            }
+            boolean sOverlapped = overlapped.contains(s.style);
+            boolean bestOverlapped = overlapped.contains(best.style);
+            if (sOverlapped != bestOverlapped) {
+                if (sOverlapped) {
+                    best = s;
+                }
+            } else if (s.stridesPerSecond() > best.stridesPerSecond()) {
+                best = s;
+            }
+        }
+        return (best != null) ? best.style : null;
+    }
+
+    public static class Sample {
+        private final SpinLoopStyle style;
+        private final long strides;
+        private final long wallNs;
+        private final long runNs;
+        private final long syncNs;
+
+        public Sample(SpinLoopStyle style, long strides, long wallNs, long runNs, long syncNs) {
+            this.style = style;
+            this.strides = strides;
+            this.wallNs = wallNs;
+            this.runNs = runNs;
+            this.syncNs = syncNs;
+        }
+
+        Sample plus(Sample other) {
+            return new Sample(style, strides + other.strides, wallNs + other.wallNs,
+                    runNs + other.runNs, syncNs + other.syncNs);
+        }
+
+        public SpinLoopStyle style() {
+            return style;
+        }
+
+        public double stridesPerSecond() {
+            return (wallNs > 0) ? strides * 1e9 / wallNs : 0;
+        }
+
+        public double syncShare() {
+            long total = runNs + syncNs;
+            return (total > 0) ? (double) syncNs / total : 1;
+        }
+
+        public boolean overlapped() {
+            return syncShare() <= MAX_SYNC_SHARE;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.vm;
+
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.WorkerSync;
+import org.openjdk.jcstress.os.AffinitySupport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic workload for the spin style calibration. Two actors run strides of
+ * plain array updates and rendezvous in {@link WorkerSync}, the same way generated
+ * runners do. For every requested style, prints the number of strides completed,
+ * the wall time, and the time actors spent in the run loops and in synchronization.
+ *
+ * <p>Arguments: time per style in milliseconds, comma-separated styles, and optionally
+ * comma-separated CPUs to bind the actors to.
+ */
+public class SpinStyleCalibrationMain {
+
+    static final String PREFIX = "SPIN-STYLE";
+
+    static final int ACTORS = 2;
+    static final int STRIDE_SIZE = 256;
+    static final int STRIDE_COUNT = 40;
+
+    public static void main(String... args) throws InterruptedException {
+        int timeMs = Integer.parseInt(args[0]);
+        String[] styles = args[1].split(",");
+
+        int[] cpus = null;
+        if (args.length > 2) {
+            String[] split = args[2].split(",");
+            cpus = new int[split.length];
+            for (int c = 0; c < split.length; c++) {
+                cpus[c] = Integer.parseInt(split[c]);
+            }
+            AffinitySupport.tryInit();
+        }
+
+        for (String s : styles) {
+            SpinLoopStyle style = SpinLoopStyle.valueOf(s);
+
+            // Warm up first, so that the measurement does not include compilation
+            new Workload(style, cpus).run(timeMs / 4);
+
+            Workload w = new Workload(style, cpus);
+            long wallNs = w.run(timeMs);
+            System.out.println(PREFIX + " " + style.name() + " " + w.strides() + " " + wallNs + " " + w.runNs() + " " + w.syncNs());
+        }
+    }
+
+    private static class Workload {
+        private final SpinLoopStyle style;
+        private final Actor[] actors;
+        private volatile boolean stopped;
+        private volatile WorkerSync workerSync;
+
+        Workload(SpinLoopStyle style, int[] cpus) {
+            this.style = style;
+            this.workerSync = new WorkerSync(false, ACTORS, style);
+            this.actors = new Actor[ACTORS];
+            for (int a = 0; a < ACTORS; a++) {
+                actors[a] = new Actor(this, (cpus != null && a < cpus.length) ? cpus[a] : -1);
+            }
+        }
+
+        long run(int timeMs) throws InterruptedException {
+            long start = System.nanoTime();
+            for (Actor a : actors) {
+                a.start();
+            }
+            TimeUnit.MILLISECONDS.sleep(timeMs);
+            stopped = true;
+            for (Actor a : actors) {
+                a.join();
+            }
+            return System.nanoTime() - start;
+        }
+
+        long strides() {
+            long s = 0;
+            for (Actor a : actors) {
+                s += a.strides;
+            }
+            return s / ACTORS;
+        }
+
+        long runNs() {
+            long s = 0;
+            for (Actor a : actors) {
+                s += a.runNs;
+            }
+            return s;
+        }
+
+        long syncNs() {
+            long s = 0;
+            for (Actor a : actors) {
+                s += a.syncNs;
+            }
+            return s;
+        }
+    }
+
+    private static class Actor extends Thread {
+        private final Workload w;
+        private final int cpu;
+        private final int[] data;
+
+        private long strides;
+        private long runNs;
+        private long syncNs;
+
+        Actor(Workload w, int cpu) {
+            this.w = w;
+            this.cpu = cpu;
+            this.data = new int[STRIDE_SIZE * STRIDE_COUNT];
+        }
+
+        @Override
+        public void run() {
+            if (cpu >= 0) {
+                try {
+                    AffinitySupport.bind(cpu);
+                } catch (Exception e) {
+                    // Do not care
+                }
+            }
+
+            int[] d = data;
+            while (true) {
+                WorkerSync sync = w.workerSync;
+                if (sync.stopped) {
+                    return;
+                }
+                int check = 0;
+                long time = System.nanoTime();
+                for (int start = 0; start < d.length; start += STRIDE_SIZE) {
+                    for (int c = start; c < start + STRIDE_SIZE; c++) {
+                        d[c]++;
+                    }
+                    long ran = System.nanoTime();
+                    check += ACTORS;
+                    sync.awaitCheckpoint(check);
+                    long synced = System.nanoTime();
+                    runNs += ran - time;
+                    syncNs += synced - ran;
+                    time = synced;
+                    strides++;
+                }
+                if (sync.tryStartUpdate()) {
+                    w.workerSync = new WorkerSync(w.stopped, ACTORS, w.style);
+                }
+                sync.postUpdate();
+                syncNs += System.nanoTime() - time;
+            }
+        }
+    }
+
+}
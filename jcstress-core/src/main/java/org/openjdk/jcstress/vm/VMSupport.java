@@ -339,13 +339,23 @@ public class VMSupport {
     }
 
     public static void tryWith(String... lines) throws VMSupportException {
-        try {
-            List<String> commandString = getJavaInvokeLine();
-            commandString.addAll(
-                    Arrays.stream(lines)
-                            .filter(s -> !s.isEmpty())
-                            .collect(Collectors.toList()));
+        List<String> commandString = getJavaInvokeLine();
+        commandString.addAll(
+                Arrays.stream(lines)
+                        .filter(s -> !s.isEmpty())
+                        .collect(Collectors.toList()));
+        runWith(commandString);
+    }
 
+    /**
+     * Runs the command to completion.
+     *
+     * @param commandString full command line
+     * @return merged output and error streams
+     * @throws VMSupportException if the command fails
+     */
+    public static String runWith(List<String> commandString) throws VMSupportException {
+        try {
             ProcessBuilder pb = new ProcessBuilder(commandString);
             Process p = pb.start();
 
@@ -362,10 +372,11 @@ public class VMSupport {
             errDrainer.join();
             outDrainer.join();
 
+            String msg = new String(baos.toByteArray());
             if (ecode != 0) {
-                String msg = new String(baos.toByteArray());
                 throw new VMSupportException(msg);
             }
+            return msg;
         } catch (IOException | InterruptedException ex) {
             throw new VMSupportException(ex.getMessage());
         }
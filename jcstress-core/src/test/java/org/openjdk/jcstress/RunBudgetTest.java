@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.DiskWriteCollector;
+import org.openjdk.jcstress.infra.collectors.Telemetry;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.grading.ResultStore;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RunBudgetTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static TestConfig config(String name, int forkId) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.NONE, 2);
+        return new TestConfig(SpinLoopStyle.HARD, 1000, 5, 2,
+                name, name, name + "_Runner",
+                Collections.emptyList(), forkId, 64, Arrays.asList("actor1", "actor2"),
+                0, scl, 100, 10, null);
+    }
+
+    private static List<TestConfig> configs(int tests, int forks) {
+        List<TestConfig> configs = new ArrayList<>();
+        for (int f = 0; f < forks; f++) {
+            for (int t = 0; t < tests; t++) {
+                configs.add(config("T" + t, f));
+            }
+        }
+        return configs;
+    }
+
+    @Test
+    public void durations() {
+        Assert.assertEquals(90_000, RunBudget.parseDuration("90s"));
+        Assert.assertEquals(5_400_000, RunBudget.parseDuration("1h30m"));
+        Assert.assertEquals(1_500, RunBudget.parseDuration("1s500ms"));
+        Assert.assertEquals(-1, RunBudget.parseDuration("30"));
+        Assert.assertEquals(-1, RunBudget.parseDuration("1x"));
+        Assert.assertEquals(-1, RunBudget.parseDuration(""));
+        Assert.assertEquals("1h30m", RunBudget.formatDuration(5_400_000));
+        Assert.assertEquals("1m5s", RunBudget.formatDuration(65_000));
+        Assert.assertEquals("500ms", RunBudget.formatDuration(500));
+    }
+
+    @Test
+    public void fits() throws Exception {
+        // 10 tests x 4 forks x 2 threads x (1.5s + 5s) = 520s of CPU time
+        List<TestConfig> configs = configs(10, 4);
+        RunBudget budget = new RunBudget(200_000, 4, null);
+        Assert.assertEquals(configs.size(), budget.plan(configs).size());
+    }
+
+    @Test
+    public void dropsForks() throws Exception {
+        List<TestConfig> configs = configs(10, 4);
+        RunBudget budget = new RunBudget(70_000, 4, null);
+        List<TestConfig> planned = budget.plan(configs);
+        Assert.assertEquals(20, planned.size());
+        for (TestConfig cfg : planned) {
+            Assert.assertTrue(cfg.forkId < 2);
+            Assert.assertEquals(1000, cfg.time);
+            Assert.assertEquals(5, cfg.iters);
+        }
+    }
+
+    @Test
+    public void shortensIterations() throws Exception {
+        List<TestConfig> configs = configs(10, 4);
+        RunBudget budget = new RunBudget(20_000, 4, null);
+        List<TestConfig> planned = budget.plan(configs);
+        Assert.assertEquals(10, planned.size());
+        Assert.assertTrue(budget.estimateWall(planned) <= 20_000);
+        for (TestConfig cfg : planned) {
+            Assert.assertEquals(0, cfg.forkId);
+            Assert.assertTrue(cfg.time < 1000);
+            Assert.assertEquals(5, cfg.iters);
+        }
+
+        // Not even the fork overhead fits: shortest iterations
+        planned = new RunBudget(1_000, 4, null).plan(configs);
+        Assert.assertEquals(10, planned.size());
+        for (TestConfig cfg : planned) {
+            Assert.assertEquals(RunBudget.MIN_TIME_MS, cfg.time);
+            Assert.assertEquals(1, cfg.iters);
+        }
+    }
+
+    @Test
+    public void history() throws Exception {
+        // T0 iterations took twice the configured time in the past run
+        TestResult r = new TestResult(Status.NORMAL);
+        r.setConfig(config("T0", 0));
+        r.addState("0", 100);
+        Telemetry t = new Telemetry();
+        t.addWall(0, 10_000_000_000L);
+        r.addTelemetry(t);
+
+        File file = new File(tmp.getRoot(), "jcstress-results-2026-01-01-10-00-00.bin");
+        DiskWriteCollector dwc = new DiskWriteCollector(file.getAbsolutePath());
+        dwc.add(r);
+        dwc.close();
+        ResultStore store = new ResultStore(tmp.newFolder());
+        store.ingest(file.getAbsolutePath());
+
+        RunBudget budget = new RunBudget(1_000_000, 4, null);
+        Assert.assertEquals(1, budget.useHistory(store));
+
+        // Known configuration, in any fork: 2 threads x (1.5s + 2 x 5s)
+        Assert.assertEquals(23_000, budget.estimate(Collections.singletonList(config("T0", 3))));
+        // Unknown configuration: 2 threads x (1.5s + 5s)
+        Assert.assertEquals(13_000, budget.estimate(Collections.singletonList(config("T1", 0))));
+    }
+
+    @Test
+    public void pacing() throws Exception {
+        List<TestConfig> configs = configs(10, 4);
+
+        RunBudget ahead = new RunBudget(1_000_000, 4, null);
+        ahead.start(configs);
+        for (TestConfig cfg : configs) {
+            Assert.assertTrue(ahead.admit(cfg));
+        }
+
+        // Fell behind: first forks still run, the rest are skipped
+        RunBudget behind = new RunBudget(1_000, 4, null);
+        behind.start(configs);
+        for (TestConfig cfg : configs) {
+            Assert.assertEquals(cfg.forkId == 0, behind.admit(cfg));
+        }
+        Assert.assertEquals(30, behind.skipped());
+    }
+
+    @Test
+    public void overheadEstimates() throws Exception {
+        File dir = tmp.newFolder();
+        RunBudget budget = new RunBudget(1_000, 4, dir);
+        Assert.assertEquals(RunBudget.DEFAULT_FORK_OVERHEAD_MS, budget.overheadMs(), 0);
+
+        TestConfig cfg = config("T", 0);
+        budget.finished(cfg, 5_000 + 500);
+        budget.finished(cfg, 5_000 + 700);
+        Assert.assertEquals(600, budget.overheadMs(), 0.1);
+        budget.save();
+
+        Assert.assertEquals(600, new RunBudget(1_000, 4, dir).overheadMs(), 0.1);
+    }
+
+}
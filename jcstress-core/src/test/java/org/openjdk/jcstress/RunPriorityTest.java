@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RunPriorityTest {
+
+    private static TestConfig config(String name, int time, List<String> jvmArgs) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.NONE, 2);
+        return new TestConfig(SpinLoopStyle.HARD, time, 5, 2,
+                name, name, name + "_Runner",
+                jvmArgs, 0, 64, Arrays.asList("actor1", "actor2"),
+                0, scl, 100, 10, null);
+    }
+
+    private static TestConfig config(String name) {
+        return config(name, 1000, Collections.singletonList("-Xint"));
+    }
+
+    private static TestResult result(TestConfig cfg, Status status) {
+        TestResult r = new TestResult(status);
+        r.setConfig(cfg);
+        return r;
+    }
+
+    @Test
+    public void tiers() {
+        RunPriority priority = new RunPriority();
+        priority.add(result(config("Failed"), Status.NORMAL));
+        priority.add(result(config("Failed"), Status.VM_ERROR));
+        priority.add(result(config("Passed"), Status.NORMAL));
+
+        Assert.assertEquals(RunPriority.FAILED, priority.tier(config("Failed")));
+        Assert.assertEquals(RunPriority.REST, priority.tier(config("Passed")));
+        Assert.assertEquals(RunPriority.NEW, priority.tier(config("New")));
+        Assert.assertEquals(RunPriority.NEW, priority.tier(config("Passed", 1000, Collections.singletonList("-XX:+UseSerialGC"))));
+
+        List<TestConfig> configs = Arrays.asList(config("Failed"), config("Passed"), config("New"), config("Other"));
+        Assert.assertEquals(1, priority.count(configs, RunPriority.FAILED));
+        Assert.assertEquals(2, priority.count(configs, RunPriority.NEW));
+        Assert.assertEquals(1, priority.count(configs, RunPriority.REST));
+    }
+
+    @Test
+    public void acrossPresets() {
+        RunPriority priority = new RunPriority();
+        priority.add(result(config("T", 1000, Arrays.asList("-XX:+StressGCM", "-XX:StressSeed=1")), Status.TIMEOUT_ERROR));
+
+        // Other preset, other seed: still the same configuration
+        Assert.assertEquals(RunPriority.FAILED, priority.tier(config("T", 200, Arrays.asList("-XX:+StressGCM", "-XX:StressSeed=2"))));
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.infra.TestInfo;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.util.*;
+
+public class ShardTest {
+
+    private List<TestConfig> configs() throws Exception {
+        Options opts = new Options(new String[0]);
+        opts.parse();
+
+        List<TestConfig> configs = new ArrayList<>();
+        for (int t = 0; t < 100; t++) {
+            TestInfo info = new TestInfo("Test" + t, "Test" + t, "Test" + t + "_Runner", "", 2, Arrays.asList("a1", "a2"), false);
+            for (AffinityMode mode : AffinityMode.values()) {
+                SchedulingClass scl = new SchedulingClass(mode, 2);
+                for (int cm = 0; cm < 3; cm++) {
+                    configs.add(new TestConfig(opts, info, 0, Collections.singletonList("-XX:+UseParallelGC"), cm, scl));
+                    configs.add(new TestConfig(opts, info, 0, Collections.singletonList("-XX:+UseSerialGC"), cm, scl));
+                }
+            }
+        }
+        return configs;
+    }
+
+    @Test
+    public void coverExactlyOnce() throws Exception {
+        List<TestConfig> configs = configs();
+
+        for (int count = 1; count <= 5; count++) {
+            List<TestConfig> all = new ArrayList<>();
+            for (int index = 0; index < count; index++) {
+                List<TestConfig> shard = JCStress.shard(configs, index, count);
+                Assert.assertFalse("Shard should not be empty", shard.isEmpty());
+                all.addAll(shard);
+            }
+            Assert.assertEquals(configs.size(), all.size());
+            Assert.assertTrue(configs.containsAll(all));
+        }
+    }
+
+    @Test
+    public void stable() throws Exception {
+        List<TestConfig> first = configs();
+        List<TestConfig> second = configs();
+        Collections.shuffle(second);
+
+        Set<String> firstShard = new HashSet<>();
+        for (TestConfig cfg : JCStress.shard(first, 1, 3)) {
+            firstShard.add(cfg.name + " " + cfg.compileMode + " " + cfg.shClass.mode() + " " + cfg.jvmArgs);
+        }
+        Set<String> secondShard = new HashSet<>();
+        for (TestConfig cfg : JCStress.shard(second, 1, 3)) {
+            secondShard.add(cfg.name + " " + cfg.compileMode + " " + cfg.shClass.mode() + " " + cfg.jvmArgs);
+        }
+        Assert.assertEquals(firstShard, secondShard);
+    }
+
+    @Test
+    public void knownHash() throws Exception {
+        // Hash values should never change, otherwise shards would disagree between versions
+        TestConfig cfg = configs().get(0);
+        Assert.assertEquals(1973035877307086548L, cfg.stableHash());
+    }
+
+    @Test
+    public void stressSeeds() throws Exception {
+        // Random stress seeds differ between shard processes, and should not affect the hash
+        Options opts = new Options(new String[0]);
+        opts.parse();
+        TestInfo info = new TestInfo("Test", "Test", "Test_Runner", "", 2, Arrays.asList("a1", "a2"), false);
+        SchedulingClass scl = new SchedulingClass(AffinityMode.NONE, 2);
+        TestConfig c1 = new TestConfig(opts, info, 0, Arrays.asList("-XX:+StressGCM", "-XX:StressSeed=1"), 0, scl);
+        TestConfig c2 = new TestConfig(opts, info, 0, Arrays.asList("-XX:+StressGCM", "-XX:StressSeed=2"), 0, scl);
+        TestConfig c3 = new TestConfig(opts, info, 0, Arrays.asList("-XX:+StressLCM", "-XX:StressSeed=1"), 0, scl);
+        Assert.assertEquals(c1.stableHash(), c2.stableHash());
+        Assert.assertNotEquals(c1.stableHash(), c3.stableHash());
+    }
+
+}
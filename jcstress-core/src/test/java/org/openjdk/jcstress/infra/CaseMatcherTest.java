@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.annotations.Expect;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class CaseMatcherTest {
+
+    private static final StateCase UNMATCHED = new StateCase("", Expect.FORBIDDEN, "unmatched");
+
+    private static CaseMatcher matcher(StateCase... cases) {
+        return new CaseMatcher(Arrays.asList(cases), UNMATCHED);
+    }
+
+    @Test
+    public void exact() {
+        StateCase c1 = new StateCase("0, 0", Expect.ACCEPTABLE, "c1");
+        StateCase c2 = new StateCase("1, 1", Expect.ACCEPTABLE, "c2");
+        CaseMatcher m = matcher(c1, c2);
+
+        Assert.assertSame(c1, m.match("0, 0"));
+        Assert.assertSame(c2, m.match("1, 1"));
+        Assert.assertSame(UNMATCHED, m.match("0, 1"));
+    }
+
+    @Test
+    public void exactBeforeRegex() {
+        StateCase c1 = new StateCase(".*", Expect.ACCEPTABLE, "c1");
+        StateCase c2 = new StateCase("1, 1", Expect.FORBIDDEN, "c2");
+        CaseMatcher m = matcher(c1, c2);
+
+        Assert.assertSame(c2, m.match("1, 1"));
+        Assert.assertSame(c1, m.match("0, 1"));
+    }
+
+    @Test
+    public void firstRegexWins() {
+        StateCase c1 = new StateCase("0, .*", Expect.ACCEPTABLE, "c1");
+        StateCase c2 = new StateCase(".*, 0", Expect.FORBIDDEN, "c2");
+        StateCase c3 = new StateCase(".*", Expect.ACCEPTABLE_INTERESTING, "c3");
+        CaseMatcher m = matcher(c1, c2, c3);
+
+        Assert.assertSame(c1, m.match("0, 0"));
+        Assert.assertSame(c2, m.match("1, 0"));
+        Assert.assertSame(c3, m.match("1, 1"));
+    }
+
+    @Test
+    public void innerGroups() {
+        StateCase c1 = new StateCase("(a|b)(c)", Expect.ACCEPTABLE, "c1");
+        StateCase c2 = new StateCase("(d)+", Expect.ACCEPTABLE, "c2");
+        StateCase c3 = new StateCase("e|f", Expect.ACCEPTABLE, "c3");
+        CaseMatcher m = matcher(c1, c2, c3);
+
+        Assert.assertSame(c1, m.match("bc"));
+        Assert.assertSame(c2, m.match("ddd"));
+        Assert.assertSame(c3, m.match("f"));
+        Assert.assertSame(UNMATCHED, m.match("ef"));
+    }
+
+    @Test
+    public void backReferences() {
+        StateCase c1 = new StateCase("(\\d), \\1", Expect.ACCEPTABLE, "c1");
+        StateCase c2 = new StateCase("\\d, \\d", Expect.FORBIDDEN, "c2");
+        CaseMatcher m = matcher(c1, c2);
+
+        Assert.assertSame(c1, m.match("1, 1"));
+        Assert.assertSame(c2, m.match("1, 2"));
+    }
+
+    @Test
+    public void namedGroups() {
+        StateCase c1 = new StateCase("(?<a>\\d), 0", Expect.ACCEPTABLE, "c1");
+        StateCase c2 = new StateCase("(?<a>\\d), 1", Expect.FORBIDDEN, "c2");
+        StateCase c3 = new StateCase("(?<a>\\d), (?<b>\\d)", Expect.ACCEPTABLE_INTERESTING, "c3");
+        CaseMatcher m = matcher(c1, c2, c3);
+
+        Assert.assertSame(c1, m.match("1, 0"));
+        Assert.assertSame(c2, m.match("1, 1"));
+        Assert.assertSame(c3, m.match("1, 2"));
+        Assert.assertSame(UNMATCHED, m.match("1, x"));
+    }
+
+    @Test
+    public void lookbehindCombines() {
+        StateCase c1 = new StateCase("\\d, (?<=1, )\\d", Expect.ACCEPTABLE, "c1");
+        StateCase c2 = new StateCase("\\d, (?<!1, )\\d", Expect.FORBIDDEN, "c2");
+        CaseMatcher m = matcher(c1, c2);
+
+        Assert.assertSame(c1, m.match("1, 2"));
+        Assert.assertSame(c2, m.match("2, 2"));
+    }
+
+    @Test
+    public void sameAsSequential() {
+        List<StateCase> cases = Arrays.asList(
+                new StateCase("[0-3], 0", Expect.ACCEPTABLE, "c1"),
+                new StateCase("2, [0-9]", Expect.FORBIDDEN, "c2"),
+                new StateCase("5, 5", Expect.ACCEPTABLE, "c3"),
+                new StateCase("[5-9], .", Expect.ACCEPTABLE_INTERESTING, "c4"));
+        CaseMatcher m = new CaseMatcher(cases, UNMATCHED);
+
+        for (int a = 0; a < 10; a++) {
+            for (int b = 0; b < 10; b++) {
+                String s = a + ", " + b;
+                StateCase exp = UNMATCHED;
+                for (StateCase c : cases) {
+                    if (c.matchesExactly(s)) {
+                        exp = c;
+                        break;
+                    }
+                }
+                if (exp == UNMATCHED) {
+                    for (StateCase c : cases) {
+                        if (c.matches(s)) {
+                            exp = c;
+                            break;
+                        }
+                    }
+                }
+                Assert.assertSame(s, exp, m.match(s));
+                Assert.assertSame(s, exp, m.match(s));
+            }
+        }
+    }
+
+}
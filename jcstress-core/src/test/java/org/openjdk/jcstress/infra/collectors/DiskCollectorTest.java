@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.CPUMap;
+import org.openjdk.jcstress.os.SchedulingClass;
+import org.openjdk.jcstress.util.Environment;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+public class DiskCollectorTest {
+
+    static final int TESTS = 20;
+    static final int RESULTS = 1000;
+
+    static TestResult result(int id) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+        scl.setPackage(0, 0);
+        scl.setCore(0, id % 3);
+        CPUMap map = new CPUMap(new int[] {0, 1}, new int[] {0, 1}, new int[] {2},
+                new int[] {0, 0, 0}, new int[] {0, 1, 2});
+        TestConfig cfg = new TestConfig(SpinLoopStyle.HARD, 100, 5, 2,
+                "Test" + (id % TESTS), "Test" + (id % TESTS), "Test_Runner",
+                Arrays.asList("-Xint", "-XX:+UseSerialGC"), id, 64, Arrays.asList("actor1", null),
+                id % 4, scl, 100, 10, map);
+
+        TestResult r = new TestResult(Status.NORMAL);
+        r.setConfig(cfg);
+        r.addState("0, 0", id);
+        r.addState("1, 1", 42);
+        r.addMessage("Message " + (id % 7));
+        r.addVMOuts(Collections.singletonList("Out " + id));
+        r.addVMErrs(Collections.singletonList("Err"));
+        r.addUsage(new ResourceUsage(1, 1000 + id, 900, 65536 + id, 3, 20, 150));
+        Telemetry t = new Telemetry();
+        for (int it = 0; it < 2; it++) {
+            for (int a = 0; a < 2; a++) {
+                t.add(it, a, 1000 + id, 500 + id / 2 * a, 800_000, 150_000 + a, 50_000);
+            }
+            t.addWall(it, 1_000_000);
+        }
+        r.addTelemetry(t);
+        return r;
+    }
+
+    private static void assertSame(TestResult exp, TestResult act) {
+        Assert.assertEquals(exp.getName(), act.getName());
+        Assert.assertEquals(exp.status(), act.status());
+        Assert.assertEquals(exp.getConfig(), act.getConfig());
+        Assert.assertEquals(exp.getConfig().forkId, act.getConfig().forkId);
+        Assert.assertEquals(exp.getConfig().actorNames, act.getConfig().actorNames);
+        Assert.assertArrayEquals(exp.getConfig().cpuMap.systemMap(), act.getConfig().cpuMap.systemMap());
+        Assert.assertEquals(new HashSet<>(exp.getStateKeys()), new HashSet<>(act.getStateKeys()));
+        for (String key : exp.getStateKeys()) {
+            Assert.assertEquals(exp.getCount(key), act.getCount(key));
+        }
+        Assert.assertEquals(exp.getMessages(), act.getMessages());
+        Assert.assertEquals(exp.getVmOut(), act.getVmOut());
+        Assert.assertEquals(exp.getVmErr(), act.getVmErr());
+        Assert.assertEquals(exp.getUsage().wallMs(), act.getUsage().wallMs());
+        Assert.assertEquals(exp.getUsage().peakRssKb(), act.getUsage().peakRssKb());
+        Assert.assertEquals(exp.getUsage().jitMs(), act.getUsage().jitMs());
+        Assert.assertEquals(exp.getTelemetry().entries().size(), act.getTelemetry().entries().size());
+        for (int a = 0; a < exp.getTelemetry().actors(); a++) {
+            Assert.assertEquals(exp.getTelemetry().total(a).samples(), act.getTelemetry().total(a).samples());
+            Assert.assertEquals(exp.getTelemetry().total(a).consumed(), act.getTelemetry().total(a).consumed());
+            Assert.assertEquals(exp.getTelemetry().total(a).syncNs(), act.getTelemetry().total(a).syncNs());
+        }
+        Assert.assertEquals(exp.getTelemetry().iterations(), act.getTelemetry().iterations());
+        Assert.assertEquals(exp.getTelemetry().wallNs(), act.getTelemetry().wallNs());
+        Assert.assertEquals(Environment.getInstance().entries(), act.getEnv().entries());
+    }
+
+    static File write() throws IOException {
+        File file = File.createTempFile("jcstress", "results");
+        file.deleteOnExit();
+        DiskWriteCollector dwc = new DiskWriteCollector(file.getAbsolutePath());
+        for (int c = 0; c < RESULTS; c++) {
+            dwc.add(result(c));
+        }
+        dwc.close();
+        return file;
+    }
+
+    private static List<TestResult> readAll(File file) throws Exception {
+        InProcessCollector collector = new InProcessCollector();
+        DiskReadCollector drc = new DiskReadCollector(file.getAbsolutePath(), collector);
+        drc.dump();
+        drc.close();
+        return new ArrayList<>(collector.getTestResults());
+    }
+
+    @Test
+    public void roundtrip() throws Exception {
+        List<TestResult> results = readAll(write());
+        Assert.assertEquals(RESULTS, results.size());
+        for (int c = 0; c < RESULTS; c++) {
+            assertSame(result(c), results.get(c));
+        }
+    }
+
+    @Test
+    public void byName() throws Exception {
+        File file = write();
+
+        InProcessCollector collector = new InProcessCollector();
+        DiskReadCollector drc = new DiskReadCollector(file.getAbsolutePath(), collector);
+        Assert.assertEquals(TESTS, drc.testNames().size());
+        drc.dump(Arrays.asList("Test3", "Test5"));
+        drc.close();
+
+        Collection<TestResult> results = collector.getTestResults();
+        Assert.assertEquals(2 * RESULTS / TESTS, results.size());
+        for (TestResult r : results) {
+            Assert.assertTrue(r.getName().equals("Test3") || r.getName().equals("Test5"));
+        }
+    }
+
+    @Test
+    public void runsByName() throws Exception {
+        File file = write();
+
+        DiskReadCollector drc = new DiskReadCollector(file.getAbsolutePath(), r -> {});
+        for (int t = 0; t < TESTS; t++) {
+            int count = 0;
+            for (ResultFormat.Run run : drc.runs().get("Test" + t)) {
+                count += run.count;
+            }
+            Assert.assertEquals(RESULTS / TESTS, count);
+        }
+        drc.close();
+    }
+
+    @Test
+    public void concurrentByName() throws Exception {
+        File file = write();
+
+        DiskReadCollector drc = new DiskReadCollector(file.getAbsolutePath(), r -> {});
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < TESTS; t++) {
+            String name = "Test" + t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int c = 0; c < 10; c++) {
+                        InProcessCollector collector = new InProcessCollector();
+                        drc.dump(Collections.singleton(name), collector);
+                        Assert.assertEquals(RESULTS / TESTS, collector.getTestResults().size());
+                        for (TestResult r : collector.getTestResults()) {
+                            Assert.assertEquals(name, r.getName());
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        drc.close();
+        Assert.assertEquals(Collections.emptyList(), errors);
+    }
+
+    @Test
+    public void repeatedOutput() throws Exception {
+        OutputLog log = new OutputLog();
+        for (int c = 0; c < 100; c++) {
+            log.addFork(Arrays.asList(
+                    new OutputLog.Block(Arrays.asList("Warning", "\tat line " + (c % 3))),
+                    new OutputLog.Block(Collections.singletonList("Done"))));
+        }
+
+        TestResult exp = result(0);
+        exp.addVMOuts(log);
+        exp.addVMOutSkipped(123);
+
+        File file = File.createTempFile("jcstress", "results");
+        file.deleteOnExit();
+        DiskWriteCollector dwc = new DiskWriteCollector(file.getAbsolutePath());
+        dwc.add(exp);
+        dwc.close();
+
+        List<TestResult> results = readAll(file);
+        Assert.assertEquals(1, results.size());
+        TestResult act = results.get(0);
+        Assert.assertEquals(exp.getVmOutLog().blocks(), act.getVmOutLog().blocks());
+        Assert.assertEquals(5, act.getVmOutLog().blocks().size());
+        Assert.assertEquals(exp.getVmOutLog().output(), act.getVmOutLog().output());
+        Assert.assertEquals(123, act.getVmOutSkipped());
+        Assert.assertEquals(0, act.getVmErrSkipped());
+    }
+
+    @Test
+    public void verbatimOutput() {
+        TestResult r = result(0);
+        r.addVMOuts(Arrays.asList("A", "B", "A", "A"));
+        r.addMessage("M");
+        r.addMessage("M");
+
+        // Plain accessors keep the repeated lines, in order
+        Assert.assertEquals(Arrays.asList("Out 0", "A", "B", "A", "A"), r.getVmOut());
+        Assert.assertEquals(Arrays.asList("Message 0", "M", "M"), r.getMessages());
+        Assert.assertEquals(3, r.getVmOutLog().lines().size());
+    }
+
+    @Test
+    public void truncated() throws Exception {
+        File file = write();
+
+        // Chop off the index and part of the last block, as if the run had crashed
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        File cut = File.createTempFile("jcstress", "results");
+        cut.deleteOnExit();
+        Files.write(cut.toPath(), Arrays.copyOf(bytes, bytes.length * 3 / 4));
+
+        List<TestResult> results = readAll(cut);
+        Assert.assertFalse(results.isEmpty());
+        Assert.assertTrue(results.size() < RESULTS);
+        for (int c = 0; c < results.size(); c++) {
+            assertSame(result(c), results.get(c));
+        }
+    }
+
+    @Test
+    public void legacyRejected() throws Exception {
+        File file = File.createTempFile("jcstress", "results");
+        file.deleteOnExit();
+        try (ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(file)))) {
+            oos.writeObject("result");
+        }
+
+        try {
+            new DiskReadCollector(file.getAbsolutePath(), r -> {});
+            Assert.fail("Should reject the serialized format");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("serialized format of older versions"));
+        }
+    }
+
+    @Test
+    public void appendTruncated() throws Exception {
+        File file = write();
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        File cut = File.createTempFile("jcstress", "results");
+        cut.deleteOnExit();
+        Files.write(cut.toPath(), Arrays.copyOf(bytes, bytes.length * 3 / 4));
+
+        // Continue from where the crashed run had stopped
+        InProcessCollector existing = new InProcessCollector();
+        DiskWriteCollector dwc = DiskWriteCollector.append(cut.getAbsolutePath(), existing);
+        int had = existing.getTestResults().size();
+        Assert.assertTrue(had > 0 && had < RESULTS);
+        for (int c = had; c < RESULTS; c++) {
+            dwc.add(result(c));
+        }
+        dwc.close();
+
+        List<TestResult> results = readAll(cut);
+        Assert.assertEquals(RESULTS, results.size());
+        for (int c = 0; c < RESULTS; c++) {
+            assertSame(result(c), results.get(c));
+        }
+
+        // Index covers both the old and the new blocks
+        InProcessCollector collector = new InProcessCollector();
+        DiskReadCollector drc = new DiskReadCollector(cut.getAbsolutePath(), collector);
+        drc.dump(Collections.singletonList("Test3"));
+        drc.close();
+        Assert.assertEquals(RESULTS / TESTS, collector.getTestResults().size());
+    }
+
+    @Test
+    public void appendComplete() throws Exception {
+        File file = write();
+
+        InProcessCollector existing = new InProcessCollector();
+        DiskWriteCollector dwc = DiskWriteCollector.append(file.getAbsolutePath(), existing);
+        Assert.assertEquals(RESULTS, existing.getTestResults().size());
+        dwc.add(result(RESULTS));
+        dwc.close();
+
+        List<TestResult> results = readAll(file);
+        Assert.assertEquals(RESULTS + 1, results.size());
+        assertSame(result(RESULTS), results.get(RESULTS));
+    }
+
+}
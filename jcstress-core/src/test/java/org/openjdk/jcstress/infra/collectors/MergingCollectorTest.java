@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.infra.grading.ReportUtils;
+
+import java.io.File;
+import java.util.*;
+
+public class MergingCollectorTest {
+
+    private static Map<String, Long> counts(TestResult r) {
+        Map<String, Long> m = new HashMap<>();
+        for (String key : r.getStateKeys()) {
+            m.put(key, r.getCount(key));
+        }
+        return m;
+    }
+
+    private static void assertSameMerge(Collection<TestResult> exp, Collection<TestResult> act) {
+        Assert.assertEquals(exp.size(), act.size());
+        Map<Object, TestResult> expMap = new HashMap<>();
+        for (TestResult r : exp) {
+            expMap.put(Arrays.asList(r.getConfig(), r.getConfig().jvmArgs, r.getConfig().compileMode), r);
+        }
+        for (TestResult r : act) {
+            TestResult e = expMap.get(Arrays.asList(r.getConfig(), r.getConfig().jvmArgs, r.getConfig().compileMode));
+            Assert.assertNotNull(e);
+            Assert.assertEquals(e.status(), r.status());
+            Assert.assertEquals(counts(e), counts(r));
+            Assert.assertEquals(new HashSet<>(e.getMessages()), new HashSet<>(r.getMessages()));
+            Assert.assertEquals(e.getVmOut().size(), r.getVmOut().size());
+            assertSameUsage(e.getUsage(), r.getUsage());
+        }
+    }
+
+    private static void assertSameUsage(ResourceUsage exp, ResourceUsage act) {
+        Assert.assertEquals(exp.forks(), act.forks());
+        Assert.assertEquals(exp.wallMs(), act.wallMs());
+        Assert.assertEquals(exp.cpuMs(), act.cpuMs());
+        Assert.assertEquals(exp.peakRssKb(), act.peakRssKb());
+        Assert.assertEquals(exp.gcCount(), act.gcCount());
+        Assert.assertEquals(exp.gcMs(), act.gcMs());
+        Assert.assertEquals(exp.jitMs(), act.jitMs());
+    }
+
+    private static List<TestResult> all() {
+        List<TestResult> list = new ArrayList<>();
+        for (int c = 0; c < DiskCollectorTest.RESULTS; c++) {
+            list.add(DiskCollectorTest.result(c));
+        }
+        return list;
+    }
+
+    @Test
+    public void inMemory() {
+        MergingCollector collector = new MergingCollector(true);
+        for (TestResult r : all()) {
+            collector.add(r);
+        }
+
+        Assert.assertEquals(DiskCollectorTest.TESTS, collector.names().size());
+
+        List<TestResult> byName = collector.mergedByName();
+        Assert.assertEquals(DiskCollectorTest.TESTS, byName.size());
+        for (TestResult r : byName) {
+            List<TestResult> exp = new ArrayList<>();
+            for (TestResult e : all()) {
+                if (e.getName().equals(r.getName())) {
+                    exp.add(e);
+                }
+            }
+            Assert.assertEquals(counts(ReportUtils.mergedByName(exp).get(0)), counts(r));
+            assertSameUsage(ReportUtils.mergedByName(exp).get(0).getUsage(), r.getUsage());
+            Assert.assertEquals(exp.size(), r.getUsage().forks());
+
+            Telemetry t = r.getTelemetry();
+            Assert.assertEquals(2, t.actors());
+            Assert.assertEquals(4, t.entries().size());
+            long samples = 0;
+            long produced = 0;
+            for (TestResult e : exp) {
+                samples += e.getTelemetry().total(1).samples();
+                produced += e.getTelemetry().samples();
+            }
+            Assert.assertEquals(samples, t.total(1).samples());
+            Assert.assertEquals(produced, t.samples());
+            Assert.assertEquals(exp.size() * 1_000_000L, t.wallNs(0));
+            Assert.assertEquals(produced * 1e9 / (exp.size() * 2_000_000L), t.samplesPerSecond(), 1e-6);
+            Assert.assertEquals(exp.size() * 2L * 150_001, t.total(1).syncNs());
+            assertSameMerge(ReportUtils.mergedByConfig(exp), collector.mergedByConfig(r.getName()));
+        }
+    }
+
+    @Test
+    public void mostExpensive() {
+        MergingCollector collector = new MergingCollector(true);
+        for (TestResult r : all()) {
+            collector.add(r);
+        }
+
+        List<TestResult> top = ReportUtils.mostExpensive(collector.mergedByName(), 3);
+        Assert.assertEquals(3, top.size());
+        Assert.assertEquals("Test19", top.get(0).getName());
+        Assert.assertEquals("Test18", top.get(1).getName());
+        Assert.assertEquals("Test17", top.get(2).getName());
+        Assert.assertEquals(65536 + DiskCollectorTest.RESULTS - 1, top.get(0).getUsage().peakRssKb());
+    }
+
+    @Test
+    public void fromDisk() throws Exception {
+        File file = DiskCollectorTest.write();
+
+        MergingCollector memory = new MergingCollector(true);
+        MergingCollector disk = new MergingCollector(false);
+        for (TestResult r : all()) {
+            memory.add(r);
+        }
+
+        DiskReadCollector drc = new DiskReadCollector(file.getAbsolutePath(), disk);
+        drc.dump();
+        disk.addSource(drc);
+
+        Assert.assertEquals(memory.names(), disk.names());
+        for (String name : memory.names()) {
+            assertSameMerge(memory.mergedByConfig(name), disk.mergedByConfig(name));
+        }
+        disk.close();
+    }
+
+}
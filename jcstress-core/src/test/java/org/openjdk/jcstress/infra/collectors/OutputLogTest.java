@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class OutputLogTest {
+
+    private static OutputLog fork(String... lines) {
+        OutputLog log = new OutputLog();
+        for (String l : lines) {
+            log.add(l);
+        }
+        return log;
+    }
+
+    @Test
+    public void singleFork() {
+        OutputLog log = fork("a", "b", "c");
+        Assert.assertFalse(log.isEmpty());
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), log.lines());
+        Assert.assertEquals(3, log.blocks().size());
+        Assert.assertEquals(1, log.forks().size());
+    }
+
+    @Test
+    public void empty() {
+        OutputLog log = new OutputLog();
+        Assert.assertTrue(log.isEmpty());
+        Assert.assertTrue(log.lines().isEmpty());
+        Assert.assertTrue(log.blocks().isEmpty());
+        Assert.assertTrue(log.forks().isEmpty());
+    }
+
+    @Test
+    public void stackTrace() {
+        OutputLog log = fork(
+                "Exception in thread \"main\" java.lang.IllegalStateException: boom",
+                "\tat Foo.bar(Foo.java:42)",
+                "Caused by: java.lang.NullPointerException",
+                "\t... 1 more",
+                "done");
+        Map<OutputLog.Block, Integer> blocks = log.blocks();
+        Assert.assertEquals(2, blocks.size());
+        Iterator<OutputLog.Block> it = blocks.keySet().iterator();
+        Assert.assertEquals(4, it.next().lines().size());
+        Assert.assertEquals(Collections.singletonList("done"), it.next().lines());
+    }
+
+    @Test
+    public void dedup() {
+        OutputLog merged = new OutputLog();
+        for (int c = 0; c < 1000; c++) {
+            merged.addAll(fork("warning", "\tat foo"));
+            if (c % 10 == 0) {
+                merged.addAll(fork("other"));
+            }
+        }
+
+        Map<OutputLog.Block, Integer> blocks = merged.blocks();
+        Assert.assertEquals(2, blocks.size());
+
+        Iterator<Map.Entry<OutputLog.Block, Integer>> it = blocks.entrySet().iterator();
+        Map.Entry<OutputLog.Block, Integer> first = it.next();
+        Assert.assertEquals(Arrays.asList("warning", "\tat foo"), first.getKey().lines());
+        Assert.assertEquals(1000, (int) first.getValue());
+
+        Map.Entry<OutputLog.Block, Integer> second = it.next();
+        Assert.assertEquals(Collections.singletonList("other"), second.getKey().lines());
+        Assert.assertEquals(100, (int) second.getValue());
+
+        Assert.assertEquals(Arrays.asList("warning", "\tat foo", "other"), merged.lines());
+        Assert.assertEquals(1100, merged.forks().size());
+    }
+
+    @Test
+    public void dedupAmongDistinctOutput() {
+        // Forks print the same warning among the output unique to every fork
+        OutputLog merged = new OutputLog();
+        for (int c = 0; c < 100; c++) {
+            merged.addAll(fork("Started fork " + c, "warning", "Finished fork " + c));
+        }
+
+        Map<OutputLog.Block, Integer> blocks = merged.blocks();
+        Assert.assertEquals(201, blocks.size());
+        Assert.assertEquals(100, (int) blocks.get(new OutputLog.Block(Collections.singletonList("warning"))));
+    }
+
+    @Test
+    public void forkOrder() {
+        OutputLog merged = new OutputLog();
+        merged.addAll(fork("a", "b"));
+        merged.addAll(fork("b", "a", "a"));
+
+        List<List<OutputLog.Block>> forks = merged.forks();
+        Assert.assertEquals(2, forks.size());
+        Assert.assertEquals(Arrays.asList("a", "b"), lines(forks.get(0)));
+        Assert.assertEquals(Arrays.asList("b", "a", "a"), lines(forks.get(1)));
+        Assert.assertEquals(Arrays.asList("a", "b", "b", "a", "a"), merged.output());
+        Assert.assertEquals(3, (int) merged.blocks().get(new OutputLog.Block(Collections.singletonList("a"))));
+    }
+
+    @Test
+    public void mergeCounts() {
+        OutputLog a = new OutputLog();
+        a.addAll(fork("x"));
+        a.addAll(fork("x"));
+
+        OutputLog b = new OutputLog();
+        b.addAll(fork("x"));
+        b.addAll(a);
+
+        Assert.assertEquals(3, (int) b.blocks().values().iterator().next());
+        Assert.assertEquals(3, b.forks().size());
+    }
+
+    private static List<String> lines(List<OutputLog.Block> blocks) {
+        List<String> lines = new ArrayList<>();
+        for (OutputLog.Block b : blocks) {
+            lines.addAll(b.lines());
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+import org.openjdk.jcstress.util.ClassReferences;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ResultCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    // Any classes on the class path would do for the test and the runner
+    private static final String TEST = ResultCacheTest.class.getName();
+    private static final String RUNNER = ClassReferences.class.getName();
+
+    private static TestConfig config(String name, int compileMode, String... jvmArgs) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+        return new TestConfig(SpinLoopStyle.HARD, 100, 5, 2,
+                name, name, RUNNER,
+                Arrays.asList(jvmArgs), 0, 64, Arrays.asList("actor1", "actor2"),
+                compileMode, scl, 100, 10, null);
+    }
+
+    @Test
+    public void keys() throws Exception {
+        ResultCache cache = new ResultCache(tmp.getRoot());
+
+        String k = cache.key(config(TEST, 0, "-XX:+StressGCM", "-XX:StressSeed=1"));
+        Assert.assertNotNull(k);
+        Assert.assertEquals(k, cache.key(config(TEST, 0, "-XX:+StressGCM", "-XX:StressSeed=2")));
+        Assert.assertNotEquals(k, cache.key(config(TEST, 1, "-XX:+StressGCM", "-XX:StressSeed=1")));
+        Assert.assertNotEquals(k, cache.key(config(TEST, 0, "-XX:+StressLCM", "-XX:StressSeed=1")));
+
+        // Keys are stable across instances
+        Assert.assertEquals(k, new ResultCache(tmp.getRoot()).key(config(TEST, 0, "-XX:+StressGCM", "-XX:StressSeed=3")));
+
+        // Test classes are not available
+        Assert.assertNull(cache.key(config("org.openjdk.NoSuchTest", 0)));
+    }
+
+    @Test
+    public void storeAndLookup() throws Exception {
+        ResultCache cache = new ResultCache(tmp.getRoot());
+        TestConfig cfg = config(TEST, 0, "-Xint");
+        Assert.assertNull(cache.lookup(cfg));
+
+        TestResult r = new TestResult(Status.NORMAL);
+        r.setConfig(cfg);
+        r.addState("1, 1", 42);
+        r.addVMOuts(Arrays.asList("line"));
+        cache.store(r);
+        Assert.assertEquals(1, cache.stored());
+
+        // Second store of the same configuration is a no-op
+        cache.store(r);
+        Assert.assertEquals(1, cache.stored());
+
+        TestResult c = new ResultCache(tmp.getRoot()).lookup(cfg);
+        Assert.assertNotNull(c);
+        Assert.assertEquals(42, c.getCount("1, 1"));
+        Assert.assertEquals(Arrays.asList("line"), c.getVmOut());
+        Assert.assertEquals(cfg, c.getConfig());
+
+        Assert.assertNull(cache.lookup(config(TEST, 1, "-Xint")));
+    }
+
+    @Test
+    public void failedNotCached() throws Exception {
+        ResultCache cache = new ResultCache(tmp.getRoot());
+        TestResult r = new TestResult(Status.VM_ERROR);
+        r.setConfig(config(TEST, 0));
+        cache.add(r);
+        Assert.assertEquals(0, cache.stored());
+        List<String> files = Arrays.asList(tmp.getRoot().list());
+        Assert.assertTrue(files.toString(), files.isEmpty());
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RunJournalTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static List<TestConfig> plan() {
+        List<TestConfig> plan = new ArrayList<>();
+        for (int c = 0; c < 10; c++) {
+            plan.add(DiskCollectorTest.result(c).getConfig());
+        }
+        return plan;
+    }
+
+    private static TestResult result(TestConfig cfg) {
+        TestResult r = new TestResult(Status.NORMAL);
+        r.setConfig(cfg);
+        return r;
+    }
+
+    @Test
+    public void fileFor() {
+        Assert.assertEquals("jcstress-results-1.journal", RunJournal.fileFor("jcstress-results-1.bin").getPath());
+        Assert.assertEquals("results.journal", RunJournal.fileFor("results").getPath());
+    }
+
+    @Test
+    public void resume() throws Exception {
+        File file = tmp.newFile();
+        List<TestConfig> plan = plan();
+
+        RunJournal journal = RunJournal.create(file, "results.bin", 42, plan);
+        journal.add(result(plan.get(3)));
+        journal.add(result(plan.get(7)));
+        // Equal, but not planned configuration
+        journal.add(result(DiskCollectorTest.result(3).getConfig()));
+        journal.close();
+
+        RunJournal resumed = RunJournal.resume(file);
+        Assert.assertEquals("results.bin", resumed.resultFile());
+        Assert.assertEquals(42, resumed.seed());
+        Assert.assertEquals(plan, resumed.plan());
+        for (int c = 0; c < plan.size(); c++) {
+            Assert.assertEquals(plan.get(c).forkId, resumed.plan().get(c).forkId);
+            Assert.assertEquals(c == 3 || c == 7, resumed.isCompleted(c));
+        }
+
+        // Resumed journal records completions too
+        resumed.add(result(resumed.plan().get(5)));
+        resumed.close();
+        Assert.assertTrue(RunJournal.resume(file).isCompleted(5));
+    }
+
+    @Test
+    public void torn() throws Exception {
+        File file = tmp.newFile();
+        List<TestConfig> plan = plan();
+
+        RunJournal journal = RunJournal.create(file, "results.bin", 42, plan);
+        journal.add(result(plan.get(1)));
+        journal.add(result(plan.get(2)));
+        journal.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+
+        RunJournal resumed = RunJournal.resume(file);
+        Assert.assertTrue(resumed.isCompleted(1));
+        Assert.assertFalse(resumed.isCompleted(2));
+        resumed.add(result(resumed.plan().get(4)));
+        resumed.close();
+
+        RunJournal again = RunJournal.resume(file);
+        Assert.assertTrue(again.isCompleted(1));
+        Assert.assertFalse(again.isCompleted(2));
+        Assert.assertTrue(again.isCompleted(4));
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jcstress.Options;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.MergingCollector;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.util.*;
+
+public class LiveReportPrinterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static TestResult result(String name, int count) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.NONE, 2);
+        TestConfig cfg = new TestConfig(SpinLoopStyle.HARD, 100, 5, 2,
+                name, name, name + "_Runner",
+                Collections.emptyList(), 0, 64, Arrays.asList("actor1", "actor2"),
+                0, scl, 100, 10, null);
+        TestResult r = new TestResult(Status.NORMAL);
+        r.setConfig(cfg);
+        r.addState("0", count);
+        return r;
+    }
+
+    /**
+     * Records the rendered pages, instead of writing them.
+     */
+    private static class RecordingPrinter extends HTMLReportPrinter {
+        final List<String> pages = new ArrayList<>();
+        final Map<String, Long> samples = new HashMap<>();
+        int indexes;
+
+        RecordingPrinter(Options opts, MergingCollector collector) {
+            super(opts, collector);
+        }
+
+        @Override
+        public void emitTestReport(String name, List<TestResult> results) {
+            pages.add(name);
+            long sum = 0;
+            for (TestResult r : results) {
+                sum += r.getTotalCount();
+            }
+            samples.put(name, sum);
+        }
+
+        @Override
+        public void emitIndex() {
+            indexes++;
+        }
+    }
+
+    private RecordingPrinter html;
+
+    private LiveReportPrinter printer() throws Exception {
+        Options opts = new Options(new String[] { "-r", tmp.getRoot().getAbsolutePath() });
+        opts.parse();
+        MergingCollector collector = new MergingCollector(true);
+        html = new RecordingPrinter(opts, collector);
+        // Interval is long enough for the test to drive the updates itself
+        return new LiveReportPrinter(3600, collector, html);
+    }
+
+    @Test
+    public void dirtyPages() throws Exception {
+        LiveReportPrinter live = printer();
+        live.add(result("T1", 10));
+        live.add(result("T2", 20));
+        live.update();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("T1", "T2")), new HashSet<>(html.pages));
+        Assert.assertEquals(1, html.indexes);
+
+        // Only the test with the new results is rendered again
+        html.pages.clear();
+        live.add(result("T1", 5));
+        live.update();
+        Assert.assertEquals(Collections.singletonList("T1"), html.pages);
+        Assert.assertEquals(Long.valueOf(15), html.samples.get("T1"));
+        Assert.assertEquals(2, html.indexes);
+
+        // Nothing new, nothing rendered
+        html.pages.clear();
+        live.update();
+        Assert.assertTrue(html.pages.isEmpty());
+        Assert.assertEquals(2, html.indexes);
+
+        live.close();
+        Assert.assertTrue(live.pagesDone());
+    }
+
+    @Test
+    public void closeFlushes() throws Exception {
+        LiveReportPrinter live = printer();
+        live.add(result("T1", 10));
+        live.update();
+
+        // Results after the last update are rendered on close
+        html.pages.clear();
+        live.add(result("T2", 20));
+        live.add(result("T1", 1));
+        live.close();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("T1", "T2")), new HashSet<>(html.pages));
+        Assert.assertEquals(Long.valueOf(11), html.samples.get("T1"));
+        Assert.assertEquals(2, html.indexes);
+        Assert.assertTrue(live.pagesDone());
+        Assert.assertEquals(2, live.collector().names().size());
+    }
+
+    @Test
+    public void failedUpdate() throws Exception {
+        Options opts = new Options(new String[] { "-r", tmp.getRoot().getAbsolutePath() });
+        opts.parse();
+        MergingCollector collector = new MergingCollector(true);
+        LiveReportPrinter live = new LiveReportPrinter(3600, collector, new HTMLReportPrinter(opts, collector) {
+            @Override
+            public void emitTestReport(String name, List<TestResult> results) {
+                throw new IllegalStateException("Broken");
+            }
+        });
+        live.add(result("T1", 10));
+        live.close();
+
+        // Final report has to render all pages again
+        Assert.assertFalse(live.pagesDone());
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MetricsServerTest {
+
+    private static TestResult result(String name, Status status) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.NONE, 2);
+        TestConfig cfg = new TestConfig(SpinLoopStyle.HARD, 100, 5, 2,
+                name, name, name + "_Runner",
+                Collections.emptyList(), 0, 64, Arrays.asList("actor1", "actor2"),
+                0, scl, 100, 10, null);
+        TestResult r = new TestResult(status);
+        r.setConfig(cfg);
+        return r;
+    }
+
+    @Test
+    public void serves() throws Exception {
+        MetricsServer metrics = new MetricsServer(0, 4, Arrays.asList("T1", "T1", "T\"2"), Collections.emptyList());
+        try {
+            metrics.add(result("T1", Status.VM_ERROR));
+            metrics.add(result("T\"2", Status.API_MISMATCH));
+
+            URL url = new URL("http://localhost:" + metrics.address().getPort() + "/metrics");
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            Assert.assertEquals(200, conn.getResponseCode());
+            Assert.assertEquals(MetricsServer.CONTENT_TYPE, conn.getContentType());
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (InputStream is = conn.getInputStream()) {
+                byte[] buf = new byte[4096];
+                int read;
+                while ((read = is.read(buf)) != -1) {
+                    bos.write(buf, 0, read);
+                }
+            }
+            String body = new String(bos.toByteArray(), StandardCharsets.UTF_8);
+
+            Assert.assertTrue(body, body.contains("jcstress_cpus_configured 4\n"));
+            Assert.assertTrue(body, body.contains("jcstress_results_planned 3\n"));
+            Assert.assertTrue(body, body.contains("jcstress_results_total{status=\"VM_ERROR\"} 1\n"));
+            Assert.assertTrue(body, body.contains("jcstress_results_total{status=\"NORMAL\"} 0\n"));
+            Assert.assertTrue(body, body.contains("jcstress_test_results_planned{test=\"T1\"} 2\n"));
+            Assert.assertTrue(body, body.contains("jcstress_test_results{test=\"T\\\"2\"} 1\n"));
+            Assert.assertTrue(body, body.contains("jcstress_eta_seconds "));
+            Assert.assertTrue(body, body.endsWith("# EOF\n"));
+        } finally {
+            metrics.close();
+        }
+    }
+
+    @Test
+    public void cachedNotInEta() throws Exception {
+        TestResult hit = result("T1", Status.VM_ERROR);
+        hit.addState("0", 1000);
+        MetricsServer metrics = new MetricsServer(0, 4, Arrays.asList("T1", "T1", "T2"), Collections.singletonList(hit));
+        try {
+            metrics.add(hit);
+            String body = metrics.render();
+            Assert.assertTrue(body, body.contains("jcstress_results_cached 1\n"));
+            Assert.assertTrue(body, body.contains("jcstress_samples_total 1000\n"));
+            Assert.assertTrue(body, body.contains("jcstress_samples_per_second 0\n"));
+            Assert.assertFalse(body, body.contains("jcstress_eta_seconds "));
+
+            metrics.add(result("T1", Status.VM_ERROR));
+            body = metrics.render();
+            Assert.assertTrue(body, body.contains("jcstress_eta_seconds "));
+        } finally {
+            metrics.close();
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.JCStress;
+import org.openjdk.jcstress.Options;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.DiskWriteCollector;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ResultDiffTest {
+
+    private static TestResult result(String name, int compileMode, Status status, Object... stateCounts) {
+        return result(name, compileMode, Collections.singletonList("-Xint"), status, stateCounts);
+    }
+
+    private static TestResult result(String name, int compileMode, List<String> jvmArgs, Status status, Object... stateCounts) {
+        return result(name, compileMode, jvmArgs, SpinLoopStyle.HARD, 100, status, stateCounts);
+    }
+
+    private static TestResult result(String name, int compileMode, List<String> jvmArgs, SpinLoopStyle spinStyle, int time,
+                                     Status status, Object... stateCounts) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+        TestConfig cfg = new TestConfig(spinStyle, time, 5, 2,
+                name, name, name + "_Runner",
+                jvmArgs, 0, 64, Arrays.asList("actor1", "actor2"),
+                compileMode, scl, 100, 10, null);
+
+        TestResult r = new TestResult(status);
+        r.setConfig(cfg);
+        for (int c = 0; c < stateCounts.length; c += 2) {
+            r.addState((String) stateCounts[c], (Integer) stateCounts[c + 1]);
+        }
+        return r;
+    }
+
+    private static File write(TestResult... results) throws Exception {
+        File file = File.createTempFile("jcstress", "results");
+        file.deleteOnExit();
+        DiskWriteCollector dwc = new DiskWriteCollector(file.getAbsolutePath());
+        for (TestResult r : results) {
+            dwc.add(r);
+        }
+        dwc.close();
+        return file;
+    }
+
+    @Test
+    public void same() {
+        TestResult a = result("T", 0, Status.NORMAL, "0", 1000, "1", 2000);
+        TestResult b = result("T", 0, Status.NORMAL, "0", 1010, "1", 1990);
+        Assert.assertTrue(ResultDiff.diff(a, b).isEmpty());
+    }
+
+    @Test
+    public void states() {
+        TestResult a = result("T", 0, Status.NORMAL, "0", 1000, "1", 2000);
+        TestResult b = result("T", 0, Status.NORMAL, "1", 2000, "2", 5);
+        List<String> diffs = ResultDiff.diff(a, b);
+        Assert.assertEquals(3, diffs.size());
+        Assert.assertTrue(diffs.get(0), diffs.get(0).startsWith("disappeared state \"0\""));
+        Assert.assertTrue(diffs.get(1), diffs.get(1).startsWith("shifted state \"1\""));
+        Assert.assertTrue(diffs.get(2), diffs.get(2).startsWith("new state \"2\""));
+    }
+
+    @Test
+    public void status() {
+        TestResult a = result("T", 0, Status.NORMAL, "0", 1000);
+        TestResult b = result("T", 0, Status.VM_ERROR, "0", 1000);
+        Assert.assertEquals(Collections.singletonList("status: NORMAL -> VM_ERROR"), ResultDiff.diff(a, b));
+    }
+
+    @Test
+    public void grading() {
+        TestResult a = result("T", 0, Status.NORMAL, "0", 1000);
+        TestResult b = result("T", 0, Status.NORMAL, "0", 1000);
+        Assert.assertEquals(Collections.singletonList("result: OK -> FAILED"), ResultDiff.diff(a, b, "OK", "FAILED"));
+        Assert.assertTrue(ResultDiff.diff(a, b, "OK", "OK").isEmpty());
+        // Not graded without the test description
+        Assert.assertTrue(ResultDiff.diff(a, b, null, null).isEmpty());
+    }
+
+    @Test
+    public void shift() {
+        TestResult a = result("T", 0, Status.NORMAL, "0", 10_000, "1", 90_000);
+        TestResult b = result("T", 0, Status.NORMAL, "0", 20_000, "1", 80_000);
+        List<String> diffs = ResultDiff.diff(a, b);
+        Assert.assertEquals(2, diffs.size());
+        Assert.assertTrue(diffs.get(0), diffs.get(0).startsWith("shifted state \"0\""));
+    }
+
+    @Test
+    public void significance() {
+        // Small samples: not significant
+        Assert.assertFalse(ResultDiff.isSignificantShift(1, 10, 2, 10));
+        // Large samples, large shift: significant
+        Assert.assertTrue(ResultDiff.isSignificantShift(1000, 10_000, 2000, 10_000));
+        // Huge samples, negligible shift: not reported
+        Assert.assertFalse(ResultDiff.isSignificantShift(100_000_000L, 1_000_000_000L, 100_050_000L, 1_000_000_000L));
+        Assert.assertEquals(0, ResultDiff.zScore(5, 10, 5, 10), 1e-9);
+    }
+
+    @Test
+    public void files() throws Exception {
+        File a = write(
+                result("T1", 0, Status.NORMAL, "0", 500, "1", 500),
+                result("T1", 0, Status.NORMAL, "0", 500, "1", 500),
+                result("T1", 1, Status.NORMAL, "0", 1000),
+                result("T2", 0, Status.NORMAL, "0", 1000));
+        File b = write(
+                result("T1", 0, Status.NORMAL, "0", 1000, "1", 1000),
+                result("T1", 2, Status.NORMAL, "0", 1000),
+                result("T2", 0, Status.NORMAL, "0", 999, "X", 1));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        boolean changed = new ResultDiff(a.getAbsolutePath(), b.getAbsolutePath(), new PrintStream(bos, true)).work();
+        String out = bos.toString();
+
+        Assert.assertTrue(changed);
+        Assert.assertTrue(out, out.contains("2 configurations compared, 1 changed, 1 only in " + a.getAbsolutePath() +
+                ", 1 only in " + b.getAbsolutePath()));
+        Assert.assertTrue(out, out.contains("new state \"X\""));
+        Assert.assertFalse(out, out.contains("shifted"));
+    }
+
+    @Test
+    public void differentSettings() throws Exception {
+        // Time and spin loop style do not split the configurations
+        File a = write(
+                result("T", 0, Collections.singletonList("-Xint"), SpinLoopStyle.HARD, 100, Status.NORMAL, "0", 1000));
+        File b = write(
+                result("T", 0, Collections.singletonList("-Xint"), SpinLoopStyle.THREAD_YIELD, 500, Status.NORMAL, "0", 900),
+                result("T", 0, Collections.singletonList("-Xint"), SpinLoopStyle.THREAD_YIELD, 500, Status.NORMAL, "0", 100, "1", 900));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        boolean changed = new ResultDiff(a.getAbsolutePath(), b.getAbsolutePath(), new PrintStream(bos, true)).work();
+        String out = bos.toString();
+
+        Assert.assertTrue(changed);
+        Assert.assertTrue(out, out.contains("1 configurations compared, 1 changed, 0 only in"));
+        Assert.assertTrue(out, out.contains("new state \"1\": 900 of 1900"));
+    }
+
+    @Test
+    public void stressSeeds() throws Exception {
+        File a = write(
+                result("T", 0, Arrays.asList("-XX:+StressGCM", "-XX:StressSeed=1"), Status.NORMAL, "0", 1000),
+                result("T", 0, Arrays.asList("-XX:+StressGCM", "-XX:StressSeed=2"), Status.NORMAL, "0", 1000));
+        File b = write(
+                result("T", 0, Arrays.asList("-XX:+StressGCM", "-XX:StressSeed=3"), Status.NORMAL, "0", 2000));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        boolean changed = new ResultDiff(a.getAbsolutePath(), b.getAbsolutePath(), new PrintStream(bos, true)).work();
+        String out = bos.toString();
+
+        Assert.assertFalse(out, changed);
+        Assert.assertTrue(out, out.contains("1 configurations compared, 0 changed, 0 only in"));
+    }
+
+    @Test
+    public void exitStatus() throws Exception {
+        File a = write(result("T", 0, Status.NORMAL, "0", 1000));
+        File b = write(result("T", 0, Status.NORMAL, "0", 1000));
+        File c = write(result("T", 0, Status.NORMAL, "1", 1000));
+
+        // Main exits with non-zero status when the files differ
+        Assert.assertFalse(diff(a, b));
+        Assert.assertTrue(diff(a, c));
+    }
+
+    private static boolean diff(File a, File b) throws Exception {
+        Options opts = new Options(new String[] { "-diff", a.getAbsolutePath() + "," + b.getAbsolutePath() });
+        Assert.assertTrue(opts.parse());
+        return new JCStress(opts).diffResults();
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResultExporterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static TestResult result(Status status, String... states) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+        scl.setPackage(0, 0);
+        scl.setCore(0, 1);
+        TestConfig cfg = new TestConfig(SpinLoopStyle.HARD, 100, 5, 2,
+                "org.Test", "org.Test", "org.Test_Runner",
+                Arrays.asList("-Xint", "-Dkey=\"a,b\""), 3, 64, Arrays.asList("actor1", "actor2"),
+                -1, scl, 100, 10, null);
+
+        TestResult r = new TestResult(status);
+        r.setConfig(cfg);
+        long count = 10;
+        for (String s : states) {
+            r.addState(s, count++);
+        }
+        return r;
+    }
+
+    private static String[] export(ResultExporter exp, StringWriter sw, TestResult... results) {
+        for (TestResult r : results) {
+            exp.add(r);
+        }
+        exp.close();
+        return sw.toString().split(System.lineSeparator());
+    }
+
+    @Test
+    public void jsonLines() {
+        StringWriter sw = new StringWriter();
+        String[] lines = export(new ResultExporter.JsonLinesExporter(sw), sw,
+                result(Status.NORMAL, "0, 0", "1, 1"),
+                result(Status.VM_ERROR));
+
+        Assert.assertEquals(3, lines.length);
+        Assert.assertEquals("{\"test\":\"org.Test\",\"fork\":3,\"status\":\"NORMAL\",\"result\":null,\"compileMode\":\"unified\"," +
+                        "\"schedulingClass\":\"(PG 0, CG 1), (PG free, CG free)\",\"jvmArgs\":[\"-Xint\",\"-Dkey=\\\"a,b\\\"\"]," +
+                        "\"state\":\"0, 0\",\"count\":10,\"expect\":null,\"description\":null}",
+                lines[0]);
+        Assert.assertTrue(lines[1].contains("\"state\":\"1, 1\",\"count\":11"));
+        Assert.assertTrue(lines[2].contains("\"status\":\"VM_ERROR\",\"result\":\"FAILED\""));
+        Assert.assertTrue(lines[2].contains("\"state\":null,\"count\":0"));
+    }
+
+    @Test
+    public void csv() {
+        StringWriter sw = new StringWriter();
+        String[] lines = export(new ResultExporter.CsvExporter(sw), sw,
+                result(Status.NORMAL, "0, 0"));
+
+        Assert.assertEquals(2, lines.length);
+        Assert.assertEquals("test,fork,status,result,compileMode,schedulingClass,jvmArgs,state,count,expect,description", lines[0]);
+        Assert.assertEquals("org.Test,3,NORMAL,,unified,\"(PG 0, CG 1), (PG free, CG free)\"," +
+                "\"-Xint -Dkey=\"\"a,b\"\"\",\"0, 0\",10,,", lines[1]);
+    }
+
+    @Test
+    public void gradedResult() {
+        Assert.assertEquals("FAILED", ResultExporter.gradedResult(result(Status.VM_ERROR), null));
+        Assert.assertEquals("FAILED", ResultExporter.gradedResult(result(Status.TIMEOUT_ERROR), null));
+        Assert.assertEquals("SKIPPED", ResultExporter.gradedResult(result(Status.API_MISMATCH), null));
+
+        // Not graded without the test description
+        Assert.assertNull(ResultExporter.gradedResult(result(Status.NORMAL, "0, 0"), null));
+    }
+
+    @Test
+    public void jsonQuote() {
+        Assert.assertEquals("\"a\\nb\\t\\u0001\\\\\"", ResultExporter.JsonLinesExporter.quote("a\nb\t\u0001\\"));
+        Assert.assertEquals("null", ResultExporter.JsonLinesExporter.quote(null));
+    }
+
+    @Test
+    public void supportedFormats() {
+        Assert.assertTrue(ResultExporter.isSupported("out.jsonl"));
+        Assert.assertTrue(ResultExporter.isSupported("OUT.CSV"));
+        Assert.assertFalse(ResultExporter.isSupported("out.json"));
+        Assert.assertFalse(ResultExporter.isSupported("out.txt"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void jsonRejected() throws IOException {
+        ResultExporter.forFile(new File(tmp.getRoot(), "out.json").getPath());
+    }
+
+    @Test
+    public void fileIsUTF8() throws IOException {
+        File file = new File(tmp.getRoot(), "out.jsonl");
+        ResultExporter exp = ResultExporter.forFile(file.getPath());
+        exp.add(result(Status.API_MISMATCH, "\u00e9t\u00e9, \u4e2d"));
+        exp.close();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0), lines.get(0).contains("\"state\":\"\u00e9t\u00e9, \u4e2d\""));
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.grading;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.infra.collectors.DiskWriteCollector;
+import org.openjdk.jcstress.infra.collectors.Telemetry;
+import org.openjdk.jcstress.infra.collectors.TestResult;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.infra.runners.TestConfig;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class ResultStoreTest {
+
+    private static final Pattern ALL = Pattern.compile(".*");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static TestResult result(String name, int compileMode, Object... stateCounts) {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+        TestConfig cfg = new TestConfig(SpinLoopStyle.HARD, 100, 5, 2,
+                name, name, name + "_Runner",
+                Collections.singletonList("-Xint"), 0, 64, Arrays.asList("actor1", "actor2"),
+                compileMode, scl, 100, 10, null);
+
+        TestResult r = new TestResult(Status.NORMAL);
+        r.setConfig(cfg);
+        for (int c = 0; c < stateCounts.length; c += 2) {
+            r.addState((String) stateCounts[c], (Integer) stateCounts[c + 1]);
+        }
+        return r;
+    }
+
+    private String write(String timestamp, TestResult... results) throws Exception {
+        File file = new File(tmp.getRoot(), "jcstress-results-" + timestamp + ".bin");
+        DiskWriteCollector dwc = new DiskWriteCollector(file.getAbsolutePath());
+        for (TestResult r : results) {
+            dwc.add(r);
+        }
+        dwc.close();
+        return file.getAbsolutePath();
+    }
+
+    @Test
+    public void sameNameAndLength() throws Exception {
+        File dir = new File(tmp.getRoot(), "store");
+        ResultStore store = new ResultStore(dir);
+
+        // Same name, same size, different contents: overwrite the trailer magic
+        // in place, the file is then read without its index
+        String f = write("2026-01-01-10-00-00", result("T1", 0, "0", 100));
+        File file = new File(f);
+        long len = file.length();
+        String digest = ResultStore.digest(file);
+        Assert.assertTrue(store.ingest(f));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(len - 4);
+            raf.writeInt(0);
+        }
+        Assert.assertEquals(len, file.length());
+        Assert.assertNotEquals(digest, ResultStore.digest(file));
+        Assert.assertTrue(store.ingest(f));
+        Assert.assertEquals(2, store.runs().size());
+    }
+
+    @Test
+    public void ingest() throws Exception {
+        File dir = new File(tmp.getRoot(), "store");
+        String f1 = write("2026-01-01-10-00-00",
+                result("T1", 0, "0", 100),
+                result("T1", 0, "0", 50, "1", 50),
+                result("T2", 0, "0", 10));
+        String f2 = write("2026-02-01-10-00-00",
+                result("T1", 0, "1", 300));
+
+        ResultStore store = new ResultStore(dir);
+        Assert.assertTrue(store.ingest(f2));
+        Assert.assertTrue(store.ingest(f1));
+        Assert.assertFalse(store.ingest(f1));
+
+        // Copy is recognized by contents
+        File copy = new File(tmp.getRoot(), "copy.bin");
+        Files.copy(new File(f1).toPath(), copy.toPath());
+        Assert.assertFalse(store.ingest(copy.getAbsolutePath()));
+
+        // Re-open, and query from the persisted index
+        store = new ResultStore(dir);
+        Assert.assertEquals(2, store.runs().size());
+
+        List<ResultStore.Entry> es = store.entries(Pattern.compile("T1"), ALL, 0);
+        Assert.assertEquals(2, es.size());
+
+        // Forks are aggregated, entries are ordered by time
+        ResultStore.Entry first = es.get(0);
+        Assert.assertEquals(2, first.forks());
+        Assert.assertEquals(200, first.samples());
+        Assert.assertEquals(Long.valueOf(150), first.states().get("0"));
+        Assert.assertEquals(Long.valueOf(50), first.states().get("1"));
+        Assert.assertEquals(200.0 * 1000 / (2 * 100 * 5), first.samplesPerSec(), 1e-9);
+
+        ResultStore.Entry second = es.get(1);
+        Assert.assertEquals(1, second.forks());
+        Assert.assertTrue(first.run().timestamp() < second.run().timestamp());
+
+        long feb = ResultStore.timestamp(new File(f2));
+        Assert.assertEquals(1, store.entries(Pattern.compile("T1"), ALL, feb).size());
+        Assert.assertEquals(0, store.entries(ALL, Pattern.compile("no-such-jvm"), 0).size());
+        Assert.assertEquals(3, store.entries(ALL, ALL, 0).size());
+    }
+
+    @Test
+    public void measuredRate() throws Exception {
+        TestResult measured = result("T1", 0, "0", 3000);
+        Telemetry t = new Telemetry();
+        t.addWall(0, 1_000_000_000);
+        t.addWall(1, 500_000_000);
+        measured.addTelemetry(t);
+
+        ResultStore store = new ResultStore(new File(tmp.getRoot(), "store"));
+        store.ingest(write("2026-01-01-10-00-00", measured));
+
+        // Measured 1.5 s, not the nominal 5 x 100 ms
+        List<ResultStore.Entry> es = store.entries(ALL, ALL, 0);
+        Assert.assertEquals(1, es.size());
+        Assert.assertEquals(2000.0, es.get(0).samplesPerSec(), 1e-9);
+    }
+
+    @Test
+    public void tornIndex() throws Exception {
+        File dir = new File(tmp.getRoot(), "store");
+        String f1 = write("2026-01-01-10-00-00", result("T1", 0, "0", 100));
+        String f2 = write("2026-02-01-10-00-00", result("T1", 0, "0", 101));
+        String f3 = write("2026-03-01-10-00-00", result("T1", 0, "0", 102));
+
+        ResultStore store = new ResultStore(dir);
+        store.ingest(f1);
+        File index = new File(dir, ResultStore.INDEX_FILE);
+        long good = index.length();
+        store.ingest(f2);
+
+        // Simulate the ingest that was interrupted while writing the index
+        try (RandomAccessFile raf = new RandomAccessFile(index, "rw")) {
+            raf.setLength(index.length() - 3);
+        }
+
+        store = new ResultStore(dir);
+        Assert.assertEquals(1, store.runs().size());
+        Assert.assertEquals(1, store.entries(ALL, ALL, 0).size());
+
+        Assert.assertTrue(store.ingest(f3));
+        store = new ResultStore(dir);
+        Assert.assertEquals(2, store.runs().size());
+        Assert.assertTrue(index.length() > good);
+        Assert.assertEquals(2, store.entries(ALL, ALL, 0).size());
+    }
+
+    @Test
+    public void queries() throws Exception {
+        File dir = new File(tmp.getRoot(), "store");
+        ResultStore store = new ResultStore(dir);
+        store.ingest(write("2026-01-01-10-00-00", result("T1", 0, "0", 1000)));
+        store.ingest(write("2026-02-01-10-00-00", result("T1", 0, "0", 1001)));
+        store.ingest(write("2026-03-01-10-00-00", result("T1", 0, "0", 500, "1", 5)));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HistoryReport report = new HistoryReport(store, new PrintStream(bos, true));
+
+        report.work(HistoryReport.Query.FIRST_SEEN, ALL, ALL, 0);
+        String out = bos.toString();
+        Assert.assertTrue(out, out.contains("\"0\""));
+        Assert.assertTrue(out, out.contains("first seen 2026-03-01 10:00:00"));
+        Assert.assertTrue(out, out.contains("in 1 of 3 runs"));
+
+        bos.reset();
+        report.work(HistoryReport.Query.REGRESSIONS, ALL, ALL, 0);
+        out = bos.toString();
+        Assert.assertTrue(out, out.contains("1 regressions in 1 configurations"));
+
+        bos.reset();
+        report.work(HistoryReport.Query.TREND, ALL, ALL, 0);
+        out = bos.toString();
+        Assert.assertTrue(out, out.contains("\"1\" 0.99%"));
+    }
+
+    @Test
+    public void regression() {
+        Assert.assertFalse(HistoryReport.isRegression(1, new double[0]));
+        Assert.assertFalse(HistoryReport.isRegression(90, new double[] {100, 100, 10}));
+        Assert.assertTrue(HistoryReport.isRegression(70, new double[] {100, 100, 10}));
+        Assert.assertEquals(2.5, HistoryReport.median(new double[] {4, 1, 3, 2}), 1e-9);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jcstress.infra.Status;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.CPUMap;
+import org.openjdk.jcstress.os.Scheduler;
+import org.openjdk.jcstress.os.SchedulingClass;
+import org.openjdk.jcstress.os.topology.PresetRegularTopology;
+import org.openjdk.jcstress.os.topology.Topology;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public class EventsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void recorded() throws Exception {
+        Assert.assertTrue(Events.isAvailable());
+
+        Path file = tmp.newFile("events.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable("org.openjdk.jcstress.ForkResult");
+            recording.enable("org.openjdk.jcstress.ReportPhase");
+            recording.start();
+
+            Events.forkResult(42, "Test", Status.NORMAL);
+            Events.Span span = Events.reportPhase("merge");
+            span.end();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Assert.assertEquals(2, events.size());
+        for (RecordedEvent e : events) {
+            switch (e.getEventType().getName()) {
+                case "org.openjdk.jcstress.ForkResult":
+                    Assert.assertEquals(42, e.getInt("token"));
+                    Assert.assertEquals("Test", e.getString("test"));
+                    Assert.assertEquals("NORMAL", e.getString("status"));
+                    break;
+                case "org.openjdk.jcstress.ReportPhase":
+                    Assert.assertEquals("merge", e.getString("phase"));
+                    break;
+                default:
+                    Assert.fail("Unexpected event: " + e.getEventType().getName());
+            }
+        }
+    }
+
+    @Test
+    public void schedulerProbesNotRecorded() throws Exception {
+        Topology t = new PresetRegularTopology(1, 4, 1);
+        Scheduler s = new Scheduler(t, t.totalThreads());
+
+        Path file = tmp.newFile("scheduler.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable("org.openjdk.jcstress.SchedulerAcquire");
+            recording.enable("org.openjdk.jcstress.SchedulerRelease");
+            recording.start();
+
+            // Checking which classes fit must not look like real forks
+            List<SchedulingClass> scls = s.scheduleClasses(2, t.totalThreads(), AffinityMode.NONE);
+            Assert.assertFalse(scls.isEmpty());
+
+            CPUMap cpuMap = s.tryAcquire(scls.get(0));
+            Assert.assertNotNull(cpuMap);
+            s.release(cpuMap);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Assert.assertEquals(2, events.size());
+    }
+
+}
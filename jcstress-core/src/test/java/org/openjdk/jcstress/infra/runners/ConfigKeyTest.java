@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.infra.runners;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.os.AffinityMode;
+import org.openjdk.jcstress.os.SchedulingClass;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ConfigKeyTest {
+
+    private static TestConfig config(String name, int compileMode, SchedulingClass scl, String... jvmArgs) {
+        return new TestConfig(SpinLoopStyle.HARD, 100, 5, 2, name, name, name + "_Runner",
+                Arrays.asList(jvmArgs), 0, 64, Arrays.asList("a1", "a2"), compileMode, scl, 100, 10, null);
+    }
+
+    @Test
+    public void equalConfigs() {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+        TestConfig c1 = config("Test", 0, scl, "-Xint");
+        TestConfig c2 = config("Test", 0, new SchedulingClass(scl), "-Xint");
+
+        Assert.assertEquals(c1.key(), c2.key());
+        Assert.assertEquals(c1.key().hashCode(), c2.key().hashCode());
+        Assert.assertEquals(0, c1.key().compareTo(c2.key()));
+        Assert.assertEquals(c1, c2);
+    }
+
+    @Test
+    public void fullHash() {
+        // Configurations of the same test should not collide
+        Set<Integer> hashes = new HashSet<>();
+        int count = 0;
+        for (int cm = 0; cm < 4; cm++) {
+            for (int p = 0; p < 4; p++) {
+                SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+                scl.setPackage(0, p);
+                for (String arg : Arrays.asList("-Xint", "-XX:+UseSerialGC", "-XX:+UseParallelGC")) {
+                    hashes.add(config("Test", cm, scl, arg).hashCode());
+                    count++;
+                }
+            }
+        }
+        Assert.assertEquals(count, hashes.size());
+    }
+
+    @Test
+    public void ordering() {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+        Assert.assertTrue(config("A", 1, scl).key().compareTo(config("B", 0, scl).key()) < 0);
+        Assert.assertTrue(config("A", 0, scl).key().compareTo(config("A", 1, scl).key()) < 0);
+        Assert.assertTrue(config("A", 0, scl, "-a").key().compareTo(config("A", 0, scl, "-b").key()) < 0);
+    }
+
+    @Test
+    public void immutable() {
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 2);
+        TestConfig c = config("Test", 0, scl, "-Xint");
+        ConfigKey key = c.key();
+        int hash = key.hashCode();
+
+        scl.setPackage(0, 3);
+
+        Assert.assertEquals(hash, key.hashCode());
+        Assert.assertNotEquals(key, config("Test", 0, scl, "-Xint").key());
+        Assert.assertEquals(Collections.singletonList("-Xint"), c.jvmArgs);
+    }
+
+}
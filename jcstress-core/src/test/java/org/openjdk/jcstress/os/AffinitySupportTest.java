@@ -24,11 +24,14 @@
  */
 package org.openjdk.jcstress.os;
 
+import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.openjdk.jcstress.vm.VMSupport;
 
+import java.util.List;
+
 public class AffinitySupportTest {
 
     @Before
@@ -45,4 +48,34 @@ public class AffinitySupportTest {
     public void tryBind() {
         AffinitySupport.tryBind();
     }
+
+    @Test
+    public void prepareFallback() {
+        List<String> opts = AffinitySupport.prepareFallback();
+        Assert.assertTrue(opts.contains("-D" + AffinitySupport.FORCE_JNA_PROPERTY + "=true"));
+    }
+
+    @Test
+    public void warmupWithJNA() {
+        String old = System.getProperty(AffinitySupport.FORCE_JNA_PROPERTY);
+        System.setProperty(AffinitySupport.FORCE_JNA_PROPERTY, "true");
+        try {
+            Assert.assertTrue(AffinitySupport.needsWarmup());
+        } finally {
+            if (old == null) {
+                System.clearProperty(AffinitySupport.FORCE_JNA_PROPERTY);
+            } else {
+                System.setProperty(AffinitySupport.FORCE_JNA_PROPERTY, old);
+            }
+        }
+    }
+
+    @Test
+    public void ffm() {
+        // Runs only on JDK 22+, other JDKs take the JNA path
+        Assume.assumeTrue(AffinitySupport.LinuxFFM.isSupported());
+        Assert.assertFalse(AffinitySupport.needsWarmup());
+        Assert.assertTrue(AffinitySupport.LinuxFFM.isAvailable());
+        AffinitySupport.tryBind();
+    }
 }
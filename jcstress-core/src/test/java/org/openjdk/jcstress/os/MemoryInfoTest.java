@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.os;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MemoryInfoTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void nothing() {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(-1, mi.availableMb());
+    }
+
+    @Test
+    public void meminfo() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(4096, mi.availableMb());
+    }
+
+    @Test
+    public void meminfoNoAvailable() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        write(fs.getPath("/proc/meminfo"), "MemTotal:        8388608 kB", "MemFree:         2097152 kB");
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(2048, mi.availableMb());
+    }
+
+    @Test
+    public void cgroupV2() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        write(fs.getPath("/cgroup/memory.max"), String.valueOf(2048 * MB));
+        write(fs.getPath("/cgroup/memory.current"), String.valueOf(512 * MB));
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(1536, mi.availableMb());
+    }
+
+    @Test
+    public void cgroupV2Unlimited() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        write(fs.getPath("/cgroup/memory.max"), "max");
+        write(fs.getPath("/cgroup/memory.current"), String.valueOf(512 * MB));
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(4096, mi.availableMb());
+    }
+
+    @Test
+    public void cgroupV1() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        write(fs.getPath("/cgroup/memory/memory.limit_in_bytes"), String.valueOf(1024 * MB));
+        write(fs.getPath("/cgroup/memory/memory.usage_in_bytes"), String.valueOf(256 * MB));
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(768, mi.availableMb());
+    }
+
+    @Test
+    public void cgroupV1Unlimited() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        write(fs.getPath("/cgroup/memory/memory.limit_in_bytes"), "9223372036854771712");
+        write(fs.getPath("/cgroup/memory/memory.usage_in_bytes"), String.valueOf(256 * MB));
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(4096, mi.availableMb());
+    }
+
+    @Test
+    public void cgroupV2Own() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        write(fs.getPath("/proc/self/cgroup"), "0::/user.slice/test.scope");
+        write(fs.getPath("/cgroup/memory.current"), String.valueOf(3072 * MB));
+        write(fs.getPath("/cgroup/user.slice/memory.max"), "max");
+        write(fs.getPath("/cgroup/user.slice/test.scope/memory.max"), String.valueOf(1024 * MB));
+        write(fs.getPath("/cgroup/user.slice/test.scope/memory.current"), String.valueOf(256 * MB));
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(768, mi.availableMb());
+    }
+
+    @Test
+    public void cgroupV2ParentLimit() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        write(fs.getPath("/proc/self/cgroup"), "0::/user.slice/test.scope");
+        write(fs.getPath("/cgroup/user.slice/memory.max"), String.valueOf(1024 * MB));
+        write(fs.getPath("/cgroup/user.slice/memory.current"), String.valueOf(768 * MB));
+        write(fs.getPath("/cgroup/user.slice/test.scope/memory.max"), "max");
+        write(fs.getPath("/cgroup/user.slice/test.scope/memory.current"), String.valueOf(128 * MB));
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(256, mi.availableMb());
+    }
+
+    @Test
+    public void cgroupV2NotVisible() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        write(fs.getPath("/proc/self/cgroup"), "0::/docker/abcdef");
+        write(fs.getPath("/cgroup/memory.max"), String.valueOf(2048 * MB));
+        write(fs.getPath("/cgroup/memory.current"), String.valueOf(512 * MB));
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(1536, mi.availableMb());
+    }
+
+    @Test
+    public void cgroupV1Own() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        writeMeminfo(fs);
+        write(fs.getPath("/proc/self/cgroup"),
+                "4:cpu,cpuacct:/test",
+                "3:memory:/test",
+                "1:name=systemd:/test");
+        write(fs.getPath("/cgroup/memory/memory.limit_in_bytes"), "9223372036854771712");
+        write(fs.getPath("/cgroup/memory/test/memory.limit_in_bytes"), String.valueOf(1024 * MB));
+        write(fs.getPath("/cgroup/memory/test/memory.usage_in_bytes"), String.valueOf(256 * MB));
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(768, mi.availableMb());
+    }
+
+    @Test
+    public void peakRss() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+        write(fs.getPath("/proc/42/status"),
+                "Name:\tjava",
+                "VmPeak:\t 4194304 kB",
+                "VmHWM:\t   65536 kB",
+                "VmRSS:\t   32768 kB");
+        MemoryInfo mi = new MemoryInfo(fs.getPath("/proc"), fs.getPath("/cgroup"));
+        Assert.assertEquals(65536, mi.peakRssKb(42));
+        Assert.assertEquals(-1, mi.peakRssKb(43));
+    }
+
+    private void writeMeminfo(FileSystem fs) throws IOException {
+        write(fs.getPath("/proc/meminfo"),
+                "MemTotal:        8388608 kB",
+                "MemFree:         2097152 kB",
+                "MemAvailable:    4194304 kB");
+    }
+
+    private void write(Path path, String... lines) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, Arrays.asList(lines));
+    }
+
+}
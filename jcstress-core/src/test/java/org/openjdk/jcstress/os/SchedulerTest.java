@@ -28,6 +28,11 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.openjdk.jcstress.os.topology.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class SchedulerTest {
 
     @Test
@@ -89,6 +94,196 @@ public class SchedulerTest {
                 t.threadToCore(schedule[0]) != t.threadToCore(schedule[1]));
     }
 
+    @Test
+    public void hybrid_sameCoreType() throws TopologyParseException {
+        Topology t = new PresetHybridTopology(2, 2, 4);
+        Scheduler s = new Scheduler(t, t.totalThreads());
+        s.enableDebug();
+
+        for (AffinityMode mode : new AffinityMode[] { AffinityMode.LOCAL, AffinityMode.GLOBAL }) {
+            SchedulingClass scl = new SchedulingClass(mode, 2);
+            if (mode == AffinityMode.LOCAL) {
+                scl.setPackage(0, 0);
+                scl.setPackage(1, 0);
+                scl.setCore(0, 0);
+                scl.setCore(1, 1);
+            }
+
+            // Performance cores go first, then efficiency cores, then nothing fits
+            List<CPUMap> maps = new ArrayList<>();
+            for (int expectedType : new int[] { 0, 1, 1 }) {
+                CPUMap cpuMap = s.tryAcquire(scl);
+                Assert.assertNotNull("Should be scheduled", cpuMap);
+                for (int thread : cpuMap.allocatedMap()) {
+                    Assert.assertEquals("Should be scheduled at the same core type",
+                            expectedType, t.coreType(t.threadToCore(thread)));
+                }
+                maps.add(cpuMap);
+            }
+            Assert.assertNull("Should not be scheduled", s.tryAcquire(scl));
+
+            for (CPUMap m : maps) {
+                s.release(m);
+            }
+        }
+    }
+
+    @Test
+    public void hybrid_mixedOnlyWhenIdle() throws TopologyParseException {
+        Topology t = new PresetHybridTopology(2, 1, 2);
+        Scheduler s = new Scheduler(t, t.totalThreads());
+        s.enableDebug();
+
+        SchedulingClass small = new SchedulingClass(AffinityMode.GLOBAL, 1);
+        SchedulingClass large = new SchedulingClass(AffinityMode.GLOBAL, 3);
+
+        CPUMap smallMap = s.tryAcquire(small);
+        Assert.assertNotNull("Should be scheduled", smallMap);
+        Assert.assertNull("Should not mix core types on busy machine", s.tryAcquire(large));
+
+        s.release(smallMap);
+        CPUMap largeMap = s.tryAcquire(large);
+        Assert.assertNotNull("Should mix core types on idle machine", largeMap);
+        s.release(largeMap);
+    }
+
+    @Test
+    public void housekeeping_reserved() throws TopologyParseException {
+        Topology t = new PresetRegularTopology(1, 4, 2);
+        Scheduler s = new Scheduler(t, t.totalThreads(), Collections.singletonList(0));
+        s.enableDebug();
+
+        SchedulingClass scl = new SchedulingClass(AffinityMode.LOCAL, 1);
+        scl.setPackage(0, 0);
+        scl.setCore(0, 0);
+
+        // Core 0 is reserved, along with its sibling thread
+        List<CPUMap> maps = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            CPUMap cpuMap = s.tryAcquire(scl);
+            Assert.assertNotNull("Should be scheduled", cpuMap);
+            for (int thread : cpuMap.allocatedMap()) {
+                Assert.assertNotEquals("Should not be scheduled on housekeeping core", 0, t.threadToCore(thread));
+            }
+            List<Integer> system = new ArrayList<>();
+            for (int thread : cpuMap.systemMap()) {
+                system.add(thread);
+            }
+            Assert.assertTrue("System threads should be on housekeeping CPUs", system.containsAll(Arrays.asList(0, 4)));
+            maps.add(cpuMap);
+        }
+        Assert.assertNull("Should not be scheduled", s.tryAcquire(scl));
+
+        for (CPUMap m : maps) {
+            s.release(m);
+        }
+        Assert.assertEquals(0, s.getCpus());
+    }
+
+    @Test
+    public void housekeeping_filtersClasses() throws TopologyParseException {
+        Topology t = new PresetRegularTopology(1, 4, 1);
+        Scheduler s = new Scheduler(t, t.totalThreads(), Arrays.asList(0, 1));
+
+        // Only two cores left, three-actor classes would never fit
+        Assert.assertTrue(s.fitting(s.globalAffinityFor(3, t.totalThreads())).isEmpty());
+        Assert.assertFalse(s.fitting(s.globalAffinityFor(2, t.totalThreads())).isEmpty());
+    }
+
+    @Test
+    public void housekeeping_noneAffinity() throws TopologyParseException {
+        Topology t = new PresetRegularTopology(1, 4, 2);
+        Scheduler s = new Scheduler(t, t.totalThreads(), Collections.singletonList(0));
+
+        // NONE publishes no map, but the fork should still stay off the housekeeping core
+        CPUMap cpuMap = s.tryAcquire(new SchedulingClass(AffinityMode.NONE, 2));
+        Assert.assertNotNull("Should be scheduled", cpuMap);
+        Assert.assertEquals("", cpuMap.globalAffinityMap());
+        Assert.assertEquals("1,2,3,5,6,7", s.forkAffinityMap(cpuMap));
+        Assert.assertEquals("1,2,3,5,6,7", s.forkAffinityMap(null));
+
+        // Published maps are taken as is
+        CPUMap global = s.tryAcquire(new SchedulingClass(AffinityMode.GLOBAL, 1));
+        Assert.assertNotNull("Should be scheduled", global);
+        Assert.assertEquals(global.globalAffinityMap(), s.forkAffinityMap(global));
+    }
+
+    @Test
+    public void noHousekeeping_noneAffinity() throws TopologyParseException {
+        Topology t = new PresetRegularTopology(1, 4, 2);
+        Scheduler s = new Scheduler(t, t.totalThreads());
+
+        CPUMap cpuMap = s.tryAcquire(new SchedulingClass(AffinityMode.NONE, 2));
+        Assert.assertEquals("", s.forkAffinityMap(cpuMap));
+    }
+
+    @Test
+    public void memoryBudget() throws TopologyParseException {
+        Topology t = new PresetRegularTopology(1, 8, 1);
+        Scheduler s = new Scheduler(t, t.totalThreads());
+        s.setMemoryBudget(1000, 300);
+
+        SchedulingClass scl = new SchedulingClass(AffinityMode.GLOBAL, 2);
+
+        // Only three forks fit the budget, even though there are enough CPUs
+        List<CPUMap> maps = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            CPUMap cpuMap = s.tryAcquire(scl);
+            Assert.assertNotNull("Should be scheduled", cpuMap);
+            maps.add(cpuMap);
+        }
+        Assert.assertNull("Should not be scheduled", s.tryAcquire(scl));
+        Assert.assertEquals(900, s.getMemoryUseMb());
+
+        s.release(maps.remove(0));
+        Assert.assertNotNull("Should be scheduled", s.tryAcquire(scl));
+    }
+
+    @Test
+    public void memoryBudget_tooSmall() throws TopologyParseException {
+        Topology t = new PresetRegularTopology(1, 8, 1);
+        Scheduler s = new Scheduler(t, t.totalThreads());
+        s.setMemoryBudget(100, 300);
+
+        SchedulingClass scl = new SchedulingClass(AffinityMode.GLOBAL, 2);
+
+        // Single fork is still admitted on idle machine
+        CPUMap cpuMap = s.tryAcquire(scl);
+        Assert.assertNotNull("Should be scheduled", cpuMap);
+        Assert.assertNull("Should not be scheduled", s.tryAcquire(scl));
+
+        s.release(cpuMap);
+        Assert.assertEquals(0, s.getMemoryUseMb());
+    }
+
+    @Test
+    public void isolated_preferred() throws TopologyParseException {
+        PresetListTopology t = new PresetListTopology();
+        for (int c = 0; c < 4; c++) {
+            t.add(0, c, c);
+        }
+        t.setIsolated(2);
+        t.setIsolated(3);
+        t.finish();
+
+        Scheduler s = new Scheduler(t, t.totalThreads());
+        s.enableDebug();
+
+        SchedulingClass scl = new SchedulingClass(AffinityMode.GLOBAL, 2);
+
+        CPUMap first = s.tryAcquire(scl);
+        Assert.assertNotNull("Should be scheduled", first);
+        for (int thread : first.allocatedMap()) {
+            Assert.assertTrue("Should be scheduled on isolated CPUs", thread >= 2);
+        }
+
+        CPUMap second = s.tryAcquire(scl);
+        Assert.assertNotNull("Should be scheduled", second);
+        for (int thread : second.allocatedMap()) {
+            Assert.assertTrue("Should be scheduled on remaining CPUs", thread < 2);
+        }
+    }
+
     @Test
     public void testPermutations_1_1() {
         int[][] ints = Scheduler.classPermutation(1, 1);
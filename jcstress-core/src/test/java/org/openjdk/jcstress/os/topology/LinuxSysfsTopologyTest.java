@@ -36,6 +36,8 @@ import java.io.*;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 
 public class LinuxSysfsTopologyTest extends AbstractTopologyTest {
@@ -54,6 +56,10 @@ public class LinuxSysfsTopologyTest extends AbstractTopologyTest {
     /*
        Saved sysfs snapshots are created on target systems with:
          $ find /sys/devices/system/cpu/ -type f -path *topology* -printf "%P: " -exec cat {} \;
+
+       Hybrid systems snapshots also capture core capacities and PMU CPU lists:
+         $ find /sys/devices/system/cpu/ -type f -name cpu_capacity -printf "%P: " -exec cat {} \;
+         $ find /sys/devices/cpu_core/ /sys/devices/cpu_atom/ -type f -name cpus -printf "%p: " -exec cat {} \;
      */
 
     @Test
@@ -189,6 +195,81 @@ public class LinuxSysfsTopologyTest extends AbstractTopologyTest {
         checkGenericInvariants(topo);
     }
 
+    @Test
+    public void test_Saved_8() throws TopologyParseException, IOException {
+        // Intel hybrid: 2 performance cores with SMT, 4 efficiency cores
+        FileSystem fs = parse("/topology/sysfs-8.txt");
+        LinuxSysfsTopology topo = new LinuxSysfsTopology(fs.getPath(""), fs.getPath(""));
+
+        Assert.assertEquals(1, topo.packagesPerSystem());
+        Assert.assertEquals(6, topo.coresPerPackage());
+        Assert.assertEquals(1, topo.threadsPerCore());
+        Assert.assertEquals(6, topo.totalCores());
+        Assert.assertEquals(8, topo.totalThreads());
+        Assert.assertEquals(2, topo.coreTypes());
+
+        for (int t = 0; t < topo.totalThreads(); t++) {
+            int core = topo.threadToCore(t);
+            Assert.assertEquals(0, topo.threadToPackage(t));
+            Assert.assertEquals(t < 4 ? t / 2 : t - 2, core);
+            Assert.assertEquals(t < 4 ? 0 : 1, topo.coreType(core));
+        }
+    }
+
+    @Test
+    public void test_Saved_8_NoPMU() throws TopologyParseException, IOException {
+        // Same as above, but without looking at PMUs, cannot tell the core types
+        FileSystem fs = parse("/topology/sysfs-8.txt");
+        LinuxSysfsTopology topo = new LinuxSysfsTopology(fs.getPath(""));
+
+        Assert.assertEquals(1, topo.coreTypes());
+        for (int c = 0; c < topo.totalCores(); c++) {
+            Assert.assertEquals(0, topo.coreType(c));
+        }
+    }
+
+    @Test
+    public void test_Saved_9() throws TopologyParseException, IOException {
+        // ARM big.LITTLE: 4 little cores, then 4 big cores
+        FileSystem fs = parse("/topology/sysfs-9.txt");
+        LinuxSysfsTopology topo = new LinuxSysfsTopology(fs.getPath(""));
+
+        Assert.assertEquals(1, topo.packagesPerSystem());
+        Assert.assertEquals(8, topo.coresPerPackage());
+        Assert.assertEquals(1, topo.threadsPerCore());
+        Assert.assertEquals(2, topo.coreTypes());
+
+        for (int t = 0; t < topo.totalThreads(); t++) {
+            int core = topo.threadToCore(t);
+            Assert.assertEquals(t, core);
+            Assert.assertEquals(t < 4 ? 1 : 0, topo.coreType(core));
+            Assert.assertEquals(t < 4 ? 446 : 1024, topo.coreCapacity(core));
+        }
+
+        checkGenericInvariants(topo);
+    }
+
+    @Test
+    public void test_Saved_2_Isolated() throws TopologyParseException, IOException {
+        FileSystem fs = parse("/topology/sysfs-2.txt");
+        Files.write(fs.getPath("isolated"), Collections.singletonList("3"));
+        Files.write(fs.getPath("nohz_full"), Collections.singletonList("2-3,5"));
+        LinuxSysfsTopology topo = new LinuxSysfsTopology(fs.getPath(""));
+
+        Assert.assertEquals(Arrays.asList(2, 3), new ArrayList<>(topo.isolatedThreads()));
+        checkGenericInvariants(topo);
+    }
+
+    @Test
+    public void test_Saved_2_NotIsolated() throws TopologyParseException, IOException {
+        FileSystem fs = parse("/topology/sysfs-2.txt");
+        Files.write(fs.getPath("isolated"), Collections.singletonList(""));
+        Files.write(fs.getPath("nohz_full"), Collections.singletonList("(null)"));
+        LinuxSysfsTopology topo = new LinuxSysfsTopology(fs.getPath(""));
+
+        Assert.assertTrue(topo.isolatedThreads().isEmpty());
+    }
+
     private FileSystem parse(String resource) throws IOException {
         FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
         try (InputStream is = LinuxSysfsTopologyTest.class.getResourceAsStream(resource);
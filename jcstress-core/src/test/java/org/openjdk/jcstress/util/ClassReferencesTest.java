@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+public class ClassReferencesTest {
+
+    private static byte[] bytes(Class<?> klass) throws IOException {
+        try (InputStream is = klass.getResourceAsStream(klass.getSimpleName() + ".class")) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int read;
+            while ((read = is.read(buf)) >= 0) {
+                bos.write(buf, 0, read);
+            }
+            return bos.toByteArray();
+        }
+    }
+
+    @Test
+    public void references() throws IOException {
+        Set<String> refs = ClassReferences.of(bytes(ClassReferences.class));
+        Assert.assertTrue(refs.toString(), refs.contains("org.openjdk.jcstress.util.ClassReferences"));
+        Assert.assertTrue(refs.toString(), refs.contains("java.io.DataInputStream"));
+        Assert.assertTrue(refs.toString(), refs.contains("java.util.TreeSet"));
+    }
+
+    @Test(expected = IOException.class)
+    public void notClass() throws IOException {
+        ClassReferences.of(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InputStreamCollectorTest {
+
+    private static List<String> lines(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int c = 0; c < count; c++) {
+            lines.add("line " + c);
+        }
+        return lines;
+    }
+
+    private static InputStream stream(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String l : lines) {
+            sb.append(l).append(System.lineSeparator());
+        }
+        return new ByteArrayInputStream(sb.toString().getBytes());
+    }
+
+    @Test
+    public void unbounded() {
+        List<String> lines = lines(10_000);
+        InputStreamCollector isc = new InputStreamCollector(stream(lines));
+        Assert.assertEquals(lines, isc.call());
+        Assert.assertEquals(0, isc.skippedLines());
+    }
+
+    @Test
+    public void fits() throws Exception {
+        File spill = new File(Files.createTempDirectory("jcstress").toFile(), "vm.out");
+        List<String> lines = lines(20);
+        InputStreamCollector isc = new InputStreamCollector(stream(lines), 10, 10, spill);
+        Assert.assertEquals(lines, isc.call());
+        Assert.assertEquals(0, isc.skippedLines());
+        Assert.assertFalse(spill.exists());
+    }
+
+    @Test
+    public void spills() throws Exception {
+        File dir = Files.createTempDirectory("jcstress").toFile();
+        File spill = new File(new File(dir, "vm-output"), "vm.out");
+        spill.deleteOnExit();
+
+        List<String> lines = lines(1000);
+        InputStreamCollector isc = new InputStreamCollector(stream(lines), 10, 5, spill);
+        List<String> kept = isc.call();
+
+        Assert.assertEquals(985, isc.skippedLines());
+        Assert.assertEquals(10 + 1 + 5, kept.size());
+        Assert.assertEquals(lines.subList(0, 10), kept.subList(0, 10));
+        Assert.assertEquals(lines.subList(995, 1000), kept.subList(11, 16));
+        Assert.assertTrue(kept.get(10).contains("985 lines skipped"));
+        Assert.assertTrue(kept.get(10).contains(spill.getAbsolutePath()));
+
+        Assert.assertEquals(lines, Files.readAllLines(spill.toPath()));
+    }
+
+    @Test
+    public void drops() {
+        List<String> lines = lines(100);
+        InputStreamCollector isc = new InputStreamCollector(stream(lines), 0, 1, null);
+        List<String> kept = isc.call();
+
+        Assert.assertEquals(99, isc.skippedLines());
+        Assert.assertEquals(2, kept.size());
+        Assert.assertEquals("[99 lines skipped]", kept.get(0));
+        Assert.assertEquals("line 99", kept.get(1));
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2021, Red Hat, Inc. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.openjdk.jcstress.vm;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jcstress.infra.runners.SpinLoopStyle;
+import org.openjdk.jcstress.os.AffinityMode;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SpinStyleCalibrationTest {
+
+    private static SpinStyleCalibration.Sample sample(SpinLoopStyle style, long strides, long runNs, long syncNs) {
+        return new SpinStyleCalibration.Sample(style, strides, 1_000_000_000L, runNs, syncNs);
+    }
+
+    @Test
+    public void parse() {
+        List<SpinStyleCalibration.Sample> samples = SpinStyleCalibration.parse(
+                "OpenJDK 64-Bit Server VM warning: something\n" +
+                "SPIN-STYLE HARD 1000 200000000 300000000 100000000\n" +
+                "SPIN-STYLE BOGUS 1 1 1 1\n" +
+                "SPIN-STYLE THREAD_YIELD 500 200000000 100000000 400000000\n");
+        Assert.assertEquals(2, samples.size());
+        Assert.assertEquals(SpinLoopStyle.HARD, samples.get(0).style());
+        Assert.assertEquals(5000, samples.get(0).stridesPerSecond(), 1e-6);
+        Assert.assertEquals(0.25, samples.get(0).syncShare(), 1e-6);
+        Assert.assertTrue(samples.get(0).overlapped());
+        Assert.assertFalse(samples.get(1).overlapped());
+    }
+
+    @Test
+    public void fastestOverlapped() {
+        SpinLoopStyle style = SpinStyleCalibration.choose(Arrays.asList(
+                sample(SpinLoopStyle.HARD, 5000, 100, 900),
+                sample(SpinLoopStyle.THREAD_SPIN_WAIT, 1000, 600, 400),
+                sample(SpinLoopStyle.LOCKSUPPORT_PARK_NANOS, 2000, 700, 300)));
+        Assert.assertEquals(SpinLoopStyle.LOCKSUPPORT_PARK_NANOS, style);
+    }
+
+    @Test
+    public void fastestIfNoneOverlaps() {
+        SpinLoopStyle style = SpinStyleCalibration.choose(Arrays.asList(
+                sample(SpinLoopStyle.HARD, 100, 10, 990),
+                sample(SpinLoopStyle.THREAD_YIELD, 3000, 100, 900)));
+        Assert.assertEquals(SpinLoopStyle.THREAD_YIELD, style);
+        Assert.assertNull(SpinStyleCalibration.choose(Collections.emptyList()));
+    }
+
+    @Test
+    public void mergesPlacements() {
+        // HARD is faster on the near placement, but stops overlapping on the far one
+        SpinLoopStyle style = SpinStyleCalibration.choose(Arrays.asList(
+                sample(SpinLoopStyle.HARD, 9000, 900, 100),
+                sample(SpinLoopStyle.THREAD_YIELD, 4000, 800, 200),
+                sample(SpinLoopStyle.HARD, 100, 10, 990),
+                sample(SpinLoopStyle.THREAD_YIELD, 4000, 800, 200)));
+        Assert.assertEquals(SpinLoopStyle.THREAD_YIELD, style);
+    }
+
+    @Test
+    public void cache() throws Exception {
+        File dir = Files.createTempDirectory("jcstress").toFile();
+        try {
+            SpinStyleCalibration local = new SpinStyleCalibration(dir, AffinityMode.LOCAL, 4);
+            SpinStyleCalibration none = new SpinStyleCalibration(dir, AffinityMode.NONE, 4);
+            Assert.assertNull(local.cached());
+
+            local.store(SpinLoopStyle.LOCKSUPPORT_PARK_NANOS);
+            none.store(SpinLoopStyle.HARD);
+
+            Assert.assertEquals(SpinLoopStyle.LOCKSUPPORT_PARK_NANOS, new SpinStyleCalibration(dir, AffinityMode.LOCAL, 4).cached());
+            Assert.assertEquals(SpinLoopStyle.HARD, new SpinStyleCalibration(dir, AffinityMode.NONE, 4).cached());
+            Assert.assertNull(new SpinStyleCalibration(dir, AffinityMode.LOCAL, 8).cached());
+            Assert.assertNull(new SpinStyleCalibration(null, AffinityMode.LOCAL, 4).cached());
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+}